@@ -27,6 +27,7 @@ import uk.gov.moj.cp.ai.idempotency.ClaimToken;
 import uk.gov.moj.cp.ai.idempotency.IdempotencyGuard;
 import uk.gov.moj.cp.ai.idempotency.LeaseConflictException;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.model.InputChunksPayload;
 import uk.gov.moj.cp.ai.model.ScoringPayload;
 import uk.gov.moj.cp.ai.model.ScoringQueuePayload;
@@ -235,23 +236,29 @@ public class AnswerGenerationFunction {
                                   final long dequeueCount,
                                   final int maxDequeueCount,
                                   final long startTime) {
+        final String inputChunksFilename = getInputChunksFilename(token.clientId(), payload.transactionId());
         List<ChunkedEntry> chunkedEntries = null;
         try {
-            final List<Float> embeddings = embedDataService.getEmbedding(payload.userQuery());
-            chunkedEntries = searchService.search(token.clientId(), payload.userQuery(), embeddings, payload.metadataFilter());
+            chunkedEntries = dequeueCount > 1 ? readPersistedInputChunks(inputChunksFilename) : null;
+            if (chunkedEntries == null) {
+                final EmbeddingVector embeddings = embedDataService.getEmbedding(payload.userQuery());
+                chunkedEntries = searchService.search(token.clientId(), payload.userQuery(), embeddings, payload.metadataFilter());
+                // Persisted before the LLM call so a redelivery can reuse the retrieved context.
+                saveInputChunksToTheBlobContainer(inputChunksFilename, chunkedEntries);
+            }
             final LlmResponse llmResponse = responseGenerationService.generateResponse(payload.userQuery(), chunkedEntries, payload.queryPrompt());
 
-            persistAnswer(payload, llmResponse, chunkedEntries, currentTimeMillis() - startTime, scoringMessage, token);
+            persistAnswer(payload, llmResponse, chunkedEntries, inputChunksFilename, currentTimeMillis() - startTime, scoringMessage, token);
         } catch (EtagMismatchException e) {
             throw e;
         } catch (CitationDegradedException e) {
             // Citation-guard retry rides the queue redelivery mechanism: each redelivery is a
-            // fresh, short invocation (re-embed, re-search, one LLM call) rather than a
-            // long-running in-process loop.
+            // fresh, short invocation (reload the persisted input chunks, one LLM call) rather
+            // than a long-running in-process loop.
             if (dequeueCount < maxDequeueCount) {
                 throw redeliveryException(payload, " (citation-degraded)", e);
             }
-            handleCitationExhaustion(payload, chunkedEntries, e, currentTimeMillis() - startTime, scoringMessage, token);
+            handleCitationExhaustion(payload, chunkedEntries, inputChunksFilename, e, currentTimeMillis() - startTime, scoringMessage, token);
         } catch (Exception e) {
             if (dequeueCount >= maxDequeueCount) {
                 LOGGER.error("Answer generation failed", e);
@@ -263,22 +270,42 @@ public class AnswerGenerationFunction {
     }
 
     /**
-     * Persists one generated answer: input-chunks blob, then — unless the generation FAILED, in
-     * which case only the fenced status row is written (nothing meaningful to score) — the eval
+     * The chunks an earlier delivery of this transaction retrieved and persisted, so a redelivery
+     * (citation-guard or any failure after retrieval) repeats only the LLM call rather than the
+     * embedding, search and filter pipeline. Null when there is nothing reusable — the earlier
+     * attempt failed before persisting, or the blob cannot be read — and retrieval runs again.
+     */
+    private List<ChunkedEntry> readPersistedInputChunks(final String inputChunksFilename) {
+        try {
+            final InputChunksPayload persisted = blobPersistenceInputChunksService.readBlob(inputChunksFilename, InputChunksPayload.class);
+            if (nonNull(persisted) && nonNull(persisted.chunkedEntries())) {
+                LOGGER.info("Reusing {} input chunks persisted by an earlier attempt from '{}'",
+                        persisted.chunkedEntries().size(), inputChunksFilename);
+                return persisted.chunkedEntries();
+            }
+        } catch (Exception e) {
+            LOGGER.info("No reusable input chunks at '{}' ({}); re-running retrieval", inputChunksFilename, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Persists one generated answer, whose input chunks were saved at retrieval time: the eval
      * blob and serialized scoring message, the fenced status row (with the reason column when
-     * there is one), and finally the scoring enqueue. Every fallible step precedes the fenced
+     * there is one), and finally the scoring enqueue — or, when the generation FAILED, only the
+     * fenced status row (nothing meaningful to score). Every fallible step precedes the fenced
      * terminal write; scoring follows it. Shared by the happy path and the citation-guard
      * DELIVER branch.
      */
     private void persistAnswer(final AnswerGenerationQueuePayload payload,
                                final LlmResponse llmResponse,
                                final List<ChunkedEntry> chunkedEntries,
+                               final String inputChunksFilename,
                                final long durationMs,
                                final OutputBinding<String> scoringMessage,
                                final ClaimToken token) throws JsonProcessingException {
         final UUID transactionId = payload.transactionId();
         final String clientId = token.clientId();
-        final String inputChunksFilename = saveInputChunksToTheBlobContainer(clientId, transactionId, chunkedEntries);
 
         if (llmResponse.status() == ANSWER_GENERATION_FAILED) {
             upsertTerminalFenced(payload, llmResponse, inputChunksFilename, durationMs, token);
@@ -328,6 +355,7 @@ public class AnswerGenerationFunction {
      */
     private void handleCitationExhaustion(final AnswerGenerationQueuePayload payload,
                                           final List<ChunkedEntry> chunkedEntries,
+                                          final String inputChunksFilename,
                                           final CitationDegradedException e,
                                           final long durationMs,
                                           final OutputBinding<String> scoringMessage,
@@ -346,7 +374,7 @@ public class AnswerGenerationFunction {
         try {
             final LlmResponse degraded = new LlmResponse(
                     e.rawLlmResponse(), e.formattedText(), ANSWER_GENERATED, e.getMessage());
-            persistAnswer(payload, degraded, chunkedEntries, durationMs, scoringMessage, token);
+            persistAnswer(payload, degraded, chunkedEntries, inputChunksFilename, durationMs, scoringMessage, token);
         } catch (final EtagMismatchException fenceLoss) {
             // Never convert a fence loss into a FAILED write — the reclaimer owns the outcome.
             throw fenceLoss;
@@ -433,11 +461,9 @@ public class AnswerGenerationFunction {
         return filename;
     }
 
-    private String saveInputChunksToTheBlobContainer(final String clientId, final UUID transactionId, final List<ChunkedEntry> chunkedEntries) throws JsonProcessingException {
-        final String inputChunksFilename = getInputChunksFilename(clientId, transactionId);
+    private void saveInputChunksToTheBlobContainer(final String inputChunksFilename, final List<ChunkedEntry> chunkedEntries) throws JsonProcessingException {
         final InputChunksPayload inputChunksPayload = new InputChunksPayload(chunkedEntries);
 
         blobPersistenceInputChunksService.saveBlob(inputChunksFilename, convert(inputChunksPayload));
-        return inputChunksFilename;
     }
 }
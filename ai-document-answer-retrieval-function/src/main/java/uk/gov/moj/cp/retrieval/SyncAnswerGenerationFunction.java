@@ -28,6 +28,7 @@ import uk.gov.moj.cp.ai.client.identity.ClientIdentityResolver;
 import uk.gov.moj.cp.ai.client.identity.HeaderClientIdentityResolver;
 import uk.gov.moj.cp.ai.http.HttpResponses;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.model.KeyValuePair;
 import uk.gov.moj.cp.ai.model.ScoringPayload;
 import uk.gov.moj.cp.ai.model.ScoringQueuePayload;
@@ -139,7 +140,7 @@ public class SyncAnswerGenerationFunction {
 
             LOGGER.info("Initiating answer generation process for query - {}", userQuery);
 
-            final List<Float> queryEmbeddings = embedDataService.getEmbedding(userQuery);
+            final EmbeddingVector queryEmbeddings = embedDataService.getEmbedding(userQuery);
 
             final List<ChunkedEntry> chunkedEntries = searchService.search(clientId, userQuery, queryEmbeddings, metadataFilters);
 
@@ -0,0 +1,14 @@
+package uk.gov.moj.cp.retrieval.exception;
+
+/**
+ * Thrown from inside a streamed generation by {@code GenerationWatchdog} once the completion has
+ * degenerated (a counter loop or a repetition loop). Throwing from the stream consumer abandons
+ * the stream, so the model stops being billed for output nobody will use; the caller turns the
+ * abort into its usual citation-guard outcome.
+ */
+public class GenerationAbortedException extends RuntimeException {
+
+    public GenerationAbortedException(final String reason) {
+        super(reason);
+    }
+}
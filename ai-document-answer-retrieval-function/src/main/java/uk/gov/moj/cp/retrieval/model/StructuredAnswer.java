@@ -0,0 +1,62 @@
+package uk.gov.moj.cp.retrieval.model;
+
+import static uk.gov.moj.cp.retrieval.model.CitationKeys.CITATION_ID;
+import static uk.gov.moj.cp.retrieval.model.CitationKeys.DOCUMENT_FILE_NAME;
+import static uk.gov.moj.cp.retrieval.model.CitationKeys.DOCUMENT_ID;
+import static uk.gov.moj.cp.retrieval.model.CitationKeys.INDIVIDUAL_PAGE_NUMBERS;
+import static uk.gov.moj.cp.retrieval.model.CitationKeys.PAGE_NUMBERS;
+
+import uk.gov.moj.cp.ai.model.ResponseSchema;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * An answer generated in structured-output mode: the narrative with inline {@code [N]} placeholders,
+ * and the citations those placeholders refer to, in place of the {@code <FACT_MAP_JSON>} block.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record StructuredAnswer(@JsonProperty(ANSWER) String answer,
+                               @JsonProperty(CITATIONS) List<Citation> citations) {
+
+    public static final String ANSWER = "answer";
+    public static final String CITATIONS = "citations";
+
+    /** One entry of the citation map; same fields as a {@code <FACT_MAP_JSON>} entry. */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Citation(@JsonProperty(CITATION_ID) String citationId,
+                           @JsonProperty(DOCUMENT_ID) String documentId,
+                           @JsonProperty(DOCUMENT_FILE_NAME) String documentFilename,
+                           @JsonProperty(INDIVIDUAL_PAGE_NUMBERS) String individualPageNumbers,
+                           @JsonProperty(PAGE_NUMBERS) String pageNumbers) {
+    }
+
+    /** Strict schema for {@link StructuredAnswer}: every property required, no others allowed. */
+    public static final ResponseSchema RESPONSE_SCHEMA = new ResponseSchema("cited_answer", Map.of(
+            "type", "object",
+            "properties", Map.of(
+                    ANSWER, stringProperty("The answer, with an inline [N] placeholder after each supported statement"),
+                    CITATIONS, Map.of(
+                            "type", "array",
+                            "description", "One entry per placeholder id used in the answer",
+                            "items", Map.of(
+                                    "type", "object",
+                                    "properties", Map.of(
+                                            CITATION_ID, stringProperty("The N of the [N] placeholder"),
+                                            DOCUMENT_ID, stringProperty("DOCUMENT_ID of the source document"),
+                                            DOCUMENT_FILE_NAME, stringProperty("DOCUMENT_FILENAME of the source document"),
+                                            INDIVIDUAL_PAGE_NUMBERS, stringProperty("Comma-separated page numbers, e.g. 3,4,7"),
+                                            PAGE_NUMBERS, stringProperty("The same pages as ranges, e.g. 3-4,7")),
+                                    "required", List.of(CITATION_ID, DOCUMENT_ID, DOCUMENT_FILE_NAME,
+                                            INDIVIDUAL_PAGE_NUMBERS, PAGE_NUMBERS),
+                                    "additionalProperties", false))),
+            "required", List.of(ANSWER, CITATIONS),
+            "additionalProperties", false));
+
+    private static Map<String, Object> stringProperty(final String description) {
+        return Map.of("type", "string", "description", description);
+    }
+}
@@ -3,46 +3,51 @@ package uk.gov.moj.cp.retrieval.service;
 import static java.lang.String.format;
 import static uk.gov.moj.cp.ai.SharedSystemVariables.AZURE_SEARCH_SERVICE_ENDPOINT;
 import static uk.gov.moj.cp.ai.SharedSystemVariables.AZURE_SEARCH_SERVICE_INDEX_NAME;
+import static uk.gov.moj.cp.ai.SharedSystemVariables.STORAGE_ACCOUNT_TABLE_SEARCH_INDEX_GENERATION;
 import static uk.gov.moj.cp.ai.index.IndexConstants.CUSTOM_METADATA;
 import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
 import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
-import static uk.gov.moj.cp.ai.util.StringUtil.escapeLuceneSpecialChars;
 import static uk.gov.moj.cp.ai.util.StringUtil.escapeODataStringLiteral;
 import static uk.gov.moj.cp.ai.util.StringUtil.isNullOrEmpty;
 
-import uk.gov.moj.cp.ai.client.AISearchClientFactory;
 import uk.gov.moj.cp.ai.index.IndexConstants;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.model.KeyValuePair;
+import uk.gov.moj.cp.ai.search.SearchRequest;
+import uk.gov.moj.cp.ai.search.VectorSearchBackend;
+import uk.gov.moj.cp.ai.search.VectorSearchBackendFactory;
+import uk.gov.moj.cp.ai.service.table.SearchIndexGenerationTableService;
+import uk.gov.moj.cp.ai.service.table.SearchIndexGenerationTableService.Generation;
 import uk.gov.moj.cp.retrieval.exception.SearchServiceException;
 import uk.gov.moj.cp.retrieval.service.filter.ContentContainmentService;
 import uk.gov.moj.cp.retrieval.service.filter.DeduplicationService;
 import uk.gov.moj.cp.retrieval.service.filter.DiversificationService;
+import uk.gov.moj.cp.retrieval.service.filter.SimilarityContext;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.azure.core.util.Context;
-import com.azure.search.documents.SearchClient;
-import com.azure.search.documents.models.QueryType;
-import com.azure.search.documents.models.SearchOptions;
-import com.azure.search.documents.models.SearchResult;
-import com.azure.search.documents.models.VectorSearchOptions;
-import com.azure.search.documents.models.VectorizedQuery;
-import com.azure.search.documents.util.SearchPagedIterable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class AzureAISearchService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AzureAISearchService.class);
-    private final SearchClient searchClient;
+    private final VectorSearchBackend searchBackend;
     private final ContentContainmentService contentContainmentService;
     private final DeduplicationService deduplicationService;
     private final DiversificationService diversificationService;
+    private final SearchResultCache searchResultCache;
+    private final HotDocumentCache hotDocumentCache;
+    private final SearchIndexGenerationTableService generations;
+    private final String searchIndexName;
 
     private final int nearestNeighborsCount;
     private final int topResultsCount;
+    private final Duration indexRefreshDelay;
 
     private final String IS_ACTIVE_FILTER = format("(not %s/any(m: m/key eq 'is_active') or %s/any(m: m/key eq 'is_active' and m/value ne 'false'))",
             CUSTOM_METADATA, CUSTOM_METADATA);
@@ -53,29 +58,74 @@ public class AzureAISearchService {
     }
 
     public AzureAISearchService(final String endpoint, final String searchIndexName) {
+        this(endpoint, searchIndexName, SearchResultCache.getInstance());
+    }
 
-        if (isNullOrEmpty(endpoint) || isNullOrEmpty(searchIndexName)) {
-            throw new IllegalArgumentException("Azure AI Search endpoint and index name must be set as environment variables.");
-        }
+    AzureAISearchService(final String endpoint, final String searchIndexName, final SearchResultCache searchResultCache) {
+        this(endpoint, searchIndexName, searchResultCache, HotDocumentCache.getInstance());
+    }
+
+    AzureAISearchService(final String endpoint, final String searchIndexName, final SearchResultCache searchResultCache,
+                         final HotDocumentCache hotDocumentCache) {
+        this(endpoint, searchIndexName, searchResultCache, hotDocumentCache, generationsFromEnv(searchResultCache, hotDocumentCache));
+    }
 
+    AzureAISearchService(final String endpoint, final String searchIndexName, final SearchResultCache searchResultCache,
+                         final HotDocumentCache hotDocumentCache, final SearchIndexGenerationTableService generations) {
+        this(validatedBackend(endpoint, searchIndexName), searchIndexName, searchResultCache, hotDocumentCache, generations);
+        LOGGER.info("Initialized search backend for index {}.", searchIndexName);
+    }
+
+    /**
+     * Searches the given backend, e.g. a {@link uk.gov.moj.cp.ai.search.local.LocalSearchBackend}
+     * in benchmarks and integration tests.
+     */
+    public AzureAISearchService(final VectorSearchBackend searchBackend) {
+        this(searchBackend, searchBackend.indexName(), SearchResultCache.getInstance(), HotDocumentCache.getInstance(),
+                generationsFromEnv(SearchResultCache.getInstance(), HotDocumentCache.getInstance()));
+    }
+
+    private AzureAISearchService(final VectorSearchBackend searchBackend, final String searchIndexName,
+                                 final SearchResultCache searchResultCache, final HotDocumentCache hotDocumentCache,
+                                 final SearchIndexGenerationTableService generations) {
         nearestNeighborsCount = getRequiredEnvAsInteger("SEARCH_NEAREST_NEIGHBOURS_COUNT", "50");
         topResultsCount = getRequiredEnvAsInteger("SEARCH_TOP_RESULTS_COUNT", "50");
+        indexRefreshDelay = Duration.ofSeconds(getRequiredEnvAsInteger("SEARCH_INDEX_REFRESH_DELAY_SECONDS", "10"));
 
         LOGGER.info("Search parameters set as - Nearest Neighbors: {}, Top Results: {}", nearestNeighborsCount, topResultsCount);
 
-        this.searchClient = AISearchClientFactory.getInstance(endpoint, searchIndexName);
+        this.searchBackend = searchBackend;
         this.contentContainmentService = new ContentContainmentService();
         this.deduplicationService = new DeduplicationService();
         this.diversificationService = new DiversificationService();
+        this.searchResultCache = searchResultCache;
+        this.hotDocumentCache = hotDocumentCache;
+        this.generations = generations;
+        this.searchIndexName = searchIndexName;
+    }
 
-        LOGGER.info("Initialized Azure AI Search client with managed identity.");
+    /**
+     * @return the generation table both caches are stamped from, or null when neither cache is enabled
+     */
+    private static SearchIndexGenerationTableService generationsFromEnv(final SearchResultCache searchResultCache,
+                                                                        final HotDocumentCache hotDocumentCache) {
+        if (!searchResultCache.isEnabled() && !hotDocumentCache.isEnabled()) {
+            return null;
+        }
+        return new SearchIndexGenerationTableService(getRequiredEnv(STORAGE_ACCOUNT_TABLE_SEARCH_INDEX_GENERATION));
+    }
 
+    private static VectorSearchBackend validatedBackend(final String endpoint, final String searchIndexName) {
+        if (isNullOrEmpty(endpoint) || isNullOrEmpty(searchIndexName)) {
+            throw new IllegalArgumentException("Azure AI Search endpoint and index name must be set as environment variables.");
+        }
+        return VectorSearchBackendFactory.getInstance(endpoint, searchIndexName);
     }
 
     public List<ChunkedEntry> search(
             final String clientId,
             final String userQuery,
-            final List<Float> vectorizedUserQuery,
+            final EmbeddingVector vectorizedUserQuery,
             final List<KeyValuePair> metadataFilters) throws SearchServiceException {
 
         if (isNullOrEmpty(userQuery) || null == vectorizedUserQuery || vectorizedUserQuery.isEmpty() || null == metadataFilters || metadataFilters.isEmpty()) {
@@ -84,46 +134,41 @@ public class AzureAISearchService {
 
         LOGGER.info("Retrieving documents for query with filters: {}", metadataFilters);
 
+        // One generation read serves both caches.
+        final Long generation = cacheGeneration(clientId);
+        final String cacheKey = searchResultCache.keyFor(searchIndexName, clientId, generation, userQuery, metadataFilters);
+        final List<ChunkedEntry> cachedEntries = searchResultCache.get(cacheKey);
+        if (cachedEntries != null) {
+            LOGGER.info("Returning {} cached search results", cachedEntries.size());
+            return cachedEntries;
+        }
+
         final String filterExpression = generateFilterExpression(clientId, metadataFilters);
         LOGGER.info("Retrieving documents for query with filters: {}", filterExpression);
 
 
-        // 2. Define VectorQuery for semantic search
-        final VectorizedQuery vectorizedQuery = new VectorizedQuery(
-                vectorizedUserQuery.stream().collect(ArrayList::new, ArrayList::add, ArrayList::addAll)
-        )
-                .setKNearestNeighborsCount(nearestNeighborsCount) // Number of nearest neighbors to retrieve
-                .setFields(IndexConstants.CHUNK_VECTOR);
+        // 2. Hybrid query: the vector leg takes the nearest neighbours of the chunk vector, the keyword
+        // leg the user query; the backend fuses both and returns the top results after filtering.
+        final SearchRequest searchRequest = new SearchRequest(userQuery, vectorizedUserQuery,
+                IndexConstants.CHUNK_VECTOR, nearestNeighborsCount, filterExpression,
+                List.of(getColumnsToRetrieve(clientId)), topResultsCount);
 
-        final VectorSearchOptions vectorSearchOptions = new VectorSearchOptions().setQueries(List.of(vectorizedQuery));
-
-        // 3. Define SearchOptions
-        final SearchOptions searchOptions = new SearchOptions()
-                .setFilter(filterExpression) // Apply the OData filter
-                .setVectorSearchOptions(vectorSearchOptions) // Add the vector query
-                .setQueryType(QueryType.FULL) // Use SEMANTIC for hybrid search with semantic ranking
-                .setSelect(getColumnsToRetrieve(clientId)) // Select all fields needed for LLM context and citation
-                .setTop(topResultsCount); // Number of top results to return after filtering and ranking
-
-
-        // 4. Execute the search
+        // 3. Execute the search
         try {
-            final String escapedUserQuery = escapeLuceneSpecialChars(userQuery);
-            final SearchPagedIterable searchResults = searchClient.search(escapedUserQuery, searchOptions, Context.NONE);
-
-            final List<ChunkedEntry> chunkedEntries = new ArrayList<>();
-            for (final SearchResult result : searchResults) {
-                // Get the full document map for each chunk
-                ChunkedEntry chunkedEntry = result.getDocument(ChunkedEntry.class);
-                chunkedEntries.add(chunkedEntry);
-            }
-            LOGGER.info("Successfully retrieved {}  documents from Azure AI Search.", chunkedEntries.size());
+            // A hot scope (client and filters queried repeatedly) is answered from its locally held chunks.
+            final List<ChunkedEntry> chunkedEntries = hotDocumentCache.search(searchBackend, clientId, generation, metadataFilters, searchRequest)
+                    .orElseGet(() -> searchBackend.search(searchRequest, ChunkedEntry.class));
+            LOGGER.info("Successfully retrieved {}  documents from the search index.", chunkedEntries.size());
 
             // Pipeline: information-safe containment dedup first, then (optional) semantic dedup,
-            // then MMR as a final relevance-vs-diversity / token-budget pass.
+            // then MMR as a final relevance-vs-diversity / token-budget pass. The two vector stages share
+            // one similarity context so a pair compared by dedup is not recomputed by MMR.
+            final SimilarityContext similarityContext = SimilarityContext.of(vectorizedUserQuery, chunkedEntries);
             final List<ChunkedEntry> containmentDedupedEntries = contentContainmentService.deduplicateByContainment(chunkedEntries);
-            final List<ChunkedEntry> dedupedEntries = deduplicationService.performSemanticDeduplication(containmentDedupedEntries);
-            return diversificationService.diversify(vectorizedUserQuery, dedupedEntries);
+            final List<ChunkedEntry> dedupedEntries = deduplicationService.performSemanticDeduplication(containmentDedupedEntries, similarityContext);
+            final List<ChunkedEntry> refinedEntries = diversificationService.diversify(dedupedEntries, similarityContext);
+            searchResultCache.put(cacheKey, refinedEntries);
+            return refinedEntries;
 
         } catch (Exception e) {
             // Implement retry logic here if needed
@@ -131,6 +176,32 @@ public class AzureAISearchService {
         }
     }
 
+    /**
+     * Reads the client's search index generation for the caches. Returns null, so both caches are
+     * bypassed, when it cannot be read or when it was bumped less than
+     * {@code SEARCH_INDEX_REFRESH_DELAY_SECONDS} ago: ingestion bumps as soon as its write returns, but
+     * the write only becomes searchable after the index refreshes, and results read before then must
+     * not be cached under the new generation.
+     */
+    private Long cacheGeneration(final String clientId) {
+        if (generations == null) {
+            return null;
+        }
+        final Generation generation;
+        try {
+            generation = generations.currentGeneration(clientId);
+        } catch (Exception e) {
+            LOGGER.warn("Could not read search index generation; bypassing the search caches", e);
+            return null;
+        }
+        if (!generation.isSettled(Instant.now(), indexRefreshDelay)) {
+            LOGGER.info("Search index generation {} is younger than the index refresh delay; bypassing the search caches",
+                    generation.value());
+            return null;
+        }
+        return generation.value();
+    }
+
     String generateFilterExpression(final String clientId, final List<KeyValuePair> metadataFilters) {
         final StringBuilder filterBuilder = new StringBuilder();
 
@@ -9,11 +9,13 @@ import static uk.gov.moj.cp.retrieval.model.CitationKeys.INDIVIDUAL_PAGE_NUMBERS
 import static uk.gov.moj.cp.retrieval.model.CitationKeys.PAGE_NUMBERS;
 
 import uk.gov.moj.cp.ai.util.StringUtil;
+import uk.gov.moj.cp.retrieval.model.StructuredAnswer;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.TreeSet;
 import java.util.regex.Matcher;
@@ -40,10 +42,13 @@ import org.slf4j.LoggerFactory;
  *       does not cause the parser to discard the real answer body.</li>
  *   <li>Preserves prose on both sides of the citation tag, so responses where
  *       the model emits the JSON first or in the middle still render.</li>
- *   <li>Matches the placeholder against a tolerant regex covering common LLM
- *       drift forms: {@code [N]}, {@code [N p.X]}, {@code [N, p.X]},
- *       {@code [N:X]}, {@code [^N]}, {@code [Source N]}, {@code [doc N]},
- *       {@code [Citation N]}, {@code [Ref N]} (label case-insensitive).</li>
+ *   <li>Recognises the placeholder in a single tokenizing pass over the answer,
+ *       tolerating the common LLM drift forms: {@code [N]}, {@code [N p.X]},
+ *       {@code [N, p.X]}, {@code [N:X]}, {@code [^N]}, {@code [Source N]},
+ *       {@code [doc N]}, {@code [Citation N]}, {@code [Ref N]} (label
+ *       case-insensitive). Each placeholder's id is looked up in the parsed
+ *       entries, so the cost is one scan however many citations there are, and
+ *       a rendered citation is never re-scanned for placeholders.</li>
  *   <li>Expands comma- or semicolon-joined IDs such as {@code [1, 2]} into the
  *       canonical {@code [1][2]} form before substitution.</li>
  *   <li>Strips markdown {@code ```json} code fences a model may wrap around
@@ -91,24 +96,22 @@ public class CitationProcessor {
     private static final Pattern JOINED_IDS_SEPARATOR = Pattern.compile("\\s*[,;]\\s*");
 
     /** Matches any bare {@code [N]} integer-in-brackets. Used to detect counter-loop pathology. */
-    private static final Pattern BARE_BRACKET_INT = Pattern.compile("\\[\\d+\\]");
+    static final Pattern BARE_BRACKET_INT = Pattern.compile("\\[\\d+\\]");
 
-    /** A maximal run of two or more adjacent bare {@code [N]} markers, separated by at most a few
-     *  horizontal whitespace characters (a newline between markers is NOT a run — citations of
-     *  separate list items must not merge). Every quantifier is bounded and each repetition is
-     *  anchored on a literal '[', so the pattern cannot backtrack super-linearly (S5852). */
-    private static final Pattern MARKER_RUN_PATTERN =
-            Pattern.compile("\\[\\d{1,4}\\](?:[ \\t]{0,3}\\[\\d{1,4}\\]){1,50}");
+    /** Any placeholder drift form; group 1 is the citation id. Neither the id nor the trailing
+     *  page suffix may contain a bracket, so a match never spans another placeholder. */
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile(
+            "(?i)\\[\\^?(?:(?:Source|doc|Citation|Ref)[\\s:]+)?\\s*([^\\s,;:\\[\\]]+)(?:[\\s,;:][^\\[\\]]*)?\\]");
 
-    /** A single bare {@code [N]} marker within a matched run; group 1 is the citation id. */
-    private static final Pattern SINGLE_MARKER_PATTERN = Pattern.compile("\\[(\\d{1,4})\\]");
+    /** Same-document runs: at most this many horizontal whitespace characters between adjacent bare
+     *  {@code [N]} markers (a newline between markers is NOT a run — citations of separate list items
+     *  must not merge), at most this many digits per marker, and at most this many markers per run. */
+    private static final int MAX_RUN_GAP = 3;
+    private static final int MAX_MARKER_DIGITS = 4;
+    private static final int MAX_RUN_MARKERS = 51;
 
     /** Above this many surviving {@code [N]} markers, the output is treated as catastrophic. */
-    private static final int CATASTROPHIC_BRACKET_THRESHOLD = 100;
-
-    /** Placeholder regex template; the {@code %s} is substituted with the citation id. */
-    private static final String PLACEHOLDER_REGEX_TEMPLATE =
-            "(?i)\\[\\^?(?:(?:Source|doc|Citation|Ref)[\\s:]+)?\\s*%s(?:[\\s,;:][^\\[\\]]*)?\\]";
+    static final int CATASTROPHIC_BRACKET_THRESHOLD = 100;
 
     /** The user-visible citation format. */
     private static final String CITATION_FORMAT = "::(Source: [%s], Pages %s|%s|documentId=%s)";
@@ -179,10 +182,7 @@ public class CitationProcessor {
         try {
             final List<Map<String, Object>> citations =
                     objectMapper.readValue(jsonPayload, new TypeReference<>() { });
-            answerText = mergeSameDocumentRuns(answerText, citations);
-            for (final Map<String, Object> citation : citations) {
-                answerText = substituteCitation(answerText, citation);
-            }
+            answerText = substituteCitations(answerText, citations);
             final int leftover = countBareMarkers(answerText);
             final String formatted = stripUnresolvedCitationMarkers(answerText, false).trim();
             return new CitationOutcome(formatted, true, citations.isEmpty(), inlineMarkers,
@@ -194,6 +194,64 @@ public class CitationProcessor {
         }
     }
 
+    /**
+     * Structured-output counterpart of {@link #processCitations}: the citations arrive already typed,
+     * so there is no tag to find and no JSON to parse. Placeholders in the answer are substituted,
+     * merged and stripped exactly as on the tagged path, and the outcome is read the same way (the
+     * citation list stands in for a complete {@code <FACT_MAP_JSON>} block).
+     */
+    public CitationOutcome processStructuredAnswer(final StructuredAnswer structuredAnswer) {
+        if (structuredAnswer == null || StringUtil.isNullOrEmpty(structuredAnswer.answer())) {
+            return new CitationOutcome("", false, false, 0, 0, 0);
+        }
+        String answerText = normaliseJoinedIds(structuredAnswer.answer().trim());
+        final int inlineMarkers = countBareMarkers(answerText);
+
+        final List<Map<String, Object>> citations = structuredAnswer.citations() == null
+                ? List.of()
+                : structuredAnswer.citations().stream().map(CitationProcessor::toEntry).toList();
+        answerText = substituteCitations(answerText, citations);
+        final int leftover = countBareMarkers(answerText);
+        final String formatted = stripUnresolvedCitationMarkers(answerText, false).trim();
+        return new CitationOutcome(formatted, true, citations.isEmpty(), inlineMarkers,
+                countRenderedCitations(formatted), leftover);
+    }
+
+    /** A typed citation as a fact-map entry; absent fields are left out so the usual defaults apply. */
+    private static Map<String, Object> toEntry(final StructuredAnswer.Citation citation) {
+        final Map<String, Object> entry = new HashMap<>();
+        putIfPresent(entry, CITATION_ID, citation.citationId());
+        putIfPresent(entry, DOCUMENT_ID, citation.documentId());
+        putIfPresent(entry, DOCUMENT_FILE_NAME, citation.documentFilename());
+        putIfPresent(entry, INDIVIDUAL_PAGE_NUMBERS, citation.individualPageNumbers());
+        putIfPresent(entry, PAGE_NUMBERS, citation.pageNumbers());
+        return entry;
+    }
+
+    private static void putIfPresent(final Map<String, Object> entry, final String key, final String value) {
+        if (!StringUtil.isNullOrEmpty(value)) {
+            entry.put(key, value);
+        }
+    }
+
+    /**
+     * Rewrites every numeric placeholder drift form ({@code [Source 1]}, {@code [^1]}, {@code [1 p.7]},
+     * {@code [1, 2]}, ...) to the canonical bare {@code [N]} without resolving it. Used on narrative
+     * text whose {@code <FACT_MAP_JSON>} block is missing or unusable; bracketed text whose id is not
+     * a number is left alone.
+     */
+    public String normalisePlaceholders(final String text) {
+        if (StringUtil.isNullOrEmpty(text)) {
+            return text;
+        }
+        return PLACEHOLDER_PATTERN.matcher(normaliseJoinedIds(text)).replaceAll(match -> {
+            final String id = match.group(1);
+            return id.chars().allMatch(c -> isAsciiDigit((char) c))
+                    ? Matcher.quoteReplacement("[" + id + "]")
+                    : Matcher.quoteReplacement(match.group());
+        });
+    }
+
     private static int countBareMarkers(final String text) {
         return (int) BARE_BRACKET_INT.matcher(text).results().count();
     }
@@ -234,23 +292,70 @@ public class CitationProcessor {
         return CODE_FENCE_CLOSE.matcher(afterOpen).replaceFirst("");
     }
 
-    private static String substituteCitation(final String answerText, final Map<String, Object> citation) {
-        final String citationIdStr = stringifyJsonValue(citation.get(CITATION_ID));
-        if (StringUtil.isNullOrEmpty(citationIdStr)) {
+    /**
+     * Replaces every placeholder in one left-to-right pass. A placeholder whose id has a JSON entry
+     * becomes that entry's formatted citation; any other is copied verbatim for the
+     * unresolved-marker stripping to handle. A run of adjacent bare {@code [N]} markers is handed
+     * to {@link #appendMarkerRun}, which merges its same-document stretches. When an id appears in
+     * more than one entry, the first entry wins.
+     */
+    private static String substituteCitations(final String answerText, final List<Map<String, Object>> citations) {
+        final Map<String, Map<String, Object>> idToEntry = new HashMap<>();
+        for (final Map<String, Object> citation : citations) {
+            final String id = stringifyJsonValue(citation.get(CITATION_ID));
+            if (!StringUtil.isNullOrEmpty(id)) {
+                idToEntry.putIfAbsent(lookupKey(id), citation);
+            }
+        }
+        if (idToEntry.isEmpty()) {
             return answerText;
         }
 
-        final String individual = stringifyJsonValue(citation.getOrDefault(INDIVIDUAL_PAGE_NUMBERS, NOT_AVAILABLE));
-        final String compressed = resolveCompressedPages(citation, individual);
+        final Map<String, String> formattedById = new HashMap<>();
+        final StringBuilder out = new StringBuilder(answerText.length() + idToEntry.size() * 64);
+        final Matcher placeholder = PLACEHOLDER_PATTERN.matcher(answerText);
+        int cursor = 0;
+        while (placeholder.find()) {
+            final int start = placeholder.start();
+            out.append(answerText, cursor, start);
+            final MarkerRun run = markerRunAt(answerText, start);
+            if (run != null) {
+                appendMarkerRun(out, run.ids(), idToEntry, formattedById);
+                cursor = run.end();
+                placeholder.region(cursor, answerText.length());
+            } else {
+                appendPlaceholder(out, placeholder.group(1), answerText.substring(start, placeholder.end()),
+                        idToEntry, formattedById);
+                cursor = placeholder.end();
+            }
+        }
+        return out.append(answerText, cursor, answerText.length()).toString();
+    }
 
-        final String formatted = formatCitation(
+    private static void appendPlaceholder(final StringBuilder out, final String id, final String original,
+                                          final Map<String, Map<String, Object>> idToEntry,
+                                          final Map<String, String> formattedById) {
+        final String key = lookupKey(id);
+        final Map<String, Object> entry = idToEntry.get(key);
+        if (entry == null) {
+            out.append(original);
+        } else {
+            out.append(formattedById.computeIfAbsent(key, k -> formatEntry(entry)));
+        }
+    }
+
+    private static String formatEntry(final Map<String, Object> citation) {
+        final String individual = stringifyJsonValue(citation.getOrDefault(INDIVIDUAL_PAGE_NUMBERS, NOT_AVAILABLE));
+        return formatCitation(
                 stringifyJsonValue(citation.getOrDefault(DOCUMENT_FILE_NAME, UNKNOWN_FILE)),
-                compressed,
+                resolveCompressedPages(citation, individual),
                 individual,
                 stringifyJsonValue(citation.getOrDefault(DOCUMENT_ID, UNKNOWN_ID)));
+    }
 
-        final String placeholderRegex = String.format(PLACEHOLDER_REGEX_TEMPLATE, Pattern.quote(citationIdStr));
-        return answerText.replaceAll(placeholderRegex, Matcher.quoteReplacement(formatted));
+    /** Ids are matched case-insensitively, as the drift labels are. */
+    private static String lookupKey(final String id) {
+        return id.toLowerCase(Locale.ROOT);
     }
 
     private static String formatCitation(final String filename, final String compressed,
@@ -259,48 +364,64 @@ public class CitationProcessor {
     }
 
     /**
-     * Collapses each maximal run of adjacent bare {@code [N]} markers whose citationIds resolve
-     * to the same documentId into a single formatted citation carrying the union of the entries'
-     * pages. The rewrite is positional — only the matched run region changes and no JSON entry
-     * is removed, so an id reused non-adjacently elsewhere still substitutes normally. Runs (or
-     * portions of runs) citing different documents, or ids without a JSON entry, are re-emitted
-     * verbatim for the ordinary substitution and unresolved-marker stripping to handle.
+     * Returns the run of two or more adjacent bare {@code [N]} markers starting at {@code start},
+     * or null when there is no such run. Markers may be separated by up to {@link #MAX_RUN_GAP}
+     * spaces or tabs; a run is capped at {@link #MAX_RUN_MARKERS} markers, after which the next
+     * marker starts a new run.
      */
-    private static String mergeSameDocumentRuns(final String answerText, final List<Map<String, Object>> citations) {
-        final Map<String, Map<String, Object>> idToEntry = new LinkedHashMap<>();
-        for (final Map<String, Object> citation : citations) {
-            final String id = stringifyJsonValue(citation.get(CITATION_ID));
-            if (!StringUtil.isNullOrEmpty(id)) {
-                idToEntry.putIfAbsent(id, citation);
-            }
+    private static MarkerRun markerRunAt(final String text, final int start) {
+        int end = bareMarkerEnd(text, start);
+        if (end < 0) {
+            return null;
         }
-        if (idToEntry.isEmpty()) {
-            return answerText;
+        final List<String> ids = new ArrayList<>();
+        ids.add(text.substring(start + 1, end - 1));
+        int runEnd = end;
+        while (ids.size() < MAX_RUN_MARKERS) {
+            int next = runEnd;
+            while (next < text.length() && next - runEnd < MAX_RUN_GAP
+                    && (text.charAt(next) == ' ' || text.charAt(next) == '\t')) {
+                next++;
+            }
+            end = bareMarkerEnd(text, next);
+            if (end < 0) {
+                break;
+            }
+            ids.add(text.substring(next + 1, end - 1));
+            runEnd = end;
         }
+        return ids.size() < 2 ? null : new MarkerRun(ids, runEnd);
+    }
 
-        final Matcher run = MARKER_RUN_PATTERN.matcher(answerText);
-        final StringBuilder out = new StringBuilder(answerText.length());
-        int last = 0;
-        while (run.find()) {
-            out.append(answerText, last, run.start());
-            out.append(buildRunReplacement(run.group(), idToEntry));
-            last = run.end();
+    /** End index of the bare {@code [N]} marker at {@code pos}, or -1 when there is none there. */
+    private static int bareMarkerEnd(final String text, final int pos) {
+        if (pos >= text.length() || text.charAt(pos) != '[') {
+            return -1;
+        }
+        int i = pos + 1;
+        while (i < text.length() && i - pos <= MAX_MARKER_DIGITS && isAsciiDigit(text.charAt(i))) {
+            i++;
         }
-        return out.append(answerText, last, answerText.length()).toString();
+        final int digits = i - pos - 1;
+        if (digits == 0 || digits > MAX_MARKER_DIGITS || i >= text.length() || text.charAt(i) != ']') {
+            return -1;
+        }
+        return i + 1;
+    }
+
+    private static boolean isAsciiDigit(final char c) {
+        return c >= '0' && c <= '9';
     }
 
     /**
-     * Rewrites one adjacent-marker run: maximal consecutive ids sharing a non-null documentId
-     * become one merged citation; every other id is re-emitted as its original {@code [N]}.
+     * Emits one adjacent-marker run: maximal consecutive ids sharing a non-null documentId become
+     * one citation carrying the union of the entries' pages; every other id is substituted on its
+     * own. The whitespace between the run's markers is dropped. The merge is positional and no
+     * JSON entry is removed, so an id reused non-adjacently elsewhere still substitutes normally.
      */
-    private static String buildRunReplacement(final String runText, final Map<String, Map<String, Object>> idToEntry) {
-        final List<String> ids = new ArrayList<>();
-        final Matcher marker = SINGLE_MARKER_PATTERN.matcher(runText);
-        while (marker.find()) {
-            ids.add(marker.group(1));
-        }
-
-        final StringBuilder out = new StringBuilder();
+    private static void appendMarkerRun(final StringBuilder out, final List<String> ids,
+                                        final Map<String, Map<String, Object>> idToEntry,
+                                        final Map<String, String> formattedById) {
         int i = 0;
         while (i < ids.size()) {
             final String documentId = documentIdOf(idToEntry.get(ids.get(i)));
@@ -309,21 +430,17 @@ public class CitationProcessor {
                     && documentId.equals(documentIdOf(idToEntry.get(ids.get(j))))) {
                 j++;
             }
-            appendGroup(out, ids.subList(i, j), documentId, idToEntry);
+            if (j - i < 2) {
+                final String id = ids.get(i);
+                appendPlaceholder(out, id, "[" + id + "]", idToEntry, formattedById);
+            } else {
+                final List<String> groupIds = ids.subList(i, j);
+                out.append(formatMergedCitation(groupIds, documentId, idToEntry));
+                LOGGER.info("Merged {} adjacent same-document citation markers {} into one citation for documentId={}",
+                        groupIds.size(), groupIds, documentId);
+            }
             i = j;
         }
-        return out.toString();
-    }
-
-    private static void appendGroup(final StringBuilder out, final List<String> groupIds, final String documentId,
-                                    final Map<String, Map<String, Object>> idToEntry) {
-        if (groupIds.size() < 2) {
-            out.append('[').append(groupIds.get(0)).append(']');
-            return;
-        }
-        out.append(formatMergedCitation(groupIds, documentId, idToEntry));
-        LOGGER.info("Merged {} adjacent same-document citation markers {} into one citation for documentId={}",
-                groupIds.size(), groupIds, documentId);
     }
 
     private static String formatMergedCitation(final List<String> groupIds, final String documentId,
@@ -507,6 +624,9 @@ public class CitationProcessor {
         }
     }
 
+    /** The ids of a run of adjacent bare {@code [N]} markers and the index just past its last marker. */
+    private record MarkerRun(List<String> ids, int end) { }
+
     /** Internal record capturing the position and payload of a matched {@code <FACT_MAP_JSON>} tag. */
     private record TagLocation(int start, int end, String payload) { }
 }
@@ -0,0 +1,176 @@
+package uk.gov.moj.cp.retrieval.service;
+
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
+import static uk.gov.moj.cp.retrieval.model.CitationKeys.FACT_MAP_ATTRIBUTE_KEY;
+
+import uk.gov.moj.cp.ai.client.ChatServiceFactory;
+import uk.gov.moj.cp.ai.metrics.ServiceMetrics;
+import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.service.ChatService;
+import uk.gov.moj.cp.retrieval.service.CitationProcessor.CitationOutcome;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recovers the citations of an answer whose narrative is usable but whose {@code <FACT_MAP_JSON>}
+ * block is missing, truncated or unparseable. Rather than regenerating the whole answer, a smaller
+ * deployment is sent only the narrative and a compact index of the source chunks (document id,
+ * file name, page and a short snippet) and asked only for the citation array, which is a fraction of
+ * the input and output tokens of a full generation.
+ * <p>
+ * Enabled by setting {@code AZURE_OPENAI_CITATION_REPAIR_DEPLOYMENT_NAME}; the deployment is reached
+ * through the same endpoint and {@code LLM_CHAT_SERVICE_PROVIDER} as answer generation. Attempts are
+ * counted by outcome ({@code repaired}, {@code failed}, {@code skipped}) on the
+ * {@code citation_repairs} metric.
+ */
+public class CitationRepairService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CitationRepairService.class);
+
+    public static final String AZURE_OPENAI_CITATION_REPAIR_DEPLOYMENT_NAME = "AZURE_OPENAI_CITATION_REPAIR_DEPLOYMENT_NAME";
+    private static final String CITATION_REPAIR_SNIPPET_CHARS = "CITATION_REPAIR_SNIPPET_CHARS";
+    private static final String REPAIR_DISABLED = "disabled";
+
+    /** Start of the citation block, closed or not: everything from here on is discarded before repair. */
+    private static final Pattern BLOCK_START = Pattern.compile("<\\s*" + FACT_MAP_ATTRIBUTE_KEY, Pattern.CASE_INSENSITIVE);
+    private static final Pattern BLOCK_END = Pattern.compile("<\\s*/\\s*" + FACT_MAP_ATTRIBUTE_KEY, Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final AttributeKey<String> OUTCOME = AttributeKey.stringKey("outcome");
+    private static final Attributes REPAIRED = Attributes.of(OUTCOME, "repaired");
+    private static final Attributes FAILED = Attributes.of(OUTCOME, "failed");
+    private static final Attributes SKIPPED = Attributes.of(OUTCOME, "skipped");
+
+    static final String REPAIR_SYSTEM_PROMPT = """
+            You add source citations to an answer that has already been written. Each supported \
+            statement in the ANSWER ends with a numeric placeholder such as [1]. SOURCES lists the \
+            retrieved source passages, one per line, as DOCUMENT_ID | DOCUMENT_FILENAME | PAGE | snippet.
+
+            Return only a JSON array with one object per placeholder id used in the ANSWER, in this form:
+            [{"citationId":"1","documentId":"<DOCUMENT_ID>","documentFilename":"<DOCUMENT_FILENAME>",\
+            "individualPageNumbers":"3,4","pageNumbers":"3-4"}]
+
+            Use only documents and pages listed in SOURCES. Do not rewrite the answer and do not add any \
+            other text.""";
+
+    private final ChatService chatService;
+    private final CitationProcessor citationProcessor;
+    private final int snippetChars;
+    private final LongCounter repairs;
+
+    /** The repaired raw answer (narrative plus a new citation block) and its processed outcome. */
+    public record RepairedAnswer(String rawLlmResponse, CitationOutcome outcome) {
+    }
+
+    CitationRepairService(final ChatService chatService, final CitationProcessor citationProcessor,
+                          final int snippetChars, final Meter meter) {
+        this.chatService = chatService;
+        this.citationProcessor = citationProcessor;
+        this.snippetChars = snippetChars;
+        this.repairs = meter.counterBuilder("citation_repairs")
+                .setDescription("Citation repair attempts by outcome")
+                .setUnit("1")
+                .build();
+    }
+
+    /**
+     * @return the repair service, or null when {@code AZURE_OPENAI_CITATION_REPAIR_DEPLOYMENT_NAME}
+     *     is unset, which disables repair
+     */
+    public static CitationRepairService fromEnv(final CitationProcessor citationProcessor) {
+        final String deploymentName = getRequiredEnv(AZURE_OPENAI_CITATION_REPAIR_DEPLOYMENT_NAME, REPAIR_DISABLED);
+        if (REPAIR_DISABLED.equals(deploymentName)) {
+            return null;
+        }
+        LOGGER.info("Citation repair enabled with deployment '{}'", deploymentName);
+        return new CitationRepairService(
+                ChatServiceFactory.getInstance(getRequiredEnv("AZURE_OPENAI_ENDPOINT"), deploymentName),
+                citationProcessor, getRequiredEnvAsInteger(CITATION_REPAIR_SNIPPET_CHARS, "160"),
+                ServiceMetrics.meter());
+    }
+
+    /**
+     * Asks for a fresh citation block for the narrative of {@code rawLlmResponse}. Repair is
+     * best-effort: a failed call is logged and reported as empty, so the caller falls back to its
+     * usual degraded-answer handling.
+     *
+     * @param sourceEntries the chunks the answer was generated from
+     * @return the repaired answer when it renders at least one citation, otherwise empty
+     */
+    public Optional<RepairedAnswer> repair(final String rawLlmResponse, final List<ChunkedEntry> sourceEntries) {
+        final String narrative = citationProcessor.normalisePlaceholders(narrativeOf(rawLlmResponse)).trim();
+        if (sourceEntries.isEmpty() || !CitationProcessor.BARE_BRACKET_INT.matcher(narrative).find()) {
+            repairs.add(1, SKIPPED);
+            return Optional.empty();
+        }
+
+        final String userInstruction = "ANSWER:\n" + narrative + "\n\nSOURCES:\n" + sourceIndex(sourceEntries);
+        final Optional<String> factMap;
+        try {
+            factMap = chatService.callModel(REPAIR_SYSTEM_PROMPT, userInstruction, String.class);
+        } catch (final Exception e) {
+            LOGGER.warn("Citation repair call failed", e);
+            repairs.add(1, FAILED);
+            return Optional.empty();
+        }
+
+        final Optional<RepairedAnswer> repaired = factMap
+                .map(payload -> narrative + "\n<" + FACT_MAP_ATTRIBUTE_KEY + ">" + payloadOf(payload)
+                        + "</" + FACT_MAP_ATTRIBUTE_KEY + ">")
+                .map(repairedRaw -> new RepairedAnswer(repairedRaw, citationProcessor.processCitations(repairedRaw)))
+                .filter(answer -> answer.outcome().renderedCitations() >= 1);
+        repairs.add(1, repaired.isPresent() ? REPAIRED : FAILED);
+        LOGGER.info("Citation repair {} with {} source passages.", repaired.isPresent() ? "succeeded" : "failed",
+                sourceEntries.size());
+        return repaired;
+    }
+
+    /** One line per source page: the first chunk of a page stands in for the rest. */
+    String sourceIndex(final List<ChunkedEntry> sourceEntries) {
+        final Map<String, String> lines = new LinkedHashMap<>();
+        for (final ChunkedEntry entry : sourceEntries) {
+            lines.putIfAbsent(entry.documentId() + '|' + entry.pageNumber(),
+                    entry.documentId() + " | " + entry.documentFileName() + " | " + entry.pageNumber() + " | "
+                            + snippet(entry.chunk()));
+        }
+        return String.join("\n", lines.values());
+    }
+
+    private String snippet(final String chunk) {
+        if (chunk == null) {
+            return "";
+        }
+        final String collapsed = WHITESPACE.matcher(chunk).replaceAll(" ").trim();
+        return collapsed.length() <= snippetChars ? collapsed : collapsed.substring(0, snippetChars) + "…";
+    }
+
+    private static String narrativeOf(final String rawLlmResponse) {
+        final Matcher blockStart = BLOCK_START.matcher(rawLlmResponse);
+        return blockStart.find() ? rawLlmResponse.substring(0, blockStart.start()) : rawLlmResponse;
+    }
+
+    /** The model may wrap the array in the block tags despite the instruction; keep only their content. */
+    private static String payloadOf(final String payload) {
+        final Matcher blockStart = BLOCK_START.matcher(payload);
+        if (!blockStart.find()) {
+            return payload.trim();
+        }
+        final int contentStart = payload.indexOf('>', blockStart.end()) + 1;
+        final Matcher blockEnd = BLOCK_END.matcher(payload);
+        final int contentEnd = blockEnd.find(contentStart) ? blockEnd.start() : payload.length();
+        return payload.substring(contentStart, contentEnd).trim();
+    }
+}
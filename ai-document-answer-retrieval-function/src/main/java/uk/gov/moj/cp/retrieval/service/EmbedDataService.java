@@ -4,10 +4,9 @@ import static uk.gov.moj.cp.ai.SharedSystemVariables.AZURE_EMBEDDING_SERVICE_DEP
 import static uk.gov.moj.cp.ai.SharedSystemVariables.AZURE_EMBEDDING_SERVICE_ENDPOINT;
 
 import uk.gov.moj.cp.ai.exception.EmbeddingServiceException;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.service.EmbeddingService;
 
-import java.util.List;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,25 +15,46 @@ public class EmbedDataService {
     private static final Logger LOGGER = LoggerFactory.getLogger(EmbedDataService.class);
 
     private final EmbeddingService embeddingService;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final String deploymentName;
 
 
     public EmbedDataService() {
         final String endpoint = System.getenv(AZURE_EMBEDDING_SERVICE_ENDPOINT);
-        final String deploymentName = System.getenv(AZURE_EMBEDDING_SERVICE_DEPLOYMENT_NAME);
+        deploymentName = System.getenv(AZURE_EMBEDDING_SERVICE_DEPLOYMENT_NAME);
         embeddingService = new EmbeddingService(endpoint, deploymentName);
+        queryEmbeddingCache = QueryEmbeddingCache.getInstance();
     }
 
     EmbedDataService(EmbeddingService embeddingService) {
+        this(embeddingService, null, null);
+    }
+
+    EmbedDataService(EmbeddingService embeddingService, QueryEmbeddingCache queryEmbeddingCache, String deploymentName) {
         this.embeddingService = embeddingService;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.deploymentName = deploymentName;
     }
 
-    public List<Float> getEmbedding(String dataToEmbed) {
+    public EmbeddingVector getEmbedding(String dataToEmbed) {
+        if (queryEmbeddingCache != null) {
+            final EmbeddingVector cached = queryEmbeddingCache.get(deploymentName, dataToEmbed);
+            if (cached != null) {
+                return cached;
+            }
+        }
         try {
-            List<Float> embeddings = embeddingService.embedData(dataToEmbed);
-            return (embeddings == null || embeddings.isEmpty()) ? List.of() : embeddings;
+            EmbeddingVector embeddings = embeddingService.embedData(dataToEmbed);
+            if (embeddings == null || embeddings.isEmpty()) {
+                return EmbeddingVector.EMPTY;
+            }
+            if (queryEmbeddingCache != null) {
+                queryEmbeddingCache.put(deploymentName, dataToEmbed, embeddings);
+            }
+            return embeddings;
         } catch (EmbeddingServiceException e) {
             LOGGER.error("Error embedding data", e);
-            return List.of();
+            return EmbeddingVector.EMPTY;
         }
     }
 
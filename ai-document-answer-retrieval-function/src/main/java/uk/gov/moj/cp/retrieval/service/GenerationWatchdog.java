@@ -0,0 +1,180 @@
+package uk.gov.moj.cp.retrieval.service;
+
+import static java.lang.Boolean.parseBoolean;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
+import static uk.gov.moj.cp.retrieval.model.CitationKeys.FACT_MAP_ATTRIBUTE_KEY;
+import static uk.gov.moj.cp.retrieval.service.CitationProcessor.BARE_BRACKET_INT;
+
+import uk.gov.moj.cp.retrieval.exception.GenerationAbortedException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Inspects a streamed completion as it arrives and aborts it as soon as it has degenerated, instead
+ * of paying for the full completion and rejecting it afterwards.
+ * <p>
+ * Two pathologies are detected in the answer narrative:
+ * <ul>
+ *   <li>the counter loop ({@code [1][2][3]...[N]}): a run of more than {@link #MAX_MARKER_RUN} bare
+ *       {@code [N]} markers separated only by whitespace, commas or semicolons. The total is not
+ *       limited, since a long answer may legitimately cite hundreds of times;</li>
+ *   <li>a repetition loop: the same run of {@code ngramSize} words written {@code maxNgramRepeats}
+ *       times.</li>
+ * </ul>
+ * Both are checked incrementally, each delta scanning only the text it completed. A marker or word
+ * still open at the end of a delta is left for the next one. Inspection stops at the
+ * {@code <FACT_MAP_JSON>} tag, since the citation block is legitimately repetitive.
+ * <p>
+ * On detection {@link #accept} throws {@link GenerationAbortedException}, which abandons the stream.
+ * One instance per answer; not thread-safe.
+ */
+public class GenerationWatchdog implements Consumer<String> {
+
+    public static final String LLM_STREAM_WATCHDOG_ENABLED = "LLM_STREAM_WATCHDOG_ENABLED";
+    private static final String LLM_STREAM_WATCHDOG_NGRAM_SIZE = "LLM_STREAM_WATCHDOG_NGRAM_SIZE";
+    private static final String LLM_STREAM_WATCHDOG_MAX_NGRAM_REPEATS = "LLM_STREAM_WATCHDOG_MAX_NGRAM_REPEATS";
+
+    private static final Pattern FACT_MAP_OPEN = Pattern.compile(
+            "<\\s*" + FACT_MAP_ATTRIBUTE_KEY, Pattern.CASE_INSENSITIVE);
+    /** Longest text a split opening tag can leave before the delta that completes it. */
+    private static final int TAG_LOOKBEHIND = FACT_MAP_ATTRIBUTE_KEY.length() + 8;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    /** What may separate two markers of one run. */
+    private static final Pattern MARKER_SEPARATOR = Pattern.compile("[\\s,;]*");
+
+    /** Adjacent markers that abort the generation; a genuine answer cites a handful together at most. */
+    static final int MAX_MARKER_RUN = 20;
+
+    /**
+     * Watchdog thresholds.
+     *
+     * @param ngramSize       number of consecutive words compared for the repetition check
+     * @param maxNgramRepeats occurrences of one word run that abort the generation
+     */
+    public record Settings(int ngramSize, int maxNgramRepeats) {
+
+        /** The thresholds from the environment, or null when {@code LLM_STREAM_WATCHDOG_ENABLED} is not true. */
+        public static Settings fromEnv() {
+            if (!parseBoolean(getRequiredEnv(LLM_STREAM_WATCHDOG_ENABLED, "false"))) {
+                return null;
+            }
+            return new Settings(getRequiredEnvAsInteger(LLM_STREAM_WATCHDOG_NGRAM_SIZE, "12"),
+                    getRequiredEnvAsInteger(LLM_STREAM_WATCHDOG_MAX_NGRAM_REPEATS, "4"));
+        }
+    }
+
+    private final Settings settings;
+    private final StringBuilder text = new StringBuilder();
+
+    private final Deque<String> window = new ArrayDeque<>();
+    private final Map<String, Integer> ngramCounts = new HashMap<>();
+
+    /** Index in {@link #text} of the first character not yet scanned for markers. */
+    private int markerCursor;
+    /** Index in {@link #text} of the first character not yet split into words. */
+    private int wordCursor;
+    /** Length of the run of adjacent markers ending at {@link #lastMarkerEnd}. */
+    private int markerRun;
+    /** Index in {@link #text} just past the last marker counted; -1 before the first. */
+    private int lastMarkerEnd = -1;
+    private boolean narrativeEnded;
+
+    public GenerationWatchdog(final Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Appends a streamed delta and inspects the narrative it completed.
+     *
+     * @throws GenerationAbortedException when the generation has degenerated
+     */
+    @Override
+    public void accept(final String delta) {
+        final int previousLength = text.length();
+        text.append(delta);
+        if (narrativeEnded) {
+            return;
+        }
+        final Matcher open = FACT_MAP_OPEN.matcher(text)
+                .region(Math.max(0, previousLength - TAG_LOOKBEHIND), text.length());
+        if (open.find()) {
+            narrativeEnded = true;
+            inspect(open.start(), true);
+        } else {
+            inspect(text.length(), false);
+        }
+    }
+
+    /** Everything received so far, including the delta that tripped the watchdog. */
+    public String text() {
+        return text.toString();
+    }
+
+    private void inspect(final int limit, final boolean finalPass) {
+        countMarkers(finalPass ? limit : openBracketFrom(limit));
+        countNgrams(finalPass ? limit : lastWhitespace(limit));
+    }
+
+    private void countMarkers(final int limit) {
+        if (limit <= markerCursor) {
+            return;
+        }
+        final Matcher marker = BARE_BRACKET_INT.matcher(text).region(markerCursor, limit);
+        while (marker.find()) {
+            final boolean adjacent = lastMarkerEnd >= 0
+                    && MARKER_SEPARATOR.matcher(text.subSequence(lastMarkerEnd, marker.start())).matches();
+            markerRun = adjacent ? markerRun + 1 : 1;
+            lastMarkerEnd = marker.end();
+            if (markerRun > MAX_MARKER_RUN) {
+                throw new GenerationAbortedException(String.format(
+                        "Generation aborted: %d adjacent bare [N] markers (counter loop)", markerRun));
+            }
+        }
+        markerCursor = limit;
+    }
+
+    private void countNgrams(final int limit) {
+        if (limit <= wordCursor) {
+            return;
+        }
+        for (final String word : WHITESPACE.split(text.subSequence(wordCursor, limit))) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            window.addLast(word);
+            if (window.size() > settings.ngramSize()) {
+                window.removeFirst();
+            }
+            if (window.size() == settings.ngramSize()
+                    && ngramCounts.merge(String.join(" ", window), 1, Integer::sum) >= settings.maxNgramRepeats()) {
+                throw new GenerationAbortedException(String.format(
+                        "Generation aborted: a %d-word sequence repeated %d times (repetition loop)",
+                        settings.ngramSize(), settings.maxNgramRepeats()));
+            }
+        }
+        wordCursor = limit;
+    }
+
+    /** Start of an unclosed trailing {@code [}, or {@code limit} when there is none. */
+    private int openBracketFrom(final int limit) {
+        final int bracket = text.lastIndexOf("[", limit - 1);
+        return bracket >= markerCursor && text.indexOf("]", bracket) < 0 ? bracket : limit;
+    }
+
+    /** Index just past the last whitespace before {@code limit}, so only completed words are split. */
+    private int lastWhitespace(final int limit) {
+        for (int i = limit - 1; i >= wordCursor; i--) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return wordCursor;
+    }
+}
@@ -0,0 +1,242 @@
+package uk.gov.moj.cp.retrieval.service;
+
+import static java.lang.Boolean.parseBoolean;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsFirst;
+import static uk.gov.moj.cp.ai.SharedSystemVariables.STORAGE_ACCOUNT_TABLE_SEARCH_INDEX_GENERATION;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CHUNK_VECTOR;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
+import static uk.gov.moj.cp.ai.util.StringUtil.isNullOrEmpty;
+
+import uk.gov.moj.cp.ai.cache.LruCache;
+import uk.gov.moj.cp.ai.metrics.ServiceMetrics;
+import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.KeyValuePair;
+import uk.gov.moj.cp.ai.search.SearchRequest;
+import uk.gov.moj.cp.ai.search.VectorSearchBackend;
+import uk.gov.moj.cp.ai.search.local.LocalSearchBackend;
+import uk.gov.moj.cp.ai.service.table.SearchIndexGenerationTableService;
+import uk.gov.moj.cp.ai.util.ObjectMapperFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-instance cache of every active chunk, with its vector, behind a recently queried filter
+ * scope (client id plus metadata filters, typically one or a few case documents). Once a scope has
+ * been searched {@code HOT_DOCUMENT_CACHE_MIN_QUERIES} times, its chunks are loaded in one filtered
+ * fetch into an exact-scan {@link LocalSearchBackend} sized to the scope, and later queries against
+ * the scope run there — exact kNN and BM25 over a few hundred chunks, fused the same way as the
+ * service — instead of calling the search service. No vector graph is built for a scope.
+ * <p>
+ * Unlike {@link SearchResultCache}, which only serves a repeated query, this serves any query on a
+ * hot scope. Scopes are stamped with the client's generation from
+ * {@link SearchIndexGenerationTableService}, which ingestion bumps on every upload and supersede, so a
+ * changed index makes the loaded chunks unreachable and the next query reloads them. The caller reads
+ * the generation once per search and passes none while the latest bump is younger than the index
+ * refresh delay, so a scope is never loaded before the write is searchable. A scope with more than
+ * {@code HOT_DOCUMENT_CACHE_MAX_CHUNKS} chunks is remembered as too large and always searched remotely.
+ * <p>
+ * Requires {@code HOT_DOCUMENT_CACHE_ENABLED=true} and the generation table. Lookups are counted by
+ * outcome ({@code hit}, {@code load}, {@code miss}, {@code oversize}, {@code bypass}) on the
+ * {@code hot_document_cache_lookups} metric.
+ */
+public class HotDocumentCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotDocumentCache.class);
+
+    public static final String HOT_DOCUMENT_CACHE_ENABLED = "HOT_DOCUMENT_CACHE_ENABLED";
+    private static final String HOT_DOCUMENT_CACHE_MAX_SCOPES = "HOT_DOCUMENT_CACHE_MAX_SCOPES";
+    private static final String HOT_DOCUMENT_CACHE_MAX_CHUNKS = "HOT_DOCUMENT_CACHE_MAX_CHUNKS";
+    private static final String HOT_DOCUMENT_CACHE_MIN_QUERIES = "HOT_DOCUMENT_CACHE_MIN_QUERIES";
+    private static final String HOT_DOCUMENT_CACHE_TTL_MINUTES = "HOT_DOCUMENT_CACHE_TTL_MINUTES";
+
+    private static final char SEPARATOR = '\n';
+    private static final Comparator<KeyValuePair> FILTER_ORDER =
+            Comparator.comparing(KeyValuePair::key, nullsFirst(naturalOrder()))
+                    .thenComparing(KeyValuePair::value, nullsFirst(naturalOrder()));
+    private static final TypeReference<Map<String, Object>> FIELD_MAP = new TypeReference<>() {
+    };
+
+    private static final AttributeKey<String> OUTCOME = AttributeKey.stringKey("outcome");
+    private static final Attributes HIT = Attributes.of(OUTCOME, "hit");
+    private static final Attributes LOAD = Attributes.of(OUTCOME, "load");
+    private static final Attributes MISS = Attributes.of(OUTCOME, "miss");
+    private static final Attributes OVERSIZE = Attributes.of(OUTCOME, "oversize");
+    private static final Attributes BYPASS = Attributes.of(OUTCOME, "bypass");
+
+    /** The loaded chunks of a scope; {@code index} is null when the scope was too large to hold. */
+    private record HotScope(LocalSearchBackend index) {
+    }
+
+    private final LruCache<String, HotScope> scopes;
+    private final LruCache<String, AtomicInteger> queryCounts;
+    private final boolean enabled;
+    private final int maxChunks;
+    private final int minQueries;
+    private final LongCounter lookups;
+
+    private HotDocumentCache() {
+        this(getRequiredEnvAsInteger(HOT_DOCUMENT_CACHE_MAX_SCOPES, "8"),
+                Duration.ofMinutes(getRequiredEnvAsInteger(HOT_DOCUMENT_CACHE_TTL_MINUTES, "30")),
+                getRequiredEnvAsInteger(HOT_DOCUMENT_CACHE_MAX_CHUNKS, "1000"),
+                getRequiredEnvAsInteger(HOT_DOCUMENT_CACHE_MIN_QUERIES, "2"),
+                enabledFromEnv(),
+                ServiceMetrics.meter());
+    }
+
+    HotDocumentCache(final int maxScopes, final Duration ttl, final int maxChunks, final int minQueries,
+                     final boolean enabled, final Meter meter) {
+        this.scopes = new LruCache<>(maxScopes, ttl);
+        this.queryCounts = new LruCache<>(maxScopes * 16, ttl);
+        this.enabled = enabled;
+        this.maxChunks = maxChunks;
+        this.minQueries = minQueries;
+        this.lookups = meter.counterBuilder("hot_document_cache_lookups")
+                .setDescription("Hot document cache lookups by outcome")
+                .setUnit("1")
+                .build();
+        LOGGER.info("Hot document cache enabled: {}", enabled);
+    }
+
+    private static class SingletonHolder {
+        private static final HotDocumentCache INSTANCE = new HotDocumentCache();
+    }
+
+    public static HotDocumentCache getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs {@code request} against the cached chunks of its scope, loading them from
+     * {@code searchBackend} once the scope is hot.
+     *
+     * @param generation the client's settled index generation, or null when it is unknown or too recent
+     * @param request    the search as it would be sent to {@code searchBackend}; its filter must be the
+     *                   one generated for {@code clientId} and {@code metadataFilters}
+     * @return the results, or empty when the search has to go to {@code searchBackend}
+     */
+    public Optional<List<ChunkedEntry>> search(final VectorSearchBackend searchBackend, final String clientId,
+                                               final Long generation, final List<KeyValuePair> metadataFilters,
+                                               final SearchRequest request) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        if (generation == null) {
+            lookups.add(1, BYPASS);
+            return Optional.empty();
+        }
+        final String key = keyFor(searchBackend.indexName(), clientId, generation, metadataFilters);
+
+        HotScope scope = scopes.get(key);
+        if (scope == null) {
+            if (!isHot(key)) {
+                lookups.add(1, MISS);
+                return Optional.empty();
+            }
+            scope = load(searchBackend, request);
+            scopes.put(key, scope);
+            lookups.add(1, scope.index() == null ? OVERSIZE : LOAD);
+        } else {
+            lookups.add(1, scope.index() == null ? OVERSIZE : HIT);
+        }
+        if (scope.index() == null) {
+            return Optional.empty();
+        }
+
+        // The scope already holds only the chunks the filter admits.
+        final SearchRequest localRequest = new SearchRequest(request.text(), request.vector(), request.vectorField(),
+                request.nearestNeighbours(), null, request.select(), request.top());
+        return Optional.of(scope.index().search(localRequest, ChunkedEntry.class));
+    }
+
+    private boolean isHot(final String key) {
+        AtomicInteger count = queryCounts.get(key);
+        if (count == null) {
+            count = new AtomicInteger();
+            queryCounts.put(key, count);
+        }
+        return count.incrementAndGet() >= minQueries;
+    }
+
+    /** Fetches one more chunk than the limit, so an oversized scope is detected in the same call. */
+    private HotScope load(final VectorSearchBackend searchBackend, final SearchRequest request) {
+        List<String> select = request.select();
+        if (select != null && !select.contains(CHUNK_VECTOR)) {
+            select = new ArrayList<>(select);
+            select.add(CHUNK_VECTOR);
+        }
+        final List<ChunkedEntry> chunks = searchBackend.search(
+                new SearchRequest(SearchRequest.MATCH_ALL, null, null, 0, request.filter(), select, maxChunks + 1),
+                ChunkedEntry.class);
+        if (chunks.size() > maxChunks) {
+            LOGGER.info("Scope has more than {} chunks; searching it remotely", maxChunks);
+            return new HotScope(null);
+        }
+
+        final LocalSearchBackend index = LocalSearchBackend.exactScan(searchBackend.indexName(), chunks.size());
+        final List<Map<String, Object>> documents = new ArrayList<>(chunks.size());
+        for (final ChunkedEntry chunk : chunks) {
+            final Map<String, Object> document = ObjectMapperFactory.getObjectMapper().convertValue(
+                    new ChunkedEntry(chunk.id(), chunk.documentId(), chunk.chunk(), null, chunk.documentFileName(),
+                            chunk.pageNumber(), chunk.chunkIndex(), chunk.documentFileUrl(), chunk.customMetadata(),
+                            chunk.clientId()), FIELD_MAP);
+            document.values().removeIf(value -> value == null);
+            if (chunk.chunkVector() != null) {
+                document.put(CHUNK_VECTOR, chunk.chunkVector());
+            }
+            documents.add(document);
+        }
+        index.upload(documents);
+        LOGGER.info("Loaded {} chunks into the hot document cache", chunks.size());
+        return new HotScope(index);
+    }
+
+    private static String keyFor(final String indexName, final String clientId, final long generation,
+                                 final List<KeyValuePair> metadataFilters) {
+        final StringBuilder key = new StringBuilder()
+                .append(indexName).append(SEPARATOR)
+                .append(isNullOrEmpty(clientId) ? "" : clientId).append(SEPARATOR)
+                .append(generation);
+        // Filter clauses are and-joined, so their order does not change the scope.
+        metadataFilters.stream()
+                .sorted(FILTER_ORDER)
+                .forEach(pair -> appendLengthPrefixed(appendLengthPrefixed(key.append(SEPARATOR), pair.key()), pair.value()));
+        return key.toString();
+    }
+
+    private static StringBuilder appendLengthPrefixed(final StringBuilder builder, final String value) {
+        final String safe = value == null ? "" : value;
+        return builder.append(safe.length()).append(':').append(safe);
+    }
+
+    private static boolean enabledFromEnv() {
+        if (!parseBoolean(getRequiredEnv(HOT_DOCUMENT_CACHE_ENABLED, "false"))) {
+            return false;
+        }
+        if (isNullOrEmpty(System.getenv(STORAGE_ACCOUNT_TABLE_SEARCH_INDEX_GENERATION))) {
+            LOGGER.warn("{} is set but {} is not; hot documents will not be cached",
+                    HOT_DOCUMENT_CACHE_ENABLED, STORAGE_ACCOUNT_TABLE_SEARCH_INDEX_GENERATION);
+            return false;
+        }
+        return true;
+    }
+}
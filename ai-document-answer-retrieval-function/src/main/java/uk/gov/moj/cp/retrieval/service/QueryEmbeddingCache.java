@@ -0,0 +1,181 @@
+package uk.gov.moj.cp.retrieval.service;
+
+import static java.lang.Boolean.parseBoolean;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
+import static uk.gov.moj.cp.ai.util.StringUtil.isNullOrEmpty;
+
+import uk.gov.moj.cp.ai.cache.LruCache;
+import uk.gov.moj.cp.ai.metrics.ServiceMetrics;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+import uk.gov.moj.cp.ai.service.BlobClientService;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+import com.azure.core.util.BinaryData;
+import com.azure.storage.blob.models.BlobStorageException;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of user-query embeddings, so repeated queries (canned prompts, common questions) skip the
+ * embedding round trip.
+ * <p>
+ * Keyed by embedding deployment plus the query text after Unicode NFC normalisation, trimming and
+ * whitespace collapsing. Case is kept, because the model embeds case. The front tier is an in-process
+ * {@link LruCache} of primitive {@link EmbeddingVector}s shared by every invocation on the instance.
+ * When {@code QUERY_EMBEDDING_CACHE_BLOB_CONTAINER} is set, a Blob Storage tier shares entries across
+ * instances as compact binary floats. Because a deployment always embeds the same text the same way,
+ * blobs never go stale; a storage lifecycle rule is enough to bound the container.
+ * <p>
+ * The cache is best effort. A blob tier failure is logged and treated as a miss, so it can never fail
+ * a request. Lookups are counted by outcome ({@code memory_hit}, {@code blob_hit}, {@code miss}) on
+ * the {@code query_embedding_cache_lookups} metric.
+ */
+public class QueryEmbeddingCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryEmbeddingCache.class);
+
+    public static final String QUERY_EMBEDDING_CACHE_ENABLED = "QUERY_EMBEDDING_CACHE_ENABLED";
+    private static final String QUERY_EMBEDDING_CACHE_MAX_ENTRIES = "QUERY_EMBEDDING_CACHE_MAX_ENTRIES";
+    private static final String QUERY_EMBEDDING_CACHE_TTL_MINUTES = "QUERY_EMBEDDING_CACHE_TTL_MINUTES";
+    private static final String QUERY_EMBEDDING_CACHE_BLOB_CONTAINER = "QUERY_EMBEDDING_CACHE_BLOB_CONTAINER";
+
+    private static final String BLOB_PREFIX = "query-embeddings/";
+    private static final Pattern WHITESPACE_RUN = Pattern.compile("\\s+");
+    private static final AttributeKey<String> OUTCOME = AttributeKey.stringKey("outcome");
+    private static final Attributes MEMORY_HIT = Attributes.of(OUTCOME, "memory_hit");
+    private static final Attributes BLOB_HIT = Attributes.of(OUTCOME, "blob_hit");
+    private static final Attributes MISS = Attributes.of(OUTCOME, "miss");
+
+    private final boolean enabled;
+    private final LruCache<String, EmbeddingVector> memoryTier;
+    private final BlobClientService blobTier;
+    private final LongCounter lookups;
+
+    private QueryEmbeddingCache() {
+        this(parseBoolean(getRequiredEnv(QUERY_EMBEDDING_CACHE_ENABLED, "false")),
+                new LruCache<>(getRequiredEnvAsInteger(QUERY_EMBEDDING_CACHE_MAX_ENTRIES, "1000"),
+                        Duration.ofMinutes(getRequiredEnvAsInteger(QUERY_EMBEDDING_CACHE_TTL_MINUTES, "1440"))),
+                blobTierFromEnv(),
+                ServiceMetrics.meter());
+    }
+
+    QueryEmbeddingCache(final boolean enabled, final LruCache<String, EmbeddingVector> memoryTier,
+                        final BlobClientService blobTier, final Meter meter) {
+        this.enabled = enabled;
+        this.memoryTier = memoryTier;
+        this.blobTier = blobTier;
+        this.lookups = meter.counterBuilder("query_embedding_cache_lookups")
+                .setDescription("Query embedding cache lookups by outcome")
+                .setUnit("1")
+                .build();
+        LOGGER.info("Query embedding cache enabled: {}, blob tier: {}", enabled, blobTier != null);
+    }
+
+    private static class SingletonHolder {
+        private static final QueryEmbeddingCache INSTANCE = new QueryEmbeddingCache();
+    }
+
+    public static QueryEmbeddingCache getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * @return the cached embedding of {@code query} for {@code deploymentName}, or null on a miss
+     */
+    public EmbeddingVector get(final String deploymentName, final String query) {
+        if (!enabled || query == null) {
+            return null;
+        }
+        final String key = cacheKey(deploymentName, query);
+
+        final EmbeddingVector cached = memoryTier.get(key);
+        if (cached != null) {
+            lookups.add(1, MEMORY_HIT);
+            return cached;
+        }
+
+        final EmbeddingVector persisted = readBlob(key);
+        if (persisted != null) {
+            memoryTier.put(key, persisted);
+            lookups.add(1, BLOB_HIT);
+            return persisted;
+        }
+
+        lookups.add(1, MISS);
+        return null;
+    }
+
+    /**
+     * Stores a freshly computed embedding in every tier. Empty vectors (failed embeddings) are not cached.
+     */
+    public void put(final String deploymentName, final String query, final EmbeddingVector embedding) {
+        if (!enabled || query == null || embedding == null || embedding.isEmpty()) {
+            return;
+        }
+        final String key = cacheKey(deploymentName, query);
+        memoryTier.put(key, embedding);
+        writeBlob(key, embedding);
+    }
+
+    static String normalise(final String query) {
+        return WHITESPACE_RUN.matcher(Normalizer.normalize(query, Normalizer.Form.NFC).strip()).replaceAll(" ");
+    }
+
+    static String cacheKey(final String deploymentName, final String query) {
+        return deploymentName + "\n" + normalise(query);
+    }
+
+    static String blobName(final String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(UTF_8));
+            return BLOB_PREFIX + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private EmbeddingVector readBlob(final String key) {
+        if (blobTier == null) {
+            return null;
+        }
+        try {
+            return EmbeddingVector.fromBytes(blobTier.getBlobClient(blobName(key)).downloadContent().toBytes());
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() != 404) {
+                LOGGER.warn("Query embedding cache blob read failed; treating as a miss", e);
+            }
+            return null;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Query embedding cache blob read failed; treating as a miss", e);
+            return null;
+        }
+    }
+
+    private void writeBlob(final String key, final EmbeddingVector embedding) {
+        if (blobTier == null) {
+            return;
+        }
+        try {
+            blobTier.getBlobClient(blobName(key)).upload(BinaryData.fromBytes(embedding.toBytes()), true);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Query embedding cache blob write failed; entry kept in memory only", e);
+        }
+    }
+
+    private static BlobClientService blobTierFromEnv() {
+        final String containerName = System.getenv(QUERY_EMBEDDING_CACHE_BLOB_CONTAINER);
+        return isNullOrEmpty(containerName) ? null : new BlobClientService(containerName);
+    }
+}
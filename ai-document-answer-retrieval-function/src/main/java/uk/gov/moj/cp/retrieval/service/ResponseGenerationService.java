@@ -1,8 +1,10 @@
 package uk.gov.moj.cp.retrieval.service;
 
+import static java.lang.Boolean.parseBoolean;
 import static uk.gov.hmcts.cp.openapi.model.AnswerGenerationStatus.ANSWER_GENERATED;
 import static uk.gov.hmcts.cp.openapi.model.AnswerGenerationStatus.ANSWER_GENERATION_FAILED;
 import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+import static uk.gov.moj.cp.ai.util.ObjectMapperFactory.getObjectMapper;
 import static uk.gov.moj.cp.ai.util.StringUtil.isNullOrEmpty;
 import static uk.gov.moj.cp.ai.util.StringUtil.unescapeContent;
 
@@ -11,13 +13,18 @@ import uk.gov.moj.cp.ai.exception.ChatServiceException;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
 import uk.gov.moj.cp.ai.service.ChatService;
 import uk.gov.moj.cp.ai.util.ChunkFormatterUtility;
+import uk.gov.moj.cp.ai.util.ChunkFormatterUtility.PackedContext;
 import uk.gov.moj.cp.retrieval.exception.CitationDegradedException;
+import uk.gov.moj.cp.retrieval.exception.GenerationAbortedException;
 import uk.gov.moj.cp.retrieval.model.CitationGuardMode;
 import uk.gov.moj.cp.retrieval.model.LlmResponse;
+import uk.gov.moj.cp.retrieval.model.StructuredAnswer;
 import uk.gov.moj.cp.retrieval.service.CitationProcessor.CitationOutcome;
 
 import java.util.List;
+import java.util.Optional;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +35,16 @@ public class ResponseGenerationService {
     static final String LLM_RESPONSE_NO_DATA_AVAILABLE = "No data available matching the query.";
     public static final String LLM_RESPONSE_FAILURE_TO_GENERATE = "No response generated by the service.";
 
+    private static final String LLM_STRUCTURED_CITATIONS_ENABLED = "LLM_STRUCTURED_CITATIONS_ENABLED";
+
+    /** Appended to the system prompt in structured-output mode, which replaces the tagged citation block. */
+    static final String STRUCTURED_OUTPUT_INSTRUCTION = """
+
+
+            OUTPUT FORMAT OVERRIDE: respond with the JSON object required by the response schema. Put the \
+            answer, with its inline [N] placeholders, in "answer", and the citation entries you would \
+            otherwise write inside <FACT_MAP_JSON> in "citations". Do not write a <FACT_MAP_JSON> block.""";
+
     private final ChatService chatService;
     private final CitationProcessor citationProcessor;
     private final ChunkFormatterUtility chunkFormatterUtility;
@@ -35,6 +52,9 @@ public class ResponseGenerationService {
 
     private final String systemPromptTemplate;
     private final CitationGuardMode guardMode;
+    private final GenerationWatchdog.Settings watchdogSettings;
+    private final boolean structuredCitations;
+    private final CitationRepairService citationRepairService;
 
     public ResponseGenerationService() {
         String endpoint = getRequiredEnv("AZURE_OPENAI_ENDPOINT");
@@ -47,6 +67,9 @@ public class ResponseGenerationService {
 
         systemPromptTemplate = unescapeContent(getRequiredEnv("RESPONSE_GENERATION_SYSTEM_PROMPT"));
         guardMode = CitationGuardMode.fromEnv();
+        watchdogSettings = GenerationWatchdog.Settings.fromEnv();
+        structuredCitations = structuredCitationsFromEnv();
+        citationRepairService = CitationRepairService.fromEnv(citationProcessor);
     }
 
     public ResponseGenerationService(final ChatService chatService, final CitationProcessor citationProcessor, final ChunkFormatterUtility chunkFormatterUtility, final UserInstructionService userInstructionService, final String systemPromptTemplate) {
@@ -59,12 +82,28 @@ public class ResponseGenerationService {
                               final UserInstructionService userInstructionService,
                               final String systemPromptTemplate,
                               final CitationGuardMode guardMode) {
+        this(chatService, citationProcessor, chunkFormatterUtility, userInstructionService, systemPromptTemplate,
+                guardMode, GenerationWatchdog.Settings.fromEnv(), structuredCitationsFromEnv(),
+                CitationRepairService.fromEnv(citationProcessor));
+    }
+
+    ResponseGenerationService(final ChatService chatService, final CitationProcessor citationProcessor,
+                              final ChunkFormatterUtility chunkFormatterUtility,
+                              final UserInstructionService userInstructionService,
+                              final String systemPromptTemplate,
+                              final CitationGuardMode guardMode,
+                              final GenerationWatchdog.Settings watchdogSettings,
+                              final boolean structuredCitations,
+                              final CitationRepairService citationRepairService) {
         this.chatService = chatService;
         this.citationProcessor = citationProcessor;
         this.chunkFormatterUtility = chunkFormatterUtility;
         this.userInstructionService = userInstructionService;
         this.systemPromptTemplate = systemPromptTemplate;
         this.guardMode = guardMode;
+        this.watchdogSettings = watchdogSettings;
+        this.structuredCitations = structuredCitations;
+        this.citationRepairService = citationRepairService;
     }
 
     /**
@@ -73,6 +112,19 @@ public class ResponseGenerationService {
      * {@link CitationDegradedException} carrying the degraded answer is thrown — retry and
      * exhaustion policy belong to the caller: the async queue worker retries via queue
      * redelivery; the synchronous path applies the policy immediately.
+     * <p>
+     * When {@code LLM_STREAM_WATCHDOG_ENABLED} is true the completion is streamed internally and
+     * inspected by a {@link GenerationWatchdog}, so a degenerate generation is cut off and reported
+     * as citation-degraded as soon as it is detected rather than after the full completion.
+     * <p>
+     * When {@code LLM_STRUCTURED_CITATIONS_ENABLED} is true the model is instead asked for a
+     * schema-constrained {@link StructuredAnswer}, so the citations arrive typed rather than in a
+     * free-text block that may drift, truncate or fail to parse. That call is not streamed, so the
+     * watchdog does not apply to it.
+     * <p>
+     * When a citation repair deployment is configured, a degraded tagged answer whose narrative has
+     * placeholders is first sent to {@link CitationRepairService} for a new citation block, and is
+     * only reported as degraded if the repair fails too.
      */
     public LlmResponse generateResponse(final String userQuery, final List<ChunkedEntry> chunkedEntries,
                                         final String userQueryPrompt) throws ChatServiceException {
@@ -83,23 +135,117 @@ public class ResponseGenerationService {
 
         LOGGER.info("Generating LLM response for query: {}", userQuery);
 
-        final String formattedChunks = chunkFormatterUtility.buildChunkContext(chunkedEntries);
-        LOGGER.info("Constructed retrieved contexts, has {} characters", formattedChunks.length());
+        final PackedContext packedContext = packContext(chunkedEntries);
+        final String userInstruction = buildUserInstruction(userQuery, userQueryPrompt, packedContext);
 
-        final String userInstruction = userInstructionService.buildUserInstruction(userQuery, userQueryPrompt, formattedChunks);
+        if (structuredCitations) {
+            return generateStructured(userInstruction);
+        }
+        if (watchdogSettings != null) {
+            return streamWatched(userInstruction, packedContext.packedEntries());
+        }
 
         return chatService.callModel(systemPromptTemplate, userInstruction, String.class)
                 .filter(rawLlmResponse -> !isNullOrEmpty(rawLlmResponse))
-                .map(this::toGuardedResponse)
+                .map(rawLlmResponse -> toGuardedResponse(rawLlmResponse, packedContext.packedEntries()))
                 .orElseGet(() -> {
                     LOGGER.warn("LLM returned no response.");
                     return new LlmResponse(LLM_RESPONSE_FAILURE_TO_GENERATE, LLM_RESPONSE_FAILURE_TO_GENERATE, ANSWER_GENERATION_FAILED);
                 });
     }
 
-    /** Applies the citation guard to one raw answer; throws {@link CitationDegradedException} when degraded. */
-    private LlmResponse toGuardedResponse(final String rawLlmResponse) {
+    /**
+     * Streams one completion through the watchdog, which aborts the stream as soon as the text
+     * it has inspected is degenerate.
+     */
+    private LlmResponse streamWatched(final String userInstruction, final List<ChunkedEntry> sourceEntries) throws ChatServiceException {
+        final GenerationWatchdog watchdog = new GenerationWatchdog(watchdogSettings);
+        final String rawLlmResponse;
+        try {
+            rawLlmResponse = chatService.streamModel(systemPromptTemplate, userInstruction, watchdog);
+        } catch (GenerationAbortedException e) {
+            return toAbortedResponse(e.getMessage(), watchdog.text());
+        }
+
+        if (isNullOrEmpty(rawLlmResponse)) {
+            LOGGER.warn("LLM returned no response.");
+            return new LlmResponse(LLM_RESPONSE_FAILURE_TO_GENERATE, LLM_RESPONSE_FAILURE_TO_GENERATE, ANSWER_GENERATION_FAILED);
+        }
+        return toGuardedResponse(rawLlmResponse, sourceEntries);
+    }
+
+    /**
+     * A generation cut off by the watchdog is citation-degraded by definition. With the guard off the
+     * truncated answer is accepted as it stands, as any non-empty answer would be.
+     */
+    private LlmResponse toAbortedResponse(final String reason, final String partialLlmResponse) {
+        final CitationOutcome outcome = citationProcessor.processCitations(partialLlmResponse);
+        LOGGER.warn("Streaming watchdog: {} after {} characters.", reason, partialLlmResponse.length());
+        if (guardMode == CitationGuardMode.OFF) {
+            return new LlmResponse(partialLlmResponse, outcome.formattedText(), ANSWER_GENERATED);
+        }
+        throw new CitationDegradedException(reason, partialLlmResponse, outcome.formattedText());
+    }
+
+    private PackedContext packContext(final List<ChunkedEntry> chunkedEntries) {
+        final PackedContext packedContext = chunkFormatterUtility.packChunkContext(chunkedEntries);
+        LOGGER.info("Constructed retrieved contexts from {} of {} chunks, has {} characters and {} tokens",
+                packedContext.packedEntries().size(), chunkedEntries.size(),
+                packedContext.context().length(), packedContext.tokenCount());
+        return packedContext;
+    }
+
+    private String buildUserInstruction(final String userQuery, final String userQueryPrompt,
+                                        final PackedContext packedContext) {
+        return userInstructionService.buildUserInstruction(userQuery, userQueryPrompt, packedContext.context());
+    }
+
+    private static boolean structuredCitationsFromEnv() {
+        return parseBoolean(getRequiredEnv(LLM_STRUCTURED_CITATIONS_ENABLED, "false"));
+    }
+
+    private LlmResponse generateStructured(final String userInstruction) throws ChatServiceException {
+        return chatService.callModel(systemPromptTemplate + STRUCTURED_OUTPUT_INSTRUCTION, userInstruction,
+                        String.class, StructuredAnswer.RESPONSE_SCHEMA)
+                .filter(rawLlmResponse -> !isNullOrEmpty(rawLlmResponse))
+                .map(rawLlmResponse -> toGuardedResponse(rawLlmResponse, structuredOutcome(rawLlmResponse)))
+                .orElseGet(() -> {
+                    LOGGER.warn("LLM returned no response.");
+                    return new LlmResponse(LLM_RESPONSE_FAILURE_TO_GENERATE, LLM_RESPONSE_FAILURE_TO_GENERATE, ANSWER_GENERATION_FAILED);
+                });
+    }
+
+    /**
+     * A provider without structured-output support may answer in the tagged format despite the
+     * schema, so JSON that does not parse is processed as tagged output.
+     */
+    private CitationOutcome structuredOutcome(final String rawLlmResponse) {
+        try {
+            return citationProcessor.processStructuredAnswer(
+                    getObjectMapper().readValue(rawLlmResponse, StructuredAnswer.class));
+        } catch (final JsonProcessingException e) {
+            LOGGER.warn("Structured answer is not valid JSON; processing it as tagged output.");
+            return citationProcessor.processCitations(rawLlmResponse);
+        }
+    }
+
+    /**
+     * Applies the citation guard to one raw tagged answer, repairing its citations first when it is
+     * degraded and repair is enabled; throws {@link CitationDegradedException} when still degraded.
+     */
+    private LlmResponse toGuardedResponse(final String rawLlmResponse, final List<ChunkedEntry> sourceEntries) {
         final CitationOutcome outcome = citationProcessor.processCitations(rawLlmResponse);
+        if (citationRepairService != null && !isAcceptable(outcome)) {
+            final Optional<CitationRepairService.RepairedAnswer> repaired =
+                    citationRepairService.repair(rawLlmResponse, sourceEntries);
+            if (repaired.isPresent()) {
+                return toGuardedResponse(repaired.get().rawLlmResponse(), repaired.get().outcome());
+            }
+        }
+        return toGuardedResponse(rawLlmResponse, outcome);
+    }
+
+    private LlmResponse toGuardedResponse(final String rawLlmResponse, final CitationOutcome outcome) {
         if (isAcceptable(outcome)) {
             LOGGER.info("LLM Raw Response length = {}", outcome.formattedText().length());
             return new LlmResponse(rawLlmResponse, outcome.formattedText(), ANSWER_GENERATED);
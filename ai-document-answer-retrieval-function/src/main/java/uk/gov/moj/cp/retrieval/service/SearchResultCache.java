@@ -0,0 +1,165 @@
+package uk.gov.moj.cp.retrieval.service;
+
+import static java.lang.Boolean.parseBoolean;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsFirst;
+import static uk.gov.moj.cp.ai.SharedSystemVariables.STORAGE_ACCOUNT_TABLE_SEARCH_INDEX_GENERATION;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
+import static uk.gov.moj.cp.ai.util.StringUtil.isNullOrEmpty;
+
+import uk.gov.moj.cp.ai.cache.LruCache;
+import uk.gov.moj.cp.ai.metrics.ServiceMetrics;
+import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.KeyValuePair;
+import uk.gov.moj.cp.ai.service.table.SearchIndexGenerationTableService;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of refined search results (after containment dedup, semantic dedup and MMR), so a repeated
+ * query against the same case file skips the Azure AI Search round trip and the filter stages.
+ * <p>
+ * Keys are built from the index name, client id, normalised query, the metadata filters sorted by key
+ * and value, and the client's search index generation from {@link SearchIndexGenerationTableService},
+ * which the caller reads once per search and shares with {@link HotDocumentCache}. Ingestion bumps
+ * that generation whenever it uploads chunks or marks documents inactive, so a changed index makes
+ * older entries unreachable; they then age out of the LRU. The generation is read before the search
+ * runs, so a result computed across a concurrent bump is stored under the old generation and never
+ * served. The caller passes no generation while the latest bump is younger than the index refresh
+ * delay, since a search then may not see the write yet.
+ * <p>
+ * Entries are stored without their chunk vectors: nothing reads them after MMR, and at ~12 KB per
+ * chunk they would otherwise dominate the cache's heap use.
+ * <p>
+ * Requires {@code SEARCH_RESULT_CACHE_ENABLED=true} and the generation table to be configured; without
+ * the table there is no invalidation signal and the cache stays disabled. A lookup without a
+ * generation bypasses the cache. Lookups are counted by outcome ({@code hit}, {@code miss},
+ * {@code bypass}) on the {@code search_result_cache_lookups} metric.
+ */
+public class SearchResultCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchResultCache.class);
+
+    public static final String SEARCH_RESULT_CACHE_ENABLED = "SEARCH_RESULT_CACHE_ENABLED";
+    private static final String SEARCH_RESULT_CACHE_MAX_ENTRIES = "SEARCH_RESULT_CACHE_MAX_ENTRIES";
+    private static final String SEARCH_RESULT_CACHE_TTL_MINUTES = "SEARCH_RESULT_CACHE_TTL_MINUTES";
+
+    private static final char SEPARATOR = '\n';
+    private static final Comparator<KeyValuePair> FILTER_ORDER =
+            Comparator.comparing(KeyValuePair::key, nullsFirst(naturalOrder()))
+                    .thenComparing(KeyValuePair::value, nullsFirst(naturalOrder()));
+    private static final AttributeKey<String> OUTCOME = AttributeKey.stringKey("outcome");
+    private static final Attributes HIT = Attributes.of(OUTCOME, "hit");
+    private static final Attributes MISS = Attributes.of(OUTCOME, "miss");
+    private static final Attributes BYPASS = Attributes.of(OUTCOME, "bypass");
+
+    private final LruCache<String, List<ChunkedEntry>> results;
+    private final boolean enabled;
+    private final LongCounter lookups;
+
+    private SearchResultCache() {
+        this(new LruCache<>(getRequiredEnvAsInteger(SEARCH_RESULT_CACHE_MAX_ENTRIES, "200"),
+                        Duration.ofMinutes(getRequiredEnvAsInteger(SEARCH_RESULT_CACHE_TTL_MINUTES, "10"))),
+                enabledFromEnv(),
+                ServiceMetrics.meter());
+    }
+
+    SearchResultCache(final LruCache<String, List<ChunkedEntry>> results, final boolean enabled, final Meter meter) {
+        this.results = results;
+        this.enabled = enabled;
+        this.lookups = meter.counterBuilder("search_result_cache_lookups")
+                .setDescription("Search result cache lookups by outcome")
+                .setUnit("1")
+                .build();
+        LOGGER.info("Search result cache enabled: {}", enabled);
+    }
+
+    private static class SingletonHolder {
+        private static final SearchResultCache INSTANCE = new SearchResultCache();
+    }
+
+    public static SearchResultCache getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Builds the cache key for a search, stamped with the client's current index generation.
+     *
+     * @param generation the client's settled index generation, or null when it is unknown or too recent
+     * @return the key, or null when the cache is disabled or there is no generation; pass it unchanged
+     *     to {@link #get} and {@link #put}, which ignore a null key
+     */
+    public String keyFor(final String indexName, final String clientId, final Long generation,
+                         final String userQuery, final List<KeyValuePair> metadataFilters) {
+        if (!enabled) {
+            return null;
+        }
+        if (generation == null) {
+            lookups.add(1, BYPASS);
+            return null;
+        }
+
+        final StringBuilder key = new StringBuilder()
+                .append(indexName).append(SEPARATOR)
+                .append(isNullOrEmpty(clientId) ? "" : clientId).append(SEPARATOR)
+                .append(generation).append(SEPARATOR)
+                .append(QueryEmbeddingCache.normalise(userQuery));
+        // Filter clauses are and-joined, so their order does not change the result set.
+        metadataFilters.stream()
+                .sorted(FILTER_ORDER)
+                .forEach(pair -> appendLengthPrefixed(appendLengthPrefixed(key.append(SEPARATOR), pair.key()), pair.value()));
+        return key.toString();
+    }
+
+    /**
+     * @return the cached, unmodifiable result list, or null on a miss
+     */
+    public List<ChunkedEntry> get(final String key) {
+        if (key == null) {
+            return null;
+        }
+        final List<ChunkedEntry> cached = results.get(key);
+        lookups.add(1, cached != null ? HIT : MISS);
+        return cached;
+    }
+
+    public void put(final String key, final List<ChunkedEntry> searchResults) {
+        if (key == null || searchResults == null) {
+            return;
+        }
+        results.put(key, searchResults.stream()
+                .map(entry -> entry.chunkVector() == null ? entry : entry.toBuilder().chunkVector(null).build())
+                .toList());
+    }
+
+    private static StringBuilder appendLengthPrefixed(final StringBuilder builder, final String value) {
+        final String safe = value == null ? "" : value;
+        return builder.append(safe.length()).append(':').append(safe);
+    }
+
+    private static boolean enabledFromEnv() {
+        if (!parseBoolean(getRequiredEnv(SEARCH_RESULT_CACHE_ENABLED, "false"))) {
+            return false;
+        }
+        if (isNullOrEmpty(System.getenv(STORAGE_ACCOUNT_TABLE_SEARCH_INDEX_GENERATION))) {
+            LOGGER.warn("{} is set but {} is not; search results will not be cached",
+                    SEARCH_RESULT_CACHE_ENABLED, STORAGE_ACCOUNT_TABLE_SEARCH_INDEX_GENERATION);
+            return false;
+        }
+        return true;
+    }
+}
@@ -1,5 +1,7 @@
 package uk.gov.moj.cp.retrieval.service;
 
+import uk.gov.moj.cp.ai.model.PromptLayout;
+
 public class UserInstructionService {
 
     private static final String USER_INSTRUCTION_TEMPLATE = """
@@ -13,7 +15,36 @@ public class UserInstructionService {
             %s
             """;
 
+    /**
+     * Query prompt first: with the system prompt it makes a request prefix shared by every request that
+     * uses the same prompt template, so provider prompt caching can serve it.
+     */
+    private static final String CACHE_FRIENDLY_USER_INSTRUCTION_TEMPLATE = """
+            --- USER QUERY INSTRUCTION ---
+            %s
+            
+            --- SOURCE DOCUMENTS ---
+            %s
+            
+            --- USER QUERY ---
+            %s
+            """;
+
+    private final PromptLayout layout;
+
+    public UserInstructionService() {
+        this(PromptLayout.fromEnv());
+    }
+
+    public UserInstructionService(final PromptLayout layout) {
+        this.layout = layout;
+    }
+
     public String buildUserInstruction(final String userQuery, final String userQueryPrompt, final String formattedChunks) {
-        return String.format(USER_INSTRUCTION_TEMPLATE, formattedChunks, userQueryPrompt != null ? userQueryPrompt : "", userQuery);
+        final String prompt = userQueryPrompt != null ? userQueryPrompt : "";
+        if (layout == PromptLayout.CACHE_FRIENDLY) {
+            return String.format(CACHE_FRIENDLY_USER_INSTRUCTION_TEMPLATE, prompt, formattedChunks, userQuery);
+        }
+        return String.format(USER_INSTRUCTION_TEMPLATE, formattedChunks, prompt, userQuery);
     }
 }
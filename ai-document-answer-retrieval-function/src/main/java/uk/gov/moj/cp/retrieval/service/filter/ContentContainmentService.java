@@ -8,10 +8,7 @@ import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
-import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +26,11 @@ import org.slf4j.LoggerFactory;
  * superset, so the plain copy drops and the superset (with the extra information) is kept. Two chunks
  * carrying <em>different</em> extra facts contain each other only partially, so both are kept. Unlike
  * cosine similarity, this never silently discards a chunk that says something the retained set does not.
+ * <p>
+ * Shingles are 64-bit hashes ({@link ShingleHasher}) and retained chunks are held in an inverted
+ * shingle index ({@link ShingleIndex}), so each incoming chunk is only compared with retained chunks it
+ * shares text with. For very large pools, {@link #SEARCH_CONTAINMENT_APPROXIMATE} switches candidate
+ * search to MinHash/LSH ({@link MinHashLsh}); candidates are still verified with exact containment.
  */
 public class ContentContainmentService {
 
@@ -37,23 +39,43 @@ public class ContentContainmentService {
     public static final String SEARCH_RESULTS_ENABLE_CONTAINMENT_DEDUP = "SEARCH_RESULTS_ENABLE_CONTAINMENT_DEDUP";
     private static final String SEARCH_CONTAINMENT_SHINGLE_SIZE = "SEARCH_CONTAINMENT_SHINGLE_SIZE";
     private static final String SEARCH_CONTAINMENT_THRESHOLD = "SEARCH_CONTAINMENT_THRESHOLD";
-
-    private static final String NON_ALPHANUMERIC = "[^\\p{Alnum}]+";
+    /**
+     * Env var toggling the approximate (MinHash/LSH) candidate search for large pools. Only chunks proposed
+     * by LSH are checked, still with exact containment, so it can miss a duplicate (keeping it) but never
+     * drops a chunk the exact mode would keep.
+     */
+    public static final String SEARCH_CONTAINMENT_APPROXIMATE = "SEARCH_CONTAINMENT_APPROXIMATE";
+    private static final String SEARCH_CONTAINMENT_LSH_BANDS = "SEARCH_CONTAINMENT_LSH_BANDS";
+    private static final String SEARCH_CONTAINMENT_LSH_ROWS = "SEARCH_CONTAINMENT_LSH_ROWS";
 
     private final boolean enableContainmentDedup;
     private final int shingleSize;
     private final double threshold;
+    private final boolean approximate;
+    private final int lshBands;
+    private final int lshRows;
 
     public ContentContainmentService() {
         this.enableContainmentDedup = parseBoolean(getRequiredEnv(SEARCH_RESULTS_ENABLE_CONTAINMENT_DEDUP, "false"));
         this.shingleSize = getRequiredEnvAsInteger(SEARCH_CONTAINMENT_SHINGLE_SIZE, "3");
         this.threshold = parseDouble(getRequiredEnv(SEARCH_CONTAINMENT_THRESHOLD, "0.95"));
+        this.approximate = parseBoolean(getRequiredEnv(SEARCH_CONTAINMENT_APPROXIMATE, "false"));
+        this.lshBands = getRequiredEnvAsInteger(SEARCH_CONTAINMENT_LSH_BANDS, "32");
+        this.lshRows = getRequiredEnvAsInteger(SEARCH_CONTAINMENT_LSH_ROWS, "4");
     }
 
     public ContentContainmentService(final int shingleSize, final double threshold, final boolean enableContainmentDedup) {
+        this(shingleSize, threshold, enableContainmentDedup, false, 0, 0);
+    }
+
+    public ContentContainmentService(final int shingleSize, final double threshold, final boolean enableContainmentDedup,
+                                     final boolean approximate, final int lshBands, final int lshRows) {
         this.shingleSize = shingleSize;
         this.threshold = threshold;
         this.enableContainmentDedup = enableContainmentDedup;
+        this.approximate = approximate;
+        this.lshBands = lshBands;
+        this.lshRows = lshRows;
     }
 
     /**
@@ -72,73 +94,104 @@ public class ContentContainmentService {
             return entries;
         }
 
+        final List<ChunkedEntry> retained = approximate ? deduplicateApproximately(entries) : deduplicateExactly(entries);
+
+        LOGGER.info("Containment dedup (shingleSize={}, threshold={}, approximate={}) reduced {} chunks to {}",
+                shingleSize, threshold, approximate, entries.size(), retained.size());
+        return retained;
+    }
+
+    private List<ChunkedEntry> deduplicateExactly(final List<ChunkedEntry> entries) {
+        final ShingleHasher hasher = new ShingleHasher(shingleSize);
+        final ShingleIndex index = new ShingleIndex();
         final List<ChunkedEntry> retained = new ArrayList<>();
-        final List<Set<String>> retainedShingles = new ArrayList<>();
+        // Per retained chunk: shingles shared with the incoming chunk; reset after each comparison.
+        final int[] overlap = new int[entries.size()];
+        final int[] touched = new int[entries.size()];
 
         for (final ChunkedEntry incoming : entries) {
-            final Set<String> incomingShingles = shingles(incoming.chunk());
+            final long[] incomingShingles = hasher.shingles(incoming.chunk());
+
+            if (!isCovered(incomingShingles, index, overlap, touched)) {
+                index.add(retained.size(), incomingShingles);
+                retained.add(incoming);
+            }
+        }
+        return retained;
+    }
+
+    /**
+     * Like {@link #deduplicateExactly} but only checks the retained chunks that MinHash/LSH proposes,
+     * so the cost per chunk no longer depends on how many chunks share some of its text.
+     */
+    private List<ChunkedEntry> deduplicateApproximately(final List<ChunkedEntry> entries) {
+        final ShingleHasher hasher = new ShingleHasher(shingleSize);
+        final MinHashLsh lsh = new MinHashLsh(lshBands, lshRows);
+        final List<ChunkedEntry> retained = new ArrayList<>();
+        final List<long[]> retainedShingles = new ArrayList<>();
+        final int[] scratch = new int[entries.size()];
+        final int[] candidates = new int[entries.size()];
+
+        for (final ChunkedEntry incoming : entries) {
+            final long[] incomingShingles = hasher.shingles(incoming.chunk());
+            final long[] bandKeys = lsh.bandKeys(incomingShingles);
 
             boolean covered = false;
-            for (final Set<String> existing : retainedShingles) {
-                if (containment(incomingShingles, existing) >= threshold) {
-                    covered = true;
-                    break;
-                }
+            final int candidateCount = lsh.candidates(bandKeys, scratch, candidates);
+            for (int i = 0; i < candidateCount && !covered; i++) {
+                covered = containment(incomingShingles, retainedShingles.get(candidates[i])) >= threshold;
             }
 
             if (!covered) {
-                retained.add(incoming);
+                lsh.add(retained.size(), bandKeys);
                 retainedShingles.add(incomingShingles);
+                retained.add(incoming);
             }
         }
-
-        LOGGER.info("Containment dedup (shingleSize={}, threshold={}) reduced {} chunks to {}",
-                shingleSize, threshold, entries.size(), retained.size());
         return retained;
     }
 
     /**
-     * Fraction of {@code candidate}'s shingles that also appear in {@code retained}.
-     * Returns 0.0 for an empty candidate so content-less chunks are never treated as covered.
+     * Whether at least {@code threshold} of {@code candidate}'s shingles appear in a single retained chunk.
+     * Only retained chunks sharing at least one shingle with the candidate are looked at. An empty
+     * candidate is never covered, so content-less chunks are always kept.
      */
-    private double containment(final Set<String> candidate, final Set<String> retained) {
-        if (candidate.isEmpty()) {
-            return 0.0;
+    private boolean isCovered(final long[] candidate, final ShingleIndex index, final int[] overlap, final int[] touched) {
+        if (candidate.length == 0) {
+            return false;
         }
-        int intersection = 0;
-        for (final String shingle : candidate) {
-            if (retained.contains(shingle)) {
-                intersection++;
+        final int touchedCount = index.countOverlaps(candidate, overlap, touched);
+        boolean covered = false;
+        for (int i = 0; i < touchedCount; i++) {
+            final int chunk = touched[i];
+            if ((double) overlap[chunk] / candidate.length >= threshold) {
+                covered = true;
             }
+            overlap[chunk] = 0;
         }
-        return (double) intersection / candidate.size();
+        return covered;
     }
 
     /**
-     * Builds the set of word-level n-gram shingles for a chunk. Text is lowercased and split on
-     * non-alphanumeric runs so punctuation and whitespace differences do not affect the comparison.
-     * Chunks shorter than the shingle size produce a single shingle of all their tokens.
+     * Fraction of {@code candidate}'s shingles that also appear in {@code retained}, by merging the two
+     * sorted shingle arrays. Returns 0.0 for an empty candidate so content-less chunks are never covered.
      */
-    private Set<String> shingles(final String text) {
-        final Set<String> shingles = new HashSet<>();
-        if (text == null || text.isBlank()) {
-            return shingles;
+    private static double containment(final long[] candidate, final long[] retained) {
+        if (candidate.length == 0) {
+            return 0.0;
         }
-
-        final List<String> tokens = new ArrayList<>();
-        for (final String token : text.toLowerCase(Locale.ROOT).split(NON_ALPHANUMERIC)) {
-            if (!token.isEmpty()) {
-                tokens.add(token);
+        int intersection = 0;
+        for (int i = 0, j = 0; i < candidate.length && j < retained.length; ) {
+            if (candidate[i] == retained[j]) {
+                intersection++;
+                i++;
+                j++;
+            } else if (candidate[i] < retained[j]) {
+                i++;
+            } else {
+                j++;
             }
         }
-        if (tokens.isEmpty()) {
-            return shingles;
-        }
-
-        final int size = Math.min(shingleSize, tokens.size());
-        for (int i = 0; i + size <= tokens.size(); i++) {
-            shingles.add(String.join(" ", tokens.subList(i, i + size)));
-        }
-        return shingles;
+        return (double) intersection / candidate.length;
     }
 }
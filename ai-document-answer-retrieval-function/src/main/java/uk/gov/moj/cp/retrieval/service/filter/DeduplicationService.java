@@ -3,7 +3,6 @@ package uk.gov.moj.cp.retrieval.service.filter;
 import static java.lang.Boolean.parseBoolean;
 import static java.lang.Double.parseDouble;
 import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
-import static uk.gov.moj.cp.ai.util.VectorSimilarityUtil.cosineSimilarity;
 
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
 
@@ -49,13 +48,30 @@ public class DeduplicationService {
         if (!enableDeduplication) {
             return entries;
         }
+        return performSemanticDeduplication(entries, SimilarityContext.of(null, entries));
+    }
+
+    /**
+     * As {@link #performSemanticDeduplication(List)}, reading similarities from (and leaving them in) the
+     * per-query {@code context} shared with {@link DiversificationService}.
+     *
+     * @param entries chunks in relevance order; every entry must belong to {@code context}
+     */
+    public List<ChunkedEntry> performSemanticDeduplication(final List<ChunkedEntry> entries, final SimilarityContext context) {
+        if (!enableDeduplication) {
+            return entries;
+        }
 
         final List<ChunkedEntry> uniqueEntries = new ArrayList<>();
+        final int[] uniqueIndices = new int[entries.size()];
         for (final ChunkedEntry incoming : entries) {
-            final boolean isDuplicate = uniqueEntries.stream()
-                    .anyMatch(existing -> cosineSimilarity(
-                            incoming.chunkVector(), existing.chunkVector()) >= threshold);
+            final int incomingIndex = context.indexOf(incoming);
+            boolean isDuplicate = false;
+            for (int u = 0; u < uniqueEntries.size() && !isDuplicate; u++) {
+                isDuplicate = context.similarity(incomingIndex, uniqueIndices[u]) >= threshold;
+            }
             if (!isDuplicate) {
+                uniqueIndices[uniqueEntries.size()] = incomingIndex;
                 uniqueEntries.add(incoming);
             }
         }
@@ -4,14 +4,12 @@ import static java.lang.Boolean.parseBoolean;
 import static java.lang.Double.parseDouble;
 import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
 import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
-import static uk.gov.moj.cp.ai.util.VectorSimilarityUtil.cosineSimilarity;
 
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 
 import java.util.ArrayList;
-import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,25 +62,38 @@ public class DiversificationService {
      * @param candidates  the over-fetched result pool, each carrying its {@code chunkVector}
      * @return up to {@code finalCount} chunks; the input unchanged when MMR is disabled or inputs are empty
      */
-    public List<ChunkedEntry> diversify(final List<Float> queryVector, final List<ChunkedEntry> candidates) {
+    public List<ChunkedEntry> diversify(final EmbeddingVector queryVector, final List<ChunkedEntry> candidates) {
+        if (!enableMmr || isNullOrEmpty(candidates)) {
+            return diversify(candidates, null);
+        }
+        return diversify(candidates, SimilarityContext.of(queryVector, candidates));
+    }
+
+    /**
+     * As {@link #diversify(EmbeddingVector, List)}, taking query relevance and candidate-to-candidate
+     * similarities from the per-query {@code context} shared with the other filter stages.
+     *
+     * @param candidates the pool to select from; every entry must belong to {@code context}
+     * @param context    the search's similarity context, carrying the query vector
+     */
+    public List<ChunkedEntry> diversify(final List<ChunkedEntry> candidates, final SimilarityContext context) {
         if (!enableMmr) {
             return candidates;
         }
-        if (isNullOrEmpty(queryVector) || isNullOrEmpty(candidates)) {
+        if (context == null || !context.hasQueryVector() || isNullOrEmpty(candidates)) {
             LOGGER.warn("MMR enabled but query vector or candidates are null/empty; returning candidates unchanged");
             return candidates;
         }
 
-        final int targetCount = Math.min(finalCount, candidates.size());
-        final Map<ChunkedEntry, Double> relevanceByCandidate = relevanceByCandidate(queryVector, candidates);
-
-        final List<ChunkedEntry> remaining = new ArrayList<>(candidates);
-        final List<ChunkedEntry> selected = new ArrayList<>(targetCount);
+        final int[] poolIndex = new int[candidates.size()];
+        for (int i = 0; i < poolIndex.length; i++) {
+            poolIndex[i] = context.indexOf(candidates.get(i));
+        }
+        final int[] picks = selectIndices(poolIndex, context, Math.min(finalCount, candidates.size()));
 
-        while (selected.size() < targetCount && !remaining.isEmpty()) {
-            final ChunkedEntry best = selectBest(remaining, selected, relevanceByCandidate);
-            selected.add(best);
-            remaining.remove(best);
+        final List<ChunkedEntry> selected = new ArrayList<>(picks.length);
+        for (final int pick : picks) {
+            selected.add(candidates.get(pick));
         }
 
         LOGGER.info("MMR diversification (lambda={}) reduced {} candidates to {} chunks", lambda, candidates.size(), selected.size());
@@ -90,46 +101,55 @@ public class DiversificationService {
     }
 
     /**
-     * Precomputes relevance(query, candidate) once per candidate. An {@link IdentityHashMap} avoids hashing
-     * the large {@code chunkVector} lists that {@link ChunkedEntry}'s record equals/hashCode would traverse.
+     * Greedy MMR over candidate indices; {@code poolIndex[c]} is candidate {@code c}'s position in {@code context}.
+     * <p>
+     * {@code maxSimilarity[c]} holds candidate {@code c}'s highest similarity to anything selected so far.
+     * Selecting a chunk can only raise that maximum through the chunk just picked, so after each pick every
+     * unselected candidate is compared against that one chunk only: {@code targetCount * n} similarities in
+     * total rather than re-scanning the whole selected set for every candidate on every pick.
+     * Ties go to the lower index, i.e. the higher-ranked search result.
      */
-    private Map<ChunkedEntry, Double> relevanceByCandidate(final List<Float> queryVector, final List<ChunkedEntry> candidates) {
-        final Map<ChunkedEntry, Double> relevanceByCandidate = new IdentityHashMap<>();
-        for (final ChunkedEntry candidate : candidates) {
-            relevanceByCandidate.put(candidate, cosineSimilarity(queryVector, candidate.chunkVector()));
+    private int[] selectIndices(final int[] poolIndex, final SimilarityContext context, final int targetCount) {
+        final int n = poolIndex.length;
+        final double[] relevance = new double[n];
+        for (int c = 0; c < n; c++) {
+            relevance[c] = context.relevance(poolIndex[c]);
         }
-        return relevanceByCandidate;
-    }
-
-    /** Returns the remaining candidate with the highest MMR score against the already-selected set. */
-    private ChunkedEntry selectBest(final List<ChunkedEntry> remaining, final List<ChunkedEntry> selected,
-                                    final Map<ChunkedEntry, Double> relevanceByCandidate) {
-        ChunkedEntry best = null;
-        double bestScore = -Double.MAX_VALUE;
-        for (final ChunkedEntry candidate : remaining) {
-            final double score = mmrScore(candidate, selected, relevanceByCandidate.get(candidate));
-            if (score > bestScore) {
-                bestScore = score;
-                best = candidate;
+        final double[] maxSimilarity = new double[n];
+        final boolean[] taken = new boolean[n];
+        final int[] picks = new int[targetCount];
+
+        for (int picked = 0; picked < targetCount; picked++) {
+            int best = -1;
+            double bestScore = 0.0;
+            for (int c = 0; c < n; c++) {
+                if (taken[c]) {
+                    continue;
+                }
+                // Pure relevance for the first pick.
+                final double score = picked == 0
+                        ? relevance[c]
+                        : lambda * relevance[c] - (1 - lambda) * maxSimilarity[c];
+                if (best < 0 || score > bestScore) {
+                    best = c;
+                    bestScore = score;
+                }
             }
-        }
-        return best;
-    }
 
-    /** {@code lambda * relevance - (1 - lambda) * maxSimilarityToSelected}; pure relevance for the first pick. */
-    private double mmrScore(final ChunkedEntry candidate, final List<ChunkedEntry> selected, final double relevance) {
-        if (selected.isEmpty()) {
-            return relevance;
-        }
-        return lambda * relevance - (1 - lambda) * maxSimilarityToSelected(candidate, selected);
-    }
+            taken[best] = true;
+            picks[picked] = best;
+            if (picked + 1 == targetCount) {
+                break;
+            }
 
-    private double maxSimilarityToSelected(final ChunkedEntry candidate, final List<ChunkedEntry> selected) {
-        double maxSimilarity = -Double.MAX_VALUE;
-        for (final ChunkedEntry chosen : selected) {
-            maxSimilarity = Math.max(maxSimilarity, cosineSimilarity(candidate.chunkVector(), chosen.chunkVector()));
+            for (int c = 0; c < n; c++) {
+                if (!taken[c]) {
+                    final double sim = context.similarity(poolIndex[c], poolIndex[best]);
+                    maxSimilarity[c] = picked == 0 ? sim : Math.max(maxSimilarity[c], sim);
+                }
+            }
         }
-        return maxSimilarity;
+        return picks;
     }
 
     private static boolean isNullOrEmpty(final List<?> list) {
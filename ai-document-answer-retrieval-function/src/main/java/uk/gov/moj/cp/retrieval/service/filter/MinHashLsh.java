@@ -0,0 +1,89 @@
+package uk.gov.moj.cp.retrieval.service.filter;
+
+import static uk.gov.moj.cp.retrieval.service.filter.ShingleHasher.mix;
+
+import java.util.Arrays;
+
+/**
+ * MinHash signatures with locality-sensitive banding, used by {@link ContentContainmentService} in its
+ * approximate mode to find which retained chunks are worth an exact containment check.
+ * <p>
+ * A signature has {@code bands * rows} minimums, one per seeded hash function over the chunk's shingle
+ * hashes. Each band of {@code rows} minimums is folded into one bucket key. Two chunks share a bucket in
+ * a given band with probability {@code J^rows}, where {@code J} is their Jaccard similarity, so they
+ * become candidates with probability {@code 1 - (1 - J^rows)^bands}. Buckets are held in a
+ * {@link ShingleIndex} keyed by (band, band hash), so finding candidates costs {@code bands} lookups per
+ * chunk instead of a comparison with every retained chunk.
+ * <p>
+ * LSH estimates Jaccard, not containment: a small chunk fully contained in a much larger one has a
+ * low Jaccard similarity and may not be proposed. That chunk is then kept, which only makes the dedup
+ * less aggressive, never lossy.
+ */
+final class MinHashLsh {
+
+    private static final long SEED_STEP = 0x9e3779b97f4a7c15L;
+    private static final long HASH_MULTIPLIER = 0xbf58476d1ce4e5b9L;
+
+    private final int bands;
+    private final int rows;
+    private final long[] seeds;
+    private final ShingleIndex buckets = new ShingleIndex();
+
+    MinHashLsh(final int bands, final int rows) {
+        this.bands = bands;
+        this.rows = rows;
+        this.seeds = new long[bands * rows];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = mix((i + 1) * SEED_STEP);
+        }
+    }
+
+    /**
+     * Band bucket keys of {@code shingles}; empty when there are no shingles.
+     */
+    long[] bandKeys(final long[] shingles) {
+        if (shingles.length == 0) {
+            return new long[0];
+        }
+        final long[] signature = new long[seeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (final long shingle : shingles) {
+            for (int i = 0; i < seeds.length; i++) {
+                // Shingle hashes are already well mixed, so a seeded xor-multiply-shift is enough per function.
+                long hash = (shingle ^ seeds[i]) * HASH_MULTIPLIER;
+                hash ^= hash >>> 29;
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+
+        final long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = band;
+            for (int row = 0; row < rows; row++) {
+                key = key * SEED_STEP + signature[band * rows + row];
+            }
+            keys[band] = mix(key);
+        }
+        return keys;
+    }
+
+    void add(final int chunk, final long[] bandKeys) {
+        buckets.add(chunk, bandKeys);
+    }
+
+    /**
+     * Retained chunks sharing at least one bucket with {@code bandKeys}, written to {@code candidates}.
+     * {@code scratch} must be all zero on entry and is left all zero.
+     *
+     * @return the number of candidates written
+     */
+    int candidates(final long[] bandKeys, final int[] scratch, final int[] candidates) {
+        final int count = buckets.countOverlaps(bandKeys, scratch, candidates);
+        for (int i = 0; i < count; i++) {
+            scratch[candidates[i]] = 0;
+        }
+        return count;
+    }
+}
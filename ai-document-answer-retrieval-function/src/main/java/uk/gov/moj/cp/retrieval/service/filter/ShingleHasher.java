@@ -0,0 +1,108 @@
+package uk.gov.moj.cp.retrieval.service.filter;
+
+import java.util.Arrays;
+
+/**
+ * Turns chunk text into the distinct 64-bit hashes of its word-level n-gram shingles.
+ * <p>
+ * Text is tokenised on runs of ASCII letters and digits (the same classes the previous
+ * {@code [^\p{Alnum}]+} split kept), lowercased on the fly, and each token is hashed with FNV-1a as it
+ * is scanned, so no per-token strings are created. Shingle hashes are a polynomial rolling hash over the
+ * token hashes, finalised with a 64-bit mixer; equal token sequences always produce equal hashes, and
+ * at the few thousand shingles per chunk a 64-bit collision is negligible.
+ * <p>
+ * Chunks shorter than the shingle size produce a single shingle of all their tokens.
+ */
+final class ShingleHasher {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long ROLLING_BASE = 0x9e3779b97f4a7c15L;
+    private static final long[] NO_SHINGLES = new long[0];
+
+    private final int shingleSize;
+    /** {@code ROLLING_BASE^(shingleSize - 1)}: the weight of the token leaving the window. */
+    private final long highPower;
+
+    ShingleHasher(final int shingleSize) {
+        this.shingleSize = shingleSize;
+        long power = 1L;
+        for (int i = 1; i < shingleSize; i++) {
+            power *= ROLLING_BASE;
+        }
+        this.highPower = power;
+    }
+
+    /**
+     * @return the distinct shingle hashes of {@code text}, sorted ascending; empty for null or content-less text
+     */
+    long[] shingles(final String text) {
+        if (text == null || text.isEmpty()) {
+            return NO_SHINGLES;
+        }
+
+        // The last shingleSize token hashes, and the polynomial hash over them.
+        final long[] window = new long[shingleSize];
+        long rolling = 0L;
+        int tokenCount = 0;
+        // At most one token starts in every two chars (a token plus a separator).
+        final long[] shingles = new long[text.length() / 2 + 1];
+        int shingleCount = 0;
+
+        long token = FNV_OFFSET_BASIS;
+        boolean inToken = false;
+        for (int i = 0, length = text.length(); i <= length; i++) {
+            final char c = i < length ? text.charAt(i) : ' ';
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                token = (token ^ c) * FNV_PRIME;
+                inToken = true;
+            } else if (c >= 'A' && c <= 'Z') {
+                token = (token ^ (c + ('a' - 'A'))) * FNV_PRIME;
+                inToken = true;
+            } else if (inToken) {
+                final int slot = tokenCount % shingleSize;
+                if (tokenCount >= shingleSize) {
+                    rolling -= window[slot] * highPower;
+                }
+                rolling = rolling * ROLLING_BASE + token;
+                window[slot] = token;
+                tokenCount++;
+                if (tokenCount >= shingleSize) {
+                    shingles[shingleCount++] = mix(rolling);
+                }
+                token = FNV_OFFSET_BASIS;
+                inToken = false;
+            }
+        }
+
+        if (tokenCount == 0) {
+            return NO_SHINGLES;
+        }
+        if (tokenCount < shingleSize) {
+            // Fewer tokens than one shingle: the whole chunk is its only shingle.
+            shingles[shingleCount++] = mix(rolling);
+        }
+        return distinct(shingles, shingleCount);
+    }
+
+    private static long[] distinct(final long[] hashes, final int count) {
+        Arrays.sort(hashes, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || hashes[i] != hashes[unique - 1]) {
+                hashes[unique++] = hashes[i];
+            }
+        }
+        return Arrays.copyOf(hashes, unique);
+    }
+
+    /** MurmurHash3 fmix64 finaliser: spreads the polynomial hash over all 64 bits. */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
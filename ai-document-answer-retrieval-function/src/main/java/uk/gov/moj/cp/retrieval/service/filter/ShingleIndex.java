@@ -0,0 +1,99 @@
+package uk.gov.moj.cp.retrieval.service.filter;
+
+import java.util.Arrays;
+
+/**
+ * Inverted index from shingle hash to the retained chunks containing it, held in primitive arrays.
+ * <p>
+ * Keys live in an open-addressing {@code long} table; each key's postings are a linked list threaded
+ * through two parallel {@code int} arrays ({@code postingChunk}, {@code postingNext}), so adding a
+ * chunk allocates nothing beyond occasional table growth.
+ */
+final class ShingleIndex {
+
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] heads = filledWithEmpty(INITIAL_CAPACITY);
+    private int keyCount;
+
+    private int[] postingChunk = new int[INITIAL_CAPACITY];
+    private int[] postingNext = new int[INITIAL_CAPACITY];
+    private int postingCount;
+
+    /**
+     * Indexes a retained chunk.
+     *
+     * @param chunk     the retained chunk's id, in [0, number of retained chunks)
+     * @param shingles  its distinct shingle hashes
+     */
+    void add(final int chunk, final long[] shingles) {
+        for (final long shingle : shingles) {
+            if ((keyCount + 1) * 2 > keys.length) {
+                grow();
+            }
+            final int slot = slotOf(shingle);
+            if (heads[slot] == EMPTY) {
+                keys[slot] = shingle;
+                keyCount++;
+            }
+            if (postingCount == postingChunk.length) {
+                postingChunk = Arrays.copyOf(postingChunk, postingCount * 2);
+                postingNext = Arrays.copyOf(postingNext, postingCount * 2);
+            }
+            postingChunk[postingCount] = chunk;
+            postingNext[postingCount] = heads[slot];
+            heads[slot] = postingCount++;
+        }
+    }
+
+    /**
+     * Adds to {@code overlap[c]} the number of {@code shingles} that retained chunk {@code c} contains, and
+     * records each chunk whose count rose from zero in {@code touched}.
+     *
+     * @return the number of entries written to {@code touched}
+     */
+    int countOverlaps(final long[] shingles, final int[] overlap, final int[] touched) {
+        int touchedCount = 0;
+        for (final long shingle : shingles) {
+            for (int posting = heads[slotOf(shingle)]; posting != EMPTY; posting = postingNext[posting]) {
+                final int chunk = postingChunk[posting];
+                if (overlap[chunk]++ == 0) {
+                    touched[touchedCount++] = chunk;
+                }
+            }
+        }
+        return touchedCount;
+    }
+
+    /** Linear probe to the slot holding {@code key}, or the empty slot where it would go. */
+    private int slotOf(final long key) {
+        final int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (heads[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final int[] oldHeads = heads;
+        keys = new long[oldKeys.length * 2];
+        heads = filledWithEmpty(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] != EMPTY) {
+                final int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                heads[slot] = oldHeads[i];
+            }
+        }
+    }
+
+    private static int[] filledWithEmpty(final int capacity) {
+        final int[] array = new int[capacity];
+        Arrays.fill(array, EMPTY);
+        return array;
+    }
+}
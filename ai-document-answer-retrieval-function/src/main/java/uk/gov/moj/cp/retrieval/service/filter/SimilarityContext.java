@@ -0,0 +1,112 @@
+package uk.gov.moj.cp.retrieval.service.filter;
+
+import static uk.gov.moj.cp.ai.util.VectorSimilarityUtil.cosineSimilarities;
+import static uk.gov.moj.cp.ai.util.VectorSimilarityUtil.cosineSimilarity;
+
+import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-query cache of the cosine similarities the retrieval filter stages need, over the candidate pool
+ * returned by the search.
+ * <p>
+ * Built once per search and handed to {@link DeduplicationService} and {@link DiversificationService},
+ * so a candidate pair compared by semantic dedup is not recomputed by MMR. Candidate-to-candidate
+ * similarities live in a packed upper-triangular {@code double[]} filled on first use of each pair
+ * (NaN marks an unfilled cell); query relevance is computed for the whole pool in one batch the first
+ * time any of it is asked for. Nothing is allocated or computed for a stage that is switched off.
+ * <p>
+ * Candidates are addressed either by their index in the pool or by the {@link ChunkedEntry} instance
+ * itself (by identity, so stages can pass along filtered sub-lists of the pool). Not thread-safe: a
+ * context belongs to a single search call.
+ */
+public final class SimilarityContext {
+
+    private final EmbeddingVector queryVector;
+    private final List<ChunkedEntry> pool;
+    private final Map<ChunkedEntry, Integer> indexByEntry;
+
+    private double[] relevance;
+    private double[] pairwise;
+    private int computedPairs;
+
+    private SimilarityContext(final EmbeddingVector queryVector, final List<ChunkedEntry> pool) {
+        this.queryVector = queryVector;
+        this.pool = pool;
+        this.indexByEntry = new IdentityHashMap<>(pool.size() * 2);
+        for (int i = 0; i < pool.size(); i++) {
+            indexByEntry.putIfAbsent(pool.get(i), i);
+        }
+    }
+
+    /**
+     * @param queryVector the embedded user query; may be null when only pairwise similarities are needed
+     * @param pool        the retrieved candidates, in rank order
+     */
+    public static SimilarityContext of(final EmbeddingVector queryVector, final List<ChunkedEntry> pool) {
+        return new SimilarityContext(queryVector, pool);
+    }
+
+    public int size() {
+        return pool.size();
+    }
+
+    public boolean hasQueryVector() {
+        return queryVector != null && !queryVector.isEmpty();
+    }
+
+    /**
+     * @return the position of {@code entry} in the pool
+     * @throws IllegalArgumentException when the entry is not part of this context's pool
+     */
+    public int indexOf(final ChunkedEntry entry) {
+        final Integer index = indexByEntry.get(entry);
+        if (index == null) {
+            throw new IllegalArgumentException("Chunk " + entry.id() + " is not part of this similarity context");
+        }
+        return index;
+    }
+
+    /** Cosine similarity of the query to the candidate at {@code index}. */
+    public double relevance(final int index) {
+        if (relevance == null) {
+            relevance = cosineSimilarities(queryVector, pool.stream().map(ChunkedEntry::chunkVector).toList());
+        }
+        return relevance[index];
+    }
+
+    /** Cosine similarity between the candidates at {@code i} and {@code j}, computed at most once per pair. */
+    public double similarity(final int i, final int j) {
+        if (i == j) {
+            return cosineSimilarity(pool.get(i).chunkVector(), pool.get(i).chunkVector());
+        }
+        if (pairwise == null) {
+            final int n = pool.size();
+            pairwise = new double[n * (n - 1) / 2];
+            Arrays.fill(pairwise, Double.NaN);
+        }
+        final int cell = cell(Math.min(i, j), Math.max(i, j));
+        double value = pairwise[cell];
+        if (Double.isNaN(value)) {
+            value = cosineSimilarity(pool.get(i).chunkVector(), pool.get(j).chunkVector());
+            pairwise[cell] = value;
+            computedPairs++;
+        }
+        return value;
+    }
+
+    /** Number of distinct candidate pairs whose similarity has actually been computed. */
+    public int computedPairs() {
+        return computedPairs;
+    }
+
+    /** Offset of {@code (low, high)}, {@code low < high}, in the row-major packed upper triangle. */
+    private int cell(final int low, final int high) {
+        return low * (2 * pool.size() - low - 1) / 2 + (high - low - 1);
+    }
+}
@@ -12,6 +12,7 @@ import static uk.gov.hmcts.cp.openapi.model.AnswerGenerationStatus.ANSWER_GENERA
 import uk.gov.moj.cp.ai.exception.EntityRetrievalException;
 import uk.gov.moj.cp.ai.idempotency.LeaseSnapshot;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.model.KeyValuePair;
 import uk.gov.moj.cp.ai.service.table.AnswerGenerationTableService;
 import uk.gov.moj.cp.retrieval.model.AnswerGenerationQueuePayload;
@@ -88,7 +89,7 @@ class AnswerGenerationFunctionClientIdentityTest {
     private void stubGeneration() throws Exception {
         final List<ChunkedEntry> chunks = List.of(ChunkedEntry.builder()
                 .id("1").chunk("content").documentFileName("doc.pdf").pageNumber(1).documentId("doc1").build());
-        when(embedDataService.getEmbedding("query")).thenReturn(List.of(1.0f));
+        when(embedDataService.getEmbedding("query")).thenReturn(EmbeddingVector.of(1.0f));
         when(searchService.search(any(), eq("query"), any(), any())).thenReturn(chunks);
         when(responseGenerationService.generateResponse(eq("query"), any(), eq("prompt")))
                 .thenReturn(new LlmResponse("raw", "generated", ANSWER_GENERATED));
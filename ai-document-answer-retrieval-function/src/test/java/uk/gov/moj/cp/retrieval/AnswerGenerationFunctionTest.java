@@ -26,6 +26,8 @@ import uk.gov.hmcts.cp.openapi.model.AnswerGenerationStatus;
 import uk.gov.moj.cp.ai.exception.EtagMismatchException;
 import uk.gov.moj.cp.ai.idempotency.LeaseSnapshot;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+import uk.gov.moj.cp.ai.model.InputChunksPayload;
 import uk.gov.moj.cp.ai.model.KeyValuePair;
 import uk.gov.moj.cp.ai.service.table.AnswerGenerationTableService;
 import uk.gov.moj.cp.retrieval.exception.CitationDegradedException;
@@ -157,7 +159,7 @@ class AnswerGenerationFunctionTest {
 
         final String queueMessage = objectMapper.writeValueAsString(payload);
 
-        final List<Float> embeddings = List.of(1.0f, 2.0f);
+        final EmbeddingVector embeddings = EmbeddingVector.of(1.0f, 2.0f);
         final List<ChunkedEntry> chunkedEntries =
                 List.of(ChunkedEntry.builder()
                         .id("1")
@@ -233,7 +235,7 @@ class AnswerGenerationFunctionTest {
 
         final String queueMessage = objectMapper.writeValueAsString(payload);
 
-        final List<Float> embeddings = List.of(1.0f, 2.0f);
+        final EmbeddingVector embeddings = EmbeddingVector.of(1.0f, 2.0f);
         final List<ChunkedEntry> chunkedEntries =
                 List.of(ChunkedEntry.builder()
                         .id("1")
@@ -347,7 +349,7 @@ class AnswerGenerationFunctionTest {
                 transactionId, "query", "prompt", List.of(new KeyValuePair("key", "value")));
         final String queueMessage = objectMapper.writeValueAsString(payload);
 
-        final List<Float> embeddings = List.of(1.0f, 2.0f);
+        final EmbeddingVector embeddings = EmbeddingVector.of(1.0f, 2.0f);
         final List<ChunkedEntry> chunkedEntries = List.of(ChunkedEntry.builder()
                 .id("1").chunk("Sample content").documentFileName("doc.pdf").pageNumber(1).documentId("doc1")
                 .build());
@@ -380,7 +382,7 @@ class AnswerGenerationFunctionTest {
                 transactionId, "query", "prompt", List.of(new KeyValuePair("key", "value")));
         final String queueMessage = objectMapper.writeValueAsString(payload);
 
-        final List<Float> embeddings = List.of(1.0f, 2.0f);
+        final EmbeddingVector embeddings = EmbeddingVector.of(1.0f, 2.0f);
         final List<ChunkedEntry> chunkedEntries = List.of(ChunkedEntry.builder()
                 .id("1").chunk("Sample content").documentFileName("doc.pdf").pageNumber(1).documentId("doc1")
                 .build());
@@ -412,7 +414,7 @@ class AnswerGenerationFunctionTest {
     private AnswerGenerationQueuePayload stubGuardScenario(final UUID transactionId) throws Exception {
         final AnswerGenerationQueuePayload payload = new AnswerGenerationQueuePayload(
                 transactionId, "query", "prompt", List.of(new KeyValuePair("key", "value")));
-        final List<Float> embeddings = List.of(1.0f, 2.0f);
+        final EmbeddingVector embeddings = EmbeddingVector.of(1.0f, 2.0f);
         final List<ChunkedEntry> chunkedEntries = List.of(ChunkedEntry.builder()
                 .id("1").chunk("Sample content").documentFileName("doc.pdf").pageNumber(1).documentId("doc1")
                 .build());
@@ -468,6 +470,57 @@ class AnswerGenerationFunctionTest {
         verify(mockScoringOutputBinding).setValue(anyString());
     }
 
+    @Test
+    void run_PersistsInputChunksBeforeTheLlmCall_SoACitationRetryCanReuseThem() throws Exception {
+        final UUID transactionId = randomUUID();
+        final String queueMessage = objectMapper.writeValueAsString(stubGuardScenario(transactionId));
+
+        assertThrows(RuntimeException.class, () -> function.run(queueMessage, mockScoringOutputBinding, 1, context));
+
+        verify(mockBlobPersistenceInputChunksService).saveBlob(eq(getInputChunksFilename(transactionId)), anyString());
+        // a first delivery has nothing to reuse
+        verify(mockBlobPersistenceInputChunksService, never()).readBlob(anyString(), any());
+    }
+
+    @Test
+    void run_ReusesPersistedInputChunks_OnRedelivery_WithoutReEmbeddingOrSearching() throws Exception {
+        final UUID transactionId = randomUUID();
+        final AnswerGenerationQueuePayload payload = new AnswerGenerationQueuePayload(
+                transactionId, "query", "prompt", List.of(new KeyValuePair("key", "value")));
+        final List<ChunkedEntry> persistedChunks = List.of(ChunkedEntry.builder()
+                .id("1").chunk("Sample content").documentFileName("doc.pdf").pageNumber(1).documentId("doc1")
+                .build());
+        stubClaimableRow(transactionId);
+        when(mockBlobPersistenceInputChunksService.readBlob(getInputChunksFilename(transactionId), InputChunksPayload.class))
+                .thenReturn(new InputChunksPayload(persistedChunks));
+        when(mockResponseGenerationService.generateResponse("query", persistedChunks, "prompt"))
+                .thenReturn(new LlmResponse("raw response", "generated response", ANSWER_GENERATED));
+
+        function.run(objectMapper.writeValueAsString(payload), mockScoringOutputBinding, 2, context);
+
+        verify(mockEmbedDataService, never()).getEmbedding(anyString());
+        verify(mockSearchService, never()).search(any(), anyString(), any(), any());
+        verify(mockBlobPersistenceInputChunksService, never()).saveBlob(anyString(), anyString());
+        verify(mockAnswerGenerationTableService).upsertTerminalFenced(
+                isNull(), eq(transactionId.toString()), eq("query"), eq("prompt"),
+                eq(getInputChunksFilename(transactionId)), eq("generated response"), eq(ANSWER_GENERATED), eq(null),
+                any(OffsetDateTime.class), any(Long.class), eq(CLAIM_ETAG));
+        verify(mockScoringOutputBinding).setValue(anyString());
+    }
+
+    @Test
+    void run_ReRunsRetrieval_OnRedelivery_WhenNoInputChunksWerePersisted() throws Exception {
+        final UUID transactionId = randomUUID();
+        final String queueMessage = objectMapper.writeValueAsString(stubGuardScenario(transactionId));
+        when(mockBlobPersistenceInputChunksService.readBlob(getInputChunksFilename(transactionId), InputChunksPayload.class))
+                .thenThrow(new RuntimeException("BlobNotFound"));
+
+        assertThrows(RuntimeException.class, () -> function.run(queueMessage, mockScoringOutputBinding, 2, context));
+
+        verify(mockSearchService).search(isNull(), eq("query"), any(EmbeddingVector.class), any());
+        verify(mockBlobPersistenceInputChunksService).saveBlob(eq(getInputChunksFilename(transactionId)), anyString());
+    }
+
     @Test
     void run_RecordsFailureWithReason_WhenRedeliveryExhausted_InRejectMode() throws Exception {
         function = new AnswerGenerationFunction(
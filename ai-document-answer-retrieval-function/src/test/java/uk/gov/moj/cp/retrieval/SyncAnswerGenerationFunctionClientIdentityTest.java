@@ -18,6 +18,7 @@ import uk.gov.moj.cp.ai.client.identity.ClientContext;
 import uk.gov.moj.cp.ai.client.identity.ClientIdentityException;
 import uk.gov.moj.cp.ai.client.identity.ClientIdentityResolver;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.retrieval.model.LlmResponse;
 import uk.gov.moj.cp.retrieval.service.AzureAISearchService;
 import uk.gov.moj.cp.retrieval.service.BlobPersistenceService;
@@ -118,7 +119,7 @@ class SyncAnswerGenerationFunctionClientIdentityTest {
     void shouldUseHeaderIdentityOnly_whenMetadataCarriesSpoof() throws Exception {
         final List<MetadataFilter> metadataFilter = List.of(new MetadataFilter("document_id", SPOOF_ID));
         when(request.getBody()).thenReturn(new AnswerUserQueryRequest("query", "prompt", metadataFilter));
-        when(embedDataService.getEmbedding("query")).thenReturn(List.of(1.0f));
+        when(embedDataService.getEmbedding("query")).thenReturn(EmbeddingVector.of(1.0f));
         when(searchService.search(any(), eq("query"), any(), any())).thenReturn(chunk());
         when(responseGenerationService.generateResponse(eq("query"), any(), eq("prompt")))
                 .thenReturn(new LlmResponse("raw", "generated", ANSWER_GENERATED));
@@ -145,7 +146,7 @@ class SyncAnswerGenerationFunctionClientIdentityTest {
 
     private void stubHappyPath() throws Exception {
         when(request.getBody()).thenReturn(new AnswerUserQueryRequest("query", "prompt", List.of(new MetadataFilter("key", "value"))));
-        when(embedDataService.getEmbedding("query")).thenReturn(List.of(1.0f));
+        when(embedDataService.getEmbedding("query")).thenReturn(EmbeddingVector.of(1.0f));
         when(searchService.search(any(), eq("query"), any(), any())).thenReturn(chunk());
         when(responseGenerationService.generateResponse(eq("query"), any(), eq("prompt")))
                 .thenReturn(new LlmResponse("raw", "generated", ANSWER_GENERATED));
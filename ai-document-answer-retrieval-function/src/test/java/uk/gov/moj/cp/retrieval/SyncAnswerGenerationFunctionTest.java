@@ -15,6 +15,7 @@ import static org.mockito.Mockito.when;
 import static uk.gov.hmcts.cp.openapi.model.AnswerGenerationStatus.ANSWER_GENERATED;
 import static uk.gov.hmcts.cp.openapi.model.AnswerGenerationStatus.ANSWER_GENERATION_FAILED;
 
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.retrieval.exception.CitationDegradedException;
 import uk.gov.moj.cp.retrieval.model.CitationGuardMode;
 
@@ -103,7 +104,7 @@ class SyncAnswerGenerationFunctionTest {
         final List<MetadataFilter> metadataFilter = List.of(new MetadataFilter("key", "value"));
         AnswerUserQueryRequest payload = new AnswerUserQueryRequest("query", "prompt", metadataFilter);
 
-        final List<Float> mockEmbeddings = List.of(1.0f, 2.0f);
+        final EmbeddingVector mockEmbeddings = EmbeddingVector.of(1.0f, 2.0f);
         final List<ChunkedEntry> mockSearchDocuments = List.of(ChunkedEntry.builder()
                 .id("1")
                 .chunk("Sample content")
@@ -152,7 +153,7 @@ class SyncAnswerGenerationFunctionTest {
         final List<MetadataFilter> metadataFilter = List.of(new MetadataFilter("key", "value"));
         AnswerUserQueryRequest payload = new AnswerUserQueryRequest("query", "prompt", metadataFilter);
 
-        final List<Float> mockEmbeddings = List.of(1.0f, 2.0f);
+        final EmbeddingVector mockEmbeddings = EmbeddingVector.of(1.0f, 2.0f);
         final List<ChunkedEntry> mockSearchDocuments = List.of(ChunkedEntry.builder()
                 .id("1").chunk("Sample content").documentFileName("doc file name").pageNumber(5).documentId("doc1 id")
                 .build());
@@ -182,7 +183,7 @@ class SyncAnswerGenerationFunctionTest {
     private List<ChunkedEntry> stubDegradedGeneration() throws SearchServiceException, ChatServiceException {
         final List<MetadataFilter> metadataFilter = List.of(new MetadataFilter("key", "value"));
         final AnswerUserQueryRequest payload = new AnswerUserQueryRequest("query", "prompt", metadataFilter);
-        final List<Float> mockEmbeddings = List.of(1.0f, 2.0f);
+        final EmbeddingVector mockEmbeddings = EmbeddingVector.of(1.0f, 2.0f);
         final List<ChunkedEntry> mockSearchDocuments = List.of(ChunkedEntry.builder()
                 .id("1").chunk("Sample content").documentFileName("doc file name").pageNumber(5).documentId("doc1 id")
                 .build());
@@ -4,25 +4,35 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import uk.gov.moj.cp.ai.client.AISearchClientFactory;
 import uk.gov.moj.cp.ai.index.IndexConstants;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.model.KeyValuePair;
+import uk.gov.moj.cp.ai.service.table.SearchIndexGenerationTableService;
+import uk.gov.moj.cp.ai.service.table.SearchIndexGenerationTableService.Generation;
 import uk.gov.moj.cp.retrieval.exception.SearchServiceException;
 import uk.gov.moj.cp.retrieval.service.filter.DeduplicationService;
 
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import com.azure.search.documents.SearchClient;
 import com.azure.search.documents.models.SearchOptions;
@@ -64,7 +74,7 @@ class AzureAISearchServiceTest {
     @Test
     @DisplayName("Throws exception when userQuery is null or empty")
     void throwsExceptionWhenUserQueryIsNullOrEmpty() {
-        final List<Float> vector = Arrays.asList(1.0f, 2.0f);
+        final EmbeddingVector vector = EmbeddingVector.of(1.0f, 2.0f);
         final List<KeyValuePair> filters = List.of(new KeyValuePair("k", "v"));
         assertThrows(IllegalArgumentException.class, () -> service.search(null, null, vector, filters));
         assertThrows(IllegalArgumentException.class, () -> service.search(null, "", vector, filters));
@@ -75,13 +85,13 @@ class AzureAISearchServiceTest {
     void throwsExceptionWhenVectorizedUserQueryIsNullOrEmpty() {
         final List<KeyValuePair> filters = List.of(new KeyValuePair("k", "v"));
         assertThrows(IllegalArgumentException.class, () -> service.search(null, "query", null, filters));
-        assertThrows(IllegalArgumentException.class, () -> service.search(null, "query", Collections.emptyList(), filters));
+        assertThrows(IllegalArgumentException.class, () -> service.search(null, "query", EmbeddingVector.EMPTY, filters));
     }
 
     @Test
     @DisplayName("Throws exception when metadataFilters is null or empty")
     void throwsExceptionWhenMetadataFiltersIsNullOrEmpty() {
-        final List<Float> vector = Arrays.asList(1.0f, 2.0f);
+        final EmbeddingVector vector = EmbeddingVector.of(1.0f, 2.0f);
         assertThrows(IllegalArgumentException.class, () -> service.search(null, "query", vector, null));
         assertThrows(IllegalArgumentException.class, () -> service.search(null, "query", vector, Collections.emptyList()));
     }
@@ -90,7 +100,7 @@ class AzureAISearchServiceTest {
     @DisplayName("Returns deduplicated results from search")
     void returnsDeduplicatedResultsFromSearch() throws SearchServiceException {
         final String userQuery = "query";
-        final List<Float> vector = Arrays.asList(1.0f, 2.0f);
+        final EmbeddingVector vector = EmbeddingVector.of(1.0f, 2.0f);
         final List<KeyValuePair> filters = List.of(new KeyValuePair("k", "v"));
         final SearchPagedIterable mockPagedIterable = mock(SearchPagedIterable.class);
         final SearchResult mockResult = mock(SearchResult.class);
@@ -104,10 +114,107 @@ class AzureAISearchServiceTest {
         assertEquals("id", result.get(0).id());
     }
 
+    @Test
+    @DisplayName("Returns cached results without querying Azure AI Search")
+    void returnsCachedResultsWithoutSearching() throws SearchServiceException {
+        final SearchResultCache mockCache = mock(SearchResultCache.class);
+        final List<KeyValuePair> filters = List.of(new KeyValuePair("k", "v"));
+        final List<ChunkedEntry> cached = List.of(ChunkedEntry.builder().id("cached").build());
+        when(mockCache.keyFor(indexName, "client-a", null, "query", filters)).thenReturn("key");
+        when(mockCache.get("key")).thenReturn(cached);
+        final AzureAISearchService cachingService = new AzureAISearchService(endpoint, indexName, mockCache);
+
+        final List<ChunkedEntry> result = cachingService.search("client-a", "query", EmbeddingVector.of(1.0f, 2.0f), filters);
+
+        assertSame(cached, result);
+        verify(mockSearchClient, never()).search(anyString(), any(SearchOptions.class), any());
+    }
+
+    @Test
+    @DisplayName("Answers a hot scope from the hot document cache without querying Azure AI Search")
+    void answersHotScopeLocally() throws SearchServiceException {
+        final SearchResultCache mockCache = mock(SearchResultCache.class);
+        final HotDocumentCache mockHotDocumentCache = mock(HotDocumentCache.class);
+        final List<KeyValuePair> filters = List.of(new KeyValuePair("k", "v"));
+        final ChunkedEntry local = ChunkedEntry.builder().id("local").build();
+        when(mockCache.keyFor(indexName, "client-a", null, "query", filters)).thenReturn("key");
+        when(mockCache.get("key")).thenReturn(null);
+        when(mockHotDocumentCache.search(any(), anyString(), any(), anyList(), any())).thenReturn(Optional.of(List.of(local)));
+        final AzureAISearchService hotService = new AzureAISearchService(endpoint, indexName, mockCache, mockHotDocumentCache);
+
+        final List<ChunkedEntry> result = hotService.search("client-a", "query", EmbeddingVector.of(1.0f, 2.0f), filters);
+
+        assertEquals(List.of("local"), result.stream().map(ChunkedEntry::id).toList());
+        verify(mockCache).put("key", result);
+        verify(mockSearchClient, never()).search(anyString(), any(SearchOptions.class), any());
+    }
+
+    @Test
+    @DisplayName("Reads the index generation once and stamps both caches with it")
+    void readsGenerationOnceForBothCaches() throws Exception {
+        final SearchResultCache mockCache = mock(SearchResultCache.class);
+        final HotDocumentCache mockHotDocumentCache = mock(HotDocumentCache.class);
+        final SearchIndexGenerationTableService mockGenerations = mock(SearchIndexGenerationTableService.class);
+        final List<KeyValuePair> filters = List.of(new KeyValuePair("k", "v"));
+        when(mockGenerations.currentGeneration("client-a")).thenReturn(new Generation(4L, Instant.now().minusSeconds(60)));
+        when(mockCache.keyFor(indexName, "client-a", 4L, "query", filters)).thenReturn("key");
+        when(mockCache.get("key")).thenReturn(null);
+        when(mockHotDocumentCache.search(any(), anyString(), any(), anyList(), any()))
+                .thenReturn(Optional.of(List.of(ChunkedEntry.builder().id("local").build())));
+        final AzureAISearchService hotService = new AzureAISearchService(endpoint, indexName, mockCache,
+                mockHotDocumentCache, mockGenerations);
+
+        final List<ChunkedEntry> result = hotService.search("client-a", "query", EmbeddingVector.of(1.0f, 2.0f), filters);
+
+        verify(mockGenerations).currentGeneration("client-a");
+        verify(mockHotDocumentCache).search(any(), eq("client-a"), eq(4L), eq(filters), any());
+        verify(mockCache).put("key", result);
+    }
+
+    @Test
+    @DisplayName("Bypasses both caches while the latest index write may not be searchable yet")
+    void bypassesCachesWithinRefreshDelay() throws Exception {
+        final SearchResultCache mockCache = mock(SearchResultCache.class);
+        final HotDocumentCache mockHotDocumentCache = mock(HotDocumentCache.class);
+        final SearchIndexGenerationTableService mockGenerations = mock(SearchIndexGenerationTableService.class);
+        final List<KeyValuePair> filters = List.of(new KeyValuePair("k", "v"));
+        when(mockGenerations.currentGeneration("client-a")).thenReturn(new Generation(4L, Instant.now()));
+        when(mockCache.get(null)).thenReturn(null);
+        when(mockHotDocumentCache.search(any(), anyString(), any(), anyList(), any()))
+                .thenReturn(Optional.of(List.of(ChunkedEntry.builder().id("local").build())));
+        final AzureAISearchService hotService = new AzureAISearchService(endpoint, indexName, mockCache,
+                mockHotDocumentCache, mockGenerations);
+
+        hotService.search("client-a", "query", EmbeddingVector.of(1.0f, 2.0f), filters);
+
+        verify(mockCache).keyFor(indexName, "client-a", null, "query", filters);
+        verify(mockHotDocumentCache).search(any(), eq("client-a"), isNull(), eq(filters), any());
+    }
+
+    @Test
+    @DisplayName("Caches refined results on a cache miss")
+    void cachesRefinedResultsOnMiss() throws SearchServiceException {
+        final SearchResultCache mockCache = mock(SearchResultCache.class);
+        final List<KeyValuePair> filters = List.of(new KeyValuePair("k", "v"));
+        when(mockCache.keyFor(indexName, null, null, "query", filters)).thenReturn("key");
+        when(mockCache.get("key")).thenReturn(null);
+        final SearchPagedIterable mockPagedIterable = mock(SearchPagedIterable.class);
+        final SearchResult mockResult = mock(SearchResult.class);
+        when(mockPagedIterable.iterator()).thenReturn(List.of(mockResult).iterator());
+        when(mockResult.getDocument(ChunkedEntry.class)).thenReturn(ChunkedEntry.builder().id("id").build());
+        when(mockSearchClient.search(anyString(), any(SearchOptions.class), any())).thenReturn(mockPagedIterable);
+        final AzureAISearchService cachingService = new AzureAISearchService(endpoint, indexName, mockCache);
+
+        final List<ChunkedEntry> result = cachingService.search(null, "query", EmbeddingVector.of(1.0f, 2.0f), filters);
+
+        verify(mockCache).put("key", result);
+        assertEquals("id", result.get(0).id());
+    }
+
     @Test
     @DisplayName("Throws SearchServiceException on search client failure")
     void throwsSearchServiceExceptionOnSearchClientFailure() {
-        final List<Float> vector = Arrays.asList(1.0f, 2.0f);
+        final EmbeddingVector vector = EmbeddingVector.of(1.0f, 2.0f);
         final List<KeyValuePair> filters = List.of(new KeyValuePair("k", "v"));
         when(mockSearchClient.search(anyString(), any(SearchOptions.class), any())).thenThrow(new RuntimeException("fail"));
         assertThrows(SearchServiceException.class, () -> service.search(null, "query", vector, filters));
@@ -297,7 +404,7 @@ class AzureAISearchServiceTest {
     @Test
     @DisplayName("search applies the client-scoping clause to the query filter")
     void search_appliesClientScopingClauseToQueryFilter() throws SearchServiceException {
-        final List<Float> vector = Arrays.asList(1.0f, 2.0f);
+        final EmbeddingVector vector = EmbeddingVector.of(1.0f, 2.0f);
         final List<KeyValuePair> filters = List.of(new KeyValuePair("k", "v"));
         final SearchPagedIterable mockPagedIterable = mock(SearchPagedIterable.class);
         when(mockPagedIterable.iterator()).thenReturn(Collections.<SearchResult>emptyList().iterator());
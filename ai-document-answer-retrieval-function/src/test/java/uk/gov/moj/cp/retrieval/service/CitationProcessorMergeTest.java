@@ -191,4 +191,31 @@ class CitationProcessorMergeTest {
         assertEquals("The evidence spans the bundle "
                 + "::(Source: [case.pdf], Pages 10-13|10,11,12,13|documentId=doc123).", result);
     }
+
+    @Test
+    void driftFormsAndRuns_AreSubstitutedInOnePass() {
+        String raw = "Arrested [Source 1], charged [^2], remanded [1 p.10][2] and bailed [2][1]. <FACT_MAP_JSON>["
+                + entry(1, "case.pdf", "10", "doc123") + "," + entry(2, "case.pdf", "12", "doc123")
+                + "]</FACT_MAP_JSON>";
+
+        String result = citationProcessor.processAndFormatCitations(raw);
+
+        assertEquals("Arrested ::(Source: [case.pdf], Pages 10|10|documentId=doc123), "
+                + "charged ::(Source: [case.pdf], Pages 12|12|documentId=doc123), "
+                + "remanded ::(Source: [case.pdf], Pages 10|10|documentId=doc123)"
+                + "::(Source: [case.pdf], Pages 12|12|documentId=doc123) "
+                + "and bailed ::(Source: [case.pdf], Pages 10,12|10,12|documentId=doc123).", result);
+    }
+
+    @Test
+    void renderedCitation_IsNotRescannedForPlaceholders() {
+        String raw = "The order was made [1] and later varied [2]. <FACT_MAP_JSON>["
+                + entry(1, "Ref 2", "3", "docA") + "," + entry(2, "variation.pdf", "9", "docB")
+                + "]</FACT_MAP_JSON>";
+
+        String result = citationProcessor.processAndFormatCitations(raw);
+
+        assertEquals("The order was made ::(Source: [Ref 2], Pages 3|3|documentId=docA) "
+                + "and later varied ::(Source: [variation.pdf], Pages 9|9|documentId=docB).", result);
+    }
 }
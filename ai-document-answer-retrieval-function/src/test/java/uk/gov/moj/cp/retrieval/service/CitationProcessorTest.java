@@ -1,10 +1,17 @@
 package uk.gov.moj.cp.retrieval.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.when;
 
+import uk.gov.moj.cp.retrieval.model.StructuredAnswer;
+import uk.gov.moj.cp.retrieval.service.CitationProcessor.CitationOutcome;
+
+import java.util.List;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -55,4 +62,30 @@ class CitationProcessorTest {
         String result = citationProcessor.processAndFormatCitations(null);
         assertEquals("", result);
     }
+
+    @Test
+    void processStructuredAnswer_RendersTypedCitations_AndStripsIdsWithoutAnEntry() {
+        final StructuredAnswer answer = new StructuredAnswer("Charged [1] and bailed [1, 2] but not [3].", List.of(
+                new StructuredAnswer.Citation("1", "doc123", "file.pdf", "10,11", "10-11"),
+                new StructuredAnswer.Citation("2", "doc123", "file.pdf", "13", "13")));
+
+        final CitationOutcome outcome = citationProcessor.processStructuredAnswer(answer);
+
+        assertEquals("Charged ::(Source: [file.pdf], Pages 10-11|10,11|documentId=doc123) and bailed "
+                + "::(Source: [file.pdf], Pages 10,11,13|10,11,13|documentId=doc123) but not .", outcome.formattedText());
+        assertEquals(4, outcome.inlineMarkers());
+        assertEquals(2, outcome.renderedCitations());
+        assertEquals(1, outcome.strippedMarkers());
+        assertFalse(outcome.emptyFactMap());
+    }
+
+    @Test
+    void processStructuredAnswer_ReportsAnEmptyCitationList() {
+        final CitationOutcome outcome = citationProcessor.processStructuredAnswer(
+                new StructuredAnswer("Charged [1].", List.of()));
+
+        assertEquals("Charged .", outcome.formattedText());
+        assertTrue(outcome.emptyFactMap());
+        assertEquals(0, outcome.renderedCitations());
+    }
 }
@@ -0,0 +1,124 @@
+package uk.gov.moj.cp.retrieval.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import uk.gov.moj.cp.ai.exception.ChatServiceException;
+import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.service.ChatService;
+import uk.gov.moj.cp.retrieval.service.CitationRepairService.RepairedAnswer;
+
+import java.util.List;
+import java.util.Optional;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongCounterBuilder;
+import io.opentelemetry.api.metrics.Meter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class CitationRepairServiceTest {
+
+    private static final List<ChunkedEntry> SOURCES = List.of(
+            ChunkedEntry.builder().id("1").documentId("docA").documentFileName("case.pdf").pageNumber(4)
+                    .chunk("The defendant\nwas charged with assault on 3 May.").build(),
+            ChunkedEntry.builder().id("2").documentId("docA").documentFileName("case.pdf").pageNumber(4)
+                    .chunk("A second chunk of the same page.").build(),
+            ChunkedEntry.builder().id("3").documentId("docB").documentFileName("bail.pdf").pageNumber(1)
+                    .chunk("Bail was refused.").build());
+
+    private ChatService chatServiceMock;
+    private LongCounter counterMock;
+    private CitationRepairService repairService;
+
+    @BeforeEach
+    void setUp() {
+        final Meter meterMock = mock(Meter.class);
+        final LongCounterBuilder builderMock = mock(LongCounterBuilder.class);
+        counterMock = mock(LongCounter.class);
+        when(meterMock.counterBuilder(anyString())).thenReturn(builderMock);
+        when(builderMock.setDescription(anyString())).thenReturn(builderMock);
+        when(builderMock.setUnit(anyString())).thenReturn(builderMock);
+        when(builderMock.build()).thenReturn(counterMock);
+
+        chatServiceMock = mock(ChatService.class);
+        repairService = new CitationRepairService(chatServiceMock, new CitationProcessor(), 20, meterMock);
+    }
+
+    @Test
+    @DisplayName("sends only the narrative and the source index, and appends the returned block")
+    void repairsFromTheNarrativeAndSourceIndex() throws ChatServiceException {
+        when(chatServiceMock.callModel(eq(CitationRepairService.REPAIR_SYSTEM_PROMPT), anyString(), eq(String.class)))
+                .thenReturn(Optional.of("""
+                        [{"citationId":"1","documentId":"docA","documentFilename":"case.pdf",\
+                        "individualPageNumbers":"4","pageNumbers":"4"}]"""));
+
+        final Optional<RepairedAnswer> repaired = repairService.repair(
+                "He was charged [Source 1]. <FACT_MAP_JSON>[{\"citationId\":\"1\",\"docu", SOURCES);
+
+        assertTrue(repaired.isPresent());
+        assertEquals("He was charged ::(Source: [case.pdf], Pages 4|4|documentId=docA).",
+                repaired.get().outcome().formattedText());
+        final ArgumentCaptor<String> userInstruction = ArgumentCaptor.forClass(String.class);
+        verify(chatServiceMock).callModel(anyString(), userInstruction.capture(), eq(String.class));
+        assertEquals("""
+                ANSWER:
+                He was charged [1].
+
+                SOURCES:
+                docA | case.pdf | 4 | The defendant was ch…
+                docB | bail.pdf | 1 | Bail was refused.""", userInstruction.getValue());
+        verify(counterMock).add(1, outcome("repaired"));
+    }
+
+    @Test
+    @DisplayName("accepts a returned array wrapped in the block tags")
+    void acceptsTaggedPayload() throws ChatServiceException {
+        when(chatServiceMock.callModel(anyString(), anyString(), eq(String.class)))
+                .thenReturn(Optional.of("<FACT_MAP_JSON>[{\"citationId\":\"1\",\"documentId\":\"docB\","
+                        + "\"documentFilename\":\"bail.pdf\",\"individualPageNumbers\":\"1\",\"pageNumbers\":\"1\"}]"
+                        + "</FACT_MAP_JSON>"));
+
+        final Optional<RepairedAnswer> repaired = repairService.repair("Bail was refused [1].", SOURCES);
+
+        assertEquals("Bail was refused ::(Source: [bail.pdf], Pages 1|1|documentId=docB).",
+                repaired.orElseThrow().outcome().formattedText());
+    }
+
+    @Test
+    @DisplayName("skips an answer without placeholders, as there is nothing to map")
+    void skipsAnswerWithoutPlaceholders() {
+        assertFalse(repairService.repair("He was charged.", SOURCES).isPresent());
+
+        verifyNoInteractions(chatServiceMock);
+        verify(counterMock).add(1, outcome("skipped"));
+    }
+
+    @Test
+    @DisplayName("reports a failed call or an unusable block as no repair")
+    void reportsFailureAsEmpty() throws ChatServiceException {
+        when(chatServiceMock.callModel(anyString(), anyString(), eq(String.class)))
+                .thenThrow(new ChatServiceException("LLM produced an empty response."))
+                .thenReturn(Optional.of("not json"));
+
+        assertFalse(repairService.repair("He was charged [1].", SOURCES).isPresent());
+        assertFalse(repairService.repair("He was charged [1].", SOURCES).isPresent());
+        verify(counterMock, times(2)).add(1, outcome("failed"));
+    }
+
+    private static Attributes outcome(final String value) {
+        return Attributes.of(AttributeKey.stringKey("outcome"), value);
+    }
+}
@@ -6,11 +6,16 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import uk.gov.moj.cp.ai.exception.EmbeddingServiceException;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.service.EmbeddingService;
 
-import java.util.List;
-
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 class EmbedDataServiceTest {
@@ -18,6 +23,9 @@ class EmbedDataServiceTest {
     @Mock
     private EmbeddingService mockEmbeddingService;
 
+    @Mock
+    private QueryEmbeddingCache mockQueryEmbeddingCache;
+
     private EmbedDataService embedDataService;
 
     @BeforeEach
@@ -28,27 +36,27 @@ class EmbedDataServiceTest {
 
     @Test
     void getEmbedding_ReturnsEmbeddings_WhenDataIsValid() throws EmbeddingServiceException {
-        when(mockEmbeddingService.embedData("valid data")).thenReturn(List.of(0.1f, 0.2f, 0.3f));
+        when(mockEmbeddingService.embedData("valid data")).thenReturn(EmbeddingVector.of(0.1f, 0.2f, 0.3f));
 
-        List<Float> embeddings = embedDataService.getEmbedding("valid data");
+        EmbeddingVector embeddings = embedDataService.getEmbedding("valid data");
 
-        assertEquals(List.of(0.1f, 0.2f, 0.3f), embeddings);
+        assertEquals(EmbeddingVector.of(0.1f, 0.2f, 0.3f), embeddings);
     }
 
     @Test
     void getEmbedding_ReturnsEmptyEmbeddings_WhenEmbeddingsAreNull() throws EmbeddingServiceException {
         when(mockEmbeddingService.embedData("data")).thenReturn(null);
 
-        final List<Float> embeddings = embedDataService.getEmbedding("data");
+        final EmbeddingVector embeddings = embedDataService.getEmbedding("data");
 
         assertEquals(0, embeddings.size());
     }
 
     @Test
     void getEmbedding_ReturnsEmptyEmbeddings_WhenEmbeddingsAreEmpty() throws EmbeddingServiceException {
-        when(mockEmbeddingService.embedData("data")).thenReturn(List.of());
+        when(mockEmbeddingService.embedData("data")).thenReturn(EmbeddingVector.EMPTY);
 
-        final List<Float> embeddings = embedDataService.getEmbedding("data");
+        final EmbeddingVector embeddings = embedDataService.getEmbedding("data");
 
         assertEquals(0, embeddings.size());
     }
@@ -57,8 +65,38 @@ class EmbedDataServiceTest {
     void getEmbedding_ReturnsEmptyEmbeddings_WhenEmbeddingServiceThrowsException() throws EmbeddingServiceException {
         when(mockEmbeddingService.embedData("data")).thenThrow(EmbeddingServiceException.class);
 
-        final List<Float> embeddings = embedDataService.getEmbedding("data");
+        final EmbeddingVector embeddings = embedDataService.getEmbedding("data");
 
         assertEquals(0, embeddings.size());
     }
+
+    @Test
+    void getEmbedding_ReturnsCachedEmbedding_WithoutCallingEmbeddingService() {
+        final EmbeddingVector cached = EmbeddingVector.of(0.4f, 0.5f);
+        when(mockQueryEmbeddingCache.get("deployment", "query")).thenReturn(cached);
+        embedDataService = new EmbedDataService(mockEmbeddingService, mockQueryEmbeddingCache, "deployment");
+
+        assertSame(cached, embedDataService.getEmbedding("query"));
+        verifyNoInteractions(mockEmbeddingService);
+        verify(mockQueryEmbeddingCache, never()).put(anyString(), anyString(), any());
+    }
+
+    @Test
+    void getEmbedding_CachesFreshEmbedding_OnCacheMiss() throws EmbeddingServiceException {
+        final EmbeddingVector fresh = EmbeddingVector.of(0.1f, 0.2f);
+        when(mockEmbeddingService.embedData("query")).thenReturn(fresh);
+        embedDataService = new EmbedDataService(mockEmbeddingService, mockQueryEmbeddingCache, "deployment");
+
+        assertEquals(fresh, embedDataService.getEmbedding("query"));
+        verify(mockQueryEmbeddingCache).put("deployment", "query", fresh);
+    }
+
+    @Test
+    void getEmbedding_DoesNotCacheEmptyEmbedding() throws EmbeddingServiceException {
+        when(mockEmbeddingService.embedData("query")).thenReturn(EmbeddingVector.EMPTY);
+        embedDataService = new EmbedDataService(mockEmbeddingService, mockQueryEmbeddingCache, "deployment");
+
+        assertEquals(0, embedDataService.getEmbedding("query").size());
+        verify(mockQueryEmbeddingCache, never()).put(anyString(), anyString(), any());
+    }
 }
@@ -0,0 +1,97 @@
+package uk.gov.moj.cp.retrieval.service;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import uk.gov.moj.cp.retrieval.exception.GenerationAbortedException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class GenerationWatchdogTest {
+
+    private GenerationWatchdog watchdog;
+
+    @BeforeEach
+    void setUp() {
+        watchdog = new GenerationWatchdog(new GenerationWatchdog.Settings(4, 3));
+    }
+
+    @Test
+    @DisplayName("aborts a counter loop once the run of adjacent markers is too long")
+    void abortsCounterLoop() {
+        watchdog.accept("The defendant was charged ");
+        for (int i = 1; i <= GenerationWatchdog.MAX_MARKER_RUN; i++) {
+            watchdog.accept("[" + i + "]" + (i % 2 == 0 ? ", " : ""));
+        }
+
+        final GenerationAbortedException thrown = assertThrows(GenerationAbortedException.class,
+                () -> watchdog.accept("[21]"));
+
+        assertTrue(thrown.getMessage().contains("21 adjacent bare [N] markers"), thrown.getMessage());
+        assertTrue(watchdog.text().endsWith("[20], [21]"));
+    }
+
+    @Test
+    @DisplayName("counts a marker split across deltas once")
+    void countsSplitMarkerOnce() {
+        for (int i = 1; i < GenerationWatchdog.MAX_MARKER_RUN; i++) {
+            watchdog.accept("[" + i + "]");
+        }
+        watchdog.accept("[2");
+        watchdog.accept("0]");
+        watchdog.accept("[2");
+
+        assertThrows(GenerationAbortedException.class, () -> watchdog.accept("1]"));
+    }
+
+    @Test
+    @DisplayName("accepts a long answer citing far more than the catastrophic marker count")
+    void acceptsHeavilyCitedAnswer() {
+        final GenerationWatchdog defaults = new GenerationWatchdog(new GenerationWatchdog.Settings(12, 4));
+
+        assertDoesNotThrow(() -> {
+            for (int i = 1; i <= 3 * CitationProcessor.CATASTROPHIC_BRACKET_THRESHOLD; i++) {
+                defaults.accept("Finding number " + i + " of the court is recorded [" + (i % 12 + 1) + "][" + (i % 7 + 1) + "]. ");
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("aborts a repetition loop, including a word run split across deltas")
+    void abortsRepetitionLoop() {
+        watchdog.accept("The court refused bail. The court refused bail. The co");
+
+        assertThrows(GenerationAbortedException.class, () -> watchdog.accept("urt refused bail. Next"));
+    }
+
+    @Test
+    @DisplayName("ignores repetition inside the citation block")
+    void ignoresTheCitationBlock() {
+        watchdog.accept("Bail was refused [1]. <FACT_");
+
+        assertDoesNotThrow(() -> {
+            watchdog.accept("MAP_JSON>[");
+            for (int i = 1; i <= 200; i++) {
+                watchdog.accept("{\"citationId\": \"" + i + "\", \"documentFilename\": \"case.pdf\"} [" + i + "] ");
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("accepts an ordinary cited answer")
+    void acceptsOrdinaryAnswer() {
+        final String answer = "The defendant was charged with assault [1]. Bail was refused [2], and the court "
+                + "listed the trial for March [1][3]. The defence applied to adjourn [4].";
+
+        assertDoesNotThrow(() -> {
+            for (final String word : answer.split("(?<= )")) {
+                watchdog.accept(word);
+            }
+        });
+        assertEquals(answer, watchdog.text());
+    }
+}
@@ -0,0 +1,140 @@
+package uk.gov.moj.cp.retrieval.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CHUNK;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CHUNK_VECTOR;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CUSTOM_METADATA;
+import static uk.gov.moj.cp.ai.index.IndexConstants.DOCUMENT_ID;
+import static uk.gov.moj.cp.ai.index.IndexConstants.ID;
+
+import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+import uk.gov.moj.cp.ai.model.KeyValuePair;
+import uk.gov.moj.cp.ai.search.SearchRequest;
+import uk.gov.moj.cp.ai.search.local.LocalSearchBackend;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongCounterBuilder;
+import io.opentelemetry.api.metrics.Meter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class HotDocumentCacheTest {
+
+    private static final List<KeyValuePair> FILTERS = List.of(new KeyValuePair(DOCUMENT_ID, "doc1"));
+    private static final SearchRequest REQUEST = new SearchRequest("bail", EmbeddingVector.of(1f, 0f),
+            CHUNK_VECTOR, 10, "customMetadata/any(m: m/key eq 'documentId' and m/value eq 'doc1')",
+            List.of(ID, CHUNK, CUSTOM_METADATA, CHUNK_VECTOR), 10);
+
+    private LongCounter counterMock;
+    private Meter meterMock;
+    private LocalSearchBackend remote;
+
+    @BeforeEach
+    void setUp() {
+        meterMock = mock(Meter.class);
+        final LongCounterBuilder builderMock = mock(LongCounterBuilder.class);
+        counterMock = mock(LongCounter.class);
+        when(meterMock.counterBuilder(anyString())).thenReturn(builderMock);
+        when(builderMock.setDescription(anyString())).thenReturn(builderMock);
+        when(builderMock.setUnit(anyString())).thenReturn(builderMock);
+        when(builderMock.build()).thenReturn(counterMock);
+
+        remote = spy(new LocalSearchBackend("remote-index"));
+        remote.upload(List.of(
+                chunk("1", "doc1", "Bail was refused.", 1f, 0f),
+                chunk("2", "doc1", "The hearing was adjourned.", 0f, 1f),
+                chunk("3", "doc2", "Bail was granted.", 1f, 0f)));
+    }
+
+    @Test
+    @DisplayName("loads a scope on its second query in one fetch and answers later queries locally")
+    void loadsHotScopeAndAnswersLocally() {
+        final HotDocumentCache cache = new HotDocumentCache(4, Duration.ofMinutes(10), 100, 2, true, meterMock);
+
+        assertFalse(cache.search(remote, "client-a", 1L, FILTERS, REQUEST).isPresent());
+        final List<ChunkedEntry> loaded = cache.search(remote, "client-a", 1L, FILTERS, REQUEST).orElseThrow();
+        final List<ChunkedEntry> hit = cache.search(remote, "client-a", 1L, FILTERS, REQUEST).orElseThrow();
+
+        verify(remote).search(any(SearchRequest.class), eq(ChunkedEntry.class));
+        verify(counterMock).add(1, outcome("miss"));
+        verify(counterMock).add(1, outcome("load"));
+        verify(counterMock).add(1, outcome("hit"));
+        assertEquals(List.of("1", "2"), loaded.stream().map(ChunkedEntry::id).toList());
+        assertEquals(EmbeddingVector.of(1f, 0f), hit.get(0).chunkVector());
+        assertEquals(remote.search(REQUEST, ChunkedEntry.class), hit);
+    }
+
+    @Test
+    @DisplayName("reloads a scope once ingestion has bumped the client's generation")
+    void reloadsAfterGenerationBump() {
+        final HotDocumentCache cache = new HotDocumentCache(4, Duration.ofMinutes(10), 100, 1, true, meterMock);
+
+        cache.search(remote, "client-a", 1L, FILTERS, REQUEST);
+        cache.search(remote, "client-a", 1L, FILTERS, REQUEST);
+        cache.search(remote, "client-a", 2L, FILTERS, REQUEST);
+
+        verify(counterMock, times(2)).add(1, outcome("load"));
+        verify(counterMock).add(1, outcome("hit"));
+    }
+
+    @Test
+    @DisplayName("remembers a scope too large to hold and leaves it to the remote search")
+    void leavesOversizedScopeRemote() {
+        final HotDocumentCache cache = new HotDocumentCache(4, Duration.ofMinutes(10), 1, 1, true, meterMock);
+
+        assertFalse(cache.search(remote, "client-a", 1L, FILTERS, REQUEST).isPresent());
+        assertFalse(cache.search(remote, "client-a", 1L, FILTERS, REQUEST).isPresent());
+
+        verify(remote).search(any(SearchRequest.class), eq(ChunkedEntry.class));
+        verify(counterMock, times(2)).add(1, outcome("oversize"));
+    }
+
+    @Test
+    @DisplayName("is bypassed when disabled or without a generation")
+    void bypassesWithoutGeneration() {
+        final HotDocumentCache disabled = new HotDocumentCache(4, Duration.ofMinutes(10), 100, 1, false, meterMock);
+        assertEquals(Optional.empty(), disabled.search(remote, "client-a", 1L, FILTERS, REQUEST));
+
+        final HotDocumentCache cache = new HotDocumentCache(4, Duration.ofMinutes(10), 100, 1, true, meterMock);
+        assertTrue(cache.search(remote, "client-a", null, FILTERS, REQUEST).isEmpty());
+
+        verify(counterMock).add(1, outcome("bypass"));
+        verify(remote, never()).search(any(SearchRequest.class), eq(ChunkedEntry.class));
+    }
+
+    private static Map<String, Object> chunk(final String id, final String documentId, final String text,
+                                             final float... vector) {
+        final Map<String, Object> document = new HashMap<>();
+        document.put(ID, id);
+        document.put(DOCUMENT_ID, documentId);
+        document.put(CHUNK, text);
+        document.put(CHUNK_VECTOR, EmbeddingVector.of(vector));
+        document.put(CUSTOM_METADATA, List.of(new KeyValuePair(DOCUMENT_ID, documentId)));
+        return document;
+    }
+
+    private static Attributes outcome(final String value) {
+        return Attributes.of(AttributeKey.stringKey("outcome"), value);
+    }
+}
@@ -0,0 +1,148 @@
+package uk.gov.moj.cp.retrieval.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import uk.gov.moj.cp.ai.cache.LruCache;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+import uk.gov.moj.cp.ai.service.BlobClientService;
+
+import java.time.Duration;
+
+import com.azure.core.util.BinaryData;
+import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.models.BlobStorageException;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongCounterBuilder;
+import io.opentelemetry.api.metrics.Meter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class QueryEmbeddingCacheTest {
+
+    private static final EmbeddingVector VECTOR = EmbeddingVector.of(0.1f, 0.2f, 0.3f);
+
+    private Meter meterMock;
+    private LongCounter counterMock;
+    private BlobClientService blobClientServiceMock;
+    private BlobClient blobClientMock;
+
+    @BeforeEach
+    void setUp() {
+        meterMock = mock(Meter.class);
+        final LongCounterBuilder builderMock = mock(LongCounterBuilder.class);
+        counterMock = mock(LongCounter.class);
+        when(meterMock.counterBuilder(anyString())).thenReturn(builderMock);
+        when(builderMock.setDescription(anyString())).thenReturn(builderMock);
+        when(builderMock.setUnit(anyString())).thenReturn(builderMock);
+        when(builderMock.build()).thenReturn(counterMock);
+
+        blobClientServiceMock = mock(BlobClientService.class);
+        blobClientMock = mock(BlobClient.class);
+        when(blobClientServiceMock.getBlobClient(anyString())).thenReturn(blobClientMock);
+    }
+
+    @Test
+    @DisplayName("returns a stored embedding for the same query after whitespace normalisation")
+    void shouldHitMemoryForNormalisedQuery() {
+        final QueryEmbeddingCache cache = memoryOnlyCache();
+        cache.put("deployment", "What is  the\tcharge?", VECTOR);
+
+        assertSame(VECTOR, cache.get("deployment", "  What is the charge? "));
+        verify(counterMock).add(1, outcome("memory_hit"));
+    }
+
+    @Test
+    @DisplayName("keeps case and deployment as part of the key")
+    void shouldSeparateByCaseAndDeployment() {
+        final QueryEmbeddingCache cache = memoryOnlyCache();
+        cache.put("deployment", "What is the charge?", VECTOR);
+
+        assertNull(cache.get("deployment", "what is the charge?"));
+        assertNull(cache.get("other-deployment", "What is the charge?"));
+        assertNotEquals(QueryEmbeddingCache.blobName(QueryEmbeddingCache.cacheKey("a", "q")),
+                QueryEmbeddingCache.blobName(QueryEmbeddingCache.cacheKey("b", "q")));
+    }
+
+    @Test
+    @DisplayName("reads through to the blob tier on a memory miss and promotes the entry")
+    void shouldReadThroughBlobTier() {
+        when(blobClientMock.downloadContent()).thenReturn(BinaryData.fromBytes(VECTOR.toBytes()));
+        final QueryEmbeddingCache cache = blobBackedCache();
+
+        assertEquals(VECTOR, cache.get("deployment", "query"));
+        assertEquals(VECTOR, cache.get("deployment", "query"));
+
+        verify(blobClientMock).downloadContent();
+        verify(counterMock).add(1, outcome("blob_hit"));
+        verify(counterMock).add(1, outcome("memory_hit"));
+    }
+
+    @Test
+    @DisplayName("writes new embeddings to the blob tier in binary form")
+    void shouldWriteThroughBlobTier() {
+        final QueryEmbeddingCache cache = blobBackedCache();
+
+        cache.put("deployment", "query", VECTOR);
+
+        final ArgumentCaptor<BinaryData> payload = ArgumentCaptor.forClass(BinaryData.class);
+        verify(blobClientMock).upload(payload.capture(), eq(true));
+        assertEquals(VECTOR, EmbeddingVector.fromBytes(payload.getValue().toBytes()));
+        verify(blobClientServiceMock).getBlobClient(QueryEmbeddingCache.blobName(QueryEmbeddingCache.cacheKey("deployment", "query")));
+    }
+
+    @Test
+    @DisplayName("treats blob tier failures as a miss and never throws")
+    void shouldTolerateBlobFailures() {
+        final BlobStorageException notFound = mock(BlobStorageException.class);
+        when(notFound.getStatusCode()).thenReturn(404);
+        when(blobClientMock.downloadContent()).thenThrow(notFound);
+        doThrow(new RuntimeException("unavailable")).when(blobClientMock).upload(any(BinaryData.class), eq(true));
+        final QueryEmbeddingCache cache = blobBackedCache();
+
+        assertNull(cache.get("deployment", "query"));
+        verify(counterMock).add(1, outcome("miss"));
+
+        cache.put("deployment", "query", VECTOR);
+        assertSame(VECTOR, cache.get("deployment", "query"));
+    }
+
+    @Test
+    @DisplayName("does nothing when disabled and never caches empty embeddings")
+    void shouldSkipWhenDisabledOrEmpty() {
+        final QueryEmbeddingCache disabled = new QueryEmbeddingCache(false, new LruCache<>(10, null), blobClientServiceMock, meterMock);
+        disabled.put("deployment", "query", VECTOR);
+        assertNull(disabled.get("deployment", "query"));
+        verifyNoInteractions(blobClientServiceMock, counterMock);
+
+        final QueryEmbeddingCache cache = memoryOnlyCache();
+        cache.put("deployment", "query", EmbeddingVector.EMPTY);
+        assertNull(cache.get("deployment", "query"));
+    }
+
+    private QueryEmbeddingCache memoryOnlyCache() {
+        return new QueryEmbeddingCache(true, new LruCache<>(10, Duration.ofMinutes(5)), null, meterMock);
+    }
+
+    private QueryEmbeddingCache blobBackedCache() {
+        return new QueryEmbeddingCache(true, new LruCache<>(10, Duration.ofMinutes(5)), blobClientServiceMock, meterMock);
+    }
+
+    private static Attributes outcome(final String value) {
+        return Attributes.of(AttributeKey.stringKey("outcome"), value);
+    }
+}
@@ -20,16 +20,20 @@ import static uk.gov.moj.cp.retrieval.service.ResponseGenerationService.LLM_RESP
 
 import uk.gov.moj.cp.ai.exception.ChatServiceException;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.ResponseSchema;
 import uk.gov.moj.cp.ai.service.ChatService;
 import uk.gov.moj.cp.ai.util.ChunkFormatterUtility;
+import uk.gov.moj.cp.ai.util.ChunkFormatterUtility.PackedContext;
 import uk.gov.moj.cp.retrieval.exception.CitationDegradedException;
 import uk.gov.moj.cp.retrieval.model.CitationGuardMode;
 import uk.gov.moj.cp.retrieval.model.LlmResponse;
+import uk.gov.moj.cp.retrieval.model.StructuredAnswer;
 import uk.gov.moj.cp.retrieval.service.CitationProcessor.CitationOutcome;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import com.azure.core.exception.HttpResponseException;
 import com.azure.core.http.HttpResponse;
@@ -66,6 +70,10 @@ class ResponseGenerationServiceTest {
         return new CitationOutcome(formatted, false, false, 3, 0, 3);
     }
 
+    private PackedContext packed(final List<ChunkedEntry> chunkedEntries) {
+        return new PackedContext(mockFormattedChunk, chunkedEntries, 42);
+    }
+
     private ResponseGenerationService serviceWithGuard(final CitationGuardMode mode) {
         return new ResponseGenerationService(mockChatService, citationProcessor, chunkFormatterUtility,
                 userInstructionService, mockSystemPromptTemplate, mode);
@@ -96,7 +104,7 @@ class ResponseGenerationServiceTest {
 
 
         when(citationProcessor.processCitations(mockRawLlmResponse)).thenReturn(citedOutcome(mockFormattedLlmResponse));
-        when(chunkFormatterUtility.buildChunkContext(chunkedEntries)).thenReturn(mockFormattedChunk);
+        when(chunkFormatterUtility.packChunkContext(chunkedEntries)).thenReturn(packed(chunkedEntries));
         when(userInstructionService.buildUserInstruction(userQuery, userQueryPrompt, mockFormattedChunk)).thenReturn(mockUserInstructions);
         when(mockChatService.callModel(eq(mockSystemPromptTemplate), eq(mockUserInstructions), eq(String.class)))
                 .thenReturn(Optional.of(mockRawLlmResponse));
@@ -107,7 +115,7 @@ class ResponseGenerationServiceTest {
         assertEquals(mockRawLlmResponse, result.rawLlmResponse());
         assertEquals(ANSWER_GENERATED, result.status());
         verify(citationProcessor).processCitations(mockRawLlmResponse);
-        verify(chunkFormatterUtility).buildChunkContext(chunkedEntries);
+        verify(chunkFormatterUtility).packChunkContext(chunkedEntries);
         verify(userInstructionService).buildUserInstruction(userQuery, userQueryPrompt, mockFormattedChunk);
         verify(mockChatService).callModel(eq(mockSystemPromptTemplate), eq(mockUserInstructions), eq(String.class));
     }
@@ -126,7 +134,7 @@ class ResponseGenerationServiceTest {
                         .build()
         );
 
-        when(chunkFormatterUtility.buildChunkContext(chunkedEntries)).thenReturn(mockFormattedChunk);
+        when(chunkFormatterUtility.packChunkContext(chunkedEntries)).thenReturn(packed(chunkedEntries));
         when(userInstructionService.buildUserInstruction(userQuery, userQueryPrompt, mockFormattedChunk)).thenReturn(mockUserInstructions);
         when(mockChatService.callModel(eq(mockSystemPromptTemplate), eq(mockUserInstructions), eq(String.class)))
                 .thenReturn(Optional.empty());
@@ -140,7 +148,7 @@ class ResponseGenerationServiceTest {
         // Single attempt: retries are the callers' concern (queue redelivery on the async path).
         verify(mockChatService, times(1)).callModel(eq(mockSystemPromptTemplate), eq(mockUserInstructions), eq(String.class));
         verify(citationProcessor, never()).processCitations(any());
-        verify(chunkFormatterUtility).buildChunkContext(chunkedEntries);
+        verify(chunkFormatterUtility).packChunkContext(chunkedEntries);
         verify(userInstructionService).buildUserInstruction(userQuery, userQueryPrompt, mockFormattedChunk);
     }
 
@@ -158,7 +166,7 @@ class ResponseGenerationServiceTest {
                         .build()
         );
 
-        when(chunkFormatterUtility.buildChunkContext(chunkedEntries)).thenReturn(mockFormattedChunk);
+        when(chunkFormatterUtility.packChunkContext(chunkedEntries)).thenReturn(packed(chunkedEntries));
         when(userInstructionService.buildUserInstruction(userQuery, userQueryPrompt, mockFormattedChunk)).thenReturn(mockUserInstructions);
         when(mockChatService.callModel(eq(mockSystemPromptTemplate), eq(mockUserInstructions), eq(String.class)))
                 .thenThrow(new ChatServiceException("Invalid json response error"));
@@ -185,7 +193,7 @@ class ResponseGenerationServiceTest {
                         .build()
         );
 
-        when(chunkFormatterUtility.buildChunkContext(chunkedEntries)).thenReturn(mockFormattedChunk);
+        when(chunkFormatterUtility.packChunkContext(chunkedEntries)).thenReturn(packed(chunkedEntries));
         when(userInstructionService.buildUserInstruction(userQuery, userQueryPrompt, mockFormattedChunk)).thenReturn(mockUserInstructions);
         when(mockChatService.callModel(eq(mockSystemPromptTemplate), eq(mockUserInstructions), eq(String.class)))
                 .thenThrow(new HttpResponseException("Service error", mock(HttpResponse.class)));
@@ -222,7 +230,7 @@ class ResponseGenerationServiceTest {
         final List<ChunkedEntry> chunkedEntries = List.of(ChunkedEntry.builder()
                 .id("id1").chunk("Chunk 1").documentFileName("file name 1").pageNumber(1).documentId("docA")
                 .build());
-        when(chunkFormatterUtility.buildChunkContext(chunkedEntries)).thenReturn(mockFormattedChunk);
+        when(chunkFormatterUtility.packChunkContext(chunkedEntries)).thenReturn(packed(chunkedEntries));
         when(userInstructionService.buildUserInstruction(userQuery, userQueryPrompt, mockFormattedChunk)).thenReturn(mockUserInstructions);
         return chunkedEntries;
     }
@@ -282,4 +290,145 @@ class ResponseGenerationServiceTest {
         assertEquals("uncited formatted", result.formattedLlmResponse());
         verify(mockChatService, times(1)).callModel(eq(mockSystemPromptTemplate), eq(mockUserInstructions), eq(String.class));
     }
+
+    @Test
+    void generateResponse_WithWatchdog_AbortsCounterLoopMidStream() throws ChatServiceException {
+        responseGenerationService = new ResponseGenerationService(mockChatService, citationProcessor,
+                chunkFormatterUtility, userInstructionService, mockSystemPromptTemplate, CitationGuardMode.REJECT,
+                new GenerationWatchdog.Settings(12, 4), false, null);
+        final String userQuery = "query";
+        final String userQueryPrompt = "prompt";
+        final List<ChunkedEntry> chunkedEntries = stubbedChunks(userQuery, userQueryPrompt);
+        final List<String> consumed = new ArrayList<>();
+        when(mockChatService.streamModel(eq(mockSystemPromptTemplate), eq(mockUserInstructions), any()))
+                .thenAnswer(invocation -> {
+                    final Consumer<String> onDelta = invocation.getArgument(2);
+                    onDelta.accept("He was charged ");
+                    for (int i = 1; i <= 1000; i++) {
+                        final String delta = "[" + i + "]";
+                        consumed.add(delta);
+                        onDelta.accept(delta);
+                    }
+                    return "unreachable";
+                });
+        when(citationProcessor.processCitations(anyString())).thenReturn(degradedOutcome("He was charged"));
+
+        final CitationDegradedException thrown = assertThrows(CitationDegradedException.class,
+                () -> responseGenerationService.generateResponse(userQuery, chunkedEntries, userQueryPrompt));
+
+        assertEquals(GenerationWatchdog.MAX_MARKER_RUN + 1, consumed.size());
+        assertThat(thrown.rawLlmResponse().startsWith("He was charged [1][2]"), is(true));
+        assertEquals("He was charged", thrown.formattedText());
+        verify(mockChatService, never()).callModel(anyString(), anyString(), any());
+    }
+
+    @Test
+    void generateResponse_WithWatchdogAndGuardOff_AcceptsTheTruncatedAnswer() throws ChatServiceException {
+        responseGenerationService = new ResponseGenerationService(mockChatService, citationProcessor,
+                chunkFormatterUtility, userInstructionService, mockSystemPromptTemplate, CitationGuardMode.OFF,
+                new GenerationWatchdog.Settings(3, 2), false, null);
+        final String userQuery = "query";
+        final String userQueryPrompt = "prompt";
+        final List<ChunkedEntry> chunkedEntries = stubbedChunks(userQuery, userQueryPrompt);
+        when(mockChatService.streamModel(eq(mockSystemPromptTemplate), eq(mockUserInstructions), any()))
+                .thenAnswer(invocation -> {
+                    final Consumer<String> onDelta = invocation.getArgument(2);
+                    onDelta.accept("the bail was refused ");
+                    onDelta.accept("the bail was refused ");
+                    onDelta.accept("and so on");
+                    return "unreachable";
+                });
+        when(citationProcessor.processCitations("the bail was refused the bail was refused "))
+                .thenReturn(degradedOutcome("the bail was refused the bail was refused"));
+
+        final LlmResponse result = responseGenerationService.generateResponse(userQuery, chunkedEntries, userQueryPrompt);
+
+        assertEquals(ANSWER_GENERATED, result.status());
+        assertEquals("the bail was refused the bail was refused", result.formattedLlmResponse());
+    }
+
+    @Test
+    void generateResponse_InStructuredMode_RendersTheTypedCitations() throws ChatServiceException {
+        responseGenerationService = new ResponseGenerationService(mockChatService, new CitationProcessor(),
+                chunkFormatterUtility, userInstructionService, mockSystemPromptTemplate, CitationGuardMode.REJECT,
+                null, true, null);
+        final String userQuery = "query";
+        final String userQueryPrompt = "prompt";
+        final List<ChunkedEntry> chunkedEntries = stubbedChunks(userQuery, userQueryPrompt);
+        when(mockChatService.callModel(anyString(), eq(mockUserInstructions), eq(String.class),
+                eq(StructuredAnswer.RESPONSE_SCHEMA))).thenReturn(Optional.of("""
+                {"answer":"He was charged [1].","citations":[{"citationId":"1","documentId":"docA",\
+                "documentFilename":"case.pdf","individualPageNumbers":"4","pageNumbers":"4"}]}"""));
+
+        final LlmResponse result = responseGenerationService.generateResponse(userQuery, chunkedEntries, userQueryPrompt);
+
+        assertEquals(ANSWER_GENERATED, result.status());
+        assertEquals("He was charged ::(Source: [case.pdf], Pages 4|4|documentId=docA).", result.formattedLlmResponse());
+        verify(mockChatService).callModel(eq(mockSystemPromptTemplate + ResponseGenerationService.STRUCTURED_OUTPUT_INSTRUCTION),
+                eq(mockUserInstructions), eq(String.class), eq(StructuredAnswer.RESPONSE_SCHEMA));
+        verify(mockChatService, never()).streamModel(anyString(), anyString(), any());
+    }
+
+    @Test
+    void generateResponse_InStructuredMode_FallsBackToTaggedParsingWhenTheAnswerIsNotJson() throws ChatServiceException {
+        responseGenerationService = new ResponseGenerationService(mockChatService, citationProcessor,
+                chunkFormatterUtility, userInstructionService, mockSystemPromptTemplate, CitationGuardMode.REJECT,
+                null, true, null);
+        final String userQuery = "query";
+        final String userQueryPrompt = "prompt";
+        final List<ChunkedEntry> chunkedEntries = stubbedChunks(userQuery, userQueryPrompt);
+        when(mockChatService.callModel(anyString(), anyString(), eq(String.class), any(ResponseSchema.class)))
+                .thenReturn(Optional.of("tagged raw"));
+        when(citationProcessor.processCitations("tagged raw")).thenReturn(citedOutcome("tagged formatted"));
+
+        final LlmResponse result = responseGenerationService.generateResponse(userQuery, chunkedEntries, userQueryPrompt);
+
+        assertEquals(ANSWER_GENERATED, result.status());
+        assertEquals("tagged formatted", result.formattedLlmResponse());
+        verify(citationProcessor, never()).processStructuredAnswer(any());
+    }
+
+    @Test
+    void citationGuard_RepairsADegradedAnswerBeforeRejectingIt() throws ChatServiceException {
+        final CitationRepairService repairService = mock(CitationRepairService.class);
+        responseGenerationService = new ResponseGenerationService(mockChatService, citationProcessor,
+                chunkFormatterUtility, userInstructionService, mockSystemPromptTemplate, CitationGuardMode.REJECT,
+                null, false, repairService);
+        final String userQuery = "query";
+        final String userQueryPrompt = "prompt";
+        final List<ChunkedEntry> chunkedEntries = stubbedChunks(userQuery, userQueryPrompt);
+        when(mockChatService.callModel(mockSystemPromptTemplate, mockUserInstructions, String.class))
+                .thenReturn(Optional.of("degraded raw"));
+        when(citationProcessor.processCitations("degraded raw")).thenReturn(degradedOutcome("degraded formatted"));
+        final CitationRepairService.RepairedAnswer repaired =
+                new CitationRepairService.RepairedAnswer("repaired raw", citedOutcome("repaired formatted"));
+        when(repairService.repair("degraded raw", chunkedEntries)).thenReturn(Optional.of(repaired));
+
+        final LlmResponse result = responseGenerationService.generateResponse(userQuery, chunkedEntries, userQueryPrompt);
+
+        assertEquals(ANSWER_GENERATED, result.status());
+        assertEquals("repaired raw", result.rawLlmResponse());
+        assertEquals("repaired formatted", result.formattedLlmResponse());
+        verify(mockChatService, times(1)).callModel(anyString(), anyString(), any());
+    }
+
+    @Test
+    void citationGuard_ThrowsWhenTheRepairFails() throws ChatServiceException {
+        final CitationRepairService repairService = mock(CitationRepairService.class);
+        responseGenerationService = new ResponseGenerationService(mockChatService, citationProcessor,
+                chunkFormatterUtility, userInstructionService, mockSystemPromptTemplate, CitationGuardMode.REJECT,
+                null, false, repairService);
+        final String userQuery = "query";
+        final String userQueryPrompt = "prompt";
+        final List<ChunkedEntry> chunkedEntries = stubbedChunks(userQuery, userQueryPrompt);
+        when(mockChatService.callModel(mockSystemPromptTemplate, mockUserInstructions, String.class))
+                .thenReturn(Optional.of("degraded raw"));
+        when(citationProcessor.processCitations("degraded raw")).thenReturn(degradedOutcome("degraded formatted"));
+        when(repairService.repair("degraded raw", chunkedEntries)).thenReturn(Optional.empty());
+
+        final CitationDegradedException thrown = assertThrows(CitationDegradedException.class,
+                () -> responseGenerationService.generateResponse(userQuery, chunkedEntries, userQueryPrompt));
+
+        assertEquals("degraded raw", thrown.rawLlmResponse());
+    }
 }
@@ -0,0 +1,116 @@
+package uk.gov.moj.cp.retrieval.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import uk.gov.moj.cp.ai.cache.LruCache;
+import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+import uk.gov.moj.cp.ai.model.KeyValuePair;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongCounterBuilder;
+import io.opentelemetry.api.metrics.Meter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class SearchResultCacheTest {
+
+    private static final List<KeyValuePair> FILTERS = List.of(new KeyValuePair("case", "123"), new KeyValuePair("bundle", "b1"));
+
+    private Meter meterMock;
+    private LongCounter counterMock;
+    private SearchResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterMock = mock(Meter.class);
+        final LongCounterBuilder builderMock = mock(LongCounterBuilder.class);
+        counterMock = mock(LongCounter.class);
+        when(meterMock.counterBuilder(anyString())).thenReturn(builderMock);
+        when(builderMock.setDescription(anyString())).thenReturn(builderMock);
+        when(builderMock.setUnit(anyString())).thenReturn(builderMock);
+        when(builderMock.build()).thenReturn(counterMock);
+
+        cache = new SearchResultCache(new LruCache<>(10, Duration.ofMinutes(10)), true, meterMock);
+    }
+
+    @Test
+    @DisplayName("the same search with reordered filters and reflowed whitespace maps to the same key")
+    void shouldNormaliseQueryAndFilterOrder() {
+        final String key = cache.keyFor("index", "client-a", 0L, "What  was the\nplea?", FILTERS);
+
+        assertEquals(key, cache.keyFor("index", "client-a", 0L, " What was the plea? ", List.of(FILTERS.get(1), FILTERS.get(0))));
+    }
+
+    @Test
+    @DisplayName("client, index, filter values and index generation all separate keys")
+    void shouldSeparateKeys() {
+        final String key = cache.keyFor("index", "client-a", 0L, "query", FILTERS);
+
+        assertNotEquals(key, cache.keyFor("index", "client-b", 0L, "query", FILTERS));
+        assertNotEquals(key, cache.keyFor("other-index", "client-a", 0L, "query", FILTERS));
+        assertNotEquals(key, cache.keyFor("index", "client-a", 0L, "query", List.of(new KeyValuePair("case", "1231"))));
+        assertNotEquals(key, cache.keyFor("index", "client-a", 1L, "query", FILTERS));
+    }
+
+    @Test
+    @DisplayName("serves a stored result until the client's generation moves on")
+    void shouldInvalidateOnGenerationBump() {
+        final List<ChunkedEntry> results = new ArrayList<>(List.of(ChunkedEntry.builder().id("1").build()));
+        final String key = cache.keyFor("index", "client-a", 0L, "query", FILTERS);
+        cache.put(key, results);
+        results.clear();
+
+        final List<ChunkedEntry> cached = cache.get(cache.keyFor("index", "client-a", 0L, "query", FILTERS));
+        assertNotNull(cached);
+        assertEquals(1, cached.size());
+        assertThrows(UnsupportedOperationException.class, () -> cached.add(null));
+        verify(counterMock).add(1, outcome("hit"));
+
+        assertNull(cache.get(cache.keyFor("index", "client-a", 1L, "query", FILTERS)));
+        verify(counterMock).add(1, outcome("miss"));
+    }
+
+    @Test
+    @DisplayName("stores results without their chunk vectors")
+    void shouldDropChunkVectors() {
+        final String key = cache.keyFor("index", "client-a", 0L, "query", FILTERS);
+        cache.put(key, List.of(ChunkedEntry.builder().id("1").chunk("text").chunkVector(EmbeddingVector.of(1f, 0f)).build()));
+
+        final ChunkedEntry cached = cache.get(key).get(0);
+        assertEquals("1", cached.id());
+        assertEquals("text", cached.chunk());
+        assertNull(cached.chunkVector());
+    }
+
+    @Test
+    @DisplayName("bypasses the cache without a generation, and does nothing when disabled")
+    void shouldBypassWithoutGeneration() {
+        assertNull(cache.keyFor("index", "client-a", null, "query", FILTERS));
+        verify(counterMock).add(1, outcome("bypass"));
+
+        final SearchResultCache disabled = new SearchResultCache(new LruCache<>(10, null), false, meterMock);
+        assertNull(disabled.keyFor("index", "client-a", 0L, "query", FILTERS));
+        disabled.put(null, List.of());
+        assertNull(disabled.get(null));
+    }
+
+    private static Attributes outcome(final String value) {
+        return Attributes.of(AttributeKey.stringKey("outcome"), value);
+    }
+}
@@ -2,6 +2,8 @@ package uk.gov.moj.cp.retrieval.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import uk.gov.moj.cp.ai.model.PromptLayout;
+
 import org.junit.jupiter.api.Test;
 
 class UserInstructionServiceTest {
@@ -79,5 +81,22 @@ class UserInstructionServiceTest {
                 """;
         assertEquals(expected, result);
     }
-}
 
+    @Test
+    void buildUserInstruction_PutsTheQueryPromptFirst_InCacheFriendlyLayout() {
+        final UserInstructionService cacheFriendly = new UserInstructionService(PromptLayout.CACHE_FRIENDLY);
+        String result = cacheFriendly.buildUserInstruction(userQuery, "Provide a detailed answer.", formattedChunks);
+        String expected = """
+                --- USER QUERY INSTRUCTION ---
+                Provide a detailed answer.
+                
+                --- SOURCE DOCUMENTS ---
+                <RETRIEVED_DOCUMENTS>
+                ...</RETRIEVED_DOCUMENTS>
+                
+                --- USER QUERY ---
+                What is the legal status?
+                """;
+        assertEquals(expected, result);
+    }
+}
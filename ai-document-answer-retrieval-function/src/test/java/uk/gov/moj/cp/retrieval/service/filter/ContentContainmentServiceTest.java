@@ -7,6 +7,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -121,4 +122,70 @@ class ContentContainmentServiceTest {
         final List<ChunkedEntry> result = service.deduplicateByContainment(entries);
         assertEquals(3, result.size());
     }
+
+    @Test
+    @DisplayName("Treats a chunk shorter than the shingle size as one shingle of all its tokens")
+    void handlesChunksShorterThanShingleSize() {
+        final ContentContainmentService service = new ContentContainmentService(3, 0.95, true);
+        final List<ChunkedEntry> entries = Arrays.asList(
+                chunk("1", "Adjourned."),
+                chunk("2", "ADJOURNED"),
+                chunk("3", "adjourned sine die")
+        );
+        assertEquals(List.of("1", "3"), ids(service.deduplicateByContainment(entries)));
+    }
+
+    @Test
+    @DisplayName("Collapses copies across a large pool of long, mostly distinct chunks")
+    void collapsesCopiesInLargePool() {
+        final ContentContainmentService service = new ContentContainmentService(3, 0.95, true);
+        final List<ChunkedEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            // Every tenth chunk repeats chunk 0's text; the rest are unique.
+            entries.add(chunk(String.valueOf(i), longText(i % 10 == 0 ? 0 : i)));
+        }
+
+        final List<ChunkedEntry> result = service.deduplicateByContainment(entries);
+
+        assertEquals(181, result.size());
+        assertTrue(ids(result).contains("0"));
+        assertTrue(ids(result).stream().noneMatch(id -> !id.equals("0") && Integer.parseInt(id) % 10 == 0));
+    }
+
+    /** Roughly 4000 characters of text whose word sequence is unique to {@code seed}. */
+    private static String longText(final int seed) {
+        final StringBuilder text = new StringBuilder();
+        for (int word = 0; text.length() < 4000; word++) {
+            text.append("w").append(seed).append('x').append(word % 37).append(word % 11 == 0 ? ". " : " ");
+        }
+        return text.toString();
+    }
+
+    @Test
+    @DisplayName("Approximate mode collapses copies and keeps the information-carrying superset")
+    void approximateModeCollapsesCopiesAndKeepsSuperset() {
+        final ContentContainmentService service = new ContentContainmentService(3, 0.95, true, true, 32, 4);
+        final List<ChunkedEntry> entries = Arrays.asList(
+                chunk("plain", SHARED),
+                chunk("copy", SHARED),
+                chunk("withCrucial", SHARED + CRUCIAL),
+                chunk("blank", "   ")
+        );
+        assertEquals(List.of("plain", "withCrucial", "blank"), ids(service.deduplicateByContainment(entries)));
+    }
+
+    @Test
+    @DisplayName("Approximate mode matches exact mode on a large pool of copies and distinct chunks")
+    void approximateModeMatchesExactOnLargePool() {
+        final List<ChunkedEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            entries.add(chunk(String.valueOf(i), longText(i % 5 == 0 ? i % 25 : i)));
+        }
+
+        final List<ChunkedEntry> exact = new ContentContainmentService(3, 0.95, true).deduplicateByContainment(entries);
+        final List<ChunkedEntry> approximate =
+                new ContentContainmentService(3, 0.95, true, true, 32, 4).deduplicateByContainment(entries);
+
+        assertEquals(ids(exact), ids(approximate));
+    }
 }
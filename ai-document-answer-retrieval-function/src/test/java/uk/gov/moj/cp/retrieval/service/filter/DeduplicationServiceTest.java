@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 
 import java.util.Arrays;
 import java.util.List;
@@ -26,8 +27,8 @@ class DeduplicationServiceTest {
     @DisplayName("Returns all entries when all are unique")
     void returnsAllEntriesWhenAllAreUnique() {
         final List<ChunkedEntry> entries = Arrays.asList(
-                ChunkedEntry.builder().id("1").chunkVector(Arrays.asList(1.0f, 0.0f)).build(),
-                ChunkedEntry.builder().id("2").chunkVector(Arrays.asList(0.0f, 1.0f)).build()
+                ChunkedEntry.builder().id("1").chunkVector(EmbeddingVector.of(1.0f, 0.0f)).build(),
+                ChunkedEntry.builder().id("2").chunkVector(EmbeddingVector.of(0.0f, 1.0f)).build()
         );
         final List<ChunkedEntry> result = service.performSemanticDeduplication(entries);
         assertEquals(2, result.size());
@@ -37,8 +38,8 @@ class DeduplicationServiceTest {
     @DisplayName("Returns only one entry when all are duplicates")
     void returnsOnlyOneEntryWhenAllAreDuplicates() {
         final List<ChunkedEntry> entries = Arrays.asList(
-                ChunkedEntry.builder().id("1").chunkVector(Arrays.asList(1.0f, 1.0f)).build(),
-                ChunkedEntry.builder().id("2").chunkVector(Arrays.asList(1.0f, 1.0f)).build()
+                ChunkedEntry.builder().id("1").chunkVector(EmbeddingVector.of(1.0f, 1.0f)).build(),
+                ChunkedEntry.builder().id("2").chunkVector(EmbeddingVector.of(1.0f, 1.0f)).build()
         );
         final List<ChunkedEntry> result = service.performSemanticDeduplication(entries);
         assertEquals(1, result.size());
@@ -49,8 +50,8 @@ class DeduplicationServiceTest {
     void returnsAllEntriesWhenAllAreDuplicatesAndCapabilityDisabled() {
         final DeduplicationService deduplicationDisabledService = new DeduplicationService();
         final List<ChunkedEntry> entries = Arrays.asList(
-                ChunkedEntry.builder().id("1").chunkVector(Arrays.asList(1.0f, 1.0f)).build(),
-                ChunkedEntry.builder().id("2").chunkVector(Arrays.asList(1.0f, 1.0f)).build()
+                ChunkedEntry.builder().id("1").chunkVector(EmbeddingVector.of(1.0f, 1.0f)).build(),
+                ChunkedEntry.builder().id("2").chunkVector(EmbeddingVector.of(1.0f, 1.0f)).build()
         );
         final List<ChunkedEntry> result = deduplicationDisabledService.performSemanticDeduplication(entries);
         assertEquals(2, result.size());
@@ -78,8 +79,8 @@ class DeduplicationServiceTest {
     @DisplayName("Handles vectors of different sizes as non-duplicates")
     void handlesVectorsOfDifferentSizesAsNonDuplicates() {
         final List<ChunkedEntry> entries = Arrays.asList(
-                ChunkedEntry.builder().id("1").chunkVector(Arrays.asList(1.0f, 2.0f)).build(),
-                ChunkedEntry.builder().id("2").chunkVector(Arrays.asList(1.0f)).build()
+                ChunkedEntry.builder().id("1").chunkVector(EmbeddingVector.of(1.0f, 2.0f)).build(),
+                ChunkedEntry.builder().id("2").chunkVector(EmbeddingVector.of(1.0f)).build()
         );
         final List<ChunkedEntry> result = service.performSemanticDeduplication(entries);
         assertEquals(2, result.size());
@@ -90,11 +91,29 @@ class DeduplicationServiceTest {
     void returnsAllEntriesWhenThresholdIsVeryHigh() {
         final DeduplicationService highThresholdService = new DeduplicationService(.99, true);
         final List<ChunkedEntry> entries = Arrays.asList(
-                ChunkedEntry.builder().id("1").chunkVector(Arrays.asList(1.0f, 0.0f)).build(),
-                ChunkedEntry.builder().id("2").chunkVector(Arrays.asList(0.98f, 0.199f)).build()
+                ChunkedEntry.builder().id("1").chunkVector(EmbeddingVector.of(1.0f, 0.0f)).build(),
+                ChunkedEntry.builder().id("2").chunkVector(EmbeddingVector.of(0.98f, 0.199f)).build()
         );
         final List<ChunkedEntry> result = highThresholdService.performSemanticDeduplication(entries);
         assertEquals(2, result.size());
     }
-}
 
+    @Test
+    @DisplayName("Leaves computed similarities in a shared context for later stages")
+    void leavesSimilaritiesInSharedContext() {
+        final ChunkedEntry a = ChunkedEntry.builder().id("a").chunkVector(EmbeddingVector.of(1.0f, 0.0f)).build();
+        final ChunkedEntry b = ChunkedEntry.builder().id("b").chunkVector(EmbeddingVector.of(1.0f, 0.0f)).build();
+        final ChunkedEntry c = ChunkedEntry.builder().id("c").chunkVector(EmbeddingVector.of(0.0f, 1.0f)).build();
+        // Containment may already have dropped entries, so dedup sees a sub-list of the context's pool.
+        final SimilarityContext context = SimilarityContext.of(EmbeddingVector.of(1.0f, 0.0f), List.of(a, b, c));
+
+        final List<ChunkedEntry> result = service.performSemanticDeduplication(List.of(a, c, b), context);
+
+        // (c, a) and (b, a); b is dropped as soon as it matches a.
+        assertEquals(List.of(a, c), result);
+        assertEquals(2, context.computedPairs());
+        // MMR over the survivors only needs (c, a), which dedup already computed.
+        new DiversificationService(0.5, 2, true).diversify(result, context);
+        assertEquals(2, context.computedPairs());
+    }
+}
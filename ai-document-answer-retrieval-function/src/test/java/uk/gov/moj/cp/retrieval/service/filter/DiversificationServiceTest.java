@@ -5,21 +5,25 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static uk.gov.moj.cp.ai.util.VectorSimilarityUtil.cosineSimilarity;
 
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 class DiversificationServiceTest {
 
-    private static final List<Float> QUERY = Arrays.asList(1.0f, 0.0f);
+    private static final EmbeddingVector QUERY = EmbeddingVector.of(1.0f, 0.0f);
 
     private static ChunkedEntry chunk(final String id, final float x, final float y) {
-        return ChunkedEntry.builder().id(id).chunkVector(Arrays.asList(x, y)).build();
+        return ChunkedEntry.builder().id(id).chunkVector(EmbeddingVector.of(x, y)).build();
     }
 
     private static List<String> ids(final List<ChunkedEntry> entries) {
@@ -101,7 +105,7 @@ class DiversificationServiceTest {
         final DiversificationService service = new DiversificationService(0.5, 2, true);
         final List<ChunkedEntry> candidates = List.of(chunk("1", 1.0f, 0.0f));
         assertSame(candidates, service.diversify(null, candidates));
-        assertSame(candidates, service.diversify(emptyList(), candidates));
+        assertSame(candidates, service.diversify(EmbeddingVector.EMPTY, candidates));
     }
 
     @Test
@@ -124,4 +128,84 @@ class DiversificationServiceTest {
         final List<ChunkedEntry> result = service.diversify(QUERY, candidates);
         assertEquals(2, result.size());
     }
+
+    @Test
+    @DisplayName("Incremental selection matches a full re-scan MMR on a 200-candidate pool")
+    void incrementalSelectionMatchesFullRescan() {
+        final Random random = new Random(7);
+        final EmbeddingVector query = randomVector(random, 64);
+        final List<ChunkedEntry> candidates = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            candidates.add(ChunkedEntry.builder().id(String.valueOf(i)).chunkVector(randomVector(random, 64)).build());
+        }
+
+        for (final double lambda : new double[]{0.1, 0.5, 0.9}) {
+            final DiversificationService service = new DiversificationService(lambda, 15, true);
+            assertEquals(ids(referenceMmr(query, candidates, lambda, 15)), ids(service.diversify(query, candidates)),
+                    "lambda " + lambda);
+        }
+    }
+
+    @Test
+    @DisplayName("Reads similarities from a shared context, comparing each candidate only against the latest pick")
+    void readsSimilaritiesFromSharedContextIncrementally() {
+        final List<ChunkedEntry> candidates = Arrays.asList(
+                chunk("A", 1.0f, 0.0f),
+                chunk("B", 1.0f, 0.0f),
+                chunk("C", 0.0f, 1.0f),
+                chunk("D", 0.7f, 0.7f)
+        );
+        final SimilarityContext context = SimilarityContext.of(QUERY, candidates);
+
+        final List<ChunkedEntry> result = new DiversificationService(0.3, 3, true).diversify(candidates, context);
+
+        assertEquals(List.of("A", "C", "D"), ids(result));
+        // Updates after picks 1 and 2 only: 3 + 2 remaining candidates.
+        assertEquals(5, context.computedPairs());
+    }
+
+    @Test
+    @DisplayName("Breaks score ties in favour of the higher-ranked search result")
+    void breaksTiesByRank() {
+        final DiversificationService service = new DiversificationService(0.5, 1, true);
+        final List<ChunkedEntry> candidates = Arrays.asList(
+                chunk("first", 0.0f, 1.0f),
+                chunk("second", 0.0f, 1.0f)
+        );
+        assertEquals(List.of("first"), ids(service.diversify(QUERY, candidates)));
+    }
+
+    /** The straightforward O(k^2 n) formulation: re-scan every selected chunk for every candidate on every pick. */
+    private static List<ChunkedEntry> referenceMmr(final EmbeddingVector query, final List<ChunkedEntry> candidates,
+                                                   final double lambda, final int finalCount) {
+        final List<ChunkedEntry> remaining = new ArrayList<>(candidates);
+        final List<ChunkedEntry> selected = new ArrayList<>();
+        while (selected.size() < finalCount && !remaining.isEmpty()) {
+            ChunkedEntry best = null;
+            double bestScore = -Double.MAX_VALUE;
+            for (final ChunkedEntry candidate : remaining) {
+                final double relevance = cosineSimilarity(query, candidate.chunkVector());
+                double maxSimilarity = -Double.MAX_VALUE;
+                for (final ChunkedEntry chosen : selected) {
+                    maxSimilarity = Math.max(maxSimilarity, cosineSimilarity(candidate.chunkVector(), chosen.chunkVector()));
+                }
+                final double score = selected.isEmpty() ? relevance : lambda * relevance - (1 - lambda) * maxSimilarity;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = candidate;
+                }
+            }
+            selected.add(best);
+            remaining.remove(best);
+        }
+        return selected;
+    }
+
+    private static EmbeddingVector randomVector(final Random random, final int dimensions) {
+        final float[] values = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return EmbeddingVector.of(values);
+    }
 }
@@ -0,0 +1,56 @@
+package uk.gov.moj.cp.retrieval.service.filter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ShingleHasherTest {
+
+    private final ShingleHasher hasher = new ShingleHasher(3);
+
+    @Test
+    @DisplayName("Produces one hash per distinct word trigram, sorted")
+    void producesOneHashPerDistinctShingle() {
+        // Trigrams: "a b c", "b c a", "c a b", "a b c" (repeat) -> 3 distinct.
+        final long[] shingles = hasher.shingles("a b c a b c");
+        assertEquals(3, shingles.length);
+        final long[] sorted = shingles.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(sorted, shingles);
+    }
+
+    @Test
+    @DisplayName("Ignores case, punctuation and whitespace differences")
+    void ignoresCaseAndPunctuation() {
+        assertArrayEquals(hasher.shingles("the matter was adjourned"),
+                hasher.shingles("  The MATTER -- was, adjourned!\n"));
+    }
+
+    @Test
+    @DisplayName("Is sensitive to word order and to word boundaries")
+    void isSensitiveToOrderAndBoundaries() {
+        assertFalse(Arrays.equals(hasher.shingles("one two three"), hasher.shingles("three two one")));
+        assertFalse(Arrays.equals(hasher.shingles("ab c d"), hasher.shingles("a bc d")));
+    }
+
+    @Test
+    @DisplayName("Treats non-ASCII characters as separators, as the alphanumeric split did")
+    void treatsNonAsciiAsSeparator() {
+        assertArrayEquals(hasher.shingles("caf é menu"), hasher.shingles("café menu"));
+    }
+
+    @Test
+    @DisplayName("Returns a single shingle for text shorter than the shingle size and none for content-less text")
+    void handlesShortAndEmptyText() {
+        assertEquals(1, hasher.shingles("adjourned").length);
+        assertEquals(1, hasher.shingles("two words").length);
+        assertEquals(0, hasher.shingles(null).length);
+        assertEquals(0, hasher.shingles("").length);
+        assertEquals(0, hasher.shingles(" ... !! ").length);
+    }
+}
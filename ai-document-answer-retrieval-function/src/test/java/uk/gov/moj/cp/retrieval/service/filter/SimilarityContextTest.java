@@ -0,0 +1,78 @@
+package uk.gov.moj.cp.retrieval.service.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static uk.gov.moj.cp.ai.util.VectorSimilarityUtil.cosineSimilarity;
+
+import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class SimilarityContextTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static ChunkedEntry chunk(final String id, final float... vector) {
+        return ChunkedEntry.builder().id(id).chunkVector(EmbeddingVector.of(vector)).build();
+    }
+
+    @Test
+    @DisplayName("Returns the same similarities as direct computation for every pair, in either order")
+    void matchesDirectComputationSymmetrically() {
+        final List<ChunkedEntry> pool = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            pool.add(chunk(String.valueOf(i), i, 7 - i, i % 3));
+        }
+        final SimilarityContext context = SimilarityContext.of(EmbeddingVector.of(1.0f, 0.0f, 0.0f), pool);
+
+        for (int i = 0; i < pool.size(); i++) {
+            assertEquals(cosineSimilarity(EmbeddingVector.of(1.0f, 0.0f, 0.0f), pool.get(i).chunkVector()), context.relevance(i), DELTA);
+            for (int j = 0; j < pool.size(); j++) {
+                final double expected = cosineSimilarity(pool.get(i).chunkVector(), pool.get(j).chunkVector());
+                assertEquals(expected, context.similarity(i, j), DELTA);
+                assertEquals(expected, context.similarity(j, i), DELTA);
+            }
+        }
+        assertEquals(7 * 6 / 2, context.computedPairs());
+    }
+
+    @Test
+    @DisplayName("Computes each pair lazily and only once")
+    void computesEachPairOnce() {
+        final SimilarityContext context = SimilarityContext.of(null,
+                List.of(chunk("a", 1.0f, 0.0f), chunk("b", 0.0f, 1.0f), chunk("c", 1.0f, 1.0f)));
+
+        assertEquals(0, context.computedPairs());
+        context.similarity(0, 2);
+        context.similarity(2, 0);
+        context.similarity(1, 1);
+        assertEquals(1, context.computedPairs());
+    }
+
+    @Test
+    @DisplayName("Resolves entries by identity and rejects entries outside the pool")
+    void resolvesEntriesByIdentity() {
+        final ChunkedEntry a = chunk("same", 1.0f);
+        final ChunkedEntry b = chunk("same", 1.0f);
+        final SimilarityContext context = SimilarityContext.of(null, List.of(a, b));
+
+        assertEquals(0, context.indexOf(a));
+        assertEquals(1, context.indexOf(b));
+        assertThrows(IllegalArgumentException.class, () -> context.indexOf(chunk("other", 1.0f)));
+    }
+
+    @Test
+    @DisplayName("Reports whether a usable query vector is present")
+    void reportsQueryVectorPresence() {
+        assertTrue(SimilarityContext.of(EmbeddingVector.of(1.0f), List.of()).hasQueryVector());
+        assertFalse(SimilarityContext.of(EmbeddingVector.EMPTY, List.of()).hasQueryVector());
+        assertFalse(SimilarityContext.of(null, List.of()).hasQueryVector());
+    }
+}
@@ -0,0 +1,28 @@
+package uk.gov.moj.cp.ingestion.exception;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Thrown when some chunks could not be written to the search index. Others may have been written
+ * and be searchable already; their client ids are carried so the caller can bump those clients'
+ * search index generations.
+ */
+public class ChunkIndexingException extends DocumentProcessingException {
+
+    private final Set<String> writtenClientIds;
+
+    public ChunkIndexingException(final String message, final Set<String> writtenClientIds) {
+        super(message);
+        // May hold null: chunks without a client id bump the shared generation.
+        this.writtenClientIds = Collections.unmodifiableSet(new LinkedHashSet<>(writtenClientIds));
+    }
+
+    /**
+     * @return the client ids of the chunks that were written; empty when none were
+     */
+    public Set<String> writtenClientIds() {
+        return writtenClientIds;
+    }
+}
@@ -1,19 +1,32 @@
 package uk.gov.moj.cp.ingestion.service;
 
-import static java.lang.Integer.parseInt;
 import static uk.gov.moj.cp.ai.SharedSystemVariables.AZURE_EMBEDDING_SERVICE_DEPLOYMENT_NAME;
 import static uk.gov.moj.cp.ai.SharedSystemVariables.AZURE_EMBEDDING_SERVICE_ENDPOINT;
-import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
 import static uk.gov.moj.cp.ai.util.StringUtil.isNullOrEmpty;
 
 import uk.gov.moj.cp.ai.exception.EmbeddingServiceException;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.service.EmbeddingService;
 import uk.gov.moj.cp.ingestion.exception.DocumentProcessingException;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpHeaderName;
+import com.azure.core.http.HttpResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,25 +34,42 @@ public class ChunkEmbeddingService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ChunkEmbeddingService.class);
 
-    private static final int DEFAULT_EMBEDDINGS_BATCH_SIZE = 2048;
+    private static final String DEFAULT_MAX_CONCURRENCY = "4";
+    private static final String DEFAULT_MAX_RETRIES = "5";
+    private static final String DEFAULT_RETRY_BASE_DELAY_MS = "1000";
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(1);
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
 
     private final EmbeddingService embeddingService;
-    private final int embeddingsBatchSize;
+    private final EmbeddingBatchPlanner batchPlanner;
+    private final EmbeddingCache embeddingCache;
+    private final int maxConcurrency;
+    private final int maxRetries;
+    private final Duration retryBaseDelay;
+    /** {@link System#nanoTime()} before which no new embedding request is sent, after a 429. */
+    private final AtomicLong throttledUntil = new AtomicLong(System.nanoTime());
 
     public ChunkEmbeddingService() {
         // Initialize EmbeddingService with managed identity
-        final String embeddingServiceEndpoint = System.getenv(AZURE_EMBEDDING_SERVICE_ENDPOINT);
-        final String embeddingServiceDeploymentName = System.getenv(AZURE_EMBEDDING_SERVICE_DEPLOYMENT_NAME);
-        embeddingsBatchSize = parseInt(getRequiredEnv("EMBEDDINGS_BATCH_SIZE", String.valueOf(DEFAULT_EMBEDDINGS_BATCH_SIZE)));
-
-        this.embeddingService = new EmbeddingService(embeddingServiceEndpoint, embeddingServiceDeploymentName);
+        this(new EmbeddingService(System.getenv(AZURE_EMBEDDING_SERVICE_ENDPOINT), System.getenv(AZURE_EMBEDDING_SERVICE_DEPLOYMENT_NAME)));
     }
 
     public ChunkEmbeddingService(EmbeddingService embeddingService) {
-        this.embeddingService = embeddingService;
-        embeddingsBatchSize = parseInt(getRequiredEnv("EMBEDDINGS_BATCH_SIZE", String.valueOf(DEFAULT_EMBEDDINGS_BATCH_SIZE)));
+        this(embeddingService, new EmbeddingBatchPlanner(), EmbeddingCache.getInstance(),
+                getRequiredEnvAsInteger("EMBEDDINGS_MAX_CONCURRENCY", DEFAULT_MAX_CONCURRENCY),
+                getRequiredEnvAsInteger("EMBEDDINGS_MAX_RETRIES", DEFAULT_MAX_RETRIES),
+                Duration.ofMillis(getRequiredEnvAsInteger("EMBEDDINGS_RETRY_BASE_DELAY_MS", DEFAULT_RETRY_BASE_DELAY_MS)));
     }
 
+    ChunkEmbeddingService(final EmbeddingService embeddingService, final EmbeddingBatchPlanner batchPlanner,
+                          final EmbeddingCache embeddingCache, final int maxConcurrency, final int maxRetries, final Duration retryBaseDelay) {
+        this.embeddingService = embeddingService;
+        this.batchPlanner = batchPlanner;
+        this.embeddingCache = embeddingCache;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBaseDelay = retryBaseDelay;
+    }
 
     public void enrichChunksWithEmbeddings(List<ChunkedEntry> chunkedEntries) throws DocumentProcessingException {
         if (chunkedEntries == null || chunkedEntries.isEmpty()) {
@@ -74,60 +104,194 @@ public class ChunkEmbeddingService {
         LOGGER.info("Collected {} valid chunks out of {} total entries for embedding",
                 chunksToEmbed.size(), chunkedEntries.size());
 
+        final EmbeddingVector[] vectors = embeddingCache.lookup(chunksToEmbed);
+
+        // Each distinct text still missing a vector is embedded once, however often it recurs.
+        final Map<String, List<Integer>> pending = new LinkedHashMap<>();
+        for (int i = 0; i < vectors.length; i++) {
+            if (vectors[i] == null) {
+                pending.computeIfAbsent(chunksToEmbed.get(i), text -> new ArrayList<>()).add(i);
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            final List<String> textsToEmbed = new ArrayList<>(pending.keySet());
+            final EmbeddingVector[] embedded = embedBatches(textsToEmbed, batchPlanner.plan(textsToEmbed));
+            embeddingCache.store(textsToEmbed, embedded);
+
+            int next = 0;
+            for (final List<Integer> positions : pending.values()) {
+                final EmbeddingVector vector = embedded[next++];
+                positions.forEach(position -> vectors[position] = vector);
+            }
+        }
+
+        // Reassembled on the calling thread, in input order, once every batch has completed.
         int totalProcessed = 0;
+        for (int i = 0; i < vectors.length; i++) {
+            final EmbeddingVector vector = vectors[i];
+            if (vector == null) {
+                continue;
+            }
+            final int originalIndex = validIndices.get(i);
+            final ChunkedEntry chunkedEntry = chunkedEntries.get(originalIndex);
 
-        for (int batchStart = 0; batchStart < chunksToEmbed.size(); batchStart += embeddingsBatchSize) {
-            int batchEnd = Math.min(batchStart + embeddingsBatchSize, chunksToEmbed.size());
-            List<String> batch = chunksToEmbed.subList(batchStart, batchEnd);
-            List<Integer> batchIndices = validIndices.subList(batchStart, batchEnd);
+            chunkedEntries.set(originalIndex, chunkedEntry.toBuilder()
+                    .chunkVector(vector)
+                    .build());
+            totalProcessed++;
 
-            try {
-                // Calculate batch statistics
-                int batchTotalChars = batch.stream().mapToInt(String::length).sum();
-                int batchAvgChars = batchTotalChars / batch.size();
-                int batchEstimatedTokens = batchTotalChars / 4;
+            LOGGER.debug("Enriched chunk {} (page {}, index {}): {} chars, vector size {}",
+                    originalIndex, chunkedEntry.pageNumber(), chunkedEntry.chunkIndex(),
+                    chunkedEntry.chunk().length(), vector.size());
+        }
 
-                LOGGER.info("Processing embedding batch {}-{} of {} ({} chunks, {} total chars, ~{} avg chars/chunk, ~{} total tokens)",
-                        batchStart + 1, batchEnd, chunksToEmbed.size(), batch.size(),
-                        batchTotalChars, batchAvgChars, batchEstimatedTokens);
+        LOGGER.info("Successfully enriched {} chunks with embeddings", totalProcessed);
+    }
 
-                List<List<Float>> embeddings = embeddingService.embedCollectionData(batch);
+    /**
+     * Embeds every planned batch, keeping up to {@code maxConcurrency} requests in flight on virtual threads.
+     * Each batch writes its vectors at its own offsets, so completion order does not matter. The first batch
+     * to fail stops the others from taking new work and is rethrown once the in-flight requests finish.
+     */
+    private EmbeddingVector[] embedBatches(final List<String> texts, final List<EmbeddingBatchPlanner.Batch> batches)
+            throws DocumentProcessingException {
+        final EmbeddingVector[] vectors = new EmbeddingVector[texts.size()];
+        final int workers = Math.min(maxConcurrency, batches.size());
+
+        LOGGER.info("Embedding {} chunks in {} batch(es) with up to {} in flight", texts.size(), batches.size(), workers);
+
+        if (workers <= 1) {
+            for (final EmbeddingBatchPlanner.Batch batch : batches) {
+                embedBatch(texts, batch, vectors);
+            }
+            return vectors;
+        }
 
-                if (embeddings.size() != batch.size()) {
-                    LOGGER.error("Mismatch between number of embeddings ({}) and batch size ({})",
-                            embeddings.size(), batch.size());
-                    continue;
-                }
+        final AtomicInteger nextBatch = new AtomicInteger();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < workers; w++) {
+                executor.execute(() -> {
+                    int next;
+                    while (failure.get() == null && (next = nextBatch.getAndIncrement()) < batches.size()) {
+                        try {
+                            embedBatch(texts, batches.get(next), vectors);
+                        } catch (DocumentProcessingException | RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                });
+            }
+        }
 
-                for (int i = 0; i < batchIndices.size(); i++) {
-                    int originalIndex = batchIndices.get(i);
-                    ChunkedEntry chunkedEntry = chunkedEntries.get(originalIndex);
-                    List<Float> vector = embeddings.get(i);
+        final Exception error = failure.get();
+        if (error instanceof DocumentProcessingException documentProcessingException) {
+            throw documentProcessingException;
+        }
+        if (error instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        return vectors;
+    }
 
-                    int chunkSize = chunkedEntry.chunk().length();
-                    int estimatedTokens = chunkSize / 4;
+    private void embedBatch(final List<String> texts, final EmbeddingBatchPlanner.Batch batch, final EmbeddingVector[] vectors)
+            throws DocumentProcessingException {
+        final List<String> inputs = texts.subList(batch.start(), batch.end());
+        final int batchTotalChars = inputs.stream().mapToInt(String::length).sum();
 
-                    ChunkedEntry enrichedEntry = chunkedEntry.toBuilder()
-                            .chunkVector(vector)
-                            .build();
+        LOGGER.info("Processing embedding batch {}-{} of {} ({} chunks, {} total chars, ~{} avg chars/chunk, ~{} total tokens)",
+                batch.start() + 1, batch.end(), texts.size(), batch.size(),
+                batchTotalChars, batchTotalChars / batch.size(), batch.tokens());
 
-                    chunkedEntries.set(originalIndex, enrichedEntry);
-                    totalProcessed++;
+        for (int attempt = 0; ; attempt++) {
+            awaitThrottle(batch);
+            try {
+                final List<EmbeddingVector> embeddings = embeddingService.embedCollectionData(inputs);
 
-                    LOGGER.debug("Enriched chunk {} (page {}, index {}): {} chars, ~{} tokens, vector size {}",
-                            originalIndex, chunkedEntry.pageNumber(), chunkedEntry.chunkIndex(),
-                            chunkSize, estimatedTokens, vector.size());
+                if (embeddings.size() != batch.size()) {
+                    LOGGER.error("Mismatch between number of embeddings ({}) and batch size ({})",
+                            embeddings.size(), batch.size());
+                    return;
+                }
+                for (int i = 0; i < embeddings.size(); i++) {
+                    vectors[batch.start() + i] = embeddings.get(i);
                 }
 
                 LOGGER.info("Successfully processed batch {}-{}: {} chunks enriched",
-                        batchStart + 1, batchEnd, batch.size());
-
+                        batch.start() + 1, batch.end(), batch.size());
+                return;
             } catch (EmbeddingServiceException e) {
-                final String errorMessage = "Failed to embed batch " + (batchStart + 1) + "-" + batchEnd + ". Error: " + e.getMessage();
-                throw new DocumentProcessingException(errorMessage, e);
+                final Optional<HttpResponse> throttledResponse = throttledResponse(e);
+                if (throttledResponse.isEmpty() || attempt >= maxRetries) {
+                    final String errorMessage = "Failed to embed batch " + (batch.start() + 1) + "-" + batch.end() + ". Error: " + e.getMessage();
+                    throw new DocumentProcessingException(errorMessage, e);
+                }
+
+                final Duration delay = backoff(attempt, throttledResponse.get());
+                LOGGER.warn("Embedding batch {}-{} throttled (attempt {} of {}); pausing requests for {} ms",
+                        batch.start() + 1, batch.end(), attempt + 1, maxRetries + 1, delay.toMillis());
+                final long resumeAt = System.nanoTime() + delay.toNanos();
+                throttledUntil.accumulateAndGet(resumeAt, (current, proposed) -> proposed - current > 0 ? proposed : current);
             }
         }
+    }
 
-        LOGGER.info("Successfully enriched {} chunks with embeddings", totalProcessed);
+    /**
+     * Holds every worker back while the deployment is throttled, so one 429 pauses the whole pipeline rather
+     * than letting the other in-flight batches run straight into the same limit.
+     */
+    private void awaitThrottle(final EmbeddingBatchPlanner.Batch batch) throws DocumentProcessingException {
+        final long waitNanos = throttledUntil.get() - System.nanoTime();
+        if (waitNanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(waitNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DocumentProcessingException("Interrupted while waiting to embed batch "
+                    + (batch.start() + 1) + "-" + batch.end(), e);
+        }
+    }
+
+    /**
+     * Uses the service's own {@code retry-after-ms} or {@code Retry-After} hint when it sends one, otherwise an
+     * exponential delay from {@code EMBEDDINGS_RETRY_BASE_DELAY_MS} with jitter, capped at one minute.
+     */
+    private Duration backoff(final int attempt, final HttpResponse response) {
+        final Duration hinted = retryAfter(response);
+        if (hinted != null) {
+            return hinted.compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : hinted;
+        }
+        final long ceiling = Math.min(MAX_RETRY_DELAY.toMillis(), retryBaseDelay.toMillis() << Math.min(attempt, 20));
+        return Duration.ofMillis(ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1));
+    }
+
+    private static Duration retryAfter(final HttpResponse response) {
+        try {
+            final String millis = response.getHeaderValue(HttpHeaderName.RETRY_AFTER_MS);
+            if (millis != null) {
+                return Duration.ofMillis(Long.parseLong(millis.trim()));
+            }
+            final String seconds = response.getHeaderValue(HttpHeaderName.RETRY_AFTER);
+            if (seconds != null) {
+                return Duration.ofSeconds(Long.parseLong(seconds.trim()));
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Ignoring unparseable retry-after header", e);
+        }
+        return null;
+    }
+
+    private static Optional<HttpResponse> throttledResponse(final Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpResponseException httpResponseException
+                    && httpResponseException.getResponse() != null
+                    && httpResponseException.getResponse().getStatusCode() == HTTP_TOO_MANY_REQUESTS) {
+                return Optional.of(httpResponseException.getResponse());
+            }
+        }
+        return Optional.empty();
     }
 }
@@ -1,6 +1,7 @@
 package uk.gov.moj.cp.ingestion.service;
 
 import static dev.langchain4j.data.document.splitter.DocumentSplitters.recursive;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
 import uk.gov.moj.cp.ai.model.KeyValuePair;
@@ -38,16 +39,7 @@ public class DocumentChunkingService {
         LOGGER.info("Starting document chunking for: {}", queueMetadata.documentName());
 
         try {
-            List<ChunkedEntry> finalChunks = new ArrayList<>();
-            int pageIndex = 1;
-
-            DocumentSplitter splitter = recursive(config.chunkSize(), config.chunkOverlap());
-
-            for (DocumentPage page : result.getPages()) {
-                List<ChunkedEntry> pageChunks = processPage(page, pageIndex, queueMetadata, splitter, config);
-                finalChunks.addAll(pageChunks);
-                pageIndex++;
-            }
+            List<ChunkedEntry> finalChunks = chunkPages(result.getPages(), 1, queueMetadata, config);
 
             LOGGER.info("Document chunking completed: {} chunks created", finalChunks.size());
             return finalChunks;
@@ -59,6 +51,55 @@ public class DocumentChunkingService {
         }
     }
 
+    /**
+     * Chunks pages {@code firstPage} to {@code lastPage} (1-based, inclusive) exactly as
+     * {@link #chunkDocument} would, so a document can be processed one page range at a time.
+     */
+    public List<ChunkedEntry> chunkPages(AnalyzeResult result,
+                                         QueueIngestionMetadata queueMetadata,
+                                         int firstPage,
+                                         int lastPage) throws DocumentProcessingException {
+        try {
+            return chunkPages(result.getPages().subList(firstPage - 1, lastPage), firstPage, queueMetadata, ChunkingConfig.getDefault());
+        } catch (Exception e) {
+            String errorMsg = "Failed to chunk pages " + firstPage + "-" + lastPage + " of document with name : "
+                    + queueMetadata.documentName() + " . Error: " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new DocumentProcessingException(errorMsg, e);
+        }
+    }
+
+    /**
+     * The index key of a chunk, derived from its client, document, page and position on the page, so
+     * chunking the same document again gives the same keys and a retried ingestion overwrites the chunks
+     * an earlier attempt indexed instead of adding duplicates. The client id is part of the key because
+     * document ids are only unique per client.
+     */
+    static String chunkId(String clientId, String documentId, int pageNumber, int chunkIndex) {
+        final String name = String.join(":", String.valueOf(clientId), documentId, String.valueOf(pageNumber), String.valueOf(chunkIndex));
+        return UUID.nameUUIDFromBytes(name.getBytes(UTF_8)).toString();
+    }
+
+    public int pageCount(AnalyzeResult result) {
+        return result == null || result.getPages() == null ? 0 : result.getPages().size();
+    }
+
+    private List<ChunkedEntry> chunkPages(List<DocumentPage> pages,
+                                          int firstPageIndex,
+                                          QueueIngestionMetadata queueMetadata,
+                                          ChunkingConfig config) {
+        List<ChunkedEntry> chunks = new ArrayList<>();
+        int pageIndex = firstPageIndex;
+
+        DocumentSplitter splitter = recursive(config.chunkSize(), config.chunkOverlap());
+
+        for (DocumentPage page : pages) {
+            chunks.addAll(processPage(page, pageIndex, queueMetadata, splitter, config));
+            pageIndex++;
+        }
+        return chunks;
+    }
+
     private List<ChunkedEntry> processPage(DocumentPage page,
                                            int pageIndex,
                                            QueueIngestionMetadata queueMetadata,
@@ -125,7 +166,7 @@ public class DocumentChunkingService {
                 customMetadataList.add(new KeyValuePair(key, value)));
 
         ChunkedEntry chunk = ChunkedEntry.builder()
-                .id(UUID.randomUUID().toString())
+                .id(chunkId(queueMetadata.clientId(), queueMetadata.documentId(), pageIndex, chunkIndex))
                 .documentId(queueMetadata.documentId())
                 .chunk(chunkContent)
                 .documentFileName(queueMetadata.documentName())
@@ -16,13 +16,11 @@ import uk.gov.moj.cp.ai.exception.EntityRetrievalException;
 import uk.gov.moj.cp.ai.exception.EtagMismatchException;
 import uk.gov.moj.cp.ai.idempotency.ClaimToken;
 import uk.gov.moj.cp.ai.idempotency.LeaseSnapshot;
-import uk.gov.moj.cp.ai.model.ChunkedEntry;
 import uk.gov.moj.cp.ai.model.QueueIngestionMetadata;
 import uk.gov.moj.cp.ai.service.table.DocumentIngestionOutcomeTableService;
 import uk.gov.moj.cp.ingestion.exception.DocumentProcessingException;
 
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 import com.azure.ai.documentintelligence.models.AnalyzeResult;
@@ -41,9 +39,8 @@ public class DocumentIngestionOrchestrator {
 
     private final DocumentIngestionOutcomeTableService documentIngestionOutcomeTableService;
     private final DocumentIntelligenceService documentIntelligenceService;
-    private final DocumentChunkingService documentChunkingService;
-    private final ChunkEmbeddingService chunkEmbeddingService;
     private final DocumentStorageService documentStorageService;
+    private final IngestionPipeline ingestionPipeline;
 
     public DocumentIngestionOrchestrator() {
         this(new DocumentIngestionOutcomeTableService(getRequiredEnv(STORAGE_ACCOUNT_TABLE_DOCUMENT_INGESTION_OUTCOME)));
@@ -66,11 +63,9 @@ public class DocumentIngestionOrchestrator {
 
         this.documentIngestionOutcomeTableService = documentIngestionOutcomeTableService;
 
-        this.documentChunkingService = new DocumentChunkingService();
-
-        this.chunkEmbeddingService = new ChunkEmbeddingService();
-
         this.documentStorageService = new DocumentStorageService(azureSearchServiceEndpoint, azureSearchIndexName);
+
+        this.ingestionPipeline = new IngestionPipeline(new DocumentChunkingService(), new ChunkEmbeddingService(), documentStorageService);
     }
 
     public DocumentIngestionOrchestrator(final DocumentIngestionOutcomeTableService documentIngestionOutcomeTableService,
@@ -80,9 +75,11 @@ public class DocumentIngestionOrchestrator {
                                          final DocumentStorageService documentStorageService) {
         this.documentIngestionOutcomeTableService = requireNonNull(documentIngestionOutcomeTableService, "TableStorageService must not be null");
         this.documentIntelligenceService = requireNonNull(documentIntelligenceService, "DocumentAnalysisService must not be null");
-        this.documentChunkingService = requireNonNull(documentChunkingService, "DocumentChunkingService must not be null");
-        this.chunkEmbeddingService = requireNonNull(chunkEmbeddingService, "ChunkEmbeddingService must not be null");
         this.documentStorageService = requireNonNull(documentStorageService, "DocumentStorageService must not be null");
+        this.ingestionPipeline = new IngestionPipeline(
+                requireNonNull(documentChunkingService, "DocumentChunkingService must not be null"),
+                requireNonNull(chunkEmbeddingService, "ChunkEmbeddingService must not be null"),
+                this.documentStorageService);
     }
 
     public void processQueueMessage(final QueueIngestionMetadata queueIngestionMetadata, final ClaimToken token)
@@ -98,14 +95,8 @@ public class DocumentIngestionOrchestrator {
         // Step 1: Analyze document using Azure Document Intelligence
         AnalyzeResult analyzeResult = documentIntelligenceService.analyzeDocument(documentName, documentUrl);
 
-        // Step 2: Chunk document using LangChain4j
-        List<ChunkedEntry> chunkedEntries = documentChunkingService.chunkDocument(analyzeResult, queueIngestionMetadata);
-
-        // Step 3: Generate embeddings for chunks
-        chunkEmbeddingService.enrichChunksWithEmbeddings(chunkedEntries);
-
-        // Step 4: Store chunks in Azure Search
-        documentStorageService.uploadChunks(Collections.unmodifiableList(chunkedEntries));
+        // Steps 2-4: Chunk, embed and store in Azure Search, page range by page range
+        ingestionPipeline.run(analyzeResult, queueIngestionMetadata);
 
         // Step 5: Mark superseded documents inactive
         markSupersededDocumentsInactive(documentId, token);
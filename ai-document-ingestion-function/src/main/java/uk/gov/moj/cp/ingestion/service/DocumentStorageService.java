@@ -3,6 +3,7 @@ package uk.gov.moj.cp.ingestion.service;
 import static java.lang.String.format;
 import static java.util.Objects.isNull;
 import static java.util.stream.Collectors.joining;
+import static uk.gov.moj.cp.ai.SharedSystemVariables.STORAGE_ACCOUNT_TABLE_SEARCH_INDEX_GENERATION;
 import static uk.gov.moj.cp.ai.index.IndexConstants.CHUNK;
 import static uk.gov.moj.cp.ai.index.IndexConstants.CHUNK_INDEX;
 import static uk.gov.moj.cp.ai.index.IndexConstants.CHUNK_VECTOR;
@@ -11,38 +12,45 @@ import static uk.gov.moj.cp.ai.index.IndexConstants.CUSTOM_METADATA;
 import static uk.gov.moj.cp.ai.index.IndexConstants.DOCUMENT_FILE_NAME;
 import static uk.gov.moj.cp.ai.index.IndexConstants.DOCUMENT_FILE_URL;
 import static uk.gov.moj.cp.ai.index.IndexConstants.DOCUMENT_ID;
-import static uk.gov.moj.cp.ai.index.IndexConstants.FALSE_VALUE;
 import static uk.gov.moj.cp.ai.index.IndexConstants.ID;
-import static uk.gov.moj.cp.ai.index.IndexConstants.IS_ACTIVE;
 import static uk.gov.moj.cp.ai.index.IndexConstants.PAGE_NUMBER;
-import static uk.gov.moj.cp.ai.util.StringUtil.escapeODataStringLiteral;
 import static uk.gov.moj.cp.ai.util.StringUtil.isNullOrEmpty;
 
-import uk.gov.moj.cp.ai.client.AISearchClientFactory;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.search.AzureSearchBackend;
+import uk.gov.moj.cp.ai.search.IndexBatchWriter;
+import uk.gov.moj.cp.ai.search.IndexingFailure;
+import uk.gov.moj.cp.ai.search.VectorSearchBackend;
+import uk.gov.moj.cp.ai.search.VectorSearchBackendFactory;
+import uk.gov.moj.cp.ai.service.table.SearchIndexGenerationTableService;
+import uk.gov.moj.cp.ingestion.exception.ChunkIndexingException;
 import uk.gov.moj.cp.ingestion.exception.DocumentProcessingException;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import com.azure.core.util.Context;
 import com.azure.search.documents.SearchClient;
 import com.azure.search.documents.SearchDocument;
-import com.azure.search.documents.models.SearchOptions;
-import com.azure.search.documents.models.SearchResult;
-import com.azure.search.documents.util.SearchPagedIterable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class DocumentStorageService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DocumentStorageService.class);
-    private final SearchClient searchClient;
+    private final VectorSearchBackend searchBackend;
+    private final IndexBatchWriter indexBatchWriter;
+    private final SupersedeService supersedeService;
     private final String indexName;
+    private final SearchIndexGenerationTableService searchIndexGenerationTableService;
 
     public static final int VECTOR_DIMENSIONS = 3072;
+    private static final int MAX_FAILURES_REPORTED = 5;
+    private static final int HTTP_NOT_FOUND = 404;
 
     public DocumentStorageService(String endpoint, String indexName) {
         if (isNullOrEmpty(endpoint) || isNullOrEmpty(indexName)) {
@@ -53,118 +61,168 @@ public class DocumentStorageService {
 
         this.indexName = indexName;
 
-        this.searchClient = AISearchClientFactory.getInstance(endpoint, indexName);
+        this.searchBackend = VectorSearchBackendFactory.getInstance(endpoint, indexName);
+        this.indexBatchWriter = new IndexBatchWriter(searchBackend);
+        this.supersedeService = new SupersedeService(searchBackend, indexBatchWriter);
 
-        LOGGER.info("Initialized Azure AI Search client with managed identity.");
+        // Optional: without the generation table, retrieval does not cache search results either.
+        final String generationTableName = System.getenv(STORAGE_ACCOUNT_TABLE_SEARCH_INDEX_GENERATION);
+        this.searchIndexGenerationTableService = isNullOrEmpty(generationTableName)
+                ? null : new SearchIndexGenerationTableService(generationTableName);
+
+        LOGGER.info("Initialized search backend for index {}.", indexName);
     }
 
     public DocumentStorageService(final SearchClient searchClient) {
-        if (isNull(searchClient)) {
+        this(searchClient, null);
+    }
+
+    /**
+     * @param searchIndexGenerationTableService bumped after every index write so retrieval drops
+     *                                          cached results for the client; may be null
+     */
+    public DocumentStorageService(final SearchClient searchClient,
+                                  final SearchIndexGenerationTableService searchIndexGenerationTableService) {
+        this(isNull(searchClient) ? null : new AzureSearchBackend(searchClient), searchIndexGenerationTableService);
+    }
+
+    /**
+     * @param searchBackend                     index to write to, e.g. a
+     *                                          {@link uk.gov.moj.cp.ai.search.local.LocalSearchBackend}
+     *                                          in benchmarks and integration tests
+     * @param searchIndexGenerationTableService bumped after every index write; may be null
+     */
+    public DocumentStorageService(final VectorSearchBackend searchBackend,
+                                  final SearchIndexGenerationTableService searchIndexGenerationTableService) {
+        if (isNull(searchBackend)) {
             throw new IllegalArgumentException("Document Storage searchClient cannot be null");
         }
-        this.indexName = searchClient.getIndexName();
-        this.searchClient = searchClient;
+        this.indexName = searchBackend.indexName();
+        this.searchBackend = searchBackend;
+        this.indexBatchWriter = new IndexBatchWriter(searchBackend);
+        this.supersedeService = new SupersedeService(searchBackend, indexBatchWriter);
+        this.searchIndexGenerationTableService = searchIndexGenerationTableService;
     }
 
     public void uploadChunks(List<ChunkedEntry> chunks) throws DocumentProcessingException {
+        try {
+            bumpSearchIndexGenerations(indexChunks(chunks));
+        } catch (ChunkIndexingException e) {
+            bumpSearchIndexGenerations(e.writtenClientIds());
+            throw e;
+        }
+    }
+
+    /**
+     * Uploads the chunks without bumping any search index generation, for callers that write one
+     * document in several calls and bump once at the end with {@link #bumpSearchIndexGenerations}.
+     * The chunks go out in batches the service accepts, several at once (see {@link IndexBatchWriter}).
+     *
+     * @return the client ids of the chunks written; empty when nothing was written
+     * @throws ChunkIndexingException      when any chunk could not be written after retries, carrying
+     *                                     the client ids of the chunks that were
+     * @throws DocumentProcessingException when the chunks could not be sent at all
+     */
+    public Set<String> indexChunks(List<ChunkedEntry> chunks) throws DocumentProcessingException {
         LOGGER.info("Uploading {} chunks to Azure Search Index: {}", chunks.size(), indexName);
 
-        try {
-            List<SearchDocument> batch = new ArrayList<>(chunks.size());
-
-            for (ChunkedEntry chunkedEntry : chunks) {
-                if (chunkedEntry.chunkVector() == null || chunkedEntry.chunkVector().size() != VECTOR_DIMENSIONS) {
-                    LOGGER.warn("Skipping invalid embedding for page {} (vector size: {})",
-                            chunkedEntry.pageNumber(),
-                            chunkedEntry.chunkVector() != null ? chunkedEntry.chunkVector().size() : null);
-                    continue;
-                }
-
-                SearchDocument searchDocument = new SearchDocument();
-                // Use exact field names from vector database schema
-                searchDocument.put(ID, chunkedEntry.id());
-                searchDocument.put(CHUNK, chunkedEntry.chunk());
-                searchDocument.put(CHUNK_VECTOR, chunkedEntry.chunkVector());
-                searchDocument.put(DOCUMENT_FILE_NAME, chunkedEntry.documentFileName());
-                searchDocument.put(DOCUMENT_ID, chunkedEntry.documentId());
-                searchDocument.put(PAGE_NUMBER, chunkedEntry.pageNumber());
-                searchDocument.put(CHUNK_INDEX, chunkedEntry.chunkIndex());
-                searchDocument.put(DOCUMENT_FILE_URL, chunkedEntry.documentFileUrl());
-                searchDocument.put(CUSTOM_METADATA, chunkedEntry.customMetadata());
-                // Emit the client-scoping column only when the chunk carries one — writing it
-                // unconditionally would break indexing against a live index that lacks the field.
-                if (!isNullOrEmpty(chunkedEntry.clientId())) {
-                    searchDocument.put(CLIENT_ID, chunkedEntry.clientId());
-                }
-
-                batch.add(searchDocument);
+        List<SearchDocument> batch = new ArrayList<>(chunks.size());
+        final Map<String, String> clientIdByKey = new LinkedHashMap<>();
+
+        for (ChunkedEntry chunkedEntry : chunks) {
+            if (chunkedEntry.chunkVector() == null || chunkedEntry.chunkVector().size() != VECTOR_DIMENSIONS) {
+                LOGGER.warn("Skipping invalid embedding for page {} (vector size: {})",
+                        chunkedEntry.pageNumber(),
+                        chunkedEntry.chunkVector() != null ? chunkedEntry.chunkVector().size() : null);
+                continue;
             }
 
-            if (!batch.isEmpty()) {
-                searchClient.uploadDocuments(batch);
-                LOGGER.info("Batch upload successful for index {}", indexName);
-            } else {
-                LOGGER.warn("No valid chunks found to upload for index {}", indexName);
+            SearchDocument searchDocument = new SearchDocument();
+            // Use exact field names from vector database schema
+            searchDocument.put(ID, chunkedEntry.id());
+            searchDocument.put(CHUNK, chunkedEntry.chunk());
+            // EmbeddingVector serialises as a plain JSON number array, same as the index field expects.
+            searchDocument.put(CHUNK_VECTOR, chunkedEntry.chunkVector());
+            searchDocument.put(DOCUMENT_FILE_NAME, chunkedEntry.documentFileName());
+            searchDocument.put(DOCUMENT_ID, chunkedEntry.documentId());
+            searchDocument.put(PAGE_NUMBER, chunkedEntry.pageNumber());
+            searchDocument.put(CHUNK_INDEX, chunkedEntry.chunkIndex());
+            searchDocument.put(DOCUMENT_FILE_URL, chunkedEntry.documentFileUrl());
+            searchDocument.put(CUSTOM_METADATA, chunkedEntry.customMetadata());
+            // Emit the client-scoping column only when the chunk carries one — writing it
+            // unconditionally would break indexing against a live index that lacks the field.
+            if (!isNullOrEmpty(chunkedEntry.clientId())) {
+                searchDocument.put(CLIENT_ID, chunkedEntry.clientId());
             }
 
+            batch.add(searchDocument);
+            clientIdByKey.put(chunkedEntry.id(), chunkedEntry.clientId());
+        }
+
+        if (batch.isEmpty()) {
+            LOGGER.warn("No valid chunks found to upload for index {}", indexName);
+            return Set.of();
+        }
+
+        final IndexBatchWriter.WriteResult result;
+        try {
+            result = indexBatchWriter.upload(batch);
         } catch (Exception e) {
             final String errorMessage = "Failed to upload list of chunks to Azure Search index " + indexName;
             LOGGER.error(errorMessage, e);
             throw new DocumentProcessingException(errorMessage, e);
         }
-    }
 
-    @SuppressWarnings("unchecked")
-    public void markDocumentsInActive(final String clientId, final List<String> supersededDocuments) {
-        final List<SearchDocument> allUpdates = new ArrayList<>();
-
-        final SearchPagedIterable searchResults = getSearchResults(clientId, supersededDocuments);
+        if (!result.succeeded()) {
+            result.failures().forEach(failure -> clientIdByKey.remove(failure.key()));
+            final String errorMessage = format("Failed to upload %d of %d chunks to Azure Search index %s: %s",
+                    result.failures().size(), batch.size(), indexName, describe(result.failures()));
+            LOGGER.error(errorMessage);
+            throw new ChunkIndexingException(errorMessage, new LinkedHashSet<>(clientIdByKey.values()));
+        }
 
-        for (SearchResult result : searchResults) {
-            final SearchDocument searchDocument = result.getDocument(SearchDocument.class);
+        LOGGER.info("Batch upload successful for index {}", indexName);
+        return new LinkedHashSet<>(clientIdByKey.values());
+    }
 
-            final List<Map<String, String>> customMetadata = searchDocument.containsKey(CUSTOM_METADATA)
-                    ? (List<Map<String, String>>) searchDocument.get(CUSTOM_METADATA)
-                    : new ArrayList<>();
-            Map<String, String> isActiveKeyValue = new HashMap<>();
-            isActiveKeyValue.put("key", IS_ACTIVE);
-            isActiveKeyValue.put("value", FALSE_VALUE);
-            customMetadata.add(isActiveKeyValue);
+    /**
+     * Marks every chunk of the superseded documents inactive (see {@link SupersedeService}) and bumps
+     * the client's search index generation if any chunk changed.
+     *
+     * @throws IllegalStateException when chunks that still exist could not be marked, after retries
+     */
+    public void markDocumentsInActive(final String clientId, final List<String> supersededDocuments) {
+        final SupersedeService.Outcome outcome = supersedeService.deactivate(clientId, supersededDocuments);
 
-            allUpdates.add(getSearchDocument(searchDocument, customMetadata));
+        if (outcome.deactivated() > 0) {
+            bumpSearchIndexGeneration(clientId);
         }
 
-        if (!allUpdates.isEmpty()) {
-            searchClient.mergeDocuments(allUpdates);
+        // A chunk deleted since it was read no longer needs deactivating.
+        final List<IndexingFailure> failures = outcome.failures().stream()
+                .filter(failure -> failure.statusCode() != HTTP_NOT_FOUND)
+                .toList();
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException(format("Failed to mark %d of %d superseded chunks inactive in index %s: %s",
+                    failures.size(), outcome.matched(), indexName, describe(failures)));
         }
     }
 
-    SearchPagedIterable getSearchResults(final String clientId, final List<String> supersededDocuments) {
-        final String documentFilter = supersededDocuments.stream()
-                .map(id -> format("%s/any(m: m/key eq '%s' and m/value eq '%s')", CUSTOM_METADATA, DOCUMENT_ID, id))
-                .collect(joining(" or "));
-
-        // When a client id is supplied, scope the supersede match to that client by leading with a
-        // client-equality clause and grouping the document clauses, so one client cannot mark
-        // another client's chunks inactive. When it is null/empty the filter is unchanged.
-        final String filter = isNullOrEmpty(clientId)
-                ? documentFilter
-                : format("%s eq '%s' and (%s)", CLIENT_ID, escapeODataStringLiteral(clientId), documentFilter);
-
-        LOGGER.info("Find search results matching filter criteria: {}", filter);
-
-        final SearchOptions options = new SearchOptions()
-                .setFilter(filter)
-                .setSelect(format("%s, %s", ID, CUSTOM_METADATA));
+    public void bumpSearchIndexGenerations(final Collection<String> clientIds) {
+        clientIds.forEach(this::bumpSearchIndexGeneration);
+    }
 
-        return searchClient.search("*", options, Context.NONE);
+    private void bumpSearchIndexGeneration(final String clientId) {
+        if (searchIndexGenerationTableService != null) {
+            searchIndexGenerationTableService.bumpGeneration(clientId);
+        }
     }
 
-    private static SearchDocument getSearchDocument(final SearchDocument doc, final List<Map<String, String>> metadata) {
-        final SearchDocument updateDoc = new SearchDocument();
-        updateDoc.put(ID, doc.get(ID));
-        updateDoc.put(CUSTOM_METADATA, metadata);
-        return updateDoc;
+    private static String describe(final List<IndexingFailure> failures) {
+        return failures.stream()
+                .limit(MAX_FAILURES_REPORTED)
+                .map(failure -> format("'%s' (%d %s)", failure.key(), failure.statusCode(), failure.errorMessage()))
+                .collect(joining(", ", "", failures.size() > MAX_FAILURES_REPORTED ? ", ..." : ""));
     }
 
 }
\ No newline at end of file
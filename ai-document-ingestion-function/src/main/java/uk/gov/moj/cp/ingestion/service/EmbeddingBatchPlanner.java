@@ -0,0 +1,92 @@
+package uk.gov.moj.cp.ingestion.service;
+
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
+
+import uk.gov.moj.cp.ai.util.BpeTokenCounter;
+import uk.gov.moj.cp.ai.util.TokenCounter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Packs chunk texts into embedding requests by estimated token count rather than by a fixed number of
+ * inputs, so a document of long chunks does not exceed the per-request token limit and a document of short
+ * chunks still fills each request.
+ * <p>
+ * Batches are contiguous runs of the input list, which keeps reassembly a matter of offsets. A batch closes
+ * when adding the next text would exceed {@code EMBEDDINGS_MAX_TOKENS_PER_REQUEST} or
+ * {@code EMBEDDINGS_BATCH_SIZE} inputs. A single text above the token limit is sent on its own; the service
+ * decides whether to accept it. Tokens are counted locally with the {@code EMBEDDINGS_TOKENIZER} encoding
+ * (see {@link BpeTokenCounter}).
+ */
+public class EmbeddingBatchPlanner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddingBatchPlanner.class);
+
+    private static final String EMBEDDINGS_BATCH_SIZE = "EMBEDDINGS_BATCH_SIZE";
+    private static final String EMBEDDINGS_MAX_TOKENS_PER_REQUEST = "EMBEDDINGS_MAX_TOKENS_PER_REQUEST";
+    private static final String EMBEDDINGS_TOKENIZER = "EMBEDDINGS_TOKENIZER";
+
+    private static final String DEFAULT_EMBEDDINGS_BATCH_SIZE = "2048";
+    private static final String DEFAULT_MAX_TOKENS_PER_REQUEST = "250000";
+    private static final String DEFAULT_TOKENIZER = "cl100k_base";
+
+    /**
+     * A contiguous run {@code [start, end)} of the planned texts and its estimated token count.
+     */
+    public record Batch(int start, int end, int tokens) {
+
+        public int size() {
+            return end - start;
+        }
+    }
+
+    private final TokenCounter tokenCounter;
+    private final int maxInputsPerRequest;
+    private final int maxTokensPerRequest;
+
+    public EmbeddingBatchPlanner() {
+        this(BpeTokenCounter.forEncoding(getRequiredEnv(EMBEDDINGS_TOKENIZER, DEFAULT_TOKENIZER)),
+                getRequiredEnvAsInteger(EMBEDDINGS_BATCH_SIZE, DEFAULT_EMBEDDINGS_BATCH_SIZE),
+                getRequiredEnvAsInteger(EMBEDDINGS_MAX_TOKENS_PER_REQUEST, DEFAULT_MAX_TOKENS_PER_REQUEST));
+    }
+
+    EmbeddingBatchPlanner(final TokenCounter tokenCounter, final int maxInputsPerRequest, final int maxTokensPerRequest) {
+        if (maxInputsPerRequest < 1 || maxTokensPerRequest < 1) {
+            throw new IllegalArgumentException("Embedding batch limits must be positive: inputs=" + maxInputsPerRequest
+                    + ", tokens=" + maxTokensPerRequest);
+        }
+        this.tokenCounter = tokenCounter;
+        this.maxInputsPerRequest = maxInputsPerRequest;
+        this.maxTokensPerRequest = maxTokensPerRequest;
+        LOGGER.info("Embedding batches limited to {} inputs and ~{} tokens per request", maxInputsPerRequest, maxTokensPerRequest);
+    }
+
+    public List<Batch> plan(final List<String> texts) {
+        final List<Batch> batches = new ArrayList<>();
+        int start = 0;
+        int tokens = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            final int textTokens = tokenCounter.count(texts.get(i));
+            final boolean full = i - start == maxInputsPerRequest || tokens + textTokens > maxTokensPerRequest;
+            if (i > start && full) {
+                batches.add(new Batch(start, i, tokens));
+                start = i;
+                tokens = 0;
+            }
+            if (textTokens > maxTokensPerRequest) {
+                LOGGER.warn("Chunk {} is ~{} tokens, above the {} token request limit; sending it on its own",
+                        i, textTokens, maxTokensPerRequest);
+            }
+            tokens += textTokens;
+        }
+        if (start < texts.size()) {
+            batches.add(new Batch(start, texts.size(), tokens));
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,203 @@
+package uk.gov.moj.cp.ingestion.service;
+
+import static java.lang.Boolean.parseBoolean;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static uk.gov.moj.cp.ai.SharedSystemVariables.AZURE_EMBEDDING_SERVICE_DEPLOYMENT_NAME;
+import static uk.gov.moj.cp.ai.SharedSystemVariables.STORAGE_ACCOUNT_TABLE_EMBEDDING_CACHE;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
+import static uk.gov.moj.cp.ai.util.StringUtil.isNullOrEmpty;
+
+import uk.gov.moj.cp.ai.cache.LruCache;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+import uk.gov.moj.cp.ai.service.table.EmbeddingCacheTableService;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Two-tier cache of chunk embeddings keyed by the SHA-256 of the deployment name and the normalised
+ * chunk text, so passages that recur across documents (standard forms, repeated statements, the
+ * unchanged pages of a superseding upload) are not embedded again.
+ * <p>
+ * The front tier is a per-instance {@link LruCache} of {@code EMBEDDING_CACHE_MAX_ENTRIES} vectors
+ * (about 12 KB each at 3 072 dimensions). Behind it, when {@code STORAGE_ACCOUNT_TABLE_EMBEDDING_CACHE}
+ * is set, {@link EmbeddingCacheTableService} keeps every embedding across instances and restarts.
+ * Normalisation is Unicode NFC with runs of whitespace collapsed to one space, which only merges texts
+ * the embedding model would see as the same content.
+ * <p>
+ * Requires {@code EMBEDDING_CACHE_ENABLED=true}. The cache is best effort: a table read or write that
+ * fails is logged and treated as a miss, never failing the ingestion.
+ */
+public class EmbeddingCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    private static final String EMBEDDING_CACHE_ENABLED = "EMBEDDING_CACHE_ENABLED";
+    private static final String EMBEDDING_CACHE_MAX_ENTRIES = "EMBEDDING_CACHE_MAX_ENTRIES";
+
+    private static final int TABLE_CONCURRENCY = 16;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final boolean enabled;
+    private final LruCache<String, EmbeddingVector> memory;
+    private final EmbeddingCacheTableService table;
+    private final String deploymentName;
+
+    private EmbeddingCache() {
+        this(enabledFromEnv(),
+                getRequiredEnvAsInteger(EMBEDDING_CACHE_MAX_ENTRIES, "2048"),
+                tableFromEnv(),
+                System.getenv(AZURE_EMBEDDING_SERVICE_DEPLOYMENT_NAME));
+    }
+
+    /**
+     * @param table the persistent tier; null keeps the cache in memory only
+     */
+    EmbeddingCache(final boolean enabled, final int maxEntries, final EmbeddingCacheTableService table,
+                   final String deploymentName) {
+        this.enabled = enabled && !isNullOrEmpty(deploymentName);
+        this.memory = new LruCache<>(maxEntries, null);
+        this.table = table;
+        this.deploymentName = deploymentName;
+        LOGGER.info("Embedding cache enabled: {} (persistent tier: {})", this.enabled, this.enabled && table != null);
+    }
+
+    private static class SingletonHolder {
+        private static final EmbeddingCache INSTANCE = new EmbeddingCache();
+    }
+
+    public static EmbeddingCache getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * @return the cached embedding of each text at its position, null where the text is not cached
+     */
+    public EmbeddingVector[] lookup(final List<String> texts) {
+        final EmbeddingVector[] vectors = new EmbeddingVector[texts.size()];
+        if (!enabled) {
+            return vectors;
+        }
+
+        final String[] keys = new String[texts.size()];
+        final AtomicInteger tableHits = new AtomicInteger();
+        final AtomicInteger tableFailures = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final Semaphore permits = new Semaphore(TABLE_CONCURRENCY);
+            for (int i = 0; i < texts.size(); i++) {
+                keys[i] = contentHash(deploymentName, texts.get(i));
+                vectors[i] = memory.get(keys[i]);
+                if (vectors[i] != null || table == null) {
+                    continue;
+                }
+                final int position = i;
+                executor.execute(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        final EmbeddingVector stored = table.get(deploymentName, keys[position]);
+                        if (stored != null) {
+                            memory.put(keys[position], stored);
+                            vectors[position] = stored;
+                            tableHits.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        tableFailures.incrementAndGet();
+                        LOGGER.debug("Embedding cache read failed for '{}'", keys[position], e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+
+        if (tableFailures.get() > 0) {
+            LOGGER.warn("Embedding cache table reads failed for {} chunk(s); they will be embedded", tableFailures.get());
+        }
+        int hits = 0;
+        for (final EmbeddingVector vector : vectors) {
+            hits += vector == null ? 0 : 1;
+        }
+        LOGGER.info("Embedding cache served {} of {} chunk(s) ({} from the table)", hits, texts.size(), tableHits.get());
+        return vectors;
+    }
+
+    /**
+     * Caches the embedding of each text that has one; null and empty vectors are skipped.
+     */
+    public void store(final List<String> texts, final EmbeddingVector[] vectors) {
+        if (!enabled) {
+            return;
+        }
+
+        final AtomicInteger tableFailures = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final Semaphore permits = new Semaphore(TABLE_CONCURRENCY);
+            for (int i = 0; i < texts.size(); i++) {
+                final EmbeddingVector vector = vectors[i];
+                if (vector == null || vector.isEmpty()) {
+                    continue;
+                }
+                final String key = contentHash(deploymentName, texts.get(i));
+                memory.put(key, vector);
+                if (table == null) {
+                    continue;
+                }
+                executor.execute(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        table.put(deploymentName, key, vector);
+                    } catch (Exception e) {
+                        tableFailures.incrementAndGet();
+                        LOGGER.debug("Embedding cache write failed for '{}'", key, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+
+        if (tableFailures.get() > 0) {
+            LOGGER.warn("Embedding cache table writes failed for {} chunk(s); they will be embedded again next time", tableFailures.get());
+        }
+    }
+
+    /**
+     * @return the lowercase hex SHA-256 of the deployment name and the normalised text
+     */
+    static String contentHash(final String deploymentName, final String text) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(deploymentName.getBytes(UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalise(text).getBytes(UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static String normalise(final String text) {
+        return WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFC)).replaceAll(" ").strip();
+    }
+
+    private static boolean enabledFromEnv() {
+        return parseBoolean(getRequiredEnv(EMBEDDING_CACHE_ENABLED, "false"));
+    }
+
+    private static EmbeddingCacheTableService tableFromEnv() {
+        final String tableName = System.getenv(STORAGE_ACCOUNT_TABLE_EMBEDDING_CACHE);
+        return !enabledFromEnv() || isNullOrEmpty(tableName) ? null : new EmbeddingCacheTableService(tableName);
+    }
+}
@@ -0,0 +1,190 @@
+package uk.gov.moj.cp.ingestion.service;
+
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
+
+import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.QueueIngestionMetadata;
+import uk.gov.moj.cp.ingestion.exception.ChunkIndexingException;
+import uk.gov.moj.cp.ingestion.exception.DocumentProcessingException;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.azure.ai.documentintelligence.models.AnalyzeResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chunks, embeds and indexes an analysed document one page range at a time, with the three stages
+ * running concurrently on virtual threads and connected by bounded queues.
+ * <p>
+ * The chunker emits ranges of {@code INGESTION_PIPELINE_PAGES_PER_RANGE} pages;
+ * {@code INGESTION_PIPELINE_EMBED_WORKERS} workers embed them; one uploader writes them to the index.
+ * Each queue holds at most {@code INGESTION_PIPELINE_QUEUE_DEPTH} ranges and blocks a stage that gets
+ * ahead, so the vectors held at once are bounded by the pipeline depth, not the document size, and a
+ * range is embedded while the one before it uploads.
+ * <p>
+ * The search index generation of the document's client is bumped once, after the last range, and also
+ * when the run fails after writing some ranges or part of one. The first failing stage stops the
+ * others; its exception is rethrown once every stage has finished. Ranges already written stay in the
+ * index: chunk keys are derived from the client, document, page and chunk position, so the retry
+ * overwrites them rather than adding duplicates.
+ */
+public class IngestionPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    private static final String INGESTION_PIPELINE_PAGES_PER_RANGE = "INGESTION_PIPELINE_PAGES_PER_RANGE";
+    private static final String INGESTION_PIPELINE_QUEUE_DEPTH = "INGESTION_PIPELINE_QUEUE_DEPTH";
+    private static final String INGESTION_PIPELINE_EMBED_WORKERS = "INGESTION_PIPELINE_EMBED_WORKERS";
+
+    /** Pages {@code firstPage} to {@code lastPage} (1-based, inclusive) and their chunks. */
+    private record PageRange(int firstPage, int lastPage, List<ChunkedEntry> chunks) {
+    }
+
+    /** Marks the end of a queue; compared by identity. */
+    private static final PageRange END = new PageRange(0, 0, List.of());
+
+    @FunctionalInterface
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    private final DocumentChunkingService documentChunkingService;
+    private final ChunkEmbeddingService chunkEmbeddingService;
+    private final DocumentStorageService documentStorageService;
+    private final int pagesPerRange;
+    private final int queueDepth;
+    private final int embedWorkers;
+
+    public IngestionPipeline(final DocumentChunkingService documentChunkingService,
+                             final ChunkEmbeddingService chunkEmbeddingService,
+                             final DocumentStorageService documentStorageService) {
+        this(documentChunkingService, chunkEmbeddingService, documentStorageService,
+                getRequiredEnvAsInteger(INGESTION_PIPELINE_PAGES_PER_RANGE, "32"),
+                getRequiredEnvAsInteger(INGESTION_PIPELINE_QUEUE_DEPTH, "2"),
+                getRequiredEnvAsInteger(INGESTION_PIPELINE_EMBED_WORKERS, "2"));
+    }
+
+    IngestionPipeline(final DocumentChunkingService documentChunkingService,
+                      final ChunkEmbeddingService chunkEmbeddingService,
+                      final DocumentStorageService documentStorageService,
+                      final int pagesPerRange, final int queueDepth, final int embedWorkers) {
+        this.documentChunkingService = documentChunkingService;
+        this.chunkEmbeddingService = chunkEmbeddingService;
+        this.documentStorageService = documentStorageService;
+        this.pagesPerRange = Math.max(1, pagesPerRange);
+        this.queueDepth = Math.max(1, queueDepth);
+        this.embedWorkers = Math.max(1, embedWorkers);
+    }
+
+    /**
+     * @return the number of chunks written to the index
+     */
+    public int run(final AnalyzeResult analyzeResult, final QueueIngestionMetadata queueIngestionMetadata)
+            throws DocumentProcessingException {
+        final int pageCount = documentChunkingService.pageCount(analyzeResult);
+        LOGGER.info("Ingesting {} page(s) of document {} in ranges of {} page(s)",
+                pageCount, queueIngestionMetadata.documentId(), pagesPerRange);
+
+        final BlockingQueue<PageRange> chunked = new ArrayBlockingQueue<>(queueDepth);
+        final BlockingQueue<PageRange> embedded = new ArrayBlockingQueue<>(queueDepth);
+        final AtomicInteger liveEmbedders = new AtomicInteger(embedWorkers);
+        final AtomicInteger indexedChunks = new AtomicInteger();
+        final Set<String> clientIds = Collections.synchronizedSet(new LinkedHashSet<>());
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final List<Future<?>> stages = new CopyOnWriteArrayList<>();
+
+        final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            stages.add(executor.submit(stage(failure, stages, () -> {
+                for (int first = 1; first <= pageCount; first += pagesPerRange) {
+                    final int last = Math.min(first + pagesPerRange - 1, pageCount);
+                    final List<ChunkedEntry> chunks = documentChunkingService.chunkPages(analyzeResult, queueIngestionMetadata, first, last);
+                    if (!chunks.isEmpty()) {
+                        chunked.put(new PageRange(first, last, chunks));
+                    }
+                }
+                for (int i = 0; i < embedWorkers; i++) {
+                    chunked.put(END);
+                }
+            })));
+
+            for (int i = 0; i < embedWorkers; i++) {
+                stages.add(executor.submit(stage(failure, stages, () -> {
+                    for (PageRange range = chunked.take(); range != END; range = chunked.take()) {
+                        chunkEmbeddingService.enrichChunksWithEmbeddings(range.chunks());
+                        embedded.put(range);
+                    }
+                    if (liveEmbedders.decrementAndGet() == 0) {
+                        embedded.put(END);
+                    }
+                })));
+            }
+
+            stages.add(executor.submit(stage(failure, stages, () -> {
+                for (PageRange range = embedded.take(); range != END; range = embedded.take()) {
+                    try {
+                        clientIds.addAll(documentStorageService.indexChunks(Collections.unmodifiableList(range.chunks())));
+                    } catch (ChunkIndexingException e) {
+                        // Part of the range may be searchable already.
+                        clientIds.addAll(e.writtenClientIds());
+                        throw e;
+                    }
+                    indexedChunks.addAndGet(range.chunks().size());
+                    LOGGER.info("Indexed pages {}-{} of document {} ({} chunks)",
+                            range.firstPage(), range.lastPage(), queueIngestionMetadata.documentId(), range.chunks().size());
+                }
+            })));
+
+            // A stage that failed before the later ones were submitted could not cancel them.
+            if (failure.get() != null) {
+                stages.forEach(future -> future.cancel(true));
+            }
+        } finally {
+            executor.close();
+            documentStorageService.bumpSearchIndexGenerations(clientIds);
+        }
+
+        final Exception error = failure.get();
+        if (error instanceof DocumentProcessingException documentProcessingException) {
+            throw documentProcessingException;
+        }
+        if (error instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (error != null) {
+            throw new DocumentProcessingException("Ingestion pipeline failed for document " + queueIngestionMetadata.documentId(), error);
+        }
+        return indexedChunks.get();
+    }
+
+    /**
+     * Runs a stage, recording the first failure and cancelling the other stages so none stays
+     * blocked on a queue that will never move again.
+     */
+    private static Runnable stage(final AtomicReference<Exception> failure, final List<Future<?>> stages, final Stage stage) {
+        return () -> {
+            try {
+                stage.run();
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                if (failure.compareAndSet(null, e)) {
+                    stages.forEach(future -> future.cancel(true));
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,188 @@
+package uk.gov.moj.cp.ingestion.service;
+
+import static java.lang.String.format;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CLIENT_ID;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CUSTOM_METADATA;
+import static uk.gov.moj.cp.ai.index.IndexConstants.DOCUMENT_ID;
+import static uk.gov.moj.cp.ai.index.IndexConstants.FALSE_VALUE;
+import static uk.gov.moj.cp.ai.index.IndexConstants.ID;
+import static uk.gov.moj.cp.ai.index.IndexConstants.IS_ACTIVE;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
+import static uk.gov.moj.cp.ai.util.StringUtil.escapeODataStringLiteral;
+import static uk.gov.moj.cp.ai.util.StringUtil.isNullOrEmpty;
+
+import uk.gov.moj.cp.ai.metrics.ServiceMetrics;
+import uk.gov.moj.cp.ai.search.IndexBatchWriter;
+import uk.gov.moj.cp.ai.search.IndexingFailure;
+import uk.gov.moj.cp.ai.search.SearchRequest;
+import uk.gov.moj.cp.ai.search.VectorSearchBackend;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.azure.search.documents.SearchDocument;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Marks every chunk of the superseded documents inactive, in work bounded by configuration rather
+ * than by the size of the bundle.
+ * <p>
+ * Document ids are matched {@code SUPERSEDE_IDS_PER_FILTER} at a time with one {@code search.in}
+ * filter, instead of one {@code or} clause per id. Each group's chunks are read in pages of
+ * {@code SUPERSEDE_PAGE_SIZE}, ordered by {@code id} and resuming after the last id read (keyset
+ * pagination, which needs {@code id} sortable). Updates are buffered up to
+ * {@code SUPERSEDE_MERGE_BUFFER} chunks and flushed through {@link IndexBatchWriter}, which sends
+ * them as bounded merge batches in parallel.
+ * <p>
+ * Chunks deactivated, chunks gone from the index by the time they are merged (404) and chunks that
+ * failed are counted in {@code supersede_chunks} by outcome, and progress is logged after each flush.
+ */
+public class SupersedeService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SupersedeService.class);
+
+    private static final String SUPERSEDE_IDS_PER_FILTER = "SUPERSEDE_IDS_PER_FILTER";
+    private static final String SUPERSEDE_PAGE_SIZE = "SUPERSEDE_PAGE_SIZE";
+    private static final String SUPERSEDE_MERGE_BUFFER = "SUPERSEDE_MERGE_BUFFER";
+
+    /** Document ids never contain a comma: the outcome table stores them comma-separated. */
+    private static final String ID_DELIMITER = ",";
+    private static final int NOT_FOUND = 404;
+
+    private static final AttributeKey<String> OUTCOME = AttributeKey.stringKey("outcome");
+    private static final Attributes DEACTIVATED = Attributes.of(OUTCOME, "deactivated");
+    private static final Attributes MISSING = Attributes.of(OUTCOME, "missing");
+    private static final Attributes FAILED = Attributes.of(OUTCOME, "failed");
+
+    /**
+     * @param matched     chunks found for the superseded documents
+     * @param deactivated chunks now marked inactive
+     * @param failures    chunks that could not be marked, including any deleted while the run was in progress
+     */
+    public record Outcome(int matched, int deactivated, List<IndexingFailure> failures) {
+    }
+
+    private final VectorSearchBackend searchBackend;
+    private final IndexBatchWriter indexBatchWriter;
+    private final int idsPerFilter;
+    private final int pageSize;
+    private final int mergeBuffer;
+    private final LongCounter chunks;
+
+    public SupersedeService(final VectorSearchBackend searchBackend, final IndexBatchWriter indexBatchWriter) {
+        this(searchBackend, indexBatchWriter,
+                getRequiredEnvAsInteger(SUPERSEDE_IDS_PER_FILTER, "100"),
+                getRequiredEnvAsInteger(SUPERSEDE_PAGE_SIZE, "1000"),
+                getRequiredEnvAsInteger(SUPERSEDE_MERGE_BUFFER, "4000"),
+                ServiceMetrics.meter());
+    }
+
+    SupersedeService(final VectorSearchBackend searchBackend, final IndexBatchWriter indexBatchWriter,
+                     final int idsPerFilter, final int pageSize, final int mergeBuffer, final Meter meter) {
+        this.searchBackend = searchBackend;
+        this.indexBatchWriter = indexBatchWriter;
+        this.idsPerFilter = Math.max(1, idsPerFilter);
+        this.pageSize = Math.max(1, pageSize);
+        this.mergeBuffer = Math.max(1, mergeBuffer);
+        this.chunks = meter.counterBuilder("supersede_chunks")
+                .setDescription("Chunks of superseded documents processed, by outcome")
+                .setUnit("1")
+                .build();
+    }
+
+    /**
+     * @param clientId scopes the match to one client's chunks when not null or empty, so one client
+     *                 cannot mark another client's chunks inactive
+     */
+    public Outcome deactivate(final String clientId, final List<String> documentIds) {
+        final List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(documentIds));
+        final List<SearchDocument> pending = new ArrayList<>(Math.min(mergeBuffer, pageSize));
+        final Progress progress = new Progress();
+
+        for (int from = 0; from < distinctIds.size(); from += idsPerFilter) {
+            final String filter = filter(clientId, distinctIds.subList(from, Math.min(from + idsPerFilter, distinctIds.size())));
+            LOGGER.info("Find search results matching filter criteria: {}", filter);
+
+            String lastId = null;
+            List<SearchDocument> page;
+            do {
+                page = searchBackend.search(SearchRequest.filterOnlyPage(pageFilter(filter, lastId),
+                        List.of(ID, CUSTOM_METADATA), ID + " asc", pageSize), SearchDocument.class);
+                for (final SearchDocument searchDocument : page) {
+                    pending.add(inactiveUpdate(searchDocument));
+                    if (pending.size() >= mergeBuffer) {
+                        flush(pending, progress);
+                    }
+                }
+                progress.matched += page.size();
+                if (!page.isEmpty()) {
+                    lastId = String.valueOf(page.get(page.size() - 1).get(ID));
+                }
+            } while (page.size() == pageSize);
+        }
+        flush(pending, progress);
+
+        LOGGER.info("Supersede of {} document(s) matched {} chunk(s): {} deactivated, {} failed",
+                distinctIds.size(), progress.matched, progress.deactivated, progress.failures.size());
+        return new Outcome(progress.matched, progress.deactivated, List.copyOf(progress.failures));
+    }
+
+    private void flush(final List<SearchDocument> pending, final Progress progress) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        final IndexBatchWriter.WriteResult result = indexBatchWriter.merge(List.copyOf(pending));
+        final long missing = result.failures().stream().filter(failure -> failure.statusCode() == NOT_FOUND).count();
+        chunks.add(result.written(), DEACTIVATED);
+        chunks.add(missing, MISSING);
+        chunks.add(result.failures().size() - missing, FAILED);
+
+        progress.deactivated += result.written();
+        progress.failures.addAll(result.failures());
+        LOGGER.info("Superseded chunks so far: {} deactivated, {} failed", progress.deactivated, progress.failures.size());
+        pending.clear();
+    }
+
+    static String filter(final String clientId, final List<String> documentIds) {
+        final String ids = escapeODataStringLiteral(String.join(ID_DELIMITER, documentIds));
+        final String documentFilter = format("%s/any(m: m/key eq '%s' and search.in(m/value, '%s', '%s'))",
+                CUSTOM_METADATA, DOCUMENT_ID, ids, ID_DELIMITER);
+        return isNullOrEmpty(clientId)
+                ? documentFilter
+                : format("%s eq '%s' and (%s)", CLIENT_ID, escapeODataStringLiteral(clientId), documentFilter);
+    }
+
+    private static String pageFilter(final String filter, final String lastId) {
+        return lastId == null ? filter : format("(%s) and %s gt '%s'", filter, ID, escapeODataStringLiteral(lastId));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SearchDocument inactiveUpdate(final SearchDocument searchDocument) {
+        final List<Map<String, String>> customMetadata = searchDocument.containsKey(CUSTOM_METADATA)
+                ? (List<Map<String, String>>) searchDocument.get(CUSTOM_METADATA)
+                : new ArrayList<>();
+        Map<String, String> isActiveKeyValue = new HashMap<>();
+        isActiveKeyValue.put("key", IS_ACTIVE);
+        isActiveKeyValue.put("value", FALSE_VALUE);
+        customMetadata.add(isActiveKeyValue);
+
+        final SearchDocument updateDoc = new SearchDocument();
+        updateDoc.put(ID, searchDocument.get(ID));
+        updateDoc.put(CUSTOM_METADATA, customMetadata);
+        return updateDoc;
+    }
+
+    private static final class Progress {
+        private int matched;
+        private int deactivated;
+        private final List<IndexingFailure> failures = new ArrayList<>();
+    }
+}
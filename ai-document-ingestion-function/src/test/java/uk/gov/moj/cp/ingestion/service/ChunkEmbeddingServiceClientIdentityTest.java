@@ -7,6 +7,7 @@ import static org.mockito.Mockito.when;
 
 import uk.gov.moj.cp.ai.exception.EmbeddingServiceException;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.model.KeyValuePair;
 import uk.gov.moj.cp.ai.service.EmbeddingService;
 import uk.gov.moj.cp.ingestion.exception.DocumentProcessingException;
@@ -40,7 +41,7 @@ class ChunkEmbeddingServiceClientIdentityTest {
     @DisplayName("Should preserve the client id when enriching chunks with embeddings")
     void shouldPreserveClientIdWhenEnrichingChunks() throws EmbeddingServiceException, DocumentProcessingException {
         final List<ChunkedEntry> mutableEntries = new ArrayList<>(List.of(createChunkedEntry(0, CLIENT_ID)));
-        final List<Float> embedding = List.of(0.1f, 0.2f, 0.3f);
+        final EmbeddingVector embedding = EmbeddingVector.of(0.1f, 0.2f, 0.3f);
 
         when(mockEmbeddingService.embedCollectionData(anyList())).thenReturn(List.of(embedding));
 
@@ -55,7 +56,7 @@ class ChunkEmbeddingServiceClientIdentityTest {
     @DisplayName("Should keep a null client id null when enriching chunks with embeddings")
     void shouldKeepNullClientIdNullWhenEnrichingChunks() throws EmbeddingServiceException, DocumentProcessingException {
         final List<ChunkedEntry> mutableEntries = new ArrayList<>(List.of(createChunkedEntry(0, null)));
-        final List<Float> embedding = List.of(0.1f, 0.2f, 0.3f);
+        final EmbeddingVector embedding = EmbeddingVector.of(0.1f, 0.2f, 0.3f);
 
         when(mockEmbeddingService.embedCollectionData(anyList())).thenReturn(List.of(embedding));
 
@@ -72,7 +73,7 @@ class ChunkEmbeddingServiceClientIdentityTest {
         final ChunkedEntry original = createChunkedEntry(3, CLIENT_ID);
         final List<ChunkedEntry> mutableEntries = new ArrayList<>(List.of(original));
 
-        when(mockEmbeddingService.embedCollectionData(anyList())).thenReturn(List.of(List.of(0.5f)));
+        when(mockEmbeddingService.embedCollectionData(anyList())).thenReturn(List.of(EmbeddingVector.of(0.5f)));
 
         chunkEmbeddingService.enrichChunksWithEmbeddings(mutableEntries);
 
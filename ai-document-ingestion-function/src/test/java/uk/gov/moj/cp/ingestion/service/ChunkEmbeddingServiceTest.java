@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -12,22 +13,30 @@ import static org.mockito.Mockito.when;
 
 import uk.gov.moj.cp.ai.exception.EmbeddingServiceException;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.service.EmbeddingService;
 import uk.gov.moj.cp.ingestion.exception.DocumentProcessingException;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpHeaderName;
+import com.azure.core.http.HttpResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
 class ChunkEmbeddingServiceTest {
 
+    private static final EmbeddingCache DISABLED_CACHE = new EmbeddingCache(false, 1, null, "embed-large");
+
     @Mock
     private EmbeddingService mockEmbeddingService;
 
@@ -43,7 +52,7 @@ class ChunkEmbeddingServiceTest {
     void shouldProcessMultipleChunksInSingleBatch() throws EmbeddingServiceException, DocumentProcessingException {
         // given
         List<ChunkedEntry> chunkedEntries = createChunkedEntries(5);
-        List<List<Float>> mockEmbeddings = createMockEmbeddings(5);
+        List<EmbeddingVector> mockEmbeddings = createMockEmbeddings(5);
 
         when(mockEmbeddingService.embedCollectionData(anyList())).thenReturn(mockEmbeddings);
 
@@ -70,7 +79,7 @@ class ChunkEmbeddingServiceTest {
         chunkedEntries.add(createChunkedEntry(2, null)); // null chunk
         chunkedEntries.add(createChunkedEntry(3, "Valid chunk 2"));
 
-        List<List<Float>> mockEmbeddings = createMockEmbeddings(2); // Only 2 valid chunks
+        List<EmbeddingVector> mockEmbeddings = createMockEmbeddings(2); // Only 2 valid chunks
 
         when(mockEmbeddingService.embedCollectionData(anyList())).thenReturn(mockEmbeddings);
 
@@ -93,14 +102,9 @@ class ChunkEmbeddingServiceTest {
         // given - Create 3000 chunks (more than BATCH_SIZE of 2048)
         List<ChunkedEntry> chunkedEntries = createChunkedEntries(3000);
         
-        // Mock embeddings for first batch (2048 chunks)
-        List<List<Float>> firstBatchEmbeddings = createMockEmbeddings(2048);
-        // Mock embeddings for second batch (952 chunks)
-        List<List<Float>> secondBatchEmbeddings = createMockEmbeddings(952);
-
+        // Batches of 2048 and 952 chunks may be in flight together, so answer by request size
         when(mockEmbeddingService.embedCollectionData(anyList()))
-                .thenReturn(firstBatchEmbeddings)
-                .thenReturn(secondBatchEmbeddings);
+                .thenAnswer(invocation -> createMockEmbeddings(invocation.<List<String>>getArgument(0).size()));
 
         // when
         chunkEmbeddingService.enrichChunksWithEmbeddings(chunkedEntries);
@@ -173,6 +177,112 @@ class ChunkEmbeddingServiceTest {
         
     }
 
+    @Test
+    @DisplayName("Should split batches by estimated tokens and reassemble vectors in input order")
+    void shouldSplitBatchesByTokensAndReassembleInOrder() throws EmbeddingServiceException, DocumentProcessingException {
+        // given - one token per chunk, at most 3 tokens per request, 4 requests in flight
+        final EmbeddingBatchPlanner planner = new EmbeddingBatchPlanner(text -> 1, 2048, 3);
+        chunkEmbeddingService = new ChunkEmbeddingService(mockEmbeddingService, planner, DISABLED_CACHE, 4, 0, Duration.ofMillis(1));
+        final List<ChunkedEntry> chunkedEntries = createChunkedEntries(10);
+
+        // Each vector encodes the chunk it was computed for
+        when(mockEmbeddingService.embedCollectionData(anyList())).thenAnswer(invocation -> {
+            final List<String> batch = invocation.getArgument(0);
+            return batch.stream()
+                    .map(text -> EmbeddingVector.of(Float.parseFloat(text.substring("Chunk text ".length()))))
+                    .toList();
+        });
+
+        // when
+        chunkEmbeddingService.enrichChunksWithEmbeddings(chunkedEntries);
+
+        // then
+        final ArgumentCaptor<List<String>> batches = ArgumentCaptor.forClass(List.class);
+        verify(mockEmbeddingService, times(4)).embedCollectionData(batches.capture());
+        assertEquals(List.of(1, 3, 3, 3), batches.getAllValues().stream().map(List::size).sorted().toList());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(EmbeddingVector.of((float) i), chunkedEntries.get(i).chunkVector());
+        }
+    }
+
+    @Test
+    @DisplayName("Should retry a throttled batch and then succeed")
+    void shouldRetryThrottledBatch() throws EmbeddingServiceException, DocumentProcessingException {
+        // given
+        chunkEmbeddingService = new ChunkEmbeddingService(mockEmbeddingService,
+                new EmbeddingBatchPlanner(text -> 1, 2048, 1000), DISABLED_CACHE, 4, 2, Duration.ofMillis(1));
+        final List<ChunkedEntry> chunkedEntries = createChunkedEntries(3);
+        final EmbeddingServiceException throttled = throttled();
+
+        when(mockEmbeddingService.embedCollectionData(anyList()))
+                .thenThrow(throttled)
+                .thenReturn(createMockEmbeddings(3));
+
+        // when
+        chunkEmbeddingService.enrichChunksWithEmbeddings(chunkedEntries);
+
+        // then
+        verify(mockEmbeddingService, times(2)).embedCollectionData(anyList());
+        assertNotNull(chunkedEntries.get(2).chunkVector());
+    }
+
+    @Test
+    @DisplayName("Should give up on a batch that stays throttled after the configured retries")
+    void shouldFailWhenThrottlingPersists() throws EmbeddingServiceException {
+        // given
+        chunkEmbeddingService = new ChunkEmbeddingService(mockEmbeddingService,
+                new EmbeddingBatchPlanner(text -> 1, 2048, 1000), DISABLED_CACHE, 4, 2, Duration.ofMillis(1));
+        final List<ChunkedEntry> chunkedEntries = createChunkedEntries(3);
+        final EmbeddingServiceException throttled = throttled();
+
+        when(mockEmbeddingService.embedCollectionData(anyList())).thenThrow(throttled);
+
+        // when
+        assertThrows(DocumentProcessingException.class,
+                () -> chunkEmbeddingService.enrichChunksWithEmbeddings(chunkedEntries));
+
+        // then - the first attempt plus two retries
+        verify(mockEmbeddingService, times(3)).embedCollectionData(anyList());
+        assertNull(chunkedEntries.get(0).chunkVector());
+    }
+
+    @Test
+    @DisplayName("Should embed only uncached texts, once each, and cache the new vectors")
+    void shouldEmbedOnlyUncachedDistinctTexts() throws EmbeddingServiceException, DocumentProcessingException {
+        // given - chunk 0 was embedded before, chunks 1 and 3 share text
+        final EmbeddingCache cache = new EmbeddingCache(true, 100, null, "embed-large");
+        final EmbeddingVector cached = EmbeddingVector.of(9f);
+        cache.store(List.of("Standard form"), new EmbeddingVector[]{cached});
+        chunkEmbeddingService = new ChunkEmbeddingService(mockEmbeddingService,
+                new EmbeddingBatchPlanner(text -> 1, 2048, 1000), cache, 4, 0, Duration.ofMillis(1));
+
+        final List<ChunkedEntry> chunkedEntries = new ArrayList<>(List.of(
+                createChunkedEntry(0, "Standard form"),
+                createChunkedEntry(1, "Repeated statement"),
+                createChunkedEntry(2, "New page"),
+                createChunkedEntry(3, "Repeated statement")));
+        when(mockEmbeddingService.embedCollectionData(List.of("Repeated statement", "New page")))
+                .thenReturn(List.of(EmbeddingVector.of(1f), EmbeddingVector.of(2f)));
+
+        // when
+        chunkEmbeddingService.enrichChunksWithEmbeddings(chunkedEntries);
+
+        // then
+        verify(mockEmbeddingService, times(1)).embedCollectionData(anyList());
+        assertEquals(cached, chunkedEntries.get(0).chunkVector());
+        assertEquals(EmbeddingVector.of(1f), chunkedEntries.get(1).chunkVector());
+        assertEquals(EmbeddingVector.of(2f), chunkedEntries.get(2).chunkVector());
+        assertEquals(EmbeddingVector.of(1f), chunkedEntries.get(3).chunkVector());
+        assertEquals(EmbeddingVector.of(2f), cache.lookup(List.of("New page"))[0]);
+    }
+
+    private EmbeddingServiceException throttled() {
+        final HttpResponse response = mock(HttpResponse.class);
+        when(response.getStatusCode()).thenReturn(429);
+        when(response.getHeaderValue(HttpHeaderName.RETRY_AFTER_MS)).thenReturn("5");
+        return new EmbeddingServiceException("Failed to embed content", new HttpResponseException("Too Many Requests", response));
+    }
+
     private List<ChunkedEntry> createChunkedEntries(int count) {
         List<ChunkedEntry> entries = new ArrayList<>();
         for (int i = 0; i < count; i++) {
@@ -194,20 +304,20 @@ class ChunkEmbeddingServiceTest {
                 .build();
     }
 
-    private List<List<Float>> createMockEmbeddings(int count) {
-        List<List<Float>> embeddings = new ArrayList<>();
+    private List<EmbeddingVector> createMockEmbeddings(int count) {
+        List<EmbeddingVector> embeddings = new ArrayList<>();
         for (int i = 0; i < count; i++) {
             embeddings.add(createMockEmbedding(1536)); // Typical embedding dimension
         }
         return embeddings;
     }
 
-    private List<Float> createMockEmbedding(int dimension) {
-        List<Float> embedding = new ArrayList<>();
+    private EmbeddingVector createMockEmbedding(int dimension) {
+        float[] embedding = new float[dimension];
         for (int i = 0; i < dimension; i++) {
-            embedding.add(0.1f + (i * 0.001f));
+            embedding[i] = 0.1f + (i * 0.001f);
         }
-        return embedding;
+        return EmbeddingVector.of(embedding);
     }
 }
 
@@ -1,7 +1,11 @@
 package uk.gov.moj.cp.ingestion.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
 import uk.gov.moj.cp.ai.model.QueueIngestionMetadata;
@@ -9,8 +13,11 @@ import uk.gov.moj.cp.ingestion.exception.DocumentProcessingException;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import com.azure.ai.documentintelligence.models.AnalyzeResult;
+import com.azure.ai.documentintelligence.models.DocumentLine;
+import com.azure.ai.documentintelligence.models.DocumentPage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -93,4 +100,51 @@ class DocumentChunkingServiceTest {
         // then
         assertNotNull(chunks);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Chunk a Page Range with the Page Numbers of the Whole Document")
+    void shouldChunkPageRangeWithDocumentPageNumbers() throws Exception {
+        // given
+        final List<DocumentPage> pages = List.of(page("First page of the bundle"), page("Second page of the bundle"),
+                page("Third page of the bundle"));
+        when(analyzeResult.getPages()).thenReturn(pages);
+
+        // when
+        final List<ChunkedEntry> range = documentChunkingService.chunkPages(analyzeResult, metadata, 2, 3);
+        final List<ChunkedEntry> whole = documentChunkingService.chunkDocument(analyzeResult, metadata);
+
+        // then
+        assertEquals(3, documentChunkingService.pageCount(analyzeResult));
+        assertEquals(List.of(2, 3), range.stream().map(ChunkedEntry::pageNumber).toList());
+        assertEquals(whole.subList(1, 3).stream().map(ChunkedEntry::chunk).toList(),
+                range.stream().map(ChunkedEntry::chunk).toList());
+    }
+
+    @Test
+    @DisplayName("Give Chunks the Same Ids When a Document Is Chunked Again")
+    void shouldGiveChunksStableIds() throws Exception {
+        // given
+        final List<DocumentPage> pages = List.of(page("First page of the bundle"), page("Second page of the bundle"),
+                page("Third page of the bundle"));
+        when(analyzeResult.getPages()).thenReturn(pages);
+
+        // when
+        final List<String> firstAttempt = documentChunkingService.chunkPages(analyzeResult, metadata, 1, 3).stream().map(ChunkedEntry::id).toList();
+        final List<String> retry = documentChunkingService.chunkDocument(analyzeResult, metadata).stream().map(ChunkedEntry::id).toList();
+
+        // then
+        assertEquals(firstAttempt, retry);
+        assertEquals(3, Set.copyOf(retry).size());
+        assertEquals(DocumentChunkingService.chunkId(metadata.clientId(), metadata.documentId(), 2, 0), retry.get(1));
+        assertNotEquals(DocumentChunkingService.chunkId("another-client", metadata.documentId(), 2, 0), retry.get(1));
+        assertNotEquals(DocumentChunkingService.chunkId(metadata.clientId(), "another-document", 2, 0), retry.get(1));
+    }
+
+    private static DocumentPage page(final String text) {
+        final DocumentLine line = mock(DocumentLine.class);
+        when(line.getContent()).thenReturn(text);
+        final DocumentPage page = mock(DocumentPage.class);
+        when(page.getLines()).thenReturn(List.of(line));
+        return page;
+    }
+}
@@ -7,8 +7,9 @@ import static org.mockito.Mockito.when;
 import static uk.gov.moj.cp.ai.index.IndexConstants.CLIENT_ID;
 
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import com.azure.search.documents.SearchClient;
@@ -68,7 +69,7 @@ class DocumentStorageServiceClientIdentityTest {
         return ChunkedEntry.builder()
                 .id("1")
                 .chunk("content")
-                .chunkVector(Collections.nCopies(VECTOR_DIMENSIONS, 0.1f))
+                .chunkVector(filledVector(0.1f))
                 .documentFileName("doc.pdf")
                 .pageNumber(1)
                 .documentId("doc1")
@@ -76,4 +77,10 @@ class DocumentStorageServiceClientIdentityTest {
                 .clientId(clientId)
                 .build();
     }
+
+    private static EmbeddingVector filledVector(final float value) {
+        final float[] values = new float[VECTOR_DIMENSIONS];
+        Arrays.fill(values, value);
+        return EmbeddingVector.of(values);
+    }
 }
@@ -12,6 +12,8 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static uk.gov.moj.cp.ai.index.IndexConstants.CUSTOM_METADATA;
 import static uk.gov.moj.cp.ai.index.IndexConstants.FALSE_VALUE;
@@ -19,12 +21,18 @@ import static uk.gov.moj.cp.ai.index.IndexConstants.ID;
 import static uk.gov.moj.cp.ai.index.IndexConstants.IS_ACTIVE;
 
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+import uk.gov.moj.cp.ai.search.IndexingFailure;
+import uk.gov.moj.cp.ai.search.VectorSearchBackend;
+import uk.gov.moj.cp.ai.service.table.SearchIndexGenerationTableService;
+import uk.gov.moj.cp.ingestion.exception.ChunkIndexingException;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.azure.search.documents.SearchClient;
 import com.azure.search.documents.SearchDocument;
@@ -215,11 +223,10 @@ class DocumentStorageServiceTest {
         documentStorageService.markDocumentsInActive(null, ids);
 
         // then
-        final String filter = optionsCaptor.getValue().getFilter();
+        final SearchOptions options = optionsCaptor.getValue();
 
-        assertThat(filter.contains("customMetadata/any(m: m/key eq 'documentId' and m/value eq 'doc1'"), is(true));
-        assertThat(filter.contains("customMetadata/any(m: m/key eq 'documentId' and m/value eq 'doc2'"), is(true));
-        assertThat(filter.contains("or"), is(true));
+        assertThat(options.getFilter(), is("customMetadata/any(m: m/key eq 'documentId' and search.in(m/value, 'doc1,doc2', ','))"));
+        assertThat(options.getOrderBy(), is(List.of("id asc")));
     }
 
     @Test
@@ -270,4 +277,114 @@ class DocumentStorageServiceTest {
         assertThat(filter.startsWith("customMetadata/any(m: m/key eq 'documentId'"), is(true));
         assertThat(filter.contains("clientId eq"), is(false));
     }
+
+    @Test
+    @DisplayName("Bumps the search index generation of every uploaded client once the batch is stored")
+    void shouldBumpSearchIndexGenerationAfterUpload() throws Exception {
+        // given
+        final SearchClient searchClient = mock(SearchClient.class);
+        when(searchClient.getIndexName()).thenReturn("test-index");
+        final SearchIndexGenerationTableService generations = mock(SearchIndexGenerationTableService.class);
+        final DocumentStorageService documentStorageService = new DocumentStorageService(searchClient, generations);
+
+        // when
+        documentStorageService.uploadChunks(List.of(validChunk("1", "client-a"), validChunk("2", "client-a"), validChunk("3", null)));
+
+        // then
+        verify(generations).bumpGeneration("client-a");
+        verify(generations).bumpGeneration(null);
+    }
+
+    @Test
+    @DisplayName("Does not bump the search index generation when the upload fails")
+    void shouldNotBumpSearchIndexGenerationWhenUploadFails() {
+        // given
+        final SearchClient searchClient = mock(SearchClient.class);
+        when(searchClient.getIndexName()).thenReturn("test-index");
+        when(searchClient.uploadDocuments(anyList())).thenThrow(new RuntimeException("boom"));
+        final SearchIndexGenerationTableService generations = mock(SearchIndexGenerationTableService.class);
+        final DocumentStorageService documentStorageService = new DocumentStorageService(searchClient, generations);
+
+        // when & then
+        assertThrows(Exception.class, () -> documentStorageService.uploadChunks(List.of(validChunk("1", "client-a"))));
+        verifyNoInteractions(generations);
+    }
+
+    @Test
+    @DisplayName("Fails indexing when the index rejects some chunks, reporting the clients of those it wrote without bumping")
+    void shouldFailUploadWhenIndexRejectsChunks() {
+        // given
+        final VectorSearchBackend searchBackend = mock(VectorSearchBackend.class);
+        when(searchBackend.indexName()).thenReturn("test-index");
+        when(searchBackend.upload(anyList())).thenReturn(List.of(new IndexingFailure("2", 400, "Invalid document")));
+        final SearchIndexGenerationTableService generations = mock(SearchIndexGenerationTableService.class);
+        final DocumentStorageService documentStorageService = new DocumentStorageService(searchBackend, generations);
+
+        // when
+        final ChunkIndexingException exception = assertThrows(ChunkIndexingException.class,
+                () -> documentStorageService.indexChunks(List.of(validChunk("1", "client-a"), validChunk("2", "client-b"))));
+
+        // then
+        assertThat(exception.getMessage().contains("1 of 2 chunks"), is(true));
+        assertThat(exception.getMessage().contains("'2' (400 Invalid document)"), is(true));
+        assertThat(exception.writtenClientIds(), is(Set.of("client-a")));
+        verify(searchBackend).upload(anyList());
+        verifyNoInteractions(generations);
+    }
+
+    @Test
+    @DisplayName("Bumps the generation once, for the clients of the chunks written, when an upload partly fails")
+    void shouldBumpOnceForChunksWrittenWhenUploadPartlyFails() {
+        // given
+        final VectorSearchBackend searchBackend = mock(VectorSearchBackend.class);
+        when(searchBackend.indexName()).thenReturn("test-index");
+        when(searchBackend.upload(anyList())).thenReturn(List.of(new IndexingFailure("2", 400, "Invalid document")));
+        final SearchIndexGenerationTableService generations = mock(SearchIndexGenerationTableService.class);
+        final DocumentStorageService documentStorageService = new DocumentStorageService(searchBackend, generations);
+
+        // when
+        assertThrows(ChunkIndexingException.class,
+                () -> documentStorageService.uploadChunks(List.of(validChunk("1", "client-a"), validChunk("2", "client-b"))));
+
+        // then
+        verify(generations).bumpGeneration("client-a");
+        verifyNoMoreInteractions(generations);
+    }
+
+    @Test
+    @DisplayName("Bumps the client's search index generation after marking documents inactive")
+    void shouldBumpSearchIndexGenerationAfterMarkingInactive() {
+        // given
+        final SearchClient searchClient = mock(SearchClient.class);
+        when(searchClient.getIndexName()).thenReturn("test-index");
+        final SearchIndexGenerationTableService generations = mock(SearchIndexGenerationTableService.class);
+        final DocumentStorageService documentStorageService = new DocumentStorageService(searchClient, generations);
+
+        final SearchDocument doc = new SearchDocument();
+        doc.put(ID, "doc1");
+        final SearchResult result = mock(SearchResult.class);
+        when(result.getDocument(SearchDocument.class)).thenReturn(doc);
+        final SearchPagedIterable iterable = mock(SearchPagedIterable.class);
+        when(iterable.iterator()).thenReturn(List.of(result).iterator());
+        when(searchClient.search(anyString(), any(SearchOptions.class), any())).thenReturn(iterable);
+
+        // when
+        documentStorageService.markDocumentsInActive("client-a", List.of("doc1"));
+
+        // then
+        verify(generations).bumpGeneration("client-a");
+    }
+
+    private static ChunkedEntry validChunk(final String id, final String clientId) {
+        return ChunkedEntry.builder()
+                .id(id)
+                .chunk("content")
+                .chunkVector(EmbeddingVector.of(new float[DocumentStorageService.VECTOR_DIMENSIONS]))
+                .documentFileName("doc.pdf")
+                .pageNumber(1)
+                .documentId("doc1")
+                .chunkIndex(0)
+                .clientId(clientId)
+                .build();
+    }
 }
@@ -0,0 +1,52 @@
+package uk.gov.moj.cp.ingestion.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import uk.gov.moj.cp.ingestion.service.EmbeddingBatchPlanner.Batch;
+
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class EmbeddingBatchPlannerTest {
+
+    @Test
+    @DisplayName("Should close a batch before it exceeds the token limit")
+    void shouldCloseBatchAtTokenLimit() {
+        final EmbeddingBatchPlanner planner = new EmbeddingBatchPlanner(String::length, 100, 10);
+
+        final List<Batch> batches = planner.plan(List.of("aaaa", "bbbb", "cc", "dddd", "e"));
+
+        assertEquals(List.of(new Batch(0, 3, 10), new Batch(3, 5, 5)), batches);
+    }
+
+    @Test
+    @DisplayName("Should close a batch at the input limit")
+    void shouldCloseBatchAtInputLimit() {
+        final EmbeddingBatchPlanner planner = new EmbeddingBatchPlanner(text -> 1, 2, 1000);
+
+        final List<Batch> batches = planner.plan(List.of("a", "b", "c", "d", "e"));
+
+        assertEquals(List.of(new Batch(0, 2, 2), new Batch(2, 4, 2), new Batch(4, 5, 1)), batches);
+    }
+
+    @Test
+    @DisplayName("Should send a text above the token limit on its own")
+    void shouldIsolateOversizedText() {
+        final EmbeddingBatchPlanner planner = new EmbeddingBatchPlanner(String::length, 100, 5);
+
+        final List<Batch> batches = planner.plan(List.of("ab", "abcdefgh", "cd"));
+
+        assertEquals(List.of(new Batch(0, 1, 2), new Batch(1, 2, 8), new Batch(2, 3, 2)), batches);
+    }
+
+    @Test
+    @DisplayName("Should plan nothing for no texts and reject non-positive limits")
+    void shouldHandleEmptyInputAndRejectBadLimits() {
+        assertTrue(new EmbeddingBatchPlanner(String::length, 10, 10).plan(List.of()).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new EmbeddingBatchPlanner(String::length, 0, 10));
+    }
+}
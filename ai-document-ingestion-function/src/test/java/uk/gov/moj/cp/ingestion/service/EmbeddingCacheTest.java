@@ -0,0 +1,93 @@
+package uk.gov.moj.cp.ingestion.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import uk.gov.moj.cp.ai.exception.EntityRetrievalException;
+import uk.gov.moj.cp.ai.exception.TableOperationException;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+import uk.gov.moj.cp.ai.service.table.EmbeddingCacheTableService;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class EmbeddingCacheTest {
+
+    private static final String DEPLOYMENT = "embed-large";
+
+    private EmbeddingCacheTableService table;
+    private EmbeddingCache cache;
+
+    @BeforeEach
+    void setUp() {
+        table = mock(EmbeddingCacheTableService.class);
+        cache = new EmbeddingCache(true, 100, table, DEPLOYMENT);
+    }
+
+    @Test
+    @DisplayName("Keys by deployment and normalised text")
+    void keysByDeploymentAndNormalisedText() {
+        final String key = EmbeddingCache.contentHash(DEPLOYMENT, "Witness  statement\n of J. Smith ");
+
+        assertEquals(64, key.length());
+        assertEquals(key, EmbeddingCache.contentHash(DEPLOYMENT, "Witness statement of J. Smith"));
+        assertNotEquals(key, EmbeddingCache.contentHash("embed-small", "Witness statement of J. Smith"));
+        assertNotEquals(key, EmbeddingCache.contentHash(DEPLOYMENT, "witness statement of J. Smith"));
+    }
+
+    @Test
+    @DisplayName("Serves stored vectors from memory and falls back to the table for the rest")
+    void servesFromMemoryThenTable() throws EntityRetrievalException {
+        final EmbeddingVector first = EmbeddingVector.of(1f);
+        final EmbeddingVector second = EmbeddingVector.of(2f);
+        cache.store(List.of("first"), new EmbeddingVector[]{first});
+        when(table.get(DEPLOYMENT, EmbeddingCache.contentHash(DEPLOYMENT, "second"))).thenReturn(second);
+
+        final EmbeddingVector[] vectors = cache.lookup(List.of("first", "second", "third"));
+
+        assertArrayEquals(new EmbeddingVector[]{first, second, null}, vectors);
+        verify(table).put(DEPLOYMENT, EmbeddingCache.contentHash(DEPLOYMENT, "first"), first);
+        verify(table, never()).get(DEPLOYMENT, EmbeddingCache.contentHash(DEPLOYMENT, "first"));
+
+        // the table hit is now held in memory
+        cache.lookup(List.of("second"));
+        verify(table, times(1)).get(DEPLOYMENT, EmbeddingCache.contentHash(DEPLOYMENT, "second"));
+    }
+
+    @Test
+    @DisplayName("Treats table failures as misses and skips vectors that are missing or empty")
+    void toleratesTableFailures() throws EntityRetrievalException {
+        when(table.get(eq(DEPLOYMENT), anyString())).thenThrow(new EntityRetrievalException("down", new RuntimeException()));
+        doThrow(new TableOperationException("down", new RuntimeException())).when(table).put(anyString(), anyString(), any());
+
+        cache.store(List.of("a", "b", "c"), new EmbeddingVector[]{EmbeddingVector.of(1f), null, EmbeddingVector.EMPTY});
+
+        assertArrayEquals(new EmbeddingVector[]{EmbeddingVector.of(1f), null, null}, cache.lookup(List.of("a", "b", "c")));
+        verify(table, times(1)).put(anyString(), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Does nothing when disabled")
+    void doesNothingWhenDisabled() {
+        final EmbeddingCache disabled = new EmbeddingCache(false, 100, table, DEPLOYMENT);
+
+        disabled.store(List.of("a"), new EmbeddingVector[]{EmbeddingVector.of(1f)});
+
+        assertNull(disabled.lookup(List.of("a"))[0]);
+        verify(table, never()).put(anyString(), anyString(), any());
+    }
+}
@@ -0,0 +1,231 @@
+package uk.gov.moj.cp.ingestion.service;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+import uk.gov.moj.cp.ai.model.QueueIngestionMetadata;
+import uk.gov.moj.cp.ai.search.local.LocalSearchBackend;
+import uk.gov.moj.cp.ingestion.exception.ChunkIndexingException;
+import uk.gov.moj.cp.ingestion.exception.DocumentProcessingException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.azure.ai.documentintelligence.models.AnalyzeResult;
+import com.azure.ai.documentintelligence.models.DocumentLine;
+import com.azure.ai.documentintelligence.models.DocumentPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionPipelineTest {
+
+    private static final String CLIENT_ID = "client-a";
+
+    @Mock
+    private AnalyzeResult analyzeResult;
+    @Mock
+    private DocumentChunkingService documentChunkingService;
+    @Mock
+    private ChunkEmbeddingService chunkEmbeddingService;
+    @Mock
+    private DocumentStorageService documentStorageService;
+
+    private final QueueIngestionMetadata metadata = new QueueIngestionMetadata("doc-1", "bundle.pdf",
+            singletonMap("document_type", "BUNDLE"), "https://storage.blob.core.windows.net/c/bundle.pdf",
+            "2025-10-07T10:30:45.123456Z", CLIENT_ID);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // one chunk per page, carrying its page number
+        lenient().when(documentChunkingService.chunkPages(eq(analyzeResult), eq(metadata), anyInt(), anyInt())).thenAnswer(invocation -> {
+            final List<ChunkedEntry> chunks = new ArrayList<>();
+            for (int page = invocation.<Integer>getArgument(2); page <= invocation.<Integer>getArgument(3); page++) {
+                chunks.add(ChunkedEntry.builder().id("chunk-" + page).chunk("Page " + page).pageNumber(page).clientId(CLIENT_ID).build());
+            }
+            return chunks;
+        });
+    }
+
+    @Test
+    @DisplayName("Indexes every page range once and bumps the client's generation once")
+    void shouldIndexEveryRangeAndBumpOnce() throws Exception {
+        when(documentChunkingService.pageCount(analyzeResult)).thenReturn(10);
+        doAnswer(invocation -> {
+            final List<ChunkedEntry> chunks = invocation.getArgument(0);
+            chunks.replaceAll(chunk -> chunk.toBuilder().chunkVector(EmbeddingVector.of(chunk.pageNumber())).build());
+            return null;
+        }).when(chunkEmbeddingService).enrichChunksWithEmbeddings(anyList());
+        final List<Integer> indexedPages = new ArrayList<>();
+        when(documentStorageService.indexChunks(anyList())).thenAnswer(invocation -> {
+            final List<ChunkedEntry> chunks = invocation.getArgument(0);
+            synchronized (indexedPages) {
+                chunks.forEach(chunk -> {
+                    assertEquals(EmbeddingVector.of(chunk.pageNumber()), chunk.chunkVector());
+                    indexedPages.add(chunk.pageNumber());
+                });
+            }
+            return Set.of(CLIENT_ID);
+        });
+
+        final int indexed = new IngestionPipeline(documentChunkingService, chunkEmbeddingService, documentStorageService, 3, 1, 2)
+                .run(analyzeResult, metadata);
+
+        assertEquals(10, indexed);
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), indexedPages.stream().sorted().toList());
+        verify(documentChunkingService).chunkPages(analyzeResult, metadata, 10, 10);
+        verify(documentStorageService).bumpSearchIndexGenerations(Set.of(CLIENT_ID));
+    }
+
+    @Test
+    @DisplayName("Holds a bounded number of page ranges however long the document is")
+    void shouldBoundRangesInFlight() throws Exception {
+        when(documentChunkingService.pageCount(analyzeResult)).thenReturn(200);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return null;
+        }).when(chunkEmbeddingService).enrichChunksWithEmbeddings(anyList());
+        when(documentStorageService.indexChunks(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(2);
+            inFlight.decrementAndGet();
+            return Set.of(CLIENT_ID);
+        });
+
+        new IngestionPipeline(documentChunkingService, chunkEmbeddingService, documentStorageService, 1, 2, 2)
+                .run(analyzeResult, metadata);
+
+        // two embedders, an embedded queue of two and the range being uploaded
+        assertTrue(maxInFlight.get() <= 5, "ranges holding vectors at once: " + maxInFlight.get());
+    }
+
+    @Test
+    @DisplayName("Stops every stage on the first failure and still bumps for ranges already indexed")
+    void shouldStopOnFailure() throws Exception {
+        when(documentChunkingService.pageCount(analyzeResult)).thenReturn(50);
+        final DocumentProcessingException failure = new DocumentProcessingException("embedding failed");
+        final CountDownLatch indexed = new CountDownLatch(2);
+        final AtomicInteger embedded = new AtomicInteger();
+        doAnswer(invocation -> {
+            // fail the third range only once the first two are indexed
+            if (embedded.incrementAndGet() == 3) {
+                indexed.await();
+                throw failure;
+            }
+            return null;
+        }).when(chunkEmbeddingService).enrichChunksWithEmbeddings(anyList());
+        when(documentStorageService.indexChunks(anyList())).thenAnswer(invocation -> {
+            indexed.countDown();
+            return Set.of(CLIENT_ID);
+        });
+
+        final IngestionPipeline pipeline = new IngestionPipeline(documentChunkingService, chunkEmbeddingService, documentStorageService, 1, 1, 1);
+        final DocumentProcessingException thrown = assertThrows(DocumentProcessingException.class, () -> pipeline.run(analyzeResult, metadata));
+
+        assertSame(failure, thrown);
+        verify(documentChunkingService, never()).chunkPages(analyzeResult, metadata, 50, 50);
+        verify(documentStorageService, times(2)).indexChunks(anyList());
+        verify(documentStorageService).bumpSearchIndexGenerations(Set.of(CLIENT_ID));
+    }
+
+    @Test
+    @DisplayName("Bumps once, including the clients of a range only partly indexed")
+    void shouldBumpOnceForPartlyIndexedRange() throws Exception {
+        when(documentChunkingService.pageCount(analyzeResult)).thenReturn(4);
+        final ChunkIndexingException failure = new ChunkIndexingException("1 of 2 chunks failed", Set.of("client-b"));
+        when(documentStorageService.indexChunks(anyList())).thenReturn(Set.of(CLIENT_ID)).thenThrow(failure);
+
+        final IngestionPipeline pipeline = new IngestionPipeline(documentChunkingService, chunkEmbeddingService, documentStorageService, 2, 1, 1);
+        final ChunkIndexingException thrown = assertThrows(ChunkIndexingException.class, () -> pipeline.run(analyzeResult, metadata));
+
+        assertSame(failure, thrown);
+        verify(documentStorageService).bumpSearchIndexGenerations(Set.of(CLIENT_ID, "client-b"));
+    }
+
+    @Test
+    @DisplayName("Overwrites the chunks a failed run indexed when the document is retried")
+    void shouldOverwriteChunksOnRetry() throws Exception {
+        // given
+        final List<DocumentPage> pages = new ArrayList<>();
+        for (int page = 1; page <= 6; page++) {
+            pages.add(page("Text of page " + page + " of the bundle"));
+        }
+        when(analyzeResult.getPages()).thenReturn(pages);
+        final LocalSearchBackend backend = new LocalSearchBackend("pipeline-retry-index");
+        final DocumentStorageService storage = spy(new DocumentStorageService(backend, null));
+        final CountDownLatch indexed = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            final Set<?> clientIds = (Set<?>) invocation.callRealMethod();
+            indexed.countDown();
+            return clientIds;
+        }).when(storage).indexChunks(anyList());
+        final AtomicInteger embedded = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (embedded.incrementAndGet() == 3) {
+                indexed.await();
+                throw new DocumentProcessingException("embedding failed");
+            }
+            final List<ChunkedEntry> chunks = invocation.getArgument(0);
+            final float[] vector = new float[DocumentStorageService.VECTOR_DIMENSIONS];
+            Arrays.fill(vector, 1f);
+            chunks.replaceAll(chunk -> chunk.toBuilder().chunkVector(EmbeddingVector.of(vector)).build());
+            return null;
+        }).when(chunkEmbeddingService).enrichChunksWithEmbeddings(anyList());
+        final IngestionPipeline pipeline = new IngestionPipeline(new DocumentChunkingService(), chunkEmbeddingService, storage, 2, 1, 1);
+
+        // when
+        assertThrows(DocumentProcessingException.class, () -> pipeline.run(analyzeResult, metadata));
+        final int afterFailure = backend.size();
+        final int indexedOnRetry = pipeline.run(analyzeResult, metadata);
+
+        // then
+        assertEquals(4, afterFailure);
+        assertEquals(6, indexedOnRetry);
+        assertEquals(6, backend.size());
+    }
+
+    @Test
+    @DisplayName("Writes nothing and bumps nothing for a document without pages")
+    void shouldDoNothingWithoutPages() throws Exception {
+        when(documentChunkingService.pageCount(analyzeResult)).thenReturn(0);
+
+        assertEquals(0, new IngestionPipeline(documentChunkingService, chunkEmbeddingService, documentStorageService, 4, 2, 2)
+                .run(analyzeResult, metadata));
+
+        verify(documentStorageService, never()).indexChunks(anyList());
+        verify(documentStorageService).bumpSearchIndexGenerations(Set.of());
+    }
+
+    private static DocumentPage page(final String text) {
+        final DocumentLine line = mock(DocumentLine.class);
+        when(line.getContent()).thenReturn(text);
+        final DocumentPage page = mock(DocumentPage.class);
+        when(page.getLines()).thenReturn(List.of(line));
+        return page;
+    }
+}
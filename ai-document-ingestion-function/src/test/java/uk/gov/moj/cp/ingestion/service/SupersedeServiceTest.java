@@ -0,0 +1,140 @@
+package uk.gov.moj.cp.ingestion.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CHUNK;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CLIENT_ID;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CUSTOM_METADATA;
+import static uk.gov.moj.cp.ai.index.IndexConstants.DOCUMENT_ID;
+import static uk.gov.moj.cp.ai.index.IndexConstants.ID;
+import static uk.gov.moj.cp.ai.index.IndexConstants.IS_ACTIVE;
+
+import uk.gov.moj.cp.ai.model.KeyValuePair;
+import uk.gov.moj.cp.ai.search.IndexBatchWriter;
+import uk.gov.moj.cp.ai.search.IndexingFailure;
+import uk.gov.moj.cp.ai.search.SearchRequest;
+import uk.gov.moj.cp.ai.search.VectorSearchBackend;
+import uk.gov.moj.cp.ai.search.local.LocalSearchBackend;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.azure.search.documents.SearchDocument;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongCounterBuilder;
+import io.opentelemetry.api.metrics.Meter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class SupersedeServiceTest {
+
+    private static final String INACTIVE = "customMetadata/any(m: m/key eq 'is_active' and m/value eq 'false')";
+
+    private Meter meterMock;
+    private LongCounter counterMock;
+
+    @BeforeEach
+    void setUp() {
+        meterMock = mock(Meter.class);
+        final LongCounterBuilder builderMock = mock(LongCounterBuilder.class);
+        counterMock = mock(LongCounter.class);
+        when(meterMock.counterBuilder(anyString())).thenReturn(builderMock);
+        when(builderMock.setDescription(anyString())).thenReturn(builderMock);
+        when(builderMock.setUnit(anyString())).thenReturn(builderMock);
+        when(builderMock.build()).thenReturn(counterMock);
+    }
+
+    @Test
+    @DisplayName("Deactivates every chunk of a large bundle in bounded id groups, keyset pages and merge batches")
+    @SuppressWarnings("unchecked")
+    void deactivatesBundleInBoundedSteps() {
+        // given
+        final LocalSearchBackend backend = spy(new LocalSearchBackend("supersede-index"));
+        final List<Map<String, Object>> chunks = new ArrayList<>();
+        for (int document = 0; document < 5; document++) {
+            for (int chunk = 0; chunk < 5; chunk++) {
+                chunks.add(chunk("a-" + document + "-" + chunk, "doc-" + document, "client-a"));
+            }
+        }
+        chunks.add(chunk("b-0-0", "doc-0", "client-b"));
+        backend.upload(chunks);
+        final SupersedeService supersedeService = new SupersedeService(backend, new IndexBatchWriter(backend), 2, 3, 4, meterMock);
+
+        // when
+        final SupersedeService.Outcome outcome = supersedeService.deactivate("client-a",
+                List.of("doc-0", "doc-1", "doc-2", "doc-3", "doc-4", "doc-0"));
+
+        // then
+        assertEquals(25, outcome.matched());
+        assertEquals(25, outcome.deactivated());
+        assertTrue(outcome.failures().isEmpty());
+        // ids in groups of 2 (10, 10 and 5 chunks), read 3 at a time: 4 + 4 + 2 pages
+        verify(backend, times(10)).search(any(SearchRequest.class), any());
+        // 25 updates flushed 4 at a time
+        final ArgumentCaptor<List<Map<String, Object>>> merges = ArgumentCaptor.forClass(List.class);
+        verify(backend, times(7)).merge(merges.capture());
+        assertTrue(merges.getAllValues().stream().allMatch(batch -> batch.size() <= 4));
+        verify(counterMock, atLeastOnce()).add(4L, Attributes.of(AttributeKey.stringKey("outcome"), "deactivated"));
+        assertEquals(25, backend.search(SearchRequest.filterOnly("clientId eq 'client-a' and " + INACTIVE, List.of(ID)), Map.class).size());
+        assertEquals(0, backend.search(SearchRequest.filterOnly("clientId eq 'client-b' and " + INACTIVE, List.of(ID)), Map.class).size());
+    }
+
+    @Test
+    @DisplayName("Reports chunks the index could not merge, including ones deleted since they were read")
+    @SuppressWarnings("unchecked")
+    void reportsMergeFailures() {
+        // given
+        final VectorSearchBackend backend = mock(VectorSearchBackend.class);
+        when(backend.indexName()).thenReturn("test-index");
+        final SearchDocument first = new SearchDocument(Map.of(ID, "1", CUSTOM_METADATA, new ArrayList<>()));
+        final SearchDocument second = new SearchDocument(Map.of(ID, "2"));
+        when(backend.search(any(SearchRequest.class), any(Class.class))).thenReturn(List.of(first, second));
+        final IndexingFailure missing = new IndexingFailure("2", 404, "Document not found");
+        when(backend.merge(anyList())).thenReturn(List.of(missing));
+        final SupersedeService supersedeService = new SupersedeService(backend, new IndexBatchWriter(backend), 100, 1000, 4000, meterMock);
+
+        // when
+        final SupersedeService.Outcome outcome = supersedeService.deactivate(null, List.of("doc1"));
+
+        // then
+        assertEquals(2, outcome.matched());
+        assertEquals(1, outcome.deactivated());
+        assertEquals(List.of(missing), outcome.failures());
+        final ArgumentCaptor<List<SearchDocument>> merged = ArgumentCaptor.forClass(List.class);
+        verify(backend).merge(merged.capture());
+        final List<Map<String, String>> metadata = (List<Map<String, String>>) merged.getValue().get(1).get(CUSTOM_METADATA);
+        assertEquals(List.of(Map.of("key", IS_ACTIVE, "value", "false")), metadata);
+    }
+
+    @Test
+    @DisplayName("Matches a group of document ids with one search.in filter, escaped and scoped to the client")
+    void buildsSearchInFilter() {
+        assertEquals("clientId eq 'o''brien' and (customMetadata/any(m: m/key eq 'documentId' and search.in(m/value, 'doc1,doc''2', ',')))",
+                SupersedeService.filter("o'brien", List.of("doc1", "doc'2")));
+    }
+
+    private static Map<String, Object> chunk(final String id, final String documentId, final String clientId) {
+        final Map<String, Object> chunk = new HashMap<>();
+        chunk.put(ID, id);
+        chunk.put(CHUNK, "content of " + id);
+        chunk.put(DOCUMENT_ID, documentId);
+        chunk.put(CLIENT_ID, clientId);
+        chunk.put(CUSTOM_METADATA, List.of(new KeyValuePair(DOCUMENT_ID, documentId)));
+        return chunk;
+    }
+}
@@ -14,9 +14,10 @@ import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.model.KeyValuePair;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import com.azure.search.documents.SearchClient;
@@ -89,7 +90,7 @@ class IndexCopierTest {
         final IndexCopier copier = spy(new IndexCopier(mock(SearchClient.class), uploader, 5, 1, 0));
 
         final ChunkedEntry valid = chunk("id-1");                              // 3072-dim vector
-        final ChunkedEntry wrongSize = chunkWithVector("id-2", List.of(0.0f)); // too short
+        final ChunkedEntry wrongSize = chunkWithVector("id-2", EmbeddingVector.of(0.0f)); // too short
         final ChunkedEntry nullVector = chunkWithVector("id-3", null);         // missing
         doReturn(List.of(valid, wrongSize, nullVector)).when(copier).readPage(any(), any());
 
@@ -222,20 +223,26 @@ class IndexCopierTest {
     }
 
     private static ChunkedEntry chunk(final String id) {
-        return chunkWithVector(id, Collections.nCopies(IndexCopier.VECTOR_DIMENSIONS, 0.0f));
+        return chunkWithVector(id, filledVector(0.0f));
     }
 
-    private static ChunkedEntry chunkWithVector(final String id, final List<Float> vector) {
+    private static ChunkedEntry chunkWithVector(final String id, final EmbeddingVector vector) {
         return ChunkedEntry.builder().id(id).chunkVector(vector).build();
     }
 
+    private static EmbeddingVector filledVector(final float value) {
+        final float[] values = new float[IndexCopier.VECTOR_DIMENSIONS];
+        Arrays.fill(values, value);
+        return EmbeddingVector.of(values);
+    }
+
     /** A chunk with every field populated, a valid-size vector, and no clientId set (as a legacy source row). */
     private static ChunkedEntry populatedChunk(final String id) {
         return ChunkedEntry.builder()
                 .id(id)
                 .documentId("doc-" + id)
                 .chunk("content of " + id)
-                .chunkVector(Collections.nCopies(IndexCopier.VECTOR_DIMENSIONS, 0.1f))
+                .chunkVector(filledVector(0.1f))
                 .documentFileName("file-" + id + ".pdf")
                 .pageNumber(2)
                 .chunkIndex(4)
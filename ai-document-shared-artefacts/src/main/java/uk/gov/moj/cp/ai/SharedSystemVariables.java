@@ -15,6 +15,11 @@ public class SharedSystemVariables {
 
     public static final String STORAGE_ACCOUNT_TABLE_ANSWER_GENERATION = "STORAGE_ACCOUNT_TABLE_ANSWER_GENERATION";
     public static final String STORAGE_ACCOUNT_TABLE_DOCUMENT_INGESTION_OUTCOME = "STORAGE_ACCOUNT_TABLE_DOCUMENT_INGESTION_OUTCOME";
+    // Optional: per-client search index generation counters. Ingestion bumps them on every index
+    // write; the retrieval result cache only serves entries stamped with the current generation.
+    public static final String STORAGE_ACCOUNT_TABLE_SEARCH_INDEX_GENERATION = "STORAGE_ACCOUNT_TABLE_SEARCH_INDEX_GENERATION";
+    // Optional: persistent tier of the ingestion embedding cache, keyed by chunk text hash and deployment.
+    public static final String STORAGE_ACCOUNT_TABLE_EMBEDDING_CACHE = "STORAGE_ACCOUNT_TABLE_EMBEDDING_CACHE";
 
     public static final String STORAGE_ACCOUNT_BLOB_CONTAINER_NAME_DOCUMENT_UPLOAD = "STORAGE_ACCOUNT_BLOB_CONTAINER_NAME_DOCUMENT_UPLOAD";
     public static final String STORAGE_ACCOUNT_BLOB_CONTAINER_NAME_EVAL_PAYLOADS = "STORAGE_ACCOUNT_BLOB_CONTAINER_NAME_EVAL_PAYLOADS";
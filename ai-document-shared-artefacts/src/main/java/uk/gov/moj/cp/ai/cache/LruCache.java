@@ -0,0 +1,82 @@
+package uk.gov.moj.cp.ai.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small, thread-safe, in-process LRU cache with an optional time-to-live.
+ * <p>
+ * Holds at most {@code maxEntries} values, evicting the least recently read or written entry when
+ * full. An entry older than {@code ttl} is treated as absent and dropped on the next read; a null or
+ * zero {@code ttl} means entries only leave by eviction. Callers keep an instance in a static holder
+ * when the cache should outlive a single function invocation.
+ *
+ * @param <K> key type; must have value-based equals/hashCode
+ * @param <V> value type; null values are not stored
+ */
+public class LruCache<K, V> {
+
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Clock clock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    public LruCache(final int maxEntries, final Duration ttl) {
+        this(maxEntries, ttl, Clock.systemUTC());
+    }
+
+    public LruCache(final int maxEntries, final Duration ttl, final Clock clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.ttl = ttl == null || ttl.isZero() || ttl.isNegative() ? null : ttl;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, Entry<V>> eldest) {
+                return size() > LruCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the cached value, or null when absent or expired
+     */
+    public synchronized V get(final K key) {
+        final Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt != null && !clock.instant().isBefore(entry.expiresAt)) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public synchronized void put(final K key, final V value) {
+        if (value == null) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, ttl == null ? null : clock.instant().plus(ttl)));
+    }
+
+    public synchronized void invalidate(final K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private record Entry<V>(V value, Instant expiresAt) {
+    }
+}
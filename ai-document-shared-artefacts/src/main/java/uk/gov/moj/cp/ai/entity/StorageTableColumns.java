@@ -31,6 +31,16 @@ public class StorageTableColumns {
     public static final String TC_LEASE_OWNER = "LeaseOwner";
     public static final String TC_LEASE_EXPIRES_AT = "LeaseExpiresAt";
 
+    // ------------------------
+    // Search index generation columns (retrieval result cache invalidation)
+    // ------------------------
+    public static final String TC_GENERATION = "Generation";
+
+    // ------------------------
+    // Embedding cache columns (ingestion re-embedding avoidance)
+    // ------------------------
+    public static final String TC_EMBEDDING = "Embedding";
+
     private StorageTableColumns(){
         //constants class
     }
@@ -0,0 +1,65 @@
+package uk.gov.moj.cp.ai.metrics;
+
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+
+import uk.gov.moj.cp.ai.coverage.Generated;
+
+import com.azure.monitor.opentelemetry.autoconfigure.AzureMonitorAutoConfigure;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdk;
+import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdkBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point for operational metrics (cache hit rates, batch outcomes, token usage) published through
+ * the OpenTelemetry API.
+ * <p>
+ * When {@code SERVICE_METRICS_AZURE_INSIGHTS_CONNECTION_STRING} is set, an OpenTelemetry SDK exporting
+ * to that Application Insights resource is configured once, as the scoring function's
+ * AzureMonitorService does. It is kept private rather than registered as the global instance, so it
+ * cannot clash with AzureMonitorService in the same process. Unset (tests, local runs) the meter is a
+ * no-op, so recording a metric never fails.
+ */
+public final class ServiceMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServiceMetrics.class);
+
+    /** Same scope as the scoring function's AzureMonitorService, so all service metrics group together. */
+    public static final String SCOPE_NAME = "ai-rag-service-meter";
+
+    private static final String SERVICE_METRICS_AZURE_INSIGHTS_CONNECTION_STRING = "SERVICE_METRICS_AZURE_INSIGHTS_CONNECTION_STRING";
+    private static final String DISABLED = "disabled";
+
+    private ServiceMetrics() {
+        // Utility class
+    }
+
+    private static class SingletonHolder {
+        private static final Meter METER = createMeter(getRequiredEnv(SERVICE_METRICS_AZURE_INSIGHTS_CONNECTION_STRING, DISABLED));
+    }
+
+    public static Meter meter() {
+        return SingletonHolder.METER;
+    }
+
+    static Meter createMeter(final String connectionString) {
+        if (DISABLED.equals(connectionString)) {
+            LOGGER.info("{} is not set; service metrics are not exported", SERVICE_METRICS_AZURE_INSIGHTS_CONNECTION_STRING);
+            return OpenTelemetry.noop().getMeter(SCOPE_NAME);
+        }
+        return exportingMeter(connectionString);
+    }
+
+    @Generated
+    private static Meter exportingMeter(final String connectionString) {
+        LOGGER.info("Initializing service metrics with OpenTelemetry SDK...");
+        final AutoConfiguredOpenTelemetrySdkBuilder sdkBuilder = AutoConfiguredOpenTelemetrySdk.builder();
+        AzureMonitorAutoConfigure.customize(sdkBuilder, connectionString);
+
+        final Meter meter = sdkBuilder.build().getOpenTelemetrySdk().getMeter(SCOPE_NAME);
+        LOGGER.info("Service metrics export initialized successfully.");
+        return meter;
+    }
+}
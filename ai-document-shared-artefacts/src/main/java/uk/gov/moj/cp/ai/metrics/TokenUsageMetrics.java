@@ -0,0 +1,50 @@
+package uk.gov.moj.cp.ai.metrics;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the token usage the model reports for each call, by deployment: prompt tokens, the part
+ * of them served from the provider's prompt cache, and completion tokens. The ratio of
+ * {@code llm_cached_prompt_tokens} to {@code llm_prompt_tokens} is the prompt-cache hit rate.
+ * <p>
+ * The chat services record against {@link ServiceMetrics#meter()}, so the counters are exported
+ * wherever {@code SERVICE_METRICS_AZURE_INSIGHTS_CONNECTION_STRING} is set and are only logged elsewhere.
+ */
+public class TokenUsageMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenUsageMetrics.class);
+
+    private static final AttributeKey<String> DEPLOYMENT = AttributeKey.stringKey("deployment");
+
+    private final LongCounter promptTokens;
+    private final LongCounter cachedPromptTokens;
+    private final LongCounter completionTokens;
+
+    public TokenUsageMetrics(final Meter meter) {
+        this.promptTokens = counter(meter, "llm_prompt_tokens", "Prompt tokens sent to the model");
+        this.cachedPromptTokens = counter(meter, "llm_cached_prompt_tokens",
+                "Prompt tokens served from the provider prompt cache");
+        this.completionTokens = counter(meter, "llm_completion_tokens", "Completion tokens generated by the model");
+    }
+
+    public void record(final String deploymentName, final long prompt, final long cachedPrompt, final long completion) {
+        final Attributes attributes = Attributes.of(DEPLOYMENT, deploymentName);
+        promptTokens.add(prompt, attributes);
+        cachedPromptTokens.add(cachedPrompt, attributes);
+        completionTokens.add(completion, attributes);
+        LOGGER.info("LLM token usage for '{}': prompt={}, cached_tokens={}, completion={}",
+                deploymentName, prompt, cachedPrompt, completion);
+    }
+
+    private static LongCounter counter(final Meter meter, final String name, final String description) {
+        return meter.counterBuilder(name)
+                .setDescription(description)
+                .setUnit("1")
+                .build();
+    }
+}
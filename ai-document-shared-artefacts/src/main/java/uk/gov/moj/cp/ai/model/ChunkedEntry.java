@@ -20,7 +20,7 @@ public record ChunkedEntry(
         @JsonProperty(ID) String id,
         @JsonProperty(DOCUMENT_ID) String documentId,
         @JsonProperty(CHUNK) String chunk,
-        @JsonProperty(CHUNK_VECTOR) List<Float> chunkVector,
+        @JsonProperty(CHUNK_VECTOR) EmbeddingVector chunkVector,
         @JsonProperty(DOCUMENT_FILE_NAME) String documentFileName,
         @JsonProperty(PAGE_NUMBER) Integer pageNumber,
         @JsonProperty(CHUNK_INDEX) Integer chunkIndex,
@@ -36,7 +36,7 @@ public record ChunkedEntry(
      * {@code clientId} defaults to {@code null}.
      */
     public ChunkedEntry(
-            String id, String documentId, String chunk, List<Float> chunkVector, String documentFileName,
+            String id, String documentId, String chunk, EmbeddingVector chunkVector, String documentFileName,
             Integer pageNumber, Integer chunkIndex, String documentFileUrl, List<KeyValuePair> customMetadata) {
         this(id, documentId, chunk, chunkVector, documentFileName, pageNumber, chunkIndex,
                 documentFileUrl, customMetadata, null);
@@ -46,7 +46,7 @@ public record ChunkedEntry(
         private String id;
         private String documentId;
         private String chunk;
-        private List<Float> chunkVector;
+        private EmbeddingVector chunkVector;
         private String documentFileName;
         private Integer pageNumber;
         private Integer chunkIndex;
@@ -69,7 +69,7 @@ public record ChunkedEntry(
             return this;
         }
 
-        public Builder chunkVector(List<Float> chunkVector) {
+        public Builder chunkVector(EmbeddingVector chunkVector) {
             this.chunkVector = chunkVector;
             return this;
         }
@@ -0,0 +1,38 @@
+package uk.gov.moj.cp.ai.model;
+
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
+
+/**
+ * Caps on continuing a completion that stopped at the output-token limit: at most
+ * {@code maxRounds} follow-up calls, which together may generate at most {@code maxTokens}
+ * completion tokens. Mapped from {@code LLM_CONTINUATION_MAX_ROUNDS} (default 0, i.e. off) and
+ * {@code LLM_CONTINUATION_MAX_TOKENS} (default 2000).
+ */
+public record ContinuationPolicy(int maxRounds, int maxTokens) {
+
+    public static final String LLM_CONTINUATION_MAX_ROUNDS = "LLM_CONTINUATION_MAX_ROUNDS";
+    public static final String LLM_CONTINUATION_MAX_TOKENS = "LLM_CONTINUATION_MAX_TOKENS";
+
+    private static final String DEFAULT_MAX_ROUNDS = "0";
+    private static final String DEFAULT_MAX_TOKENS = "2000";
+
+    /** Sent as the user turn after the partial answer, which is replayed as the assistant turn. */
+    public static final String CONTINUATION_INSTRUCTION = "Your previous reply was cut off at the output limit. "
+            + "Continue it exactly where it stopped, even mid-word. Do not repeat any text, restart the answer or "
+            + "add a preamble.";
+
+    public static ContinuationPolicy fromEnv() {
+        return new ContinuationPolicy(getRequiredEnvAsInteger(LLM_CONTINUATION_MAX_ROUNDS, DEFAULT_MAX_ROUNDS),
+                getRequiredEnvAsInteger(LLM_CONTINUATION_MAX_TOKENS, DEFAULT_MAX_TOKENS));
+    }
+
+    /** Whether another round may run after {@code roundsDone} rounds that generated {@code tokensUsed} tokens. */
+    public boolean allows(final int roundsDone, final int tokensUsed) {
+        return roundsDone < maxRounds && tokensUsed < maxTokens;
+    }
+
+    /** Output-token limit for the next round: the per-call limit, or less when the total budget is nearly spent. */
+    public int roundTokens(final int maxCompletionTokens, final int tokensUsed) {
+        return Math.min(maxCompletionTokens, maxTokens - tokensUsed);
+    }
+}
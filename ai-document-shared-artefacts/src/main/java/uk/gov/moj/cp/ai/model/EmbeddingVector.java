@@ -0,0 +1,191 @@
+package uk.gov.moj.cp.ai.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * An embedding vector backed by a primitive {@code float[]}.
+ * <p>
+ * A 3072-dimension embedding held as a {@code List<Float>} costs one boxed {@link Float} per
+ * dimension (~60 KB of heap per chunk) and an unboxing on every element of every similarity
+ * comparison. This type holds the same values in a single primitive array. On the wire it is a plain
+ * JSON array of numbers, exactly as the {@code List<Float>} it replaces, so index documents and blob
+ * payloads are unchanged.
+ * <p>
+ * Instances are treated as immutable: the factory methods that take an array do not copy it, and
+ * {@link #array()} exposes the backing array for hot loops, so neither side may modify it afterwards.
+ */
+@JsonSerialize(using = EmbeddingVector.Serializer.class)
+@JsonDeserialize(using = EmbeddingVector.Deserializer.class)
+public final class EmbeddingVector {
+
+    public static final EmbeddingVector EMPTY = new EmbeddingVector(new float[0]);
+
+    private final float[] values;
+
+    private EmbeddingVector(final float[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Wraps the given values without copying them.
+     */
+    public static EmbeddingVector of(final float... values) {
+        return values.length == 0 ? EMPTY : new EmbeddingVector(values);
+    }
+
+    /**
+     * Unboxes an SDK-provided list (e.g. {@code EmbeddingItem.getEmbedding()}) into a primitive vector.
+     *
+     * @return the vector, or {@code null} when {@code values} is null
+     */
+    public static EmbeddingVector fromList(final List<Float> values) {
+        if (values == null) {
+            return null;
+        }
+        final float[] array = new float[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return of(array);
+    }
+
+    /**
+     * Decodes the compact binary form written by {@link #toBytes()}.
+     *
+     * @throws IllegalArgumentException when the length is not a whole number of floats
+     */
+    public static EmbeddingVector fromBytes(final byte[] bytes) {
+        if (bytes.length % Float.BYTES != 0) {
+            throw new IllegalArgumentException("Embedding byte length is not a multiple of " + Float.BYTES + ": " + bytes.length);
+        }
+        final float[] array = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(array);
+        return of(array);
+    }
+
+    /**
+     * Compact binary form for storage: little-endian IEEE-754 floats, 4 bytes per dimension
+     * (12 KB for 3072 dimensions, against roughly three times that as JSON).
+     */
+    public byte[] toBytes() {
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(values);
+        return buffer.array();
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    public float get(final int index) {
+        return values[index];
+    }
+
+    /**
+     * The backing array, exposed for allocation-free similarity kernels. Must not be modified.
+     */
+    public float[] array() {
+        return values;
+    }
+
+    /**
+     * Boxes the values for SDK calls that only accept {@code List<Float>} (e.g. {@code VectorizedQuery}).
+     */
+    public List<Float> toList() {
+        final List<Float> list = new ArrayList<>(values.length);
+        for (final float value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof EmbeddingVector other && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "EmbeddingVector[size=" + values.length + "]";
+    }
+
+    /**
+     * Writes the vector as a JSON array of numbers, element-for-element identical to a {@code List<Float>}.
+     */
+    public static class Serializer extends StdSerializer<EmbeddingVector> {
+
+        public Serializer() {
+            super(EmbeddingVector.class);
+        }
+
+        @Override
+        public void serialize(final EmbeddingVector vector, final JsonGenerator gen, final SerializerProvider provider)
+                throws IOException {
+            final float[] values = vector.values;
+            gen.writeStartArray(vector, values.length);
+            for (final float value : values) {
+                gen.writeNumber(value);
+            }
+            gen.writeEndArray();
+        }
+    }
+
+    /**
+     * Reads a JSON array of numbers straight into a primitive array, without an intermediate boxed list.
+     */
+    public static class Deserializer extends StdDeserializer<EmbeddingVector> {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        public Deserializer() {
+            super(EmbeddingVector.class);
+        }
+
+        @Override
+        public EmbeddingVector deserialize(final JsonParser parser, final DeserializationContext context) throws IOException {
+            if (!parser.isExpectedStartArrayToken()) {
+                return (EmbeddingVector) context.handleUnexpectedToken(EmbeddingVector.class, parser);
+            }
+            float[] values = new float[INITIAL_CAPACITY];
+            int size = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_NUMBER_INT) {
+                    return (EmbeddingVector) context.handleUnexpectedToken(EmbeddingVector.class, parser);
+                }
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[size++] = parser.getFloatValue();
+            }
+            return of(size == values.length ? values : Arrays.copyOf(values, size));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package uk.gov.moj.cp.ai.model;
+
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Order of the parts of the answer-generation prompt, mapped from the {@code LLM_PROMPT_LAYOUT}
+ * environment variable:
+ *
+ * <ul>
+ *   <li>{@link #RELEVANCE} (default) — source documents first, in relevance order, then the query
+ *       prompt and the query.</li>
+ *   <li>{@link #CACHE_FRIENDLY} — the query prompt first, then the source documents sorted by
+ *       document id with each document's chunks in reading order, then the query. The system prompt
+ *       and query prompt form a prefix that is identical across requests, which is what Azure
+ *       OpenAI/OpenAI automatic prompt caching matches on.</li>
+ * </ul>
+ */
+public enum PromptLayout {
+
+    RELEVANCE,
+    CACHE_FRIENDLY;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PromptLayout.class);
+
+    public static final String LLM_PROMPT_LAYOUT = "LLM_PROMPT_LAYOUT";
+
+    /** Maps {@code LLM_PROMPT_LAYOUT} (case-insensitive) to a layout; unknown values → RELEVANCE. */
+    public static PromptLayout fromEnv() {
+        final String value = getRequiredEnv(LLM_PROMPT_LAYOUT, RELEVANCE.name()).trim();
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (final IllegalArgumentException e) {
+            LOGGER.warn("Unknown {} value '{}'; defaulting to {}.", LLM_PROMPT_LAYOUT, value, RELEVANCE);
+            return RELEVANCE;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package uk.gov.moj.cp.ai.model;
+
+import java.util.Map;
+
+/**
+ * A JSON schema that a chat completion must conform to, for the providers' structured-output
+ * (strict JSON schema) response format.
+ *
+ * @param name   schema name reported to the provider; letters, digits, underscores and hyphens only
+ * @param schema the JSON schema as nested maps and lists. Strict mode requires every object to list
+ *               all of its properties as required and to set {@code additionalProperties} to false.
+ */
+public record ResponseSchema(String name, Map<String, Object> schema) {
+}
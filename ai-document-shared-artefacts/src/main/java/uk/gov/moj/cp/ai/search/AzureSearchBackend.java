@@ -0,0 +1,102 @@
+package uk.gov.moj.cp.ai.search;
+
+import static uk.gov.moj.cp.ai.util.StringUtil.escapeLuceneSpecialChars;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.azure.core.util.Context;
+import com.azure.search.documents.SearchClient;
+import com.azure.search.documents.models.IndexBatchException;
+import com.azure.search.documents.models.QueryType;
+import com.azure.search.documents.models.SearchOptions;
+import com.azure.search.documents.models.SearchResult;
+import com.azure.search.documents.models.VectorSearchOptions;
+import com.azure.search.documents.models.VectorizedQuery;
+
+/**
+ * {@link VectorSearchBackend} over an Azure AI Search index. Keyword text is sent as a full Lucene
+ * query with the reserved characters escaped; a vector turns the call into a hybrid search, which the
+ * service ranks with reciprocal rank fusion. Writes report the documents the service rejected instead
+ * of throwing, so callers can retry just those.
+ */
+public class AzureSearchBackend implements VectorSearchBackend {
+
+    private final SearchClient searchClient;
+
+    public AzureSearchBackend(final SearchClient searchClient) {
+        this.searchClient = searchClient;
+    }
+
+    @Override
+    public <T> List<T> search(final SearchRequest request, final Class<T> documentType) {
+        final List<T> documents = new ArrayList<>();
+        for (final SearchResult result : searchClient.search(queryText(request), searchOptions(request), Context.NONE)) {
+            documents.add(result.getDocument(documentType));
+        }
+        return documents;
+    }
+
+    @Override
+    public List<IndexingFailure> upload(final List<? extends Map<String, Object>> documents) {
+        try {
+            searchClient.uploadDocuments(documents);
+            return List.of();
+        } catch (IndexBatchException e) {
+            return failures(e);
+        }
+    }
+
+    @Override
+    public List<IndexingFailure> merge(final List<? extends Map<String, Object>> documents) {
+        try {
+            searchClient.mergeDocuments(documents);
+            return List.of();
+        } catch (IndexBatchException e) {
+            return failures(e);
+        }
+    }
+
+    @Override
+    public String indexName() {
+        return searchClient.getIndexName();
+    }
+
+    static SearchOptions searchOptions(final SearchRequest request) {
+        final SearchOptions searchOptions = new SearchOptions()
+                .setFilter(request.filter())
+                .setQueryType(QueryType.FULL);
+        if (request.hasVector()) {
+            final VectorizedQuery vectorizedQuery = new VectorizedQuery(request.vector().toList())
+                    .setKNearestNeighborsCount(request.nearestNeighbours())
+                    .setFields(request.vectorField());
+            searchOptions.setVectorSearchOptions(new VectorSearchOptions().setQueries(List.of(vectorizedQuery)));
+        }
+        if (request.select() != null) {
+            searchOptions.setSelect(request.select().toArray(new String[0]));
+        }
+        if (request.top() != null) {
+            searchOptions.setTop(request.top());
+        }
+        if (request.orderBy() != null) {
+            searchOptions.setOrderBy(request.orderBy());
+        }
+        return searchOptions;
+    }
+
+    /**
+     * The service answers a batch with some failed actions by throwing; the per-key outcome is on
+     * the exception.
+     */
+    private static List<IndexingFailure> failures(final IndexBatchException batchException) {
+        return batchException.getIndexingResults().stream()
+                .filter(result -> !result.isSucceeded())
+                .map(result -> new IndexingFailure(result.getKey(), result.getStatusCode(), result.getErrorMessage()))
+                .toList();
+    }
+
+    private static String queryText(final SearchRequest request) {
+        return request.isMatchAll() ? SearchRequest.MATCH_ALL : escapeLuceneSpecialChars(request.text());
+    }
+}
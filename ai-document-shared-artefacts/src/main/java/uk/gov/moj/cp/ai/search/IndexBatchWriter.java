@@ -0,0 +1,264 @@
+package uk.gov.moj.cp.ai.search;
+
+import static uk.gov.moj.cp.ai.index.IndexConstants.ID;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
+
+import uk.gov.moj.cp.ai.util.ObjectMapperFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.azure.core.exception.HttpResponseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes any number of documents to a {@link VectorSearchBackend} in requests the service accepts,
+ * several at a time, retrying only the documents it rejected.
+ * <p>
+ * A request closes at {@code SEARCH_INDEX_BATCH_MAX_DOCUMENTS} documents (the service allows 1 000) or
+ * {@code SEARCH_INDEX_BATCH_MAX_BYTES} of serialised JSON (it allows 16 MB; at 3 072 dimensions a chunk
+ * is tens of kilobytes, so the byte limit is usually the one that binds). Up to
+ * {@code SEARCH_INDEX_WRITE_CONCURRENCY} requests are in flight. Documents failing with a retriable
+ * status (see {@link IndexingFailure#isRetriable()}) are re-batched and sent again, up to
+ * {@code SEARCH_INDEX_WRITE_MAX_RETRIES} times with jittered exponential backoff from
+ * {@code SEARCH_INDEX_WRITE_RETRY_BASE_DELAY_MS}; the rest are returned to the caller.
+ * <p>
+ * A request that fails as a whole, after the client's own retries, stops the others from starting.
+ * Its documents, and those of the requests it stopped, are returned as failures with the request's
+ * HTTP status (500 when it has none) and are not retried, so the result still counts the documents
+ * earlier requests wrote.
+ */
+public class IndexBatchWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexBatchWriter.class);
+
+    private static final String SEARCH_INDEX_BATCH_MAX_DOCUMENTS = "SEARCH_INDEX_BATCH_MAX_DOCUMENTS";
+    private static final String SEARCH_INDEX_BATCH_MAX_BYTES = "SEARCH_INDEX_BATCH_MAX_BYTES";
+    private static final String SEARCH_INDEX_WRITE_CONCURRENCY = "SEARCH_INDEX_WRITE_CONCURRENCY";
+    private static final String SEARCH_INDEX_WRITE_MAX_RETRIES = "SEARCH_INDEX_WRITE_MAX_RETRIES";
+    private static final String SEARCH_INDEX_WRITE_RETRY_BASE_DELAY_MS = "SEARCH_INDEX_WRITE_RETRY_BASE_DELAY_MS";
+
+    /** Headroom under the 16 MB request limit for the envelope and encoding differences. */
+    private static final String DEFAULT_MAX_BYTES = "15000000";
+    /** The {@code "@search.action"} member and separators added to each document in the request. */
+    private static final int ACTION_OVERHEAD_BYTES = 32;
+    private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(30);
+    private static final int REQUEST_FAILED = 500;
+
+    private enum Action { UPLOAD, MERGE }
+
+    /**
+     * @param failures     the per-document failures of every batch sent, plus the documents of a failed
+     *                     request and of the batches it stopped
+     * @param requestError the first request that failed as a whole; null when every request completed
+     */
+    private record Attempt(List<IndexingFailure> failures, RuntimeException requestError) {
+    }
+
+    /**
+     * @param written  documents the index accepted
+     * @param failures documents it did not, after retries
+     */
+    public record WriteResult(int written, List<IndexingFailure> failures) {
+
+        public boolean succeeded() {
+            return failures.isEmpty();
+        }
+    }
+
+    private final VectorSearchBackend searchBackend;
+    private final int maxDocumentsPerBatch;
+    private final long maxBytesPerBatch;
+    private final int maxConcurrency;
+    private final int maxRetries;
+    private final Duration retryBaseDelay;
+
+    public IndexBatchWriter(final VectorSearchBackend searchBackend) {
+        this(searchBackend,
+                getRequiredEnvAsInteger(SEARCH_INDEX_BATCH_MAX_DOCUMENTS, "1000"),
+                getRequiredEnvAsInteger(SEARCH_INDEX_BATCH_MAX_BYTES, DEFAULT_MAX_BYTES),
+                getRequiredEnvAsInteger(SEARCH_INDEX_WRITE_CONCURRENCY, "4"),
+                getRequiredEnvAsInteger(SEARCH_INDEX_WRITE_MAX_RETRIES, "3"),
+                Duration.ofMillis(getRequiredEnvAsInteger(SEARCH_INDEX_WRITE_RETRY_BASE_DELAY_MS, "500")));
+    }
+
+    IndexBatchWriter(final VectorSearchBackend searchBackend, final int maxDocumentsPerBatch, final long maxBytesPerBatch,
+                     final int maxConcurrency, final int maxRetries, final Duration retryBaseDelay) {
+        if (maxDocumentsPerBatch < 1 || maxBytesPerBatch < 1) {
+            throw new IllegalArgumentException("Index batch limits must be positive: documents=" + maxDocumentsPerBatch
+                    + ", bytes=" + maxBytesPerBatch);
+        }
+        this.searchBackend = searchBackend;
+        this.maxDocumentsPerBatch = maxDocumentsPerBatch;
+        this.maxBytesPerBatch = maxBytesPerBatch;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBaseDelay = retryBaseDelay;
+    }
+
+    public WriteResult upload(final List<? extends Map<String, Object>> documents) {
+        return write(Action.UPLOAD, documents);
+    }
+
+    public WriteResult merge(final List<? extends Map<String, Object>> documents) {
+        return write(Action.MERGE, documents);
+    }
+
+    private WriteResult write(final Action action, final List<? extends Map<String, Object>> documents) {
+        List<? extends Map<String, Object>> pending = documents;
+        final List<IndexingFailure> rejected = new ArrayList<>();
+
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            final Attempt sent = writeBatches(action, split(pending));
+            if (sent.requestError() != null) {
+                LOGGER.error("A request to index {} failed; {} document(s) were not written", searchBackend.indexName(),
+                        sent.failures().size(), sent.requestError());
+                rejected.addAll(sent.failures());
+                break;
+            }
+            final Set<String> retriableKeys = new HashSet<>();
+            for (final IndexingFailure failure : sent.failures()) {
+                if (failure.isRetriable() && attempt < maxRetries) {
+                    retriableKeys.add(failure.key());
+                } else {
+                    rejected.add(failure);
+                }
+            }
+            if (retriableKeys.isEmpty()) {
+                break;
+            }
+
+            final Duration delay = backoff(attempt);
+            LOGGER.warn("Index {} asked to retry {} of {} document(s); retrying in {} ms (attempt {}/{})",
+                    searchBackend.indexName(), retriableKeys.size(), pending.size(), delay.toMillis(), attempt + 1, maxRetries);
+            sleep(delay);
+            pending = pending.stream().filter(document -> retriableKeys.contains(keyOf(document))).toList();
+        }
+
+        if (!rejected.isEmpty()) {
+            LOGGER.error("Index {} rejected {} of {} document(s), e.g. '{}': {} {}", searchBackend.indexName(),
+                    rejected.size(), documents.size(), rejected.get(0).key(), rejected.get(0).statusCode(), rejected.get(0).errorMessage());
+        }
+        return new WriteResult(documents.size() - rejected.size(), List.copyOf(rejected));
+    }
+
+    /**
+     * Sends the batches with up to {@code maxConcurrency} in flight, stopping at the first request
+     * that fails as a whole.
+     */
+    private Attempt writeBatches(final Action action, final List<List<? extends Map<String, Object>>> batches) {
+        final List<IndexingFailure> failures = Collections.synchronizedList(new ArrayList<>());
+        final int workers = Math.max(1, Math.min(maxConcurrency, batches.size()));
+        LOGGER.info("Writing {} batch(es) to index {} with up to {} in flight", batches.size(), searchBackend.indexName(), workers);
+
+        final AtomicInteger nextBatch = new AtomicInteger();
+        final AtomicReference<RuntimeException> error = new AtomicReference<>();
+        final Runnable worker = () -> {
+            int next;
+            while (error.get() == null && (next = nextBatch.getAndIncrement()) < batches.size()) {
+                final List<? extends Map<String, Object>> batch = batches.get(next);
+                try {
+                    failures.addAll(send(action, batch));
+                } catch (RuntimeException e) {
+                    failures.addAll(requestFailed(batch, e));
+                    error.compareAndSet(null, e);
+                }
+            }
+        };
+        if (workers == 1) {
+            worker.run();
+        } else {
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int w = 0; w < workers; w++) {
+                    executor.execute(worker);
+                }
+            }
+        }
+
+        final RuntimeException requestError = error.get();
+        if (requestError != null) {
+            // Batches never taken by a worker were not sent.
+            for (int unsent = nextBatch.get(); unsent < batches.size(); unsent++) {
+                failures.addAll(requestFailed(batches.get(unsent), requestError));
+            }
+        }
+        return new Attempt(List.copyOf(failures), requestError);
+    }
+
+    private static List<IndexingFailure> requestFailed(final List<? extends Map<String, Object>> batch, final RuntimeException error) {
+        final int statusCode = error instanceof HttpResponseException httpError && httpError.getResponse() != null
+                ? httpError.getResponse().getStatusCode()
+                : REQUEST_FAILED;
+        return batch.stream()
+                .map(document -> new IndexingFailure(keyOf(document), statusCode, "Request failed: " + error.getMessage()))
+                .toList();
+    }
+
+    private List<IndexingFailure> send(final Action action, final List<? extends Map<String, Object>> batch) {
+        return switch (action) {
+            case UPLOAD -> searchBackend.upload(batch);
+            case MERGE -> searchBackend.merge(batch);
+        };
+    }
+
+    /**
+     * Splits the documents, in order, into batches within the document and byte limits. A document
+     * above the byte limit on its own is sent alone; the service decides whether to accept it.
+     */
+    List<List<? extends Map<String, Object>>> split(final List<? extends Map<String, Object>> documents) {
+        final List<List<? extends Map<String, Object>>> batches = new ArrayList<>();
+        int start = 0;
+        long bytes = 0;
+        for (int i = 0; i < documents.size(); i++) {
+            final long documentBytes = serialisedSize(documents.get(i));
+            if (i > start && (i - start == maxDocumentsPerBatch || bytes + documentBytes > maxBytesPerBatch)) {
+                batches.add(documents.subList(start, i));
+                start = i;
+                bytes = 0;
+            }
+            bytes += documentBytes;
+        }
+        if (start < documents.size()) {
+            batches.add(documents.subList(start, documents.size()));
+        }
+        return batches;
+    }
+
+    private static long serialisedSize(final Map<String, Object> document) {
+        try {
+            return ObjectMapperFactory.getObjectMapper().writeValueAsBytes(document).length + ACTION_OVERHEAD_BYTES;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialise document '" + keyOf(document) + "' for indexing", e);
+        }
+    }
+
+    private static String keyOf(final Map<String, Object> document) {
+        return String.valueOf(document.get(ID));
+    }
+
+    private Duration backoff(final int attempt) {
+        final long ceiling = Math.min(MAX_RETRY_DELAY.toMillis(), retryBaseDelay.toMillis() << Math.min(attempt, 20));
+        return Duration.ofMillis(ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1));
+    }
+
+    private static void sleep(final Duration delay) {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry index writes", e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package uk.gov.moj.cp.ai.search;
+
+import java.util.Set;
+
+/**
+ * A document the index did not write, as reported per key by an upload or merge.
+ *
+ * @param statusCode the per-document status: 404 for a merge of a missing document, 409, 422, 429 and
+ *                   503 when the service asks for a retry, 400 for a document it will never accept
+ */
+public record IndexingFailure(String key, int statusCode, String errorMessage) {
+
+    private static final Set<Integer> RETRIABLE_STATUS_CODES = Set.of(409, 422, 429, 503);
+
+    public boolean isRetriable() {
+        return RETRIABLE_STATUS_CODES.contains(statusCode);
+    }
+}
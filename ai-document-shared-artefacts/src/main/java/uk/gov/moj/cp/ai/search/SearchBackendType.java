@@ -0,0 +1,39 @@
+package uk.gov.moj.cp.ai.search;
+
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Search engine behind {@link VectorSearchBackend}, mapped from the {@code SEARCH_BACKEND}
+ * environment variable:
+ *
+ * <ul>
+ *   <li>{@link #AZURE} (default) — Azure AI Search at {@code AZURE_SEARCH_SERVICE_ENDPOINT}.</li>
+ *   <li>{@link #LOCAL} — the in-process engine. The index lives in the JVM heap and off-heap vector
+ *       memory only, so it is shared by the functions of one host process and lost on restart.</li>
+ * </ul>
+ */
+public enum SearchBackendType {
+
+    AZURE,
+    LOCAL;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchBackendType.class);
+
+    public static final String SEARCH_BACKEND = "SEARCH_BACKEND";
+
+    /** Maps {@code SEARCH_BACKEND} (case-insensitive) to a backend; unknown values → AZURE. */
+    public static SearchBackendType fromEnv() {
+        final String value = getRequiredEnv(SEARCH_BACKEND, AZURE.name()).trim();
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (final IllegalArgumentException e) {
+            LOGGER.warn("Unknown {} value '{}'; defaulting to {}.", SEARCH_BACKEND, value, AZURE);
+            return AZURE;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package uk.gov.moj.cp.ai.search;
+
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+
+import java.util.List;
+
+/**
+ * A search against a {@link VectorSearchBackend}.
+ *
+ * @param text              keyword query as entered by the user (backends apply their own
+ *                          escaping), or {@link #MATCH_ALL}
+ * @param vector            query embedding, or null for a keyword-only search
+ * @param vectorField       field the vector is matched against
+ * @param nearestNeighbours number of nearest neighbours taken from the vector index
+ * @param filter            OData filter expression, or null
+ * @param select            fields to return, or null for all retrievable fields
+ * @param top               maximum number of results, or null for every match
+ * @param orderBy           sort clause such as {@code "id asc"}, or null to order by relevance
+ */
+public record SearchRequest(String text, EmbeddingVector vector, String vectorField, int nearestNeighbours,
+                            String filter, List<String> select, Integer top, String orderBy) {
+
+    public static final String MATCH_ALL = "*";
+
+    public SearchRequest(final String text, final EmbeddingVector vector, final String vectorField, final int nearestNeighbours,
+                         final String filter, final List<String> select, final Integer top) {
+        this(text, vector, vectorField, nearestNeighbours, filter, select, top, null);
+    }
+
+    /**
+     * Every document matching {@code filter}, without ranking.
+     */
+    public static SearchRequest filterOnly(final String filter, final List<String> select) {
+        return new SearchRequest(MATCH_ALL, null, null, 0, filter, select, null);
+    }
+
+    /**
+     * Up to {@code top} documents matching {@code filter}, sorted by {@code orderBy}; with a filter on
+     * the last key returned, successive pages walk the whole result (keyset pagination).
+     */
+    public static SearchRequest filterOnlyPage(final String filter, final List<String> select, final String orderBy,
+                                               final int top) {
+        return new SearchRequest(MATCH_ALL, null, null, 0, filter, select, top, orderBy);
+    }
+
+    public boolean isMatchAll() {
+        return text == null || text.isBlank() || MATCH_ALL.equals(text.trim());
+    }
+
+    public boolean hasVector() {
+        return vector != null && !vector.isEmpty();
+    }
+}
@@ -0,0 +1,42 @@
+package uk.gov.moj.cp.ai.search;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The operations the services need from a search index: hybrid (vector plus keyword) search under
+ * an OData filter, and document upload and merge. Implemented over Azure AI Search
+ * ({@link AzureSearchBackend}) and by an in-process engine
+ * ({@link uk.gov.moj.cp.ai.search.local.LocalSearchBackend}) for benchmarks, integration tests and
+ * disconnected development; {@link VectorSearchBackendFactory} picks one from {@code SEARCH_BACKEND}.
+ * <p>
+ * Documents are field maps keyed by the index field names in
+ * {@link uk.gov.moj.cp.ai.index.IndexConstants}, with {@code id} as the key.
+ */
+public interface VectorSearchBackend {
+
+    /**
+     * @param documentType type each matching document is deserialised into, e.g.
+     *                     {@link uk.gov.moj.cp.ai.model.ChunkedEntry} or a field map
+     * @return matching documents, best first
+     */
+    <T> List<T> search(SearchRequest request, Class<T> documentType);
+
+    /**
+     * Adds the documents, replacing any existing document with the same key. Documents are written
+     * independently: one failing does not stop the others.
+     *
+     * @return the documents that were not written; empty when all were
+     */
+    List<IndexingFailure> upload(List<? extends Map<String, Object>> documents);
+
+    /**
+     * Updates the given fields of existing documents; fields not present are left unchanged. A
+     * document missing from the index fails with status 404 without affecting the others.
+     *
+     * @return the documents that were not written; empty when all were
+     */
+    List<IndexingFailure> merge(List<? extends Map<String, Object>> documents);
+
+    String indexName();
+}
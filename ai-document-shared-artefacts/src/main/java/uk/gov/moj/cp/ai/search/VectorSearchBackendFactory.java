@@ -0,0 +1,31 @@
+package uk.gov.moj.cp.ai.search;
+
+import uk.gov.moj.cp.ai.client.AISearchClientFactory;
+import uk.gov.moj.cp.ai.search.local.LocalSearchBackend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class VectorSearchBackendFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VectorSearchBackendFactory.class);
+
+    private VectorSearchBackendFactory() {
+    }
+
+    /**
+     * @return the backend selected by {@code SEARCH_BACKEND}; the endpoint is ignored by the local
+     *     engine, whose indexes are shared per index name within the JVM
+     */
+    public static VectorSearchBackend getInstance(final String endpoint, final String indexName) {
+        return getInstance(SearchBackendType.fromEnv(), endpoint, indexName);
+    }
+
+    static VectorSearchBackend getInstance(final SearchBackendType type, final String endpoint, final String indexName) {
+        if (type == SearchBackendType.LOCAL) {
+            LOGGER.info("Using the in-process search engine for index '{}'", indexName);
+            return LocalSearchBackend.forIndex(indexName);
+        }
+        return new AzureSearchBackend(AISearchClientFactory.getInstance(endpoint, indexName));
+    }
+}
@@ -0,0 +1,111 @@
+package uk.gov.moj.cp.ai.search.local;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A minimal BM25 inverted index ({@code k1} = 1.2, {@code b} = 0.75, the Azure AI Search defaults).
+ * Text is lowercased and split on anything that is not a letter or digit; there is no stemming or
+ * stop-word list, so scores are close to, not identical with, the service's standard analyser.
+ * Documents are addressed by slot number.
+ * <p>
+ * Not thread-safe for writes; {@link LocalSearchBackend} serialises them.
+ */
+class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /** A document slot and its BM25 score. */
+    record Hit(int slot, double score) {
+    }
+
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+    private final Map<Integer, Map<String, Integer>> termsBySlot = new HashMap<>();
+    private final Map<Integer, Integer> lengthBySlot = new HashMap<>();
+    private long totalLength;
+
+    void add(final int slot, final String text) {
+        remove(slot);
+        final List<String> tokens = tokenize(text);
+        final Map<String, Integer> frequencies = new HashMap<>();
+        for (final String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        frequencies.forEach((term, count) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(slot, count));
+        termsBySlot.put(slot, frequencies);
+        lengthBySlot.put(slot, tokens.size());
+        totalLength += tokens.size();
+    }
+
+    void remove(final int slot) {
+        final Map<String, Integer> frequencies = termsBySlot.remove(slot);
+        if (frequencies == null) {
+            return;
+        }
+        totalLength -= lengthBySlot.remove(slot);
+        for (final Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            final Map<Integer, Integer> termPostings = postings.get(entry.getKey());
+            termPostings.remove(slot);
+            if (termPostings.isEmpty()) {
+                postings.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Scores every accepted document containing at least one query term (an OR query, as Azure's
+     * default {@code searchMode=any}).
+     *
+     * @return up to {@code limit} hits, best first
+     */
+    List<Hit> search(final String query, final BitSet accept, final int limit) {
+        final int documentCount = termsBySlot.size();
+        if (documentCount == 0 || limit <= 0) {
+            return List.of();
+        }
+        final double averageLength = (double) totalLength / documentCount;
+        final Map<Integer, Double> scores = new HashMap<>();
+        for (final String term : new LinkedHashSet<>(tokenize(query))) {
+            final Map<Integer, Integer> termPostings = postings.get(term);
+            if (termPostings == null) {
+                continue;
+            }
+            final double idf = Math.log(1.0 + (documentCount - termPostings.size() + 0.5) / (termPostings.size() + 0.5));
+            termPostings.forEach((slot, frequency) -> {
+                if (accept.get(slot)) {
+                    final double lengthNorm = 1.0 - B + B * lengthBySlot.get(slot) / averageLength;
+                    scores.merge(slot, idf * frequency * (K1 + 1.0) / (frequency + K1 * lengthNorm), Double::sum);
+                }
+            });
+        }
+        final List<Hit> hits = new ArrayList<>(scores.size());
+        scores.forEach((slot, score) -> hits.add(new Hit(slot, score)));
+        hits.sort((a, b) -> a.score() != b.score() ? Double.compare(b.score(), a.score()) : Integer.compare(a.slot(), b.slot()));
+        return hits.size() <= limit ? hits : hits.subList(0, limit);
+    }
+
+    static List<String> tokenize(final String text) {
+        final List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        final String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            final boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
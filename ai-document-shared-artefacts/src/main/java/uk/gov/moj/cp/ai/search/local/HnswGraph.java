@@ -0,0 +1,234 @@
+package uk.gov.moj.cp.ai.search.local;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph (Malkov and Yashunin) over the vectors of an
+ * {@link OffHeapVectorStore}, for approximate nearest-neighbour search by cosine similarity. Graph
+ * nodes are store slots, added in slot order.
+ * <p>
+ * Nodes are never removed: a replaced or deleted document keeps its node so the graph stays
+ * navigable, and searches exclude it through their {@code accept} predicate, as they do nodes that
+ * fail the query filter. Not thread-safe for writes; {@link LocalSearchBackend} serialises them.
+ */
+class HnswGraph {
+
+    static final int DEFAULT_MAX_CONNECTIONS = 16;
+    static final int DEFAULT_EF_CONSTRUCTION = 100;
+
+    /** A graph node and its similarity to the query. */
+    record Neighbour(int node, double score) {
+    }
+
+    private static final Comparator<Neighbour> BEST_FIRST = Comparator.comparingDouble(Neighbour::score).reversed();
+    private static final Comparator<Neighbour> WORST_FIRST = Comparator.comparingDouble(Neighbour::score);
+    private static final int[] NO_LINKS = new int[0];
+
+    private final OffHeapVectorStore vectors;
+    private final int maxConnections;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+
+    /** {@code links.get(node)[layer]} holds the neighbours of the node on that layer. */
+    private final List<int[][]> links = new ArrayList<>();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswGraph(final OffHeapVectorStore vectors) {
+        this(vectors, DEFAULT_MAX_CONNECTIONS, DEFAULT_EF_CONSTRUCTION, 42L);
+    }
+
+    HnswGraph(final OffHeapVectorStore vectors, final int maxConnections, final int efConstruction, final long seed) {
+        if (maxConnections < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("HNSW needs at least 2 connections per node and a positive efConstruction");
+        }
+        this.vectors = vectors;
+        this.maxConnections = maxConnections;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(maxConnections);
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Links the next store slot into the graph.
+     */
+    void add(final int node) {
+        if (node != links.size()) {
+            throw new IllegalArgumentException("Nodes must be added in slot order; expected " + links.size() + " but got " + node);
+        }
+        final int level = randomLevel();
+        final int[][] nodeLinks = new int[level + 1][];
+        Arrays.fill(nodeLinks, NO_LINKS);
+        links.add(nodeLinks);
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        final float[] vector = vectors.normalise(vectors.get(node));
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > level; layer--) {
+            current = greedyClosest(vector, current, layer);
+        }
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            final List<Neighbour> candidates = searchLayer(vector, current, efConstruction, layer, n -> true);
+            nodeLinks[layer] = selectNeighbours(candidates, maxConnections);
+            for (final int neighbour : nodeLinks[layer]) {
+                connect(neighbour, node, layer);
+            }
+            current = candidates.get(0).node();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * @param normalisedQuery query vector normalised by {@link OffHeapVectorStore#normalise}
+     * @param ef              size of the dynamic candidate list; raised to {@code k} when smaller
+     * @param accept          nodes that may be returned; others are still traversed
+     * @return up to {@code k} accepted nodes, most similar first
+     */
+    List<Neighbour> search(final float[] normalisedQuery, final int k, final int ef, final IntPredicate accept) {
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > 0; layer--) {
+            current = greedyClosest(normalisedQuery, current, layer);
+        }
+        final List<Neighbour> results = searchLayer(normalisedQuery, current, Math.max(ef, k), 0, accept);
+        return results.size() <= k ? results : results.subList(0, k);
+    }
+
+    int size() {
+        return links.size();
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private int greedyClosest(final float[] query, final int entry, final int layer) {
+        int current = entry;
+        double currentScore = vectors.similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (final int neighbour : links.get(current)[layer]) {
+                final double score = vectors.similarity(query, neighbour);
+                if (score > currentScore) {
+                    current = neighbour;
+                    currentScore = score;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first expansion from {@code entry} on one layer, keeping the {@code ef} best accepted
+     * nodes. Rejected nodes are expanded but never enter the result set, so a selective filter makes
+     * the search walk further rather than return fewer results.
+     */
+    private List<Neighbour> searchLayer(final float[] query, final int entry, final int ef, final int layer,
+                                        final IntPredicate accept) {
+        final BitSet visited = new BitSet(links.size());
+        final PriorityQueue<Neighbour> candidates = new PriorityQueue<>(BEST_FIRST);
+        final PriorityQueue<Neighbour> results = new PriorityQueue<>(WORST_FIRST);
+
+        final Neighbour start = new Neighbour(entry, vectors.similarity(query, entry));
+        visited.set(entry);
+        candidates.add(start);
+        if (accept.test(entry)) {
+            results.add(start);
+        }
+
+        while (!candidates.isEmpty()) {
+            final Neighbour candidate = candidates.poll();
+            if (results.size() >= ef && candidate.score() < results.peek().score()) {
+                break;
+            }
+            final int[][] candidateLinks = links.get(candidate.node());
+            if (layer >= candidateLinks.length) {
+                continue;
+            }
+            for (final int neighbour : candidateLinks[layer]) {
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                final Neighbour next = new Neighbour(neighbour, vectors.similarity(query, neighbour));
+                if (results.size() < ef || next.score() > results.peek().score()) {
+                    candidates.add(next);
+                    if (accept.test(neighbour)) {
+                        results.add(next);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        final List<Neighbour> ordered = new ArrayList<>(results);
+        ordered.sort(BEST_FIRST);
+        return ordered;
+    }
+
+    /**
+     * The neighbour-selection heuristic: a candidate is kept only when it is closer to the base node
+     * than to every neighbour already kept, which favours links in different directions over a
+     * tight cluster. Discarded candidates top the list up when too few survive.
+     */
+    private int[] selectNeighbours(final List<Neighbour> candidates, final int limit) {
+        final List<Integer> selected = new ArrayList<>(limit);
+        final List<Integer> discarded = new ArrayList<>();
+        for (final Neighbour candidate : candidates) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (final int kept : selected) {
+                if (vectors.similarity(candidate.node(), kept) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : discarded).add(candidate.node());
+        }
+        for (int i = 0; i < discarded.size() && selected.size() < limit; i++) {
+            selected.add(discarded.get(i));
+        }
+        return selected.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void connect(final int from, final int to, final int layer) {
+        final int[][] fromLinks = links.get(from);
+        final int[] existing = fromLinks[layer];
+        final int[] extended = Arrays.copyOf(existing, existing.length + 1);
+        extended[existing.length] = to;
+        final int limit = layer == 0 ? 2 * maxConnections : maxConnections;
+        if (extended.length <= limit) {
+            fromLinks[layer] = extended;
+            return;
+        }
+        final List<Neighbour> scored = new ArrayList<>(extended.length);
+        for (final int neighbour : extended) {
+            scored.add(new Neighbour(neighbour, vectors.similarity(from, neighbour)));
+        }
+        scored.sort(BEST_FIRST);
+        fromLinks[layer] = selectNeighbours(scored, limit);
+    }
+}
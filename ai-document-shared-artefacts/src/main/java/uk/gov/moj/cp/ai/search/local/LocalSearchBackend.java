@@ -0,0 +1,379 @@
+package uk.gov.moj.cp.ai.search.local;
+
+import static uk.gov.moj.cp.ai.index.IndexConstants.CHUNK;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CHUNK_VECTOR;
+import static uk.gov.moj.cp.ai.index.IndexConstants.ID;
+
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+import uk.gov.moj.cp.ai.search.IndexingFailure;
+import uk.gov.moj.cp.ai.search.SearchRequest;
+import uk.gov.moj.cp.ai.search.VectorSearchBackend;
+import uk.gov.moj.cp.ai.util.ObjectMapperFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process {@link VectorSearchBackend}: an {@link HnswGraph} over an {@link OffHeapVectorStore}
+ * for the vector field, a {@link Bm25Index} over the searchable text fields and an
+ * {@link ODataFilter} for the filter. It mirrors the Azure AI Search behaviour the services rely on:
+ * <ul>
+ *   <li>a vector plus keyword text is a hybrid query, ranked by reciprocal rank fusion of the two
+ *       result lists (constant 60, as the service);</li>
+ *   <li>filters apply before ranking, so a selective filter never starves the result. When at most
+ *       {@value #EXACT_SEARCH_LIMIT} documents pass the filter their vectors are scanned exactly
+ *       instead of walking the graph;</li>
+ *   <li>{@code top} defaults to 50 for ranked queries, and a match-all query without a vector
+ *       returns every filtered document, in index order unless the request sorts on a field;</li>
+ *   <li>upload replaces a document with the same key, merge overwrites only the given fields and
+ *   reports a key missing from the index as a 404 failure, as the service does.</li>
+ * </ul>
+ * {@link #exactScan} builds a variant for small, short-lived indexes that never builds the graph and
+ * sizes its vector storage to the expected document count.
+ * <p>
+ * Indexes are held per JVM and never persisted. Nothing is reclaimed: a replaced vector keeps its
+ * off-heap slot and graph node, excluded from results, so a long-lived index that is rewritten
+ * heavily should be rebuilt.
+ */
+public class LocalSearchBackend implements VectorSearchBackend {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalSearchBackend.class);
+
+    private static final ConcurrentHashMap<String, LocalSearchBackend> INDEXES = new ConcurrentHashMap<>();
+
+    static final int EXACT_SEARCH_LIMIT = 2_000;
+    private static final int DEFAULT_TOP = 50;
+    private static final int EF_SEARCH = 100;
+    private static final int RRF_RANK_CONSTANT = 60;
+    private static final int NO_NODE = -1;
+    private static final int NOT_FOUND = 404;
+
+    private static final TypeReference<Map<String, Object>> FIELD_MAP = new TypeReference<>() {
+    };
+
+    private final String indexName;
+    private final String keyField;
+    private final String vectorField;
+    private final List<String> searchableFields;
+    /** Vectors per off-heap segment; in exact-scan mode, the expected document count. */
+    private final int vectorSegmentSize;
+    private final boolean exactScanOnly;
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Documents by slot, without the vector field; a key keeps its slot across uploads. */
+    private final List<Map<String, Object>> documents = new ArrayList<>();
+    private final Map<String, Integer> slotByKey = new HashMap<>();
+    private final Bm25Index keywordIndex = new Bm25Index();
+    /** Vector node of each document slot, or {@link #NO_NODE}. */
+    private int[] nodeBySlot = new int[0];
+    /** Document slot of each vector node, or {@link #NO_NODE} once the vector was replaced. */
+    private int[] slotByNode = new int[0];
+    private OffHeapVectorStore vectors;
+    /** Null until the first vector is stored, and always in exact-scan mode. */
+    private HnswGraph graph;
+
+    /**
+     * An empty index over the chunk schema: key {@code id}, vector {@code chunkVector}, keyword
+     * search on {@code chunk}.
+     */
+    public LocalSearchBackend(final String indexName) {
+        this(indexName, ID, CHUNK_VECTOR, List.of(CHUNK));
+    }
+
+    public LocalSearchBackend(final String indexName, final String keyField, final String vectorField,
+                              final List<String> searchableFields) {
+        this(indexName, keyField, vectorField, searchableFields, OffHeapVectorStore.DEFAULT_SEGMENT_SIZE, false);
+    }
+
+    private LocalSearchBackend(final String indexName, final String keyField, final String vectorField,
+                               final List<String> searchableFields, final int vectorSegmentSize, final boolean exactScanOnly) {
+        if (vectorSegmentSize <= 0) {
+            throw new IllegalArgumentException("Vector segment size must be positive: " + vectorSegmentSize);
+        }
+        this.indexName = indexName;
+        this.keyField = keyField;
+        this.vectorField = vectorField;
+        this.searchableFields = List.copyOf(searchableFields);
+        this.vectorSegmentSize = vectorSegmentSize;
+        this.exactScanOnly = exactScanOnly;
+    }
+
+    /**
+     * An empty index over the chunk schema that always ranks vectors by exact scan. No graph is built
+     * on upload, and vectors are stored off-heap in segments of {@code expectedDocuments}, so an index
+     * of a few chunks does not reserve a full default segment.
+     *
+     * @param expectedDocuments the number of documents the caller is about to upload
+     */
+    public static LocalSearchBackend exactScan(final String indexName, final int expectedDocuments) {
+        return new LocalSearchBackend(indexName, ID, CHUNK_VECTOR, List.of(CHUNK), Math.max(1, expectedDocuments), true);
+    }
+
+    /**
+     * @return the JVM-wide index of that name, created empty on first use
+     */
+    public static LocalSearchBackend forIndex(final String indexName) {
+        return INDEXES.computeIfAbsent(indexName, name -> {
+            LOGGER.info("Creating in-process search index '{}'", name);
+            return new LocalSearchBackend(name);
+        });
+    }
+
+    @Override
+    public <T> List<T> search(final SearchRequest request, final Class<T> documentType) {
+        final ODataFilter filter = ODataFilter.parse(request.filter());
+        lock.readLock().lock();
+        try {
+            final BitSet accepted = new BitSet(documents.size());
+            for (int slot = 0; slot < documents.size(); slot++) {
+                if (filter.matches(documents.get(slot))) {
+                    accepted.set(slot);
+                }
+            }
+
+            final List<T> results = new ArrayList<>();
+            for (final int slot : rank(request, accepted)) {
+                results.add(objectMapper.convertValue(project(slot, request.select()), documentType));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<IndexingFailure> upload(final List<? extends Map<String, Object>> documents) {
+        lock.writeLock().lock();
+        try {
+            for (final Map<String, Object> document : documents) {
+                final String key = keyOf(document);
+                final Integer existing = slotByKey.get(key);
+                final int slot = existing != null ? existing : newSlot(key);
+                retireVector(slot);
+                store(slot, new HashMap<>(), document);
+            }
+            return List.of();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<IndexingFailure> merge(final List<? extends Map<String, Object>> documents) {
+        lock.writeLock().lock();
+        try {
+            final List<IndexingFailure> failures = new ArrayList<>();
+            for (final Map<String, Object> document : documents) {
+                final Integer slot = slotByKey.get(keyOf(document));
+                if (slot == null) {
+                    failures.add(new IndexingFailure(keyOf(document), NOT_FOUND, "Document not found in index " + indexName));
+                    continue;
+                }
+                if (document.containsKey(vectorField)) {
+                    retireVector(slot);
+                }
+                store(slot, this.documents.get(slot), document);
+            }
+            return failures;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String indexName() {
+        return indexName;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Integer> rank(final SearchRequest request, final BitSet accepted) {
+        final boolean keyword = !request.isMatchAll();
+        if (!request.hasVector() && !keyword) {
+            final List<Integer> all = request.orderBy() == null
+                    ? accepted.stream().boxed().toList()
+                    : accepted.stream().boxed().sorted(ordering(request.orderBy())).toList();
+            return request.top() == null || all.size() <= request.top() ? all : all.subList(0, request.top());
+        }
+        if (request.orderBy() != null) {
+            throw new IllegalArgumentException("orderBy is only supported for unranked queries: " + request.orderBy());
+        }
+
+        final int top = request.top() != null ? request.top() : DEFAULT_TOP;
+        final Map<Integer, Double> fused = new LinkedHashMap<>();
+        if (request.hasVector()) {
+            fuse(fused, vectorRanking(request, accepted));
+        }
+        if (keyword) {
+            fuse(fused, keywordIndex.search(request.text(), accepted, Math.max(top, request.nearestNeighbours()))
+                    .stream().map(Bm25Index.Hit::slot).toList());
+        }
+        return fused.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
+                .limit(top)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Sorts slots by one field, {@code "field"}, {@code "field asc"} or {@code "field desc"}, comparing
+     * values as the filter's {@code gt}/{@code lt} do so a keyset filter and the order agree.
+     */
+    private Comparator<Integer> ordering(final String orderBy) {
+        final String[] clause = orderBy.trim().split("\\s+");
+        if (clause.length > 2 || clause.length == 2 && !clause[1].matches("(?i)asc|desc")) {
+            throw new IllegalArgumentException("Unsupported orderBy '" + orderBy + "'; expected a single field with asc or desc");
+        }
+        final Comparator<Integer> ascending = (a, b) -> ODataFilter.compare(documents.get(a).get(clause[0]), documents.get(b).get(clause[0]));
+        return clause.length == 2 && clause[1].equalsIgnoreCase("desc") ? ascending.reversed() : ascending;
+    }
+
+    private static void fuse(final Map<Integer, Double> fused, final List<Integer> ranking) {
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            fused.merge(ranking.get(rank), 1.0 / (RRF_RANK_CONSTANT + rank + 1), Double::sum);
+        }
+    }
+
+    private List<Integer> vectorRanking(final SearchRequest request, final BitSet accepted) {
+        if (vectors == null || !vectorField.equals(request.vectorField())) {
+            return List.of();
+        }
+        final float[] query = vectors.normalise(request.vector().array());
+        final int k = request.nearestNeighbours();
+
+        if (graph == null || accepted.cardinality() <= EXACT_SEARCH_LIMIT) {
+            final List<HnswGraph.Neighbour> scored = new ArrayList<>();
+            accepted.stream().filter(slot -> nodeBySlot[slot] != NO_NODE)
+                    .forEach(slot -> scored.add(new HnswGraph.Neighbour(slot, vectors.similarity(query, nodeBySlot[slot]))));
+            return scored.stream()
+                    .sorted((a, b) -> Double.compare(b.score(), a.score()))
+                    .limit(k)
+                    .map(HnswGraph.Neighbour::node)
+                    .toList();
+        }
+        return graph.search(query, k, EF_SEARCH, node -> slotByNode[node] != NO_NODE && accepted.get(slotByNode[node]))
+                .stream()
+                .map(neighbour -> slotByNode[neighbour.node()])
+                .toList();
+    }
+
+    private Map<String, Object> project(final int slot, final List<String> select) {
+        final Map<String, Object> document = documents.get(slot);
+        final Map<String, Object> projected = new LinkedHashMap<>();
+        if (select == null) {
+            projected.putAll(document);
+        } else {
+            select.stream().filter(document::containsKey).forEach(field -> projected.put(field, document.get(field)));
+        }
+        if ((select == null || select.contains(vectorField)) && nodeBySlot[slot] != NO_NODE) {
+            projected.put(vectorField, vectors.get(nodeBySlot[slot]));
+        }
+        return projected;
+    }
+
+    private int newSlot(final String key) {
+        final int slot = documents.size();
+        documents.add(new HashMap<>());
+        slotByKey.put(key, slot);
+        if (slot == nodeBySlot.length) {
+            nodeBySlot = grow(nodeBySlot);
+        }
+        nodeBySlot[slot] = NO_NODE;
+        return slot;
+    }
+
+    /** Writes {@code fields} over {@code base}, adding a vector node and re-indexing the text. */
+    private void store(final int slot, final Map<String, Object> base, final Map<String, Object> fields) {
+        final Map<String, Object> copy = new HashMap<>(fields);
+        final Object vector = copy.remove(vectorField);
+        base.putAll(objectMapper.convertValue(copy, FIELD_MAP));
+        documents.set(slot, base);
+        if (vector != null) {
+            nodeBySlot[slot] = addVector(toFloats(vector), slot);
+        }
+        final StringBuilder text = new StringBuilder();
+        for (final String field : searchableFields) {
+            if (base.get(field) != null) {
+                text.append(base.get(field)).append('\n');
+            }
+        }
+        keywordIndex.add(slot, text.toString());
+    }
+
+    private int addVector(final float[] vector, final int slot) {
+        if (vectors == null) {
+            vectors = new OffHeapVectorStore(vector.length, vectorSegmentSize);
+            graph = exactScanOnly ? null : new HnswGraph(vectors);
+        }
+        final int node = vectors.add(vector);
+        if (node == slotByNode.length) {
+            slotByNode = grow(slotByNode);
+        }
+        slotByNode[node] = slot;
+        if (graph != null) {
+            graph.add(node);
+        }
+        return node;
+    }
+
+    private void retireVector(final int slot) {
+        final int node = nodeBySlot[slot];
+        if (node != NO_NODE) {
+            slotByNode[node] = NO_NODE;
+            nodeBySlot[slot] = NO_NODE;
+        }
+    }
+
+    private String keyOf(final Map<String, Object> document) {
+        final Object key = document.get(keyField);
+        if (key == null) {
+            throw new IllegalArgumentException("Document without a '" + keyField + "' key for index " + indexName);
+        }
+        return key.toString();
+    }
+
+    private float[] toFloats(final Object vector) {
+        if (vector instanceof EmbeddingVector embeddingVector) {
+            return embeddingVector.array();
+        }
+        if (vector instanceof float[] array) {
+            return array;
+        }
+        if (vector instanceof Collection<?> values) {
+            final float[] array = new float[values.size()];
+            int i = 0;
+            for (final Object value : values) {
+                array[i++] = ((Number) value).floatValue();
+            }
+            return array;
+        }
+        return objectMapper.convertValue(vector, float[].class);
+    }
+
+    private static int[] grow(final int[] array) {
+        return Arrays.copyOf(array, Math.max(16, array.length * 2));
+    }
+}
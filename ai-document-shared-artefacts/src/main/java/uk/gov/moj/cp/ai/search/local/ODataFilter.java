@@ -0,0 +1,319 @@
+package uk.gov.moj.cp.ai.search.local;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * Evaluates the subset of the Azure AI Search OData filter grammar that this service generates
+ * against an in-memory document:
+ *
+ * <ul>
+ *   <li>{@code and}, {@code or}, {@code not} and parentheses;</li>
+ *   <li>comparisons {@code eq ne gt ge lt le} of a field path with a string, number, boolean or
+ *       {@code null} literal, e.g. {@code clientId eq 'client-a'};</li>
+ *   <li>collection lambdas {@code customMetadata/any(m: m/key eq 'is_active' and m/value ne 'false')},
+ *       {@code /all(...)} and the bare {@code /any()};</li>
+ *   <li>{@code search.in(field, 'a,b', ',')}.</li>
+ * </ul>
+ * Anything else is rejected with an {@link IllegalArgumentException} rather than silently
+ * matching, so a filter the local engine cannot honour fails as loudly as it would against the
+ * service.
+ */
+final class ODataFilter {
+
+    private static final ODataFilter MATCH_ALL = new ODataFilter(scope -> true);
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean test(Scope scope);
+    }
+
+    /** The document being filtered plus the range variables of the enclosing lambdas. */
+    private record Scope(Map<String, Object> document, Map<String, Object> variables) {
+
+        Scope with(final String variable, final Object value) {
+            final Map<String, Object> nested = new HashMap<>(variables);
+            nested.put(variable, value);
+            return new Scope(document, nested);
+        }
+    }
+
+    private final Condition condition;
+
+    private ODataFilter(final Condition condition) {
+        this.condition = condition;
+    }
+
+    /**
+     * @param expression OData filter, or null/blank to match every document
+     * @throws IllegalArgumentException when the expression is malformed or outside the supported subset
+     */
+    static ODataFilter parse(final String expression) {
+        if (expression == null || expression.isBlank()) {
+            return MATCH_ALL;
+        }
+        return new ODataFilter(new Parser(expression).parse());
+    }
+
+    boolean matches(final Map<String, Object> document) {
+        return condition.test(new Scope(document, Map.of()));
+    }
+
+    private static final class Parser {
+
+        private final String input;
+        private final List<String> tokens;
+        private int position;
+
+        Parser(final String input) {
+            this.input = input;
+            this.tokens = tokenize(input);
+        }
+
+        Condition parse() {
+            final Condition condition = or();
+            if (position < tokens.size()) {
+                throw error("Unexpected '" + tokens.get(position) + "'");
+            }
+            return condition;
+        }
+
+        private Condition or() {
+            Condition left = and();
+            while (accept("or")) {
+                final Condition l = left;
+                final Condition r = and();
+                left = scope -> l.test(scope) || r.test(scope);
+            }
+            return left;
+        }
+
+        private Condition and() {
+            Condition left = unary();
+            while (accept("and")) {
+                final Condition l = left;
+                final Condition r = unary();
+                left = scope -> l.test(scope) && r.test(scope);
+            }
+            return left;
+        }
+
+        private Condition unary() {
+            if (accept("not")) {
+                final Condition operand = unary();
+                return scope -> !operand.test(scope);
+            }
+            return primary();
+        }
+
+        private Condition primary() {
+            if (accept("(")) {
+                final Condition inner = or();
+                expect(")");
+                return inner;
+            }
+            final String identifier = next();
+            if (identifier.equals("search.in")) {
+                return searchIn();
+            }
+            if (!isPath(identifier)) {
+                throw error("Expected a field path but found '" + identifier + "'");
+            }
+            if (identifier.endsWith("/any") || identifier.endsWith("/all")) {
+                return lambda(identifier.substring(0, identifier.length() - 4), identifier.endsWith("/all"));
+            }
+            final String operator = next();
+            final Object literal = literal(next());
+            return switch (operator) {
+                case "eq" -> scope -> equal(resolve(scope, identifier), literal);
+                case "ne" -> scope -> !equal(resolve(scope, identifier), literal);
+                case "gt" -> scope -> inRange(resolve(scope, identifier), literal, order -> order > 0);
+                case "ge" -> scope -> inRange(resolve(scope, identifier), literal, order -> order >= 0);
+                case "lt" -> scope -> inRange(resolve(scope, identifier), literal, order -> order < 0);
+                case "le" -> scope -> inRange(resolve(scope, identifier), literal, order -> order <= 0);
+                default -> throw error("Unsupported operator '" + operator + "'");
+            };
+        }
+
+        private Condition lambda(final String collectionPath, final boolean all) {
+            expect("(");
+            if (accept(")")) {
+                if (all) {
+                    throw error("all() requires a lambda expression");
+                }
+                return scope -> !elements(resolve(scope, collectionPath)).isEmpty();
+            }
+            final String variable = next();
+            expect(":");
+            final Condition body = or();
+            expect(")");
+            return scope -> {
+                for (final Object element : elements(resolve(scope, collectionPath))) {
+                    if (body.test(scope.with(variable, element)) != all) {
+                        return !all;
+                    }
+                }
+                return all;
+            };
+        }
+
+        private Condition searchIn() {
+            expect("(");
+            final String path = next();
+            expect(",");
+            final String values = (String) literal(next());
+            String delimiters = " ,";
+            if (accept(",")) {
+                delimiters = (String) literal(next());
+            }
+            expect(")");
+            final Set<String> accepted = new HashSet<>();
+            int start = 0;
+            for (int i = 0; i <= values.length(); i++) {
+                if (i == values.length() || delimiters.indexOf(values.charAt(i)) >= 0) {
+                    if (i > start) {
+                        accepted.add(values.substring(start, i));
+                    }
+                    start = i + 1;
+                }
+            }
+            return scope -> {
+                final Object value = resolve(scope, path);
+                return value != null && accepted.contains(value.toString());
+            };
+        }
+
+        private Object literal(final String token) {
+            if (token.startsWith("'")) {
+                return token.substring(1, token.length() - 1).replace("''", "'");
+            }
+            return switch (token) {
+                case "null" -> null;
+                case "true" -> Boolean.TRUE;
+                case "false" -> Boolean.FALSE;
+                default -> {
+                    try {
+                        yield Double.valueOf(token);
+                    } catch (final NumberFormatException e) {
+                        throw error("Expected a literal but found '" + token + "'");
+                    }
+                }
+            };
+        }
+
+        private boolean accept(final String token) {
+            if (position < tokens.size() && tokens.get(position).equals(token)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(final String token) {
+            if (!accept(token)) {
+                throw error("Expected '" + token + "'");
+            }
+        }
+
+        private String next() {
+            if (position >= tokens.size()) {
+                throw error("Unexpected end of filter");
+            }
+            return tokens.get(position++);
+        }
+
+        private IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException(message + " in filter: " + input);
+        }
+
+        private static boolean isPath(final String token) {
+            return Character.isLetter(token.charAt(0)) || token.charAt(0) == '_';
+        }
+
+        private static List<String> tokenize(final String input) {
+            final List<String> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < input.length()) {
+                final char c = input.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if ("(),:".indexOf(c) >= 0) {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else if (c == '\'') {
+                    int end = i + 1;
+                    while (true) {
+                        if (end >= input.length()) {
+                            throw new IllegalArgumentException("Unterminated string literal in filter: " + input);
+                        }
+                        if (input.charAt(end) == '\'') {
+                            if (end + 1 < input.length() && input.charAt(end + 1) == '\'') {
+                                end += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        end++;
+                    }
+                    tokens.add(input.substring(i, end + 1));
+                    i = end + 1;
+                } else {
+                    int end = i;
+                    while (end < input.length() && !Character.isWhitespace(input.charAt(end))
+                            && "(),:'".indexOf(input.charAt(end)) < 0) {
+                        end++;
+                    }
+                    tokens.add(input.substring(i, end));
+                    i = end;
+                }
+            }
+            return tokens;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object resolve(final Scope scope, final String path) {
+        final String[] segments = path.split("/");
+        Object value = scope.variables().containsKey(segments[0])
+                ? scope.variables().get(segments[0])
+                : scope.document().get(segments[0]);
+        for (final String segment : Arrays.copyOfRange(segments, 1, segments.length)) {
+            value = value instanceof Map<?, ?> map ? ((Map<String, Object>) map).get(segment) : null;
+        }
+        return value;
+    }
+
+    private static Collection<?> elements(final Object value) {
+        return value instanceof Collection<?> collection ? collection : List.of();
+    }
+
+    private static boolean equal(final Object actual, final Object literal) {
+        if (actual == null || literal == null) {
+            return actual == literal;
+        }
+        return compare(actual, literal) == 0;
+    }
+
+    /** As in the service, a range comparison with null on either side is false, not an ordering. */
+    private static boolean inRange(final Object actual, final Object literal, final IntPredicate accepts) {
+        return actual != null && literal != null && accepts.test(compare(actual, literal));
+    }
+
+    /** Total order used by {@code orderBy} as well as the range operators: null sorts first. */
+    static int compare(final Object actual, final Object literal) {
+        if (actual == null || literal == null) {
+            return actual == null ? (literal == null ? 0 : -1) : 1;
+        }
+        if (actual instanceof Number number && literal instanceof Number other) {
+            return Double.compare(number.doubleValue(), other.doubleValue());
+        }
+        return actual.toString().compareTo(literal.toString());
+    }
+}
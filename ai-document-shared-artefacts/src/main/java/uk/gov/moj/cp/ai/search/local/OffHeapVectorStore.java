@@ -0,0 +1,128 @@
+package uk.gov.moj.cp.ai.search.local;
+
+import static uk.gov.moj.cp.ai.util.VectorSimilarityUtil.dotProduct;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only store of fixed-dimension vectors in direct (off-heap) memory, addressed by a dense slot
+ * number. Vectors are kept exactly as given, with their norms on the heap, so similarities are true
+ * cosines even for vectors that are not unit length and a stored vector reads back unchanged. Memory
+ * is allocated in segments of {@code segmentSize} vectors, so growth never copies existing vectors and
+ * a 3072-dimension index costs 12 KB per vector outside the Java heap rather than a boxed list per
+ * chunk inside it.
+ * <p>
+ * Similarities use the shared {@link uk.gov.moj.cp.ai.util.VectorSimilarityUtil#dotProduct} kernel
+ * (SIMD when the Vector API is enabled): a stored vector is bulk-copied into a per-thread scratch
+ * array first, since the kernel works on arrays.
+ * <p>
+ * Not thread-safe for writes; {@link LocalSearchBackend} serialises them.
+ */
+class OffHeapVectorStore {
+
+    static final int DEFAULT_SEGMENT_SIZE = 1024;
+
+    private final int dimensions;
+    private final int segmentSize;
+    private final List<FloatBuffer> segments = new ArrayList<>();
+    private float[] norms = new float[0];
+    private int size;
+    private final ThreadLocal<float[]> scratchA;
+    private final ThreadLocal<float[]> scratchB;
+
+    OffHeapVectorStore(final int dimensions) {
+        this(dimensions, DEFAULT_SEGMENT_SIZE);
+    }
+
+    OffHeapVectorStore(final int dimensions, final int segmentSize) {
+        if (dimensions <= 0 || segmentSize <= 0) {
+            throw new IllegalArgumentException("Vector dimensions and segment size must be positive");
+        }
+        this.dimensions = dimensions;
+        this.segmentSize = segmentSize;
+        this.scratchA = ThreadLocal.withInitial(() -> new float[dimensions]);
+        this.scratchB = ThreadLocal.withInitial(() -> new float[dimensions]);
+    }
+
+    /**
+     * @return the slot the vector was stored in
+     * @throws IllegalArgumentException when the dimension does not match the store
+     */
+    int add(final float[] vector) {
+        checkDimensions(vector);
+        if (size == segments.size() * segmentSize) {
+            segments.add(ByteBuffer.allocateDirect(segmentSize * dimensions * Float.BYTES)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer());
+        }
+        if (size == norms.length) {
+            norms = Arrays.copyOf(norms, Math.max(segmentSize, norms.length * 2));
+        }
+        norms[size] = (float) norm(vector);
+        segments.get(size / segmentSize).put((size % segmentSize) * dimensions, vector);
+        return size++;
+    }
+
+    /** Cosine similarity of a normalised query (see {@link #normalise}) and a stored vector. */
+    double similarity(final float[] normalisedQuery, final int slot) {
+        if (norms[slot] == 0.0f) {
+            return 0.0;
+        }
+        return dotProduct(normalisedQuery, read(slot, scratchA.get())) / norms[slot];
+    }
+
+    double similarity(final int slotA, final int slotB) {
+        final double norms = (double) this.norms[slotA] * this.norms[slotB];
+        if (norms == 0.0) {
+            return 0.0;
+        }
+        return dotProduct(read(slotA, scratchA.get()), read(slotB, scratchB.get())) / norms;
+    }
+
+    /** A heap copy of the stored vector. */
+    float[] get(final int slot) {
+        return read(slot, new float[dimensions]);
+    }
+
+    private float[] read(final int slot, final float[] target) {
+        segments.get(slot / segmentSize).get((slot % segmentSize) * dimensions, target);
+        return target;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    /** Scales a query to unit length, the form {@link #similarity(float[], int)} expects. */
+    float[] normalise(final float[] vector) {
+        checkDimensions(vector);
+        final double norm = norm(vector);
+        if (norm == 0.0) {
+            return vector.clone();
+        }
+        final float scale = (float) (1.0 / norm);
+        final float[] normalised = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalised[i] = vector[i] * scale;
+        }
+        return normalised;
+    }
+
+    private static double norm(final float[] vector) {
+        return Math.sqrt(dotProduct(vector, vector));
+    }
+
+    private void checkDimensions(final float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected a vector of " + dimensions + " dimensions but got " + vector.length);
+        }
+    }
+}
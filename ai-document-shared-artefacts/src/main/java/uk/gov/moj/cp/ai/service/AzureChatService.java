@@ -12,22 +12,36 @@ import static uk.gov.moj.cp.ai.util.StringUtil.validateNullOrEmpty;
 
 import uk.gov.moj.cp.ai.client.AzureOpenAiClientFactory;
 import uk.gov.moj.cp.ai.exception.ChatServiceException;
+import uk.gov.moj.cp.ai.metrics.ServiceMetrics;
+import uk.gov.moj.cp.ai.metrics.TokenUsageMetrics;
+import uk.gov.moj.cp.ai.model.ContinuationPolicy;
+import uk.gov.moj.cp.ai.model.ResponseSchema;
 
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import com.azure.ai.openai.OpenAIClient;
 import com.azure.ai.openai.models.ChatChoice;
+import com.azure.ai.openai.models.ChatCompletionStreamOptions;
 import com.azure.ai.openai.models.ChatCompletions;
+import com.azure.ai.openai.models.ChatCompletionsJsonSchemaResponseFormat;
+import com.azure.ai.openai.models.ChatCompletionsJsonSchemaResponseFormatJsonSchema;
 import com.azure.ai.openai.models.ChatCompletionsOptions;
+import com.azure.ai.openai.models.ChatRequestAssistantMessage;
 import com.azure.ai.openai.models.ChatRequestMessage;
 import com.azure.ai.openai.models.ChatRequestSystemMessage;
 import com.azure.ai.openai.models.ChatRequestUserMessage;
+import com.azure.ai.openai.models.ChatResponseMessage;
 import com.azure.ai.openai.models.CompletionsFinishReason;
+import com.azure.ai.openai.models.CompletionsUsage;
 import com.azure.ai.openai.models.ReasoningEffortValue;
 import com.azure.ai.openai.models.ContentFilterResultsForChoice;
 import com.azure.ai.openai.models.ContentFilterResultsForPrompt;
+import com.azure.core.util.BinaryData;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,6 +76,10 @@ public class AzureChatService implements ChatService {
 
     private final int maxTokens;
 
+    private final ContinuationPolicy continuationPolicy;
+
+    private final TokenUsageMetrics tokenUsageMetrics = new TokenUsageMetrics(ServiceMetrics.meter());
+
     public AzureChatService(final String endpoint, final String deploymentName) {
 
         validateNullOrEmpty(endpoint, "Endpoint environment variable must be set.");
@@ -71,6 +89,7 @@ public class AzureChatService implements ChatService {
         this.deploymentName = deploymentName;
 
         maxTokens = getRequiredEnvAsInteger(LLM_MODEL_RESPONSE_MAX_TOKENS, MAX_TOKENS);
+        continuationPolicy = ContinuationPolicy.fromEnv();
 
     }
 
@@ -78,35 +97,35 @@ public class AzureChatService implements ChatService {
         this.deploymentName = deploymentName;
         this.openAIClient = openAIClient;
         maxTokens = parseInt(MAX_TOKENS);
+        continuationPolicy = ContinuationPolicy.fromEnv();
         LOGGER.info("Returning initialized Azure OpenAI client for chat with Managed Identity.");
     }
 
     @Override
     public <T> Optional<T> callModel(final String systemInstruction, final String userInstruction, Class<T> responseClass) throws ChatServiceException {
-        final List<ChatRequestMessage> chatMessages = getChatMessages(systemInstruction, userInstruction);
-
-        // GPT-5 / o-series reasoning models reject the legacy `max_tokens` parameter and require
-        // `max_completion_tokens`. They also reject sampling parameters (temperature/top_p) other
-        // than the default (1.0). Detect by deployment name and configure compatibly. Older
-        // models (GPT-4o, GPT-4-turbo) accept max_completion_tokens too, so we use it
-        // unconditionally to keep one code path.
-        final boolean reasoningModel = isReasoningModel(deploymentName);
-
-        ChatCompletionsOptions chatCompletionsOptions = new ChatCompletionsOptions(chatMessages)
-                .setMaxCompletionTokens(maxTokens);
+        return callModel(systemInstruction, userInstruction, responseClass, null);
+    }
 
-        if (reasoningModel) {
-            final String reasoningEffort = getRequiredEnv(LLM_REASONING_EFFORT, DEFAULT_REASONING_EFFORT).trim().toLowerCase();
-            chatCompletionsOptions.setReasoningEffort(ReasoningEffortValue.fromString(reasoningEffort));
-            LOGGER.info("Applied reasoning_effort='{}' for reasoning model '{}'", reasoningEffort, deploymentName);
-        } else {
-            chatCompletionsOptions
-                    .setTemperature(TEMPERATURE) // Low temperature for deterministic scoring
-                    .setTopP(TOP_P);
+    /**
+     * Sends the schema as a strict {@code json_schema} response format, so the completion is valid
+     * JSON conforming to it. Without a schema, a completion cut off at the token limit is continued
+     * within the {@link ContinuationPolicy} caps; a strict schema would make the model start a new
+     * JSON object instead of finishing the old one, so schema calls are never continued.
+     */
+    @Override
+    public <T> Optional<T> callModel(final String systemInstruction, final String userInstruction, final Class<T> responseClass,
+                                     final ResponseSchema responseSchema) throws ChatServiceException {
+        final ChatCompletionsOptions chatCompletionsOptions = buildChatCompletionsOptions(systemInstruction, userInstruction);
+        if (responseSchema != null) {
+            chatCompletionsOptions.setResponseFormat(new ChatCompletionsJsonSchemaResponseFormat(
+                    new ChatCompletionsJsonSchemaResponseFormatJsonSchema(responseSchema.name())
+                            .setSchema(BinaryData.fromObject(responseSchema.schema()))
+                            .setStrict(true)));
         }
 
         try {
             final ChatCompletions chatCompletions = openAIClient.getChatCompletions(deploymentName, chatCompletionsOptions);
+            recordUsage(chatCompletions.getUsage());
             final ChatChoice chatChoice = chatCompletions.getChoices().get(0);
             final String jsonResponse = chatChoice.getMessage().getContent();
             final CompletionsFinishReason finishReason = chatChoice.getFinishReason();
@@ -117,19 +136,16 @@ public class AzureChatService implements ChatService {
                 throw new ChatServiceException("LLM produced an empty response.  See explanation below \n" + resultExplanation);
             } else {
                 LOGGER.info("Received response from LLM. Finish reason: {}", finishReason);
-                if (CompletionsFinishReason.CONTENT_FILTERED.equals(finishReason)) {
-                    LOGGER.warn("LLM produced filtered response.  See details \n{}", resultExplanation);
-                } else if (CompletionsFinishReason.TOKEN_LIMIT_REACHED.equals(finishReason)) {
-                    LOGGER.warn("LLM produced incomplete response as token limit was reached.  See details \n{}", resultExplanation);
-                } else {
-                    LOGGER.info("LLM produced complete response.  See details \n{}", resultExplanation);
-                }
+                logFinishReason(finishReason, resultExplanation);
             }
+            final String completeResponse = responseSchema == null
+                    ? continueIfTruncated(systemInstruction, userInstruction, jsonResponse, finishReason)
+                    : jsonResponse;
             final T responseModel;
             if (responseClass == String.class) {
-                responseModel = responseClass.cast(jsonResponse);
+                responseModel = responseClass.cast(completeResponse);
             } else {
-                final String sanitisedResponse = ensureRawJsonAsConvertingPayloadToObject(jsonResponse);
+                final String sanitisedResponse = ensureRawJsonAsConvertingPayloadToObject(completeResponse);
                 responseModel = getObjectMapper().readValue(sanitisedResponse, responseClass);
             }
             return Optional.ofNullable(responseModel);
@@ -138,6 +154,172 @@ public class AzureChatService implements ChatService {
         }
     }
 
+    /** How one streamed completion ended; {@code usage} is null when the service did not report it. */
+    private record StreamedRound(CompletionsFinishReason finishReason, CompletionsUsage usage) {
+    }
+
+    /**
+     * Streams the completion via {@code getChatCompletionsStream}, forwarding each content delta as it
+     * arrives. The first chunk carries only prompt filter results and no choices, and the finish
+     * reason arrives on the last content chunk. Usage is requested with
+     * {@code stream_options.include_usage} and arrives on a final chunk without choices. A stream cut
+     * off at the token limit is continued like {@link #callModel}, and the continuation deltas are
+     * forwarded too.
+     */
+    @Override
+    public String streamModel(final String systemInstruction, final String userInstruction,
+                              final Consumer<String> onDelta) throws ChatServiceException {
+        final StringBuilder text = new StringBuilder();
+        CompletionsFinishReason finishReason = streamRound(
+                buildChatCompletionsOptions(systemInstruction, userInstruction), text, onDelta).finishReason();
+
+        int rounds = 0;
+        int tokensUsed = 0;
+        while (!text.isEmpty() && CompletionsFinishReason.TOKEN_LIMIT_REACHED.equals(finishReason)
+                && continuationPolicy.allows(rounds, tokensUsed)) {
+            final int roundTokens = continuationPolicy.roundTokens(maxTokens, tokensUsed);
+            LOGGER.info("Streamed response reached the token limit; continuation round {}.", rounds + 1);
+            final StreamedRound round = streamRound(buildChatCompletionsOptions(
+                    getContinuationMessages(systemInstruction, userInstruction, text.toString()), roundTokens), text, onDelta);
+            rounds++;
+            tokensUsed += round.usage() == null ? roundTokens : round.usage().getCompletionTokens();
+            finishReason = round.finishReason();
+        }
+
+        final String resultExplanation = "Finish reason: " + finishReason;
+        if (text.isEmpty()) {
+            throw new ChatServiceException("LLM produced an empty streamed response.  See explanation below \n" + resultExplanation);
+        }
+        LOGGER.info("Received streamed response from LLM. Finish reason: {}", finishReason);
+        logFinishReason(finishReason, resultExplanation);
+        return text.toString();
+    }
+
+    /**
+     * Asks the model to finish an answer cut off at the completion-token limit: the output so far is
+     * replayed as the assistant turn, followed by {@link ContinuationPolicy#CONTINUATION_INSTRUCTION},
+     * until the model stops on its own or a policy cap is reached. This costs the missing tail
+     * rather than a full regeneration, and the replayed prompt prefix is eligible for prompt caching.
+     */
+    private String continueIfTruncated(final String systemInstruction, final String userInstruction,
+                                       final String partialResponse, final CompletionsFinishReason initialFinishReason) {
+        final StringBuilder text = new StringBuilder(partialResponse);
+        CompletionsFinishReason finishReason = initialFinishReason;
+        int rounds = 0;
+        int tokensUsed = 0;
+        while (CompletionsFinishReason.TOKEN_LIMIT_REACHED.equals(finishReason)
+                && continuationPolicy.allows(rounds, tokensUsed)) {
+            final int roundTokens = continuationPolicy.roundTokens(maxTokens, tokensUsed);
+            final ChatCompletionsOptions chatCompletionsOptions = buildChatCompletionsOptions(
+                    getContinuationMessages(systemInstruction, userInstruction, text.toString()), roundTokens);
+
+            final ChatCompletions chatCompletions = openAIClient.getChatCompletions(deploymentName, chatCompletionsOptions);
+            recordUsage(chatCompletions.getUsage());
+            final ChatChoice chatChoice = chatCompletions.getChoices().get(0);
+            final String continuation = chatChoice.getMessage().getContent();
+            rounds++;
+            tokensUsed += chatCompletions.getUsage() == null ? roundTokens : chatCompletions.getUsage().getCompletionTokens();
+            finishReason = chatChoice.getFinishReason();
+            if (isNullOrEmpty(continuation)) {
+                break;
+            }
+            text.append(continuation);
+            LOGGER.info("Continuation round {} appended {} characters. Finish reason: {}", rounds, continuation.length(), finishReason);
+        }
+        if (rounds > 0 && CompletionsFinishReason.TOKEN_LIMIT_REACHED.equals(finishReason)) {
+            LOGGER.warn("LLM response still incomplete after {} continuation round(s) and {} completion tokens.", rounds, tokensUsed);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Streams one completion into {@code text}, forwarding each content delta, and records its usage.
+     * The chunks are read through a closeable stream: closing it cancels the HTTP response, so a stream
+     * abandoned by an exception from {@code onDelta} stops generating instead of running to the end.
+     * Iterating the {@code IterableStream} directly would leave the upstream subscription open.
+     */
+    private StreamedRound streamRound(final ChatCompletionsOptions chatCompletionsOptions,
+                                      final StringBuilder text, final Consumer<String> onDelta) {
+        CompletionsFinishReason finishReason = null;
+        CompletionsUsage usage = null;
+        try (Stream<ChatCompletions> chunks = openAIClient.getChatCompletionsStream(deploymentName, chatCompletionsOptions,
+                new ChatCompletionStreamOptions().setIncludeUsage(true)).stream()) {
+            final Iterator<ChatCompletions> iterator = chunks.iterator();
+            while (iterator.hasNext()) {
+                final ChatCompletions chunk = iterator.next();
+                if (chunk.getUsage() != null) {
+                    usage = chunk.getUsage();
+                }
+                if (chunk.getChoices() == null) {
+                    continue;
+                }
+                for (final ChatChoice chatChoice : chunk.getChoices()) {
+                    final ChatResponseMessage delta = chatChoice.getDelta();
+                    if (delta != null && !isNullOrEmpty(delta.getContent())) {
+                        text.append(delta.getContent());
+                        onDelta.accept(delta.getContent());
+                    }
+                    if (chatChoice.getFinishReason() != null) {
+                        finishReason = chatChoice.getFinishReason();
+                    }
+                }
+            }
+        }
+        recordUsage(usage);
+        return new StreamedRound(finishReason, usage);
+    }
+
+    private ChatCompletionsOptions buildChatCompletionsOptions(final String systemInstruction, final String userInstruction) {
+        return buildChatCompletionsOptions(getChatMessages(systemInstruction, userInstruction), maxTokens);
+    }
+
+    private ChatCompletionsOptions buildChatCompletionsOptions(final List<ChatRequestMessage> chatMessages,
+                                                               final int maxCompletionTokens) {
+
+        // GPT-5 / o-series reasoning models reject the legacy `max_tokens` parameter and require
+        // `max_completion_tokens`. They also reject sampling parameters (temperature/top_p) other
+        // than the default (1.0). Detect by deployment name and configure compatibly. Older
+        // models (GPT-4o, GPT-4-turbo) accept max_completion_tokens too, so we use it
+        // unconditionally to keep one code path.
+        final boolean reasoningModel = isReasoningModel(deploymentName);
+
+        ChatCompletionsOptions chatCompletionsOptions = new ChatCompletionsOptions(chatMessages)
+                .setMaxCompletionTokens(maxCompletionTokens);
+
+        if (reasoningModel) {
+            final String reasoningEffort = getRequiredEnv(LLM_REASONING_EFFORT, DEFAULT_REASONING_EFFORT).trim().toLowerCase();
+            chatCompletionsOptions.setReasoningEffort(ReasoningEffortValue.fromString(reasoningEffort));
+            LOGGER.info("Applied reasoning_effort='{}' for reasoning model '{}'", reasoningEffort, deploymentName);
+        } else {
+            chatCompletionsOptions
+                    .setTemperature(TEMPERATURE) // Low temperature for deterministic scoring
+                    .setTopP(TOP_P);
+        }
+        return chatCompletionsOptions;
+    }
+
+    /** Usage is absent when the service does not report it; {@code cached_tokens} only on models that cache. */
+    private void recordUsage(final CompletionsUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        final Integer cachedTokens = usage.getPromptTokensDetails() == null
+                ? null
+                : usage.getPromptTokensDetails().getCachedTokens();
+        tokenUsageMetrics.record(deploymentName, usage.getPromptTokens(), cachedTokens == null ? 0 : cachedTokens,
+                usage.getCompletionTokens());
+    }
+
+    private static void logFinishReason(final CompletionsFinishReason finishReason, final String resultExplanation) {
+        if (CompletionsFinishReason.CONTENT_FILTERED.equals(finishReason)) {
+            LOGGER.warn("LLM produced filtered response.  See details \n{}", resultExplanation);
+        } else if (CompletionsFinishReason.TOKEN_LIMIT_REACHED.equals(finishReason)) {
+            LOGGER.warn("LLM produced incomplete response as token limit was reached.  See details \n{}", resultExplanation);
+        } else {
+            LOGGER.info("LLM produced complete response.  See details \n{}", resultExplanation);
+        }
+    }
+
     private List<ChatRequestMessage> getChatMessages(final String systemInstruction, final String userInstruction) {
         return List.of(
                 new ChatRequestSystemMessage(systemInstruction),
@@ -145,6 +327,16 @@ public class AzureChatService implements ChatService {
         );
     }
 
+    private List<ChatRequestMessage> getContinuationMessages(final String systemInstruction, final String userInstruction,
+                                                             final String partialResponse) {
+        return List.of(
+                new ChatRequestSystemMessage(systemInstruction),
+                new ChatRequestUserMessage(userInstruction),
+                new ChatRequestAssistantMessage(partialResponse),
+                new ChatRequestUserMessage(ContinuationPolicy.CONTINUATION_INSTRUCTION)
+        );
+    }
+
     private String generateExplanationForEmptyResponse(final ChatChoice chatChoice, final ChatCompletions chatCompletions, final CompletionsFinishReason finishReason) {
         final StringBuilder resultExplanation = new StringBuilder("Finish reason: ").append(finishReason);
 
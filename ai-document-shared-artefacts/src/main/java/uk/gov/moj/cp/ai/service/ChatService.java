@@ -1,10 +1,41 @@
 package uk.gov.moj.cp.ai.service;
 
 import uk.gov.moj.cp.ai.exception.ChatServiceException;
+import uk.gov.moj.cp.ai.model.ResponseSchema;
 
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface ChatService {
 
     <T> Optional<T> callModel(String systemInstruction, String userInstruction, Class<T> responseClass) throws ChatServiceException;
+
+    /**
+     * Like {@link #callModel(String, String, Class)}, but asks the provider to constrain the
+     * completion to {@code responseSchema} (structured outputs). With {@code String.class} the raw
+     * JSON text is returned.
+     * <p>
+     * The default implementation ignores the schema and relies on the instructions alone.
+     */
+    default <T> Optional<T> callModel(String systemInstruction, String userInstruction, Class<T> responseClass,
+                                      ResponseSchema responseSchema) throws ChatServiceException {
+        return callModel(systemInstruction, userInstruction, responseClass);
+    }
+
+    /**
+     * Streams a free-text completion, handing each content delta to {@code onDelta} as the model
+     * produces it. A runtime exception thrown by {@code onDelta} abandons the stream and propagates.
+     * <p>
+     * The default implementation makes one blocking {@link #callModel} call and delivers the whole
+     * text as a single delta.
+     *
+     * @return the complete text, i.e. the concatenation of every delta
+     */
+    default String streamModel(String systemInstruction, String userInstruction, Consumer<String> onDelta) throws ChatServiceException {
+        final String text = callModel(systemInstruction, userInstruction, String.class).orElse("");
+        if (!text.isEmpty()) {
+            onDelta.accept(text);
+        }
+        return text;
+    }
 }
@@ -4,6 +4,7 @@ import static uk.gov.moj.cp.ai.util.StringUtil.validateNullOrEmpty;
 
 import uk.gov.moj.cp.ai.client.AzureOpenAiClientFactory;
 import uk.gov.moj.cp.ai.exception.EmbeddingServiceException;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 
 import java.util.List;
 
@@ -36,16 +37,16 @@ public class EmbeddingService {
         this.embeddingDeploymentName = deploymentName;
     }
 
-    public List<Float> embedData(String content) throws EmbeddingServiceException {
+    public EmbeddingVector embedData(String content) throws EmbeddingServiceException {
         validateNullOrEmpty(content, "Content to embed cannot be null or empty");
-        final List<List<Float>> embeddings = embedCollectionData(List.of(content));
+        final List<EmbeddingVector> embeddings = embedCollectionData(List.of(content));
         if (null == embeddings || embeddings.isEmpty()) {
-            return List.of();
+            return EmbeddingVector.EMPTY;
         }
         return embeddings.get(0);
     }
 
-    public List<List<Float>> embedCollectionData(List<String> contents) throws EmbeddingServiceException {
+    public List<EmbeddingVector> embedCollectionData(List<String> contents) throws EmbeddingServiceException {
         if (contents == null || contents.isEmpty()) {
             throw new IllegalArgumentException("Content list cannot be null or empty");
         }
@@ -59,8 +60,10 @@ public class EmbeddingService {
             Embeddings embeddingsResult = openAIClient.getEmbeddings(embeddingDeploymentName, embeddingsOptions);
 
             if (embeddingsResult.getData() != null && !embeddingsResult.getData().isEmpty()) {
-                List<List<Float>> embeddings = embeddingsResult.getData().stream()
+                // Unboxed once here so callers never hold the SDK's List<Float> beyond this call.
+                List<EmbeddingVector> embeddings = embeddingsResult.getData().stream()
                         .map(EmbeddingItem::getEmbedding)
+                        .map(EmbeddingVector::fromList)
                         .toList();
                 LOGGER.info("Successfully embedded {} queries", embeddings.size());
                 return embeddings;
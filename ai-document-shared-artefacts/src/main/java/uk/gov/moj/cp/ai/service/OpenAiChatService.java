@@ -13,19 +13,33 @@ import static uk.gov.moj.cp.ai.util.StringUtil.validateNullOrEmpty;
 
 import uk.gov.moj.cp.ai.client.OpenAiClientFactory;
 import uk.gov.moj.cp.ai.exception.ChatServiceException;
+import uk.gov.moj.cp.ai.metrics.ServiceMetrics;
+import uk.gov.moj.cp.ai.metrics.TokenUsageMetrics;
+import uk.gov.moj.cp.ai.model.ContinuationPolicy;
+import uk.gov.moj.cp.ai.model.ResponseSchema;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.openai.client.OpenAIClient;
+import com.openai.core.JsonValue;
+import com.openai.core.http.StreamResponse;
 import com.openai.models.Reasoning;
 import com.openai.models.ReasoningEffort;
+import com.openai.models.responses.EasyInputMessage;
 import com.openai.models.responses.Response;
 import com.openai.models.responses.ResponseCreateParams;
+import com.openai.models.responses.ResponseFormatTextJsonSchemaConfig;
+import com.openai.models.responses.ResponseInputItem;
 import com.openai.models.responses.ResponseOutputItem;
 import com.openai.models.responses.ResponseOutputMessage;
 import com.openai.models.responses.ResponseStatus;
+import com.openai.models.responses.ResponseStreamEvent;
 import com.openai.models.responses.ResponseTextConfig;
+import com.openai.models.responses.ResponseUsage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +76,10 @@ public class OpenAiChatService implements ChatService {
     private final String verbosity;
     private final String reasoningEffort;
 
+    private final ContinuationPolicy continuationPolicy;
+
+    private final TokenUsageMetrics tokenUsageMetrics = new TokenUsageMetrics(ServiceMetrics.meter());
+
     public OpenAiChatService(final String endpoint, final String deploymentName) {
 
         validateNullOrEmpty(endpoint, "Endpoint environment variable must be set.");
@@ -73,6 +91,7 @@ public class OpenAiChatService implements ChatService {
         maxTokens = getRequiredEnvAsInteger(LLM_MODEL_RESPONSE_MAX_TOKENS, MAX_TOKENS);
         verbosity = getRequiredEnv(LLM_MODEL_RESPONSE_VERBOSITY, DEFAULT_VERBOSITY);
         reasoningEffort = getRequiredEnv(LLM_REASONING_EFFORT, DEFAULT_REASONING_EFFORT);
+        continuationPolicy = ContinuationPolicy.fromEnv();
     }
 
     protected OpenAiChatService(final OpenAIClient openAIClient, final String deploymentName) {
@@ -81,20 +100,201 @@ public class OpenAiChatService implements ChatService {
         maxTokens = parseInt(MAX_TOKENS);
         verbosity = getRequiredEnv(LLM_MODEL_RESPONSE_VERBOSITY, DEFAULT_VERBOSITY);
         reasoningEffort = getRequiredEnv(LLM_REASONING_EFFORT, DEFAULT_REASONING_EFFORT);
+        continuationPolicy = ContinuationPolicy.fromEnv();
         LOGGER.info("Returning initialized OpenAI client for chat.");
     }
 
     @Override
     public <T> Optional<T> callModel(final String systemInstruction, final String userInstruction, Class<T> responseClass) throws ChatServiceException {
+        return callModel(systemInstruction, userInstruction, responseClass, null);
+    }
+
+    /**
+     * Sends the schema as a strict {@code json_schema} text format, so the output text is valid JSON
+     * conforming to it. Without a schema, a response left incomplete at {@code max_output_tokens} is
+     * continued within the {@link ContinuationPolicy} caps; schema calls are never continued, as a
+     * strict schema would make the model start a new JSON object instead of finishing the old one.
+     */
+    @Override
+    public <T> Optional<T> callModel(final String systemInstruction, final String userInstruction, final Class<T> responseClass,
+                                     final ResponseSchema responseSchema) throws ChatServiceException {
+        try {
+            final Response response = openAIClient.responses().create(
+                    buildParams(systemInstruction, userInstruction, responseSchema));
+            response.usage().ifPresent(this::recordUsage);
+            final String content = extractOutputText(response);
+            final String status = response.status().map(ResponseStatus::toString).orElse("(no status)");
+            final String resultExplanation = "Response status: " + status;
+
+            if (isNullOrEmpty(content)) {
+                throw new ChatServiceException("LLM produced an empty response.  See explanation below \n" + resultExplanation);
+            }
+
+            LOGGER.info("Received response from LLM. Status: {}", status);
+            logCompleteness(response, resultExplanation);
+            final String completeContent = responseSchema == null
+                    ? continueIfTruncated(systemInstruction, userInstruction, content, response)
+                    : content;
+
+            final T responseModel;
+            if (responseClass == String.class) {
+                responseModel = responseClass.cast(completeContent);
+            } else {
+                final String sanitisedResponse = ensureRawJsonAsConvertingPayloadToObject(completeContent);
+                responseModel = getObjectMapper().readValue(sanitisedResponse, responseClass);
+            }
+            return Optional.ofNullable(responseModel);
+        } catch (final JsonProcessingException e) {
+            throw new ChatServiceException("Error calling LLM for evaluation", e);
+        }
+    }
+
+    /**
+     * Streams the response via the Responses API streaming events, forwarding each
+     * {@code response.output_text.delta} as it arrives. The terminal {@code response.completed} or
+     * {@code response.incomplete} event carries the final status; {@code response.failed} and
+     * {@code error} events fail the call. A stream left incomplete at {@code max_output_tokens} is
+     * continued like {@link #callModel}, and the continuation deltas are forwarded too.
+     */
+    @Override
+    public String streamModel(final String systemInstruction, final String userInstruction,
+                              final Consumer<String> onDelta) throws ChatServiceException {
+        final StringBuilder text = new StringBuilder();
+        Response finalResponse = streamRound(buildParams(systemInstruction, userInstruction, null), text, onDelta);
+
+        int rounds = 0;
+        int tokensUsed = 0;
+        while (!text.isEmpty() && isTruncated(finalResponse) && continuationPolicy.allows(rounds, tokensUsed)) {
+            final int roundTokens = continuationPolicy.roundTokens(maxTokens, tokensUsed);
+            LOGGER.info("Streamed response reached max_output_tokens; continuation round {}.", rounds + 1);
+            finalResponse.usage().ifPresent(this::recordUsage);
+            finalResponse = streamRound(buildContinuationParams(systemInstruction, userInstruction, text.toString(),
+                    roundTokens), text, onDelta);
+            rounds++;
+            tokensUsed += tokensCharged(finalResponse, roundTokens);
+        }
+
+        final String status = finalResponse == null
+                ? "(no status)"
+                : finalResponse.status().map(ResponseStatus::toString).orElse("(no status)");
+        final String resultExplanation = "Response status: " + status;
+        if (text.isEmpty()) {
+            throw new ChatServiceException("LLM produced an empty streamed response.  See explanation below \n" + resultExplanation);
+        }
+        LOGGER.info("Received streamed response from LLM. Status: {}", status);
+        if (finalResponse != null) {
+            finalResponse.usage().ifPresent(this::recordUsage);
+            logCompleteness(finalResponse, resultExplanation);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Asks the model to finish a response left incomplete at {@code max_output_tokens}: the output so
+     * far is replayed as an assistant message, followed by
+     * {@link ContinuationPolicy#CONTINUATION_INSTRUCTION}, until the model completes or a policy cap
+     * is reached. This costs the missing tail rather than a full regeneration, and the replayed
+     * prompt prefix is eligible for prompt caching.
+     */
+    private String continueIfTruncated(final String systemInstruction, final String userInstruction,
+                                       final String partialContent, final Response initialResponse) {
+        final StringBuilder text = new StringBuilder(partialContent);
+        Response response = initialResponse;
+        int rounds = 0;
+        int tokensUsed = 0;
+        while (isTruncated(response) && continuationPolicy.allows(rounds, tokensUsed)) {
+            final int roundTokens = continuationPolicy.roundTokens(maxTokens, tokensUsed);
+            response = openAIClient.responses().create(
+                    buildContinuationParams(systemInstruction, userInstruction, text.toString(), roundTokens));
+            response.usage().ifPresent(this::recordUsage);
+            final String continuation = extractOutputText(response);
+            rounds++;
+            tokensUsed += tokensCharged(response, roundTokens);
+            if (isNullOrEmpty(continuation)) {
+                break;
+            }
+            text.append(continuation);
+            LOGGER.info("Continuation round {} appended {} characters. Status: {}", rounds, continuation.length(),
+                    response.status().map(ResponseStatus::toString).orElse("(no status)"));
+        }
+        if (rounds > 0 && isTruncated(response)) {
+            LOGGER.warn("LLM response still incomplete after {} continuation round(s) and {} output tokens.", rounds, tokensUsed);
+        }
+        return text.toString();
+    }
+
+    /** Streams one response into {@code text}, forwarding each text delta; returns the terminal response, if any. */
+    private Response streamRound(final ResponseCreateParams params, final StringBuilder text,
+                                 final Consumer<String> onDelta) throws ChatServiceException {
+        Response finalResponse = null;
+        try (StreamResponse<ResponseStreamEvent> stream = openAIClient.responses().createStreaming(params)) {
+            final Iterator<ResponseStreamEvent> events = stream.stream().iterator();
+            while (events.hasNext()) {
+                final ResponseStreamEvent event = events.next();
+                if (event.outputTextDelta().isPresent()) {
+                    final String delta = event.outputTextDelta().get().delta();
+                    text.append(delta);
+                    onDelta.accept(delta);
+                } else if (event.completed().isPresent()) {
+                    finalResponse = event.completed().get().response();
+                } else if (event.incomplete().isPresent()) {
+                    finalResponse = event.incomplete().get().response();
+                } else if (event.failed().isPresent()) {
+                    throw new ChatServiceException("LLM streamed response failed. Response status: "
+                            + event.failed().get().response().status().map(ResponseStatus::toString).orElse("(no status)"));
+                } else if (event.error().isPresent()) {
+                    throw new ChatServiceException("LLM stream reported an error: " + event.error().get().message());
+                }
+            }
+        }
+        return finalResponse;
+    }
+
+    /** Only an output-token cut-off is continued; a content-filter stop is final. */
+    private static boolean isTruncated(final Response response) {
+        return response != null && response.incompleteDetails()
+                .flatMap(Response.IncompleteDetails::reason)
+                .filter(Response.IncompleteDetails.Reason.MAX_OUTPUT_TOKENS::equals)
+                .isPresent();
+    }
+
+    /** The round's reported output tokens, or its whole limit when the response carries no usage. */
+    private static int tokensCharged(final Response response, final int roundTokens) {
+        return response == null
+                ? roundTokens
+                : response.usage().map(usage -> (int) usage.outputTokens()).orElse(roundTokens);
+    }
+
+    private ResponseCreateParams buildParams(final String systemInstruction, final String userInstruction,
+                                             final ResponseSchema responseSchema) {
+        return paramsBuilder(systemInstruction, responseSchema, maxTokens).input(userInstruction).build();
+    }
+
+    private ResponseCreateParams buildContinuationParams(final String systemInstruction, final String userInstruction,
+                                                         final String partialContent, final int maxOutputTokens) {
+        return paramsBuilder(systemInstruction, null, maxOutputTokens)
+                .inputOfResponse(List.of(
+                        inputMessage(EasyInputMessage.Role.USER, userInstruction),
+                        inputMessage(EasyInputMessage.Role.ASSISTANT, partialContent),
+                        inputMessage(EasyInputMessage.Role.USER, ContinuationPolicy.CONTINUATION_INSTRUCTION)))
+                .build();
+    }
+
+    private static ResponseInputItem inputMessage(final EasyInputMessage.Role role, final String content) {
+        return ResponseInputItem.ofEasyInputMessage(EasyInputMessage.builder().role(role).content(content).build());
+    }
+
+    private ResponseCreateParams.Builder paramsBuilder(final String systemInstruction, final ResponseSchema responseSchema,
+                                                       final int maxOutputTokens) {
         // GPT-5 / o-series reasoning models reject sampling parameters (temperature/top_p) other
         // than the default. Detect by deployment name and configure compatibly.
         final boolean reasoningModel = isReasoningModel(deploymentName);
 
+        final ResponseTextConfig.Builder textConfig = ResponseTextConfig.builder();
         final ResponseCreateParams.Builder paramsBuilder = ResponseCreateParams.builder()
                 .model(deploymentName)
                 .instructions(systemInstruction)
-                .input(userInstruction)
-                .maxOutputTokens((long) maxTokens);
+                .maxOutputTokens((long) maxOutputTokens);
 
         if (reasoningModel) {
             paramsBuilder.reasoning(Reasoning.builder()
@@ -103,42 +303,37 @@ public class OpenAiChatService implements ChatService {
             // verbosity is a GPT-5 reasoning-model Responses-API control. Non-reasoning models
             // (e.g. gpt-4o) REJECT it — `gpt-4o` returns 400 "Unsupported value: 'low' ... Supported
             // values are: 'medium'" — so only set it for reasoning models, alongside reasoning_effort.
-            paramsBuilder.text(ResponseTextConfig.builder()
-                    .verbosity(ResponseTextConfig.Verbosity.of(verbosity))
-                    .build());
+            textConfig.verbosity(ResponseTextConfig.Verbosity.of(verbosity));
             LOGGER.info("Applied reasoning_effort='{}', verbosity='{}' for reasoning model '{}'",
                     reasoningEffort, verbosity, deploymentName);
         } else {
             paramsBuilder.temperature(TEMPERATURE).topP(TOP_P);
         }
+        if (responseSchema != null) {
+            final ResponseFormatTextJsonSchemaConfig.Schema.Builder schema = ResponseFormatTextJsonSchemaConfig.Schema.builder();
+            responseSchema.schema().forEach((key, value) -> schema.putAdditionalProperty(key, JsonValue.from(value)));
+            textConfig.format(ResponseFormatTextJsonSchemaConfig.builder()
+                    .name(responseSchema.name())
+                    .schema(schema.build())
+                    .strict(true)
+                    .build());
+        }
+        if (reasoningModel || responseSchema != null) {
+            paramsBuilder.text(textConfig.build());
+        }
+        return paramsBuilder;
+    }
 
-        try {
-            final Response response = openAIClient.responses().create(paramsBuilder.build());
-            final String content = extractOutputText(response);
-            final String status = response.status().map(ResponseStatus::toString).orElse("(no status)");
-            final String resultExplanation = "Response status: " + status;
-
-            if (isNullOrEmpty(content)) {
-                throw new ChatServiceException("LLM produced an empty response.  See explanation below \n" + resultExplanation);
-            }
-
-            LOGGER.info("Received response from LLM. Status: {}", status);
-            if (response.incompleteDetails().isPresent()) {
-                LOGGER.warn("LLM produced incomplete response.  See details \n{}", resultExplanation);
-            } else {
-                LOGGER.info("LLM produced complete response.  See details \n{}", resultExplanation);
-            }
+    private void recordUsage(final ResponseUsage usage) {
+        tokenUsageMetrics.record(deploymentName, usage.inputTokens(), usage.inputTokensDetails().cachedTokens(),
+                usage.outputTokens());
+    }
 
-            final T responseModel;
-            if (responseClass == String.class) {
-                responseModel = responseClass.cast(content);
-            } else {
-                final String sanitisedResponse = ensureRawJsonAsConvertingPayloadToObject(content);
-                responseModel = getObjectMapper().readValue(sanitisedResponse, responseClass);
-            }
-            return Optional.ofNullable(responseModel);
-        } catch (final JsonProcessingException e) {
-            throw new ChatServiceException("Error calling LLM for evaluation", e);
+    private static void logCompleteness(final Response response, final String resultExplanation) {
+        if (response.incompleteDetails().isPresent()) {
+            LOGGER.warn("LLM produced incomplete response.  See details \n{}", resultExplanation);
+        } else {
+            LOGGER.info("LLM produced complete response.  See details \n{}", resultExplanation);
         }
     }
 
@@ -0,0 +1,57 @@
+package uk.gov.moj.cp.ai.service.table;
+
+import static uk.gov.moj.cp.ai.entity.StorageTableColumns.TC_EMBEDDING;
+import static uk.gov.moj.cp.ai.util.StringUtil.isNullOrEmpty;
+
+import uk.gov.moj.cp.ai.exception.EntityRetrievalException;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+
+import com.azure.data.tables.models.TableEntity;
+
+/**
+ * Table storage service holding chunk embeddings by content hash, so ingestion can skip embedding text
+ * it has already embedded with the same deployment.
+ * <p>
+ * The row key is the hash; the partition key is the deployment name plus the hash's first two hex
+ * digits, which spreads rows over 256 partitions per deployment. The vector is stored as a binary
+ * property in {@link EmbeddingVector#toBytes()} form (12 KB at 3 072 dimensions, well under the 64 KB
+ * property limit). Rows are immutable once written: the same text and deployment always give the same
+ * vector, so concurrent writers upsert identical content. Writes are logged at DEBUG only, since
+ * a document writes one row per chunk.
+ */
+public class EmbeddingCacheTableService {
+
+    private final TableService tableService;
+
+    public EmbeddingCacheTableService(final String tableName) {
+        if (isNullOrEmpty(tableName)) {
+            throw new IllegalArgumentException("Table name cannot be null or empty.");
+        }
+        this.tableService = new TableService(tableName);
+    }
+
+    protected EmbeddingCacheTableService(final TableService tableService) {
+        this.tableService = tableService;
+    }
+
+    /**
+     * @return the stored embedding, or null when the text has not been embedded with the deployment
+     */
+    public EmbeddingVector get(final String deploymentName, final String contentHash) throws EntityRetrievalException {
+        final TableEntity entity = tableService.getFirstDocumentMatching(partitionKey(deploymentName, contentHash), contentHash);
+        if (entity != null && entity.getProperty(TC_EMBEDDING) instanceof byte[] bytes) {
+            return EmbeddingVector.fromBytes(bytes);
+        }
+        return null;
+    }
+
+    public void put(final String deploymentName, final String contentHash, final EmbeddingVector embedding) {
+        final TableEntity entity = new TableEntity(partitionKey(deploymentName, contentHash), contentHash);
+        entity.addProperty(TC_EMBEDDING, embedding.toBytes());
+        tableService.upsertIntoTableQuietly(entity);
+    }
+
+    private static String partitionKey(final String deploymentName, final String contentHash) {
+        return deploymentName + "-" + contentHash.substring(0, 2);
+    }
+}
@@ -0,0 +1,130 @@
+package uk.gov.moj.cp.ai.service.table;
+
+import static uk.gov.moj.cp.ai.entity.StorageTableColumns.TC_GENERATION;
+import static uk.gov.moj.cp.ai.util.StringUtil.isNullOrEmpty;
+
+import uk.gov.moj.cp.ai.exception.DuplicateRecordException;
+import uk.gov.moj.cp.ai.exception.EntityRetrievalException;
+import uk.gov.moj.cp.ai.exception.EtagMismatchException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.azure.data.tables.models.TableEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Table storage service for per-client search index generation counters.
+ * <p>
+ * Every write to the search index (chunk upload, superseded-document deactivation) bumps the
+ * generation of the affected client; readers that cache search results stamp entries with the
+ * generation they were computed at and ignore them once it moves on. One row per client, plus an
+ * {@value #UNSCOPED_PARTITION} row for searches without a client scope: since those see every
+ * client's chunks, it is bumped by every write.
+ * <p>
+ * Increments are compare-and-swap on the row ETag, so concurrent ingestions never lose a bump.
+ * <p>
+ * A bump follows the index write, but the search service only makes the write searchable after its
+ * refresh delay. Readers therefore get the row's timestamp with the generation and should not cache
+ * results computed under a generation younger than that delay (see {@link Generation#isSettled}).
+ */
+public class SearchIndexGenerationTableService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndexGenerationTableService.class);
+
+    static final String UNSCOPED_PARTITION = "_unscoped";
+    static final String GENERATION_ROW_KEY = "generation";
+    static final int MAX_BUMP_ATTEMPTS = 5;
+
+    private final TableService tableService;
+
+    /**
+     * A client's search index generation and when it last moved.
+     *
+     * @param value    the generation; 0 when the index has not been written since the table was introduced
+     * @param bumpedAt the row's timestamp, set by the table service on every bump; null when there is no row
+     */
+    public record Generation(long value, Instant bumpedAt) {
+
+        /**
+         * @return true once {@code refreshDelay} has passed since the bump, so the write that caused it
+         *     is searchable and results computed now may be cached under this generation
+         */
+        public boolean isSettled(final Instant now, final Duration refreshDelay) {
+            return bumpedAt == null || !bumpedAt.plus(refreshDelay).isAfter(now);
+        }
+    }
+
+    public SearchIndexGenerationTableService(final String tableName) {
+        if (isNullOrEmpty(tableName)) {
+            throw new IllegalArgumentException("Table name cannot be null or empty.");
+        }
+        this.tableService = new TableService(tableName);
+    }
+
+    protected SearchIndexGenerationTableService(final TableService tableService) {
+        this.tableService = tableService;
+    }
+
+    /**
+     * @return the current generation for the client's search scope
+     */
+    public Generation currentGeneration(final String clientId) throws EntityRetrievalException {
+        final TableEntity entity = tableService.getFirstDocumentMatching(partitionKey(clientId), GENERATION_ROW_KEY);
+        if (entity == null) {
+            return new Generation(0L, null);
+        }
+        return new Generation(generationOf(entity), entity.getTimestamp() == null ? null : entity.getTimestamp().toInstant());
+    }
+
+    /**
+     * Advances the generation of the client's scope and of the unscoped scope. Best effort: a failure
+     * is logged rather than thrown, so it never fails the index write it follows; cached results for
+     * the client then live until their TTL.
+     */
+    public void bumpGeneration(final String clientId) {
+        final Set<String> partitions = new LinkedHashSet<>();
+        partitions.add(partitionKey(clientId));
+        partitions.add(UNSCOPED_PARTITION);
+        for (final String partition : partitions) {
+            try {
+                bump(partition);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to bump search index generation for partition '{}'; cached results expire by TTL", partition, e);
+            }
+        }
+    }
+
+    private void bump(final String partition) throws EntityRetrievalException {
+        for (int attempt = 1; attempt <= MAX_BUMP_ATTEMPTS; attempt++) {
+            final TableEntity current = tableService.getFirstDocumentMatching(partition, GENERATION_ROW_KEY);
+            final long next = current == null ? 1L : generationOf(current) + 1;
+            final TableEntity entity = new TableEntity(partition, GENERATION_ROW_KEY);
+            entity.addProperty(TC_GENERATION, next);
+            try {
+                if (current == null) {
+                    tableService.insertReturningEtag(entity);
+                } else {
+                    tableService.updateEntityIfUnchanged(entity, current.getETag());
+                }
+                LOGGER.info("Search index generation for partition '{}' advanced to {}", partition, next);
+                return;
+            } catch (DuplicateRecordException | EtagMismatchException e) {
+                LOGGER.debug("Concurrent search index generation bump for partition '{}' (attempt {})", partition, attempt);
+            }
+        }
+        throw new IllegalStateException("Search index generation for partition '" + partition
+                + "' still contended after " + MAX_BUMP_ATTEMPTS + " attempts");
+    }
+
+    private static long generationOf(final TableEntity entity) {
+        return entity.getProperty(TC_GENERATION) instanceof Number number ? number.longValue() : 0L;
+    }
+
+    private static String partitionKey(final String clientId) {
+        return isNullOrEmpty(clientId) ? UNSCOPED_PARTITION : clientId;
+    }
+}
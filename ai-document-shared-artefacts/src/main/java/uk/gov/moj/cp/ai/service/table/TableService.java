@@ -78,20 +78,38 @@ public class TableService {
     }
 
     public void upsertIntoTable(final TableEntity tableEntity) {
+        upsert(tableEntity, false);
+        LOGGER.info("Record UPSERTED into table with partition key '{}' and row key '{}'", tableEntity.getPartitionKey(), tableEntity.getRowKey());
+    }
+
+    /**
+     * As {@link #upsertIntoTable}, but logs the write and any failure at DEBUG, for cache rows written in
+     * bulk where a line per row would flood the logs. The failure is still thrown; the caller reports
+     * failed writes in one summary line.
+     */
+    public void upsertIntoTableQuietly(final TableEntity tableEntity) {
+        upsert(tableEntity, true);
+        LOGGER.debug("Record UPSERTED into table with partition key '{}' and row key '{}'", tableEntity.getPartitionKey(), tableEntity.getRowKey());
+    }
+
+    private void upsert(final TableEntity tableEntity, final boolean quiet) {
         try {
 
             tableClient.upsertEntity(tableEntity);
 
-            LOGGER.info("Record UPSERTED into table with partition key '{}' and row key '{}'", tableEntity.getPartitionKey(), tableEntity.getRowKey());
-
         } catch (Exception e) {
-            LOGGER.error(
-                    "Unexpected error during UPSERT [table={}, partitionKey={}, rowKey={}]",
-                    tableClient.getTableName(),
-                    tableEntity.getPartitionKey(),
-                    tableEntity.getRowKey(),
-                    e
-            );
+            if (quiet) {
+                LOGGER.debug("UPSERT failed [table={}, partitionKey={}, rowKey={}]",
+                        tableClient.getTableName(), tableEntity.getPartitionKey(), tableEntity.getRowKey(), e);
+            } else {
+                LOGGER.error(
+                        "Unexpected error during UPSERT [table={}, partitionKey={}, rowKey={}]",
+                        tableClient.getTableName(),
+                        tableEntity.getPartitionKey(),
+                        tableEntity.getRowKey(),
+                        e
+                );
+            }
             throw new TableOperationException(String.format(ERROR_MESSAGE, UPSERT_OPERATION, tableClient.getTableName(), tableEntity.getPartitionKey(), tableEntity.getRowKey()), e);
         }
     }
@@ -0,0 +1,56 @@
+package uk.gov.moj.cp.ai.util;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+
+/**
+ * Local byte-level BPE token counter for the OpenAI {@code cl100k_base} (GPT-4, GPT-3.5) and
+ * {@code o200k_base} (GPT-4o and later) encodings, so prompt size can be measured without a service call.
+ * <p>
+ * Counting is delegated to jtokkit, which ships the encodings' published rank tables and gives the same
+ * counts as {@code tiktoken}. Special tokens are not recognised; retrieved documents never contain them.
+ * An encoding's rank table is loaded the first time it is asked for.
+ * <p>
+ * Counters are immutable and shared per encoding through {@link #forEncoding(String)}.
+ */
+public class BpeTokenCounter implements TokenCounter {
+
+    private static final EncodingRegistry REGISTRY = Encodings.newLazyEncodingRegistry();
+
+    private static final Map<String, BpeTokenCounter> COUNTERS = new ConcurrentHashMap<>();
+
+    private final Encoding encoding;
+
+    BpeTokenCounter(final Encoding encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * The shared counter for {@code cl100k_base} or {@code o200k_base} (case-insensitive).
+     *
+     * @throws IllegalArgumentException for any other encoding name
+     */
+    public static BpeTokenCounter forEncoding(final String encoding) {
+        final String name = encoding.trim().toLowerCase(Locale.ROOT);
+        final EncodingType encodingType = switch (name) {
+            case "cl100k_base" -> EncodingType.CL100K_BASE;
+            case "o200k_base" -> EncodingType.O200K_BASE;
+            default -> throw new IllegalArgumentException("Unsupported tokenizer encoding: " + encoding);
+        };
+        return COUNTERS.computeIfAbsent(name, key -> new BpeTokenCounter(REGISTRY.getEncoding(encodingType)));
+    }
+
+    @Override
+    public int count(final String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return encoding.countTokensOrdinary(text);
+    }
+}
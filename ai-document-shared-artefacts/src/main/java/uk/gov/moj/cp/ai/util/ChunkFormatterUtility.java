@@ -1,51 +1,273 @@
 package uk.gov.moj.cp.ai.util;
 
 import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnv;
+import static uk.gov.moj.cp.ai.util.EnvVarUtil.getRequiredEnvAsInteger;
 import static uk.gov.moj.cp.ai.util.StringUtil.isNullOrEmpty;
 
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
 import uk.gov.moj.cp.ai.model.KeyValuePair;
+import uk.gov.moj.cp.ai.model.PromptLayout;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renders retrieved chunks as the {@code <RETRIEVED_DOCUMENTS>} context block of the prompt.
+ * <p>
+ * When {@code LLM_CONTEXT_TOKEN_BUDGET} is set, chunks are packed into that many input tokens in the
+ * order given (relevance order), skipping any chunk that no longer fits, so prompt size no longer
+ * depends on how many chunks the search returned. The most relevant chunk is always kept. Tokens are
+ * counted locally with the {@code LLM_CONTEXT_TOKENIZER} encoding (see {@link BpeTokenCounter}).
+ * <p>
+ * Chunks split from the same page with consecutive chunk indexes are stitched into one
+ * {@code <DATA>} block, so the text ingestion repeats between neighbouring chunks is sent once.
+ * <p>
+ * Documents appear in order of their most relevant chunk. With the {@link PromptLayout#CACHE_FRIENDLY}
+ * layout they are sorted by document id and each document's chunks are in reading order instead, so the
+ * same chunks always render to the same text whatever order retrieval returned them in.
+ */
 public class ChunkFormatterUtility {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkFormatterUtility.class);
+
+    public static final String LLM_CONTEXT_TOKEN_BUDGET = "LLM_CONTEXT_TOKEN_BUDGET";
+    private static final String LLM_CONTEXT_TOKENIZER = "LLM_CONTEXT_TOKENIZER";
+
+    private static final String DOCUMENTS_OPEN = "<RETRIEVED_DOCUMENTS>\n";
+    private static final String DOCUMENTS_CLOSE = "</RETRIEVED_DOCUMENTS>";
+    private static final String DOCUMENT_CLOSE = "</DOCUMENT>\n";
+    private static final String EMPTY_CONTEXT = "<RETRIEVED_DOCUMENTS></RETRIEVED_DOCUMENTS>";
+
+    /** Shorter suffix/prefix matches are taken as coincidence, not chunking overlap. */
+    private static final int MIN_STITCH_OVERLAP = 16;
+
+    private record PageChunk(int pageNumber, int chunkIndex) {
+    }
+
+    private record Passage(Integer pageNumber, String content) {
+    }
+
+    /**
+     * A rendered context block.
+     *
+     * @param context       the {@code <RETRIEVED_DOCUMENTS>} block
+     * @param packedEntries the chunks it contains, in input order; a subset of the input when a budget applies
+     * @param tokenCount    tokens the block consumes
+     */
+    public record PackedContext(String context, List<ChunkedEntry> packedEntries, int tokenCount) {
+    }
+
+    /** Documents sorted by id, then each document's chunks in reading order. */
+    private static final Comparator<ChunkedEntry> READING_ORDER = Comparator
+            .comparing(ChunkedEntry::documentId, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(ChunkedEntry::pageNumber, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(ChunkedEntry::chunkIndex, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /** Input-token budget for the context block; 0 or less means unlimited. */
+    private final int tokenBudget;
+    private final TokenCounter tokenCounter;
+    private final PromptLayout layout;
+
+    public ChunkFormatterUtility() {
+        this(getRequiredEnvAsInteger(LLM_CONTEXT_TOKEN_BUDGET, "0"),
+                BpeTokenCounter.forEncoding(getRequiredEnv(LLM_CONTEXT_TOKENIZER, "o200k_base")),
+                PromptLayout.fromEnv());
+    }
+
+    public ChunkFormatterUtility(final int tokenBudget, final TokenCounter tokenCounter) {
+        this(tokenBudget, tokenCounter, PromptLayout.RELEVANCE);
+    }
+
+    public ChunkFormatterUtility(final int tokenBudget, final TokenCounter tokenCounter, final PromptLayout layout) {
+        this.tokenBudget = tokenBudget;
+        this.tokenCounter = tokenCounter;
+        this.layout = layout;
+    }
+
     public String buildChunkContext(List<ChunkedEntry> chunkedEntries) {
+        return packChunkContext(chunkedEntries).context();
+    }
 
+    /**
+     * Renders the context block within the token budget and reports what it holds.
+     */
+    public PackedContext packChunkContext(final List<ChunkedEntry> chunkedEntries) {
         if (chunkedEntries == null || chunkedEntries.isEmpty()) {
-            return ("<RETRIEVED_DOCUMENTS></RETRIEVED_DOCUMENTS>");
+            return new PackedContext(EMPTY_CONTEXT, List.of(), tokenCounter.count(EMPTY_CONTEXT));
         }
 
-        StringBuilder sb = new StringBuilder("<RETRIEVED_DOCUMENTS>\n");
+        final List<ChunkedEntry> packedEntries = tokenBudget > 0 ? fillBudget(chunkedEntries) : chunkedEntries;
+        final String context = render(packedEntries);
+        final int tokenCount = tokenCounter.count(context);
+        if (packedEntries.size() < chunkedEntries.size()) {
+            LOGGER.info("Packed {} of {} chunks into {} context tokens (budget {})",
+                    packedEntries.size(), chunkedEntries.size(), tokenCount, tokenBudget);
+        }
+        return new PackedContext(context, packedEntries, tokenCount);
+    }
 
-        Map<String, List<ChunkedEntry>> entriesByDocumentId = chunkedEntries.stream()
-                .collect(groupingBy(ChunkedEntry::documentId));
+    /** The chunks that fit the budget, taken in the order given. */
+    private List<ChunkedEntry> fillBudget(final List<ChunkedEntry> chunkedEntries) {
+        final List<ChunkedEntry> packed = new ArrayList<>();
+        final Set<String> openedDocuments = new HashSet<>();
+        int used = tokenCounter.count(DOCUMENTS_OPEN + DOCUMENTS_CLOSE);
+
+        for (ChunkedEntry entry : chunkedEntries) {
+            int cost = tokenCounter.count(dataBlock(entry));
+            if (!openedDocuments.contains(entry.documentId())) {
+                cost += tokenCounter.count(documentOpen(entry.documentId(), entry) + DOCUMENT_CLOSE);
+            }
+            if (used + cost > tokenBudget && !packed.isEmpty()) {
+                continue;
+            }
+            if (used + cost > tokenBudget) {
+                LOGGER.warn("Most relevant chunk alone needs {} tokens, over the context budget of {}; keeping it",
+                        used + cost, tokenBudget);
+            }
+            used += cost;
+            packed.add(entry);
+            openedDocuments.add(entry.documentId());
+        }
+        return packed;
+    }
+
+    private String render(final List<ChunkedEntry> chunkedEntries) {
+        StringBuilder sb = new StringBuilder(DOCUMENTS_OPEN);
+
+        final List<ChunkedEntry> ordered = layout == PromptLayout.CACHE_FRIENDLY
+                ? chunkedEntries.stream().sorted(READING_ORDER).toList()
+                : chunkedEntries;
+        // Insertion-ordered, so identical input always renders identically.
+        Map<String, List<ChunkedEntry>> entriesByDocumentId = ordered.stream()
+                .collect(groupingBy(ChunkedEntry::documentId, LinkedHashMap::new, toList()));
 
         for (Map.Entry<String, List<ChunkedEntry>> entriesPerDocument : entriesByDocumentId.entrySet()) {
-            final String documentId = entriesPerDocument.getKey();
-            final ChunkedEntry firstChunkForDocumentId = entriesPerDocument.getValue().getFirst();
-            String documentFileName = extractMaterialName(firstChunkForDocumentId)
-                    .orElse(firstChunkForDocumentId.documentFileName());
-            sb.append("<DOCUMENT DOCUMENT_ID=\"").append(documentId).append("\" DOCUMENT_FILENAME=\"").append(documentFileName).append("\">\n");
-            for (ChunkedEntry entry : entriesPerDocument.getValue()) {
-                final String pageNumber = null != entry.pageNumber() ? entry.pageNumber().toString() : "";
-
-                // CHUNK_ID intentionally omitted: nothing downstream consumes a chunk id, and exposing
-                // the per-chunk GUID led models (notably gpt-5.1) to misuse it as the documentId and to
-                // derive citationIds from its hex prefix. Citations are page-level (DOCUMENT_ID + page).
-                sb.append("<DATA>\n");
-                sb.append("<PAGE_NUMBER>").append(pageNumber).append("</PAGE_NUMBER>\n");
-                sb.append("<DOCUMENT_CONTENT>").append(entry.chunk()).append("</DOCUMENT_CONTENT>\n");
-                sb.append("</DATA>\n");
-            }
-            sb.append("</DOCUMENT>\n");
-        }
-        sb.append("</RETRIEVED_DOCUMENTS>");
+            sb.append(documentOpen(entriesPerDocument.getKey(), entriesPerDocument.getValue().getFirst()));
+            for (Passage passage : stitchAdjacent(entriesPerDocument.getValue())) {
+                sb.append(dataBlock(passage.pageNumber(), passage.content()));
+            }
+            sb.append(DOCUMENT_CLOSE);
+        }
+        sb.append(DOCUMENTS_CLOSE);
         return sb.toString();
     }
 
+    /**
+     * Joins chunks of one document that were split from the same page with consecutive chunk
+     * indexes into a single passage, in reading order and without the text they overlap on. Each
+     * passage takes the place of its most relevant chunk; chunks without a page or index stay alone.
+     */
+    private static List<Passage> stitchAdjacent(final List<ChunkedEntry> documentEntries) {
+        final Map<PageChunk, ChunkedEntry> byPosition = new HashMap<>();
+        for (ChunkedEntry entry : documentEntries) {
+            if (entry.pageNumber() != null && entry.chunkIndex() != null) {
+                byPosition.putIfAbsent(new PageChunk(entry.pageNumber(), entry.chunkIndex()), entry);
+            }
+        }
+
+        final List<Passage> passages = new ArrayList<>();
+        final Set<ChunkedEntry> stitched = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ChunkedEntry entry : documentEntries) {
+            if (!stitched.add(entry)) {
+                continue;
+            }
+            if (entry.pageNumber() == null || entry.chunkIndex() == null
+                    || byPosition.get(new PageChunk(entry.pageNumber(), entry.chunkIndex())) != entry) {
+                passages.add(new Passage(entry.pageNumber(), entry.chunk()));
+                continue;
+            }
+            final int page = entry.pageNumber();
+            int first = entry.chunkIndex();
+            while (byPosition.containsKey(new PageChunk(page, first - 1))) {
+                first--;
+            }
+            final StringBuilder content = new StringBuilder();
+            for (int index = first; byPosition.containsKey(new PageChunk(page, index)); index++) {
+                final ChunkedEntry next = byPosition.get(new PageChunk(page, index));
+                stitched.add(next);
+                appendWithoutOverlap(content, next.chunk());
+            }
+            passages.add(new Passage(page, content.toString()));
+        }
+        return passages;
+    }
+
+    private static void appendWithoutOverlap(final StringBuilder content, final String chunk) {
+        if (content.isEmpty()) {
+            content.append(chunk);
+            return;
+        }
+        final int overlap = overlapLength(content, chunk);
+        if (overlap >= MIN_STITCH_OVERLAP) {
+            content.append(chunk, overlap, chunk.length());
+        } else {
+            content.append(' ').append(chunk);
+        }
+    }
+
+    /** Length of the longest prefix of {@code right} that {@code left} ends with (KMP, linear time). */
+    static int overlapLength(final CharSequence left, final String right) {
+        if (right.isEmpty()) {
+            return 0;
+        }
+        final int[] fallback = new int[right.length()];
+        for (int i = 1, k = 0; i < right.length(); i++) {
+            while (k > 0 && right.charAt(i) != right.charAt(k)) {
+                k = fallback[k - 1];
+            }
+            if (right.charAt(i) == right.charAt(k)) {
+                k++;
+            }
+            fallback[i] = k;
+        }
+        int matched = 0;
+        for (int i = Math.max(0, left.length() - right.length()); i < left.length(); i++) {
+            while (matched > 0 && (matched == right.length() || left.charAt(i) != right.charAt(matched))) {
+                matched = fallback[matched - 1];
+            }
+            if (left.charAt(i) == right.charAt(matched)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private String documentOpen(final String documentId, final ChunkedEntry firstChunkForDocumentId) {
+        String documentFileName = extractMaterialName(firstChunkForDocumentId)
+                .orElse(firstChunkForDocumentId.documentFileName());
+        return "<DOCUMENT DOCUMENT_ID=\"" + documentId + "\" DOCUMENT_FILENAME=\"" + documentFileName + "\">\n";
+    }
+
+    private static String dataBlock(final ChunkedEntry entry) {
+        return dataBlock(entry.pageNumber(), entry.chunk());
+    }
+
+    private static String dataBlock(final Integer page, final String content) {
+        final String pageNumber = null != page ? page.toString() : "";
+
+        // CHUNK_ID intentionally omitted: nothing downstream consumes a chunk id, and exposing
+        // the per-chunk GUID led models (notably gpt-5.1) to misuse it as the documentId and to
+        // derive citationIds from its hex prefix. Citations are page-level (DOCUMENT_ID + page).
+        return "<DATA>\n"
+                + "<PAGE_NUMBER>" + pageNumber + "</PAGE_NUMBER>\n"
+                + "<DOCUMENT_CONTENT>" + content + "</DOCUMENT_CONTENT>\n"
+                + "</DATA>\n";
+    }
+
     private Optional<String> extractMaterialName(ChunkedEntry entry) {
         if (entry.customMetadata() == null || entry.customMetadata().isEmpty()) {
             return Optional.empty();
@@ -0,0 +1,10 @@
+package uk.gov.moj.cp.ai.util;
+
+/**
+ * Dot product over two equal-length primitive arrays. Implementations are selected once by
+ * {@link VectorSimilarityUtil} and must be stateless.
+ */
+interface DotProductKernel {
+
+    double dot(float[] a, float[] b);
+}
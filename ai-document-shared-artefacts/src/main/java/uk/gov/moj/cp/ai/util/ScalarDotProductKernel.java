@@ -0,0 +1,17 @@
+package uk.gov.moj.cp.ai.util;
+
+/**
+ * Plain-loop dot product; used whenever the {@code jdk.incubator.vector} module is not resolved in
+ * the running JVM.
+ */
+final class ScalarDotProductKernel implements DotProductKernel {
+
+    @Override
+    public double dot(final float[] a, final float[] b) {
+        double dotProduct = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            dotProduct += a[i] * b[i];
+        }
+        return dotProduct;
+    }
+}
@@ -0,0 +1,50 @@
+package uk.gov.moj.cp.ai.util;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Dot product using the JDK Vector API at the platform's preferred lane width (e.g. 8 floats on AVX2,
+ * 16 on AVX-512), with a scalar loop for the tail that does not fill a whole vector.
+ * <p>
+ * Two independent accumulators are used so consecutive fused multiply-adds do not wait on each other.
+ * Lane partial sums are float, so results can differ from {@link ScalarDotProductKernel} in the last
+ * few bits — well below any threshold the retrieval filters compare against.
+ * <p>
+ * Loading this class requires {@code --add-modules jdk.incubator.vector}; {@link VectorSimilarityUtil}
+ * only instantiates it after checking the module is present.
+ */
+final class SimdDotProductKernel implements DotProductKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public double dot(final float[] a, final float[] b) {
+        final int length = a.length;
+        final int lanes = SPECIES.length();
+        final int unrolledBound = length - (length % (2 * lanes));
+
+        FloatVector acc1 = FloatVector.zero(SPECIES);
+        FloatVector acc2 = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < unrolledBound; i += 2 * lanes) {
+            acc1 = FloatVector.fromArray(SPECIES, a, i).fma(FloatVector.fromArray(SPECIES, b, i), acc1);
+            acc2 = FloatVector.fromArray(SPECIES, a, i + lanes).fma(FloatVector.fromArray(SPECIES, b, i + lanes), acc2);
+        }
+        final int vectorBound = SPECIES.loopBound(length);
+        for (; i < vectorBound; i += lanes) {
+            acc1 = FloatVector.fromArray(SPECIES, a, i).fma(FloatVector.fromArray(SPECIES, b, i), acc1);
+        }
+
+        double dotProduct = acc1.add(acc2).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            dotProduct += a[i] * b[i];
+        }
+        return dotProduct;
+    }
+
+    static int preferredLanes() {
+        return SPECIES.length();
+    }
+}
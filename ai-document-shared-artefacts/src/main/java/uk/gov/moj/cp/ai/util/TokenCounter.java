@@ -0,0 +1,9 @@
+package uk.gov.moj.cp.ai.util;
+
+/**
+ * Counts the model tokens a piece of prompt text will consume.
+ */
+public interface TokenCounter {
+
+    int count(String text);
+}
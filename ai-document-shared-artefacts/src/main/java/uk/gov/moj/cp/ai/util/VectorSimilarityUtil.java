@@ -1,9 +1,20 @@
 package uk.gov.moj.cp.ai.util;
 
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class VectorSimilarityUtil {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(VectorSimilarityUtil.class);
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final DotProductKernel KERNEL = selectKernel();
+
     private VectorSimilarityUtil() {
         // Utility class
     }
@@ -21,16 +32,71 @@ public class VectorSimilarityUtil {
      * @return the dot product (== cosine similarity for unit vectors), or 0.0 when either vector is
      *     null or the lengths differ
      */
-    public static double cosineSimilarity(final List<Float> vecA, final List<Float> vecB) {
+    public static double cosineSimilarity(final EmbeddingVector vecA, final EmbeddingVector vecB) {
         if (vecA == null || vecB == null || vecA.size() != vecB.size()) {
             return 0.0;
         }
+        return KERNEL.dot(vecA.array(), vecB.array());
+    }
 
-        double dotProduct = 0.0;
-        for (int i = 0; i < vecA.size(); i++) {
-            dotProduct += vecA.get(i) * vecB.get(i);
+    /**
+     * Dot product of two equal-length arrays with the selected kernel, for callers that hold vectors
+     * outside {@link EmbeddingVector} and apply their own normalisation.
+     *
+     * @throws IllegalArgumentException when the lengths differ
+     */
+    public static double dotProduct(final float[] a, final float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vectors differ in length: " + a.length + " and " + b.length);
         }
+        return KERNEL.dot(a, b);
+    }
+
+    /**
+     * Cosine similarity of one query vector against many candidates, e.g. query relevance for every
+     * chunk in an MMR pool. Each entry follows the same rules as {@link #cosineSimilarity}: a null or
+     * mismatched candidate scores 0.0.
+     *
+     * @param query      the vector every candidate is compared against
+     * @param candidates candidate vectors; may contain nulls
+     * @return similarities in candidate order; all 0.0 when {@code query} is null
+     */
+    public static double[] cosineSimilarities(final EmbeddingVector query, final List<EmbeddingVector> candidates) {
+        final double[] similarities = new double[candidates.size()];
+        if (query == null) {
+            return similarities;
+        }
+        final float[] q = query.array();
+        for (int i = 0; i < similarities.length; i++) {
+            final EmbeddingVector candidate = candidates.get(i);
+            if (candidate != null && candidate.size() == q.length) {
+                similarities[i] = KERNEL.dot(q, candidate.array());
+            }
+        }
+        return similarities;
+    }
+
+    /**
+     * The Vector API is an incubator module and is only resolved when the JVM is started with
+     * {@code --add-modules jdk.incubator.vector}; without it the SIMD kernel class cannot even be
+     * loaded, so fall back to the scalar loop.
+     */
+    static DotProductKernel selectKernel() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            LOGGER.info("{} not enabled; using scalar vector similarity", VECTOR_MODULE);
+            return new ScalarDotProductKernel();
+        }
+        try {
+            final DotProductKernel kernel = new SimdDotProductKernel();
+            LOGGER.info("Using SIMD vector similarity with {} float lanes", SimdDotProductKernel.preferredLanes());
+            return kernel;
+        } catch (final LinkageError e) {
+            LOGGER.warn("{} present but unusable; using scalar vector similarity", VECTOR_MODULE, e);
+            return new ScalarDotProductKernel();
+        }
+    }
 
-        return dotProduct;
+    static DotProductKernel kernel() {
+        return KERNEL;
     }
 }
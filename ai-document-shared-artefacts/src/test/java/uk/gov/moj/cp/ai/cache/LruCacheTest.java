@@ -0,0 +1,96 @@
+package uk.gov.moj.cp.ai.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LruCacheTest {
+
+    @Test
+    @DisplayName("evicts the least recently used entry once full")
+    void shouldEvictLeastRecentlyUsed() {
+        final LruCache<String, Integer> cache = new LruCache<>(2, null);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertEquals(1, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    @DisplayName("drops entries once their time-to-live has elapsed")
+    void shouldExpireEntries() {
+        final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        final LruCache<String, Integer> cache = new LruCache<>(10, Duration.ofMinutes(5), clock);
+        cache.put("a", 1);
+
+        clock.advance(Duration.ofMinutes(4));
+        assertEquals(1, cache.get("a"));
+
+        clock.advance(Duration.ofMinutes(1));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("ignores null values and supports invalidation")
+    void shouldIgnoreNullsAndInvalidate() {
+        final LruCache<String, Integer> cache = new LruCache<>(10, Duration.ZERO);
+        cache.put("a", null);
+        assertEquals(0, cache.size());
+
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("rejects a non-positive size")
+    void shouldRejectNonPositiveSize() {
+        assertThrows(IllegalArgumentException.class, () -> new LruCache<String, Integer>(0, null));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        private MutableClock(final Instant now) {
+            this.now = now;
+        }
+
+        private void advance(final Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
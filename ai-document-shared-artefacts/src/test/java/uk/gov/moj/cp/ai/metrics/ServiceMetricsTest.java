@@ -0,0 +1,25 @@
+package uk.gov.moj.cp.ai.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.opentelemetry.api.metrics.Meter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ServiceMetricsTest {
+
+    @Test
+    @DisplayName("Records against a no-op meter when no connection string is configured")
+    void usesNoopMeterWithoutConnectionString() {
+        final Meter meter = ServiceMetrics.createMeter("disabled");
+
+        assertDoesNotThrow(() -> meter.counterBuilder("test_counter").build().add(1));
+    }
+
+    @Test
+    @DisplayName("Builds the meter once per process")
+    void returnsSameMeter() {
+        assertSame(ServiceMetrics.meter(), ServiceMetrics.meter());
+    }
+}
@@ -0,0 +1,43 @@
+package uk.gov.moj.cp.ai.metrics;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongCounterBuilder;
+import io.opentelemetry.api.metrics.Meter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TokenUsageMetricsTest {
+
+    @Test
+    @DisplayName("adds prompt, cached prompt and completion tokens by deployment")
+    void recordsEachTokenKind() {
+        final Meter meterMock = mock(Meter.class);
+        final LongCounter promptMock = counter(meterMock, "llm_prompt_tokens");
+        final LongCounter cachedMock = counter(meterMock, "llm_cached_prompt_tokens");
+        final LongCounter completionMock = counter(meterMock, "llm_completion_tokens");
+
+        new TokenUsageMetrics(meterMock).record("gpt-4o", 3000, 2048, 250);
+
+        final Attributes deployment = Attributes.of(AttributeKey.stringKey("deployment"), "gpt-4o");
+        verify(promptMock).add(3000, deployment);
+        verify(cachedMock).add(2048, deployment);
+        verify(completionMock).add(250, deployment);
+    }
+
+    private static LongCounter counter(final Meter meterMock, final String name) {
+        final LongCounterBuilder builderMock = mock(LongCounterBuilder.class);
+        final LongCounter counterMock = mock(LongCounter.class);
+        when(meterMock.counterBuilder(name)).thenReturn(builderMock);
+        when(builderMock.setDescription(anyString())).thenReturn(builderMock);
+        when(builderMock.setUnit(anyString())).thenReturn(builderMock);
+        when(builderMock.build()).thenReturn(counterMock);
+        return counterMock;
+    }
+}
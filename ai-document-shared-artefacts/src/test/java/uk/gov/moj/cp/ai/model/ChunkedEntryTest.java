@@ -25,7 +25,7 @@ class ChunkedEntryTest {
                 .id(randomUUID().toString())
                 .documentId(randomUUID().toString())
                 .chunk("some content")
-                .chunkVector(List.of(0.1f, 0.2f, 0.3f))
+                .chunkVector(EmbeddingVector.of(0.1f, 0.2f, 0.3f))
                 .documentFileName("file.pdf")
                 .pageNumber(1)
                 .chunkIndex(0)
@@ -50,7 +50,7 @@ class ChunkedEntryTest {
                 .id(randomUUID().toString())
                 .documentId(randomUUID().toString())
                 .chunk("some content")
-                .chunkVector(List.of(0.1f, 0.2f, 0.3f))
+                .chunkVector(EmbeddingVector.of(0.1f, 0.2f, 0.3f))
                 .documentFileName("file.pdf")
                 .pageNumber(1)
                 .chunkIndex(0)
@@ -103,7 +103,7 @@ class ChunkedEntryTest {
                 .id(randomUUID().toString())
                 .documentId(randomUUID().toString())
                 .chunk("some content")
-                .chunkVector(List.of(0.1f, 0.2f, 0.3f))
+                .chunkVector(EmbeddingVector.of(0.1f, 0.2f, 0.3f))
                 .documentFileName("file.pdf")
                 .pageNumber(1)
                 .chunkIndex(0)
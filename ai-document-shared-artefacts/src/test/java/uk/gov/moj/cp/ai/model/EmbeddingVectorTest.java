@@ -0,0 +1,87 @@
+package uk.gov.moj.cp.ai.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class EmbeddingVectorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("serialises to exactly the same JSON as the List<Float> it replaces")
+    void shouldSerialiseIdenticallyToListOfFloat() throws Exception {
+        final List<Float> boxed = List.of(0.1f, -0.25f, 3.0f, 1.0E-7f);
+
+        final String expected = objectMapper.writeValueAsString(boxed);
+        final String actual = objectMapper.writeValueAsString(EmbeddingVector.fromList(boxed));
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    @DisplayName("deserialises a JSON number array, including integer elements, into a primitive vector")
+    void shouldDeserialiseNumberArray() throws Exception {
+        final EmbeddingVector vector = objectMapper.readValue("[0.5, 1, -2.25]", EmbeddingVector.class);
+
+        assertEquals(EmbeddingVector.of(0.5f, 1.0f, -2.25f), vector);
+    }
+
+    @Test
+    @DisplayName("round-trips a full-size vector beyond the deserialiser's initial capacity")
+    void shouldRoundTripFullSizeVector() throws Exception {
+        final float[] values = new float[3072];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 0.001f;
+        }
+        final EmbeddingVector original = EmbeddingVector.of(values);
+
+        final EmbeddingVector roundTripped = objectMapper.readValue(
+                objectMapper.writeValueAsString(original), EmbeddingVector.class);
+
+        assertEquals(original, roundTripped);
+        assertEquals(3072, roundTripped.size());
+    }
+
+    @Test
+    @DisplayName("an empty JSON array yields the shared EMPTY instance; null stays null")
+    void shouldHandleEmptyAndNull() throws Exception {
+        assertSame(EmbeddingVector.EMPTY, objectMapper.readValue("[]", EmbeddingVector.class));
+        assertNull(objectMapper.readValue("null", EmbeddingVector.class));
+        assertNull(EmbeddingVector.fromList(null));
+        assertTrue(EmbeddingVector.of().isEmpty());
+    }
+
+    @Test
+    @DisplayName("rejects non-numeric elements")
+    void shouldRejectNonNumericElements() {
+        assertThrows(MismatchedInputException.class,
+                () -> objectMapper.readValue("[0.5, \"x\"]", EmbeddingVector.class));
+    }
+
+    @Test
+    @DisplayName("toList boxes the values for SDK calls that require List<Float>")
+    void shouldConvertToList() {
+        assertEquals(List.of(1.0f, 2.0f), EmbeddingVector.of(1.0f, 2.0f).toList());
+    }
+
+    @Test
+    @DisplayName("round-trips through the compact binary form and rejects a partial float")
+    void shouldRoundTripBinaryForm() {
+        final EmbeddingVector vector = EmbeddingVector.of(0.1f, -2.5f, Float.MIN_VALUE, 1.0E10f);
+
+        assertEquals(16, vector.toBytes().length);
+        assertEquals(vector, EmbeddingVector.fromBytes(vector.toBytes()));
+        assertSame(EmbeddingVector.EMPTY, EmbeddingVector.fromBytes(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingVector.fromBytes(new byte[5]));
+    }
+}
@@ -0,0 +1,159 @@
+package uk.gov.moj.cp.ai.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CHUNK;
+import static uk.gov.moj.cp.ai.index.IndexConstants.ID;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class IndexBatchWriterTest {
+
+    private VectorSearchBackend searchBackend;
+    private List<List<String>> sentKeys;
+
+    @BeforeEach
+    void setUp() {
+        searchBackend = mock(VectorSearchBackend.class);
+        when(searchBackend.indexName()).thenReturn("test-index");
+        sentKeys = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    @DisplayName("Splits the documents into batches of at most the configured count and sends them concurrently")
+    void splitsByDocumentCount() {
+        when(searchBackend.upload(anyList())).thenAnswer(invocation -> record(invocation.getArgument(0)));
+        final IndexBatchWriter writer = new IndexBatchWriter(searchBackend, 2, Long.MAX_VALUE, 3, 0, Duration.ZERO);
+
+        final IndexBatchWriter.WriteResult result = writer.upload(documents(5, ""));
+
+        assertTrue(result.succeeded());
+        assertEquals(5, result.written());
+        assertEquals(3, sentKeys.size());
+        assertEquals(List.of("doc-0", "doc-1", "doc-2", "doc-3", "doc-4"),
+                sentKeys.stream().flatMap(List::stream).sorted().toList());
+        assertTrue(sentKeys.stream().allMatch(keys -> keys.size() <= 2));
+    }
+
+    @Test
+    @DisplayName("Closes a batch before its serialised size would exceed the byte limit")
+    void splitsBySerialisedSize() {
+        final IndexBatchWriter writer = new IndexBatchWriter(searchBackend, 1000, 1_000, 1, 0, Duration.ZERO);
+
+        final List<List<? extends Map<String, Object>>> batches = writer.split(documents(5, "x".repeat(300)));
+
+        assertEquals(List.of(2, 2, 1), batches.stream().map(List::size).toList());
+    }
+
+    @Test
+    @DisplayName("Sends a document above the byte limit on its own")
+    void sendsOversizedDocumentAlone() {
+        final IndexBatchWriter writer = new IndexBatchWriter(searchBackend, 1000, 100, 1, 0, Duration.ZERO);
+
+        final List<List<? extends Map<String, Object>>> batches = writer.split(documents(3, "x".repeat(300)));
+
+        assertEquals(List.of(1, 1, 1), batches.stream().map(List::size).toList());
+    }
+
+    @Test
+    @DisplayName("Retries only the documents the index asked to retry")
+    void retriesOnlyRetriableFailures() {
+        when(searchBackend.merge(anyList()))
+                .thenAnswer(invocation -> {
+                    record(invocation.getArgument(0));
+                    return List.of(new IndexingFailure("doc-1", 503, "Service unavailable"));
+                })
+                .thenAnswer(invocation -> record(invocation.getArgument(0)));
+        final IndexBatchWriter writer = new IndexBatchWriter(searchBackend, 1000, Long.MAX_VALUE, 1, 2, Duration.ZERO);
+
+        final IndexBatchWriter.WriteResult result = writer.merge(documents(3, ""));
+
+        assertTrue(result.succeeded());
+        assertEquals(3, result.written());
+        assertEquals(List.of(List.of("doc-0", "doc-1", "doc-2"), List.of("doc-1")), sentKeys);
+    }
+
+    @Test
+    @DisplayName("Returns non-retriable failures at once and retriable ones once retries run out")
+    void returnsFailuresThatCannotBeWritten() {
+        final IndexingFailure invalid = new IndexingFailure("doc-0", 400, "Invalid document");
+        final IndexingFailure throttled = new IndexingFailure("doc-1", 429, "Too many requests");
+        when(searchBackend.upload(anyList()))
+                .thenReturn(List.of(invalid, throttled))
+                .thenReturn(List.of(throttled));
+        final IndexBatchWriter writer = new IndexBatchWriter(searchBackend, 1000, Long.MAX_VALUE, 1, 1, Duration.ZERO);
+
+        final IndexBatchWriter.WriteResult result = writer.upload(documents(3, ""));
+
+        assertFalse(result.succeeded());
+        assertEquals(1, result.written());
+        assertEquals(List.of(invalid, throttled), result.failures());
+        verify(searchBackend, times(2)).upload(anyList());
+    }
+
+    @Test
+    @DisplayName("Stops at a request that fails as a whole, still counting the documents earlier requests wrote")
+    void reportsRequestFailure() {
+        final HttpResponse response = mock(HttpResponse.class);
+        when(response.getStatusCode()).thenReturn(503);
+        final AtomicInteger requests = new AtomicInteger();
+        when(searchBackend.upload(anyList())).thenAnswer(invocation -> {
+            if (requests.incrementAndGet() == 3) {
+                throw new HttpResponseException("Service unavailable", response);
+            }
+            return record(invocation.getArgument(0));
+        });
+        final IndexBatchWriter writer = new IndexBatchWriter(searchBackend, 1, Long.MAX_VALUE, 1, 3, Duration.ZERO);
+
+        final IndexBatchWriter.WriteResult result = writer.upload(documents(4, ""));
+
+        assertEquals(2, result.written());
+        assertEquals(List.of("doc-2", "doc-3"), result.failures().stream().map(IndexingFailure::key).toList());
+        assertTrue(result.failures().stream().allMatch(failure -> failure.statusCode() == 503));
+        // the failed request is not retried and the batch after it is not sent
+        verify(searchBackend, times(3)).upload(anyList());
+    }
+
+    @Test
+    @DisplayName("Reports every document of a failed concurrent write, with 500 when the failure has no status")
+    void reportsRequestFailureWithoutStatus() {
+        when(searchBackend.upload(anyList())).thenThrow(new IllegalStateException("boom"));
+        final IndexBatchWriter writer = new IndexBatchWriter(searchBackend, 1, Long.MAX_VALUE, 2, 3, Duration.ZERO);
+
+        final IndexBatchWriter.WriteResult result = writer.upload(documents(4, ""));
+
+        assertEquals(0, result.written());
+        assertEquals(List.of("doc-0", "doc-1", "doc-2", "doc-3"),
+                result.failures().stream().map(IndexingFailure::key).sorted().toList());
+        assertTrue(result.failures().stream().allMatch(failure -> failure.statusCode() == 500 && !failure.isRetriable()));
+    }
+
+    private List<IndexingFailure> record(final List<? extends Map<String, Object>> batch) {
+        sentKeys.add(batch.stream().map(document -> (String) document.get(ID)).toList());
+        return List.of();
+    }
+
+    private static List<Map<String, Object>> documents(final int count, final String chunk) {
+        return IntStream.range(0, count)
+                .<Map<String, Object>>mapToObj(i -> Map.of(ID, "doc-" + i, CHUNK, chunk))
+                .toList();
+    }
+}
@@ -0,0 +1,92 @@
+package uk.gov.moj.cp.ai.search.local;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class HnswGraphTest {
+
+    private static final int DIMENSIONS = 32;
+    private static final int SIZE = 2_000;
+
+    @Test
+    @DisplayName("finds nearly all of the exact nearest neighbours")
+    void approximatesExactSearch() {
+        final Random random = new Random(7);
+        final OffHeapVectorStore vectors = new OffHeapVectorStore(DIMENSIONS, 256);
+        final HnswGraph graph = new HnswGraph(vectors);
+        for (int i = 0; i < SIZE; i++) {
+            graph.add(vectors.add(randomVector(random)));
+        }
+
+        int found = 0;
+        final int queries = 50;
+        final int k = 10;
+        for (int q = 0; q < queries; q++) {
+            final float[] query = vectors.normalise(randomVector(random));
+            final Set<Integer> exact = new HashSet<>(exactNearest(vectors, query, k, node -> true));
+            found += (int) graph.search(query, k, 100, node -> true).stream()
+                    .filter(neighbour -> exact.contains(neighbour.node()))
+                    .count();
+        }
+
+        final double recall = (double) found / (queries * k);
+        assertTrue(recall >= 0.9, "recall@10 was " + recall);
+    }
+
+    @Test
+    @DisplayName("returns only accepted nodes, still reaching them through rejected ones")
+    void honoursAcceptPredicate() {
+        final Random random = new Random(11);
+        final OffHeapVectorStore vectors = new OffHeapVectorStore(DIMENSIONS);
+        final HnswGraph graph = new HnswGraph(vectors);
+        for (int i = 0; i < 500; i++) {
+            graph.add(vectors.add(randomVector(random)));
+        }
+
+        final float[] query = vectors.normalise(randomVector(random));
+        final List<HnswGraph.Neighbour> results = graph.search(query, 5, 50, node -> node % 10 == 0);
+
+        assertEquals(5, results.size());
+        assertTrue(results.stream().allMatch(neighbour -> neighbour.node() % 10 == 0));
+        assertEquals(exactNearest(vectors, query, 1, node -> node % 10 == 0).get(0), results.get(0).node());
+    }
+
+    @Test
+    @DisplayName("reads back stored vectors unchanged and scores by cosine similarity")
+    void storesVectorsOffHeap() {
+        final OffHeapVectorStore vectors = new OffHeapVectorStore(2, 1);
+        final int first = vectors.add(new float[]{3.0f, 4.0f});
+        final int second = vectors.add(new float[]{0.0f, 2.0f});
+
+        assertEquals(3.0f, vectors.get(first)[0]);
+        assertEquals(0.8, vectors.similarity(first, second), 1e-6);
+        assertEquals(0.6, vectors.similarity(vectors.normalise(new float[]{1.0f, 0.0f}), first), 1e-6);
+    }
+
+    private static List<Integer> exactNearest(final OffHeapVectorStore vectors, final float[] query, final int k,
+                                              final IntPredicate accept) {
+        return IntStream.range(0, vectors.size()).filter(accept).boxed()
+                .sorted(Comparator.comparingDouble((Integer node) -> vectors.similarity(query, node)).reversed())
+                .limit(k)
+                .toList();
+    }
+
+    private static float[] randomVector(final Random random) {
+        final float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,174 @@
+package uk.gov.moj.cp.ai.search.local;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CHUNK;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CHUNK_VECTOR;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CLIENT_ID;
+import static uk.gov.moj.cp.ai.index.IndexConstants.CUSTOM_METADATA;
+import static uk.gov.moj.cp.ai.index.IndexConstants.DOCUMENT_ID;
+import static uk.gov.moj.cp.ai.index.IndexConstants.ID;
+
+import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+import uk.gov.moj.cp.ai.model.KeyValuePair;
+import uk.gov.moj.cp.ai.search.IndexingFailure;
+import uk.gov.moj.cp.ai.search.SearchRequest;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LocalSearchBackendTest {
+
+    private static final String ACTIVE_ONLY = "(not customMetadata/any(m: m/key eq 'is_active') "
+            + "or customMetadata/any(m: m/key eq 'is_active' and m/value ne 'false'))";
+
+    private LocalSearchBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        backend = new LocalSearchBackend("test-index");
+        backend.upload(List.of(
+                document("1", "doc1", "client-a", "The defendant was charged with assault.", 1f, 0f, 0f),
+                document("2", "doc1", "client-a", "Bail was refused by the magistrates.", 0.9f, 0.1f, 0f),
+                document("3", "doc2", "client-a", "The hearing was adjourned.", 0f, 1f, 0f),
+                document("4", "doc3", "client-b", "The defendant was charged with theft.", 1f, 0f, 0f)));
+    }
+
+    @Test
+    @DisplayName("ranks a hybrid query by fused vector and keyword rank, within the filter")
+    void hybridSearchWithinFilter() {
+        final List<ChunkedEntry> results = backend.search(new SearchRequest("bail refused",
+                EmbeddingVector.of(1f, 0f, 0f), CHUNK_VECTOR, 3, "clientId eq 'client-a' and " + ACTIVE_ONLY,
+                null, 10), ChunkedEntry.class);
+
+        assertEquals(List.of("2", "1", "3"), results.stream().map(ChunkedEntry::id).toList());
+        assertEquals("doc1", results.get(0).documentId());
+        assertEquals(List.of(new KeyValuePair(DOCUMENT_ID, "doc1")), results.get(0).customMetadata());
+        assertEquals(EmbeddingVector.of(0.9f, 0.1f, 0f), results.get(0).chunkVector());
+    }
+
+    @Test
+    @DisplayName("ranks keyword-only queries by BM25 and limits them to top")
+    void keywordSearch() {
+        final List<ChunkedEntry> results = backend.search(new SearchRequest("charged theft", null, null, 0,
+                null, List.of(ID, CHUNK), 1), ChunkedEntry.class);
+
+        assertEquals(1, results.size());
+        assertEquals("4", results.get(0).id());
+        assertNull(results.get(0).chunkVector());
+    }
+
+    @Test
+    @DisplayName("returns every filtered document for a match-all query, with only the selected fields")
+    @SuppressWarnings("unchecked")
+    void filterOnlySearch() {
+        final List<Map> results = backend.search(SearchRequest.filterOnly(
+                "customMetadata/any(m: m/key eq 'documentId' and m/value eq 'doc1')", List.of(ID, CUSTOM_METADATA)), Map.class);
+
+        assertEquals(2, results.size());
+        assertEquals(Map.of(ID, "1", CUSTOM_METADATA, List.of(Map.of("key", DOCUMENT_ID, "value", "doc1"))), results.get(0));
+    }
+
+    @Test
+    @DisplayName("merges fields into existing documents, so a superseded document drops out of active searches")
+    void mergeMarksDocumentInactive() {
+        final Map<String, Object> update = new HashMap<>();
+        update.put(ID, "2");
+        update.put(CUSTOM_METADATA, List.of(Map.of("key", DOCUMENT_ID, "value", "doc1"), Map.of("key", "is_active", "value", "false")));
+        backend.merge(List.of(update));
+
+        final List<ChunkedEntry> results = backend.search(new SearchRequest("bail", EmbeddingVector.of(1f, 0f, 0f),
+                CHUNK_VECTOR, 5, ACTIVE_ONLY, null, null), ChunkedEntry.class);
+
+        assertEquals(List.of("1", "4", "3"), results.stream().map(ChunkedEntry::id).toList());
+        assertEquals(4, backend.size());
+    }
+
+    @Test
+    @DisplayName("replaces a re-uploaded document, including its vector")
+    void uploadReplacesDocument() {
+        backend.upload(List.of(document("3", "doc2", "client-a", "The hearing was adjourned.", 1f, 0f, 0f)));
+
+        final List<ChunkedEntry> results = backend.search(new SearchRequest(SearchRequest.MATCH_ALL,
+                EmbeddingVector.of(0f, 1f, 0f), CHUNK_VECTOR, 1, null, List.of(ID), null), ChunkedEntry.class);
+
+        assertEquals("2", results.get(0).id());
+        assertEquals(4, backend.size());
+    }
+
+    @Test
+    @DisplayName("reports a merge of an unknown document as a 404 failure and applies the rest of the batch")
+    void mergeOfUnknownDocumentFails() {
+        final Map<String, Object> known = new HashMap<>(Map.of(ID, "1", CHUNK, "changed"));
+        final Map<String, Object> unknown = new HashMap<>(Map.of(ID, "missing", CHUNK, "changed"));
+
+        final List<IndexingFailure> failures = backend.merge(List.of(known, unknown));
+
+        assertEquals(1, failures.size());
+        assertEquals("missing", failures.get(0).key());
+        assertEquals(404, failures.get(0).statusCode());
+        assertFalse(failures.get(0).isRetriable());
+        final List<Map> changed = backend.search(new SearchRequest("changed", null, null, 0, null, null, null), Map.class);
+        assertEquals(1, changed.size());
+        assertEquals("1", changed.get(0).get(ID));
+    }
+
+    @Test
+    @DisplayName("sorts an unranked query by a field, so pages can resume after the last key read")
+    void keysetPagesInKeyOrder() {
+        final List<String> firstPage = ids(backend.search(SearchRequest.filterOnlyPage(null, List.of(ID), ID + " desc", 2), Map.class));
+        final List<String> secondPage = ids(backend.search(SearchRequest.filterOnlyPage("id lt '3'", List.of(ID), ID + " desc", 2), Map.class));
+
+        assertEquals(List.of("4", "3"), firstPage);
+        assertEquals(List.of("2", "1"), secondPage);
+        assertThrows(IllegalArgumentException.class, () -> backend.search(
+                new SearchRequest("bail", null, null, 0, null, null, 10, ID + " asc"), Map.class));
+    }
+
+    @Test
+    @DisplayName("ranks an exact-scan index like the default one, growing past its expected size")
+    void exactScanIndexRanksLikeDefault() {
+        final LocalSearchBackend exact = LocalSearchBackend.exactScan("exact-index", 2);
+        exact.upload(List.of(
+                document("1", "doc1", "client-a", "The defendant was charged with assault.", 1f, 0f, 0f),
+                document("2", "doc1", "client-a", "Bail was refused by the magistrates.", 0.9f, 0.1f, 0f),
+                document("3", "doc2", "client-a", "The hearing was adjourned.", 0f, 1f, 0f),
+                document("4", "doc3", "client-b", "The defendant was charged with theft.", 1f, 0f, 0f)));
+        final SearchRequest request = new SearchRequest("bail refused", EmbeddingVector.of(1f, 0f, 0f), CHUNK_VECTOR, 3,
+                "clientId eq 'client-a' and " + ACTIVE_ONLY, List.of(ID), 10);
+
+        assertEquals(ids(backend.search(request, Map.class)), ids(exact.search(request, Map.class)));
+        assertEquals(4, exact.size());
+    }
+
+    @Test
+    @DisplayName("shares one index per name within the JVM")
+    void sharesIndexesByName() {
+        assertSame(LocalSearchBackend.forIndex("shared-index"), LocalSearchBackend.forIndex("shared-index"));
+    }
+
+    private static List<String> ids(final List<Map> results) {
+        return results.stream().map(result -> (String) result.get(ID)).toList();
+    }
+
+    private static Map<String, Object> document(final String id, final String documentId, final String clientId,
+                                                final String chunk, final float... vector) {
+        final Map<String, Object> document = new HashMap<>();
+        document.put(ID, id);
+        document.put(CHUNK, chunk);
+        document.put(CHUNK_VECTOR, EmbeddingVector.of(vector));
+        document.put(DOCUMENT_ID, documentId);
+        document.put(CLIENT_ID, clientId);
+        document.put(CUSTOM_METADATA, List.of(new KeyValuePair(DOCUMENT_ID, documentId)));
+        return document;
+    }
+}
@@ -0,0 +1,85 @@
+package uk.gov.moj.cp.ai.search.local;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ODataFilterTest {
+
+    private static final String IS_ACTIVE_FILTER = "(not customMetadata/any(m: m/key eq 'is_active') "
+            + "or customMetadata/any(m: m/key eq 'is_active' and m/value ne 'false'))";
+
+    private static final Map<String, Object> ACTIVE = Map.of(
+            "id", "1",
+            "clientId", "client-a",
+            "pageNumber", 3,
+            "customMetadata", List.of(Map.of("key", "documentId", "value", "doc1"),
+                    Map.of("key", "case", "value", "O'Brien")));
+
+    private static final Map<String, Object> INACTIVE = Map.of(
+            "id", "2",
+            "clientId", "client-b",
+            "customMetadata", List.of(Map.of("key", "documentId", "value", "doc2"),
+                    Map.of("key", "is_active", "value", "false")));
+
+    @Test
+    @DisplayName("evaluates the retrieval filter: client clause, metadata lambda and is_active trailer")
+    void evaluatesRetrievalFilter() {
+        final ODataFilter filter = ODataFilter.parse("clientId eq 'client-a' and "
+                + "customMetadata/any(m: m/key eq 'case' and m/value eq 'O''Brien') and " + IS_ACTIVE_FILTER);
+
+        assertTrue(filter.matches(ACTIVE));
+        assertFalse(filter.matches(INACTIVE));
+    }
+
+    @Test
+    @DisplayName("excludes documents marked inactive and keeps documents without the flag")
+    void evaluatesIsActiveTrailer() {
+        final ODataFilter filter = ODataFilter.parse(IS_ACTIVE_FILTER);
+
+        assertTrue(filter.matches(ACTIVE));
+        assertFalse(filter.matches(INACTIVE));
+    }
+
+    @Test
+    @DisplayName("supports or, not, search.in, numeric comparison and the bare any()")
+    void supportsRemainingOperators() {
+        assertTrue(ODataFilter.parse("clientId eq 'x' or id eq '1'").matches(ACTIVE));
+        assertTrue(ODataFilter.parse("not (clientId eq 'client-b')").matches(ACTIVE));
+        assertTrue(ODataFilter.parse("search.in(clientId, 'client-b,client-a', ',')").matches(ACTIVE));
+        assertFalse(ODataFilter.parse("search.in(clientId, 'client-b client-c')").matches(ACTIVE));
+        assertTrue(ODataFilter.parse("pageNumber ge 3 and pageNumber lt 4").matches(ACTIVE));
+        assertTrue(ODataFilter.parse("customMetadata/any()").matches(ACTIVE));
+        assertFalse(ODataFilter.parse("customMetadata/all(m: m/key eq 'documentId')").matches(ACTIVE));
+        assertFalse(ODataFilter.parse("clientId eq null").matches(ACTIVE));
+    }
+
+    @Test
+    @DisplayName("never matches a range comparison against a missing field or a null literal")
+    void rangeComparisonsWithNullAreFalse() {
+        // INACTIVE has no pageNumber
+        assertFalse(ODataFilter.parse("pageNumber lt 4").matches(INACTIVE));
+        assertFalse(ODataFilter.parse("pageNumber le 4").matches(INACTIVE));
+        assertFalse(ODataFilter.parse("pageNumber gt 0").matches(INACTIVE));
+        assertFalse(ODataFilter.parse("pageNumber ge 0").matches(INACTIVE));
+        assertFalse(ODataFilter.parse("pageNumber gt null").matches(ACTIVE));
+        assertTrue(ODataFilter.parse("pageNumber eq null").matches(INACTIVE));
+    }
+
+    @Test
+    @DisplayName("matches everything without a filter and rejects expressions outside the subset")
+    void handlesMissingAndUnsupportedFilters() {
+        assertTrue(ODataFilter.parse(null).matches(INACTIVE));
+        assertTrue(ODataFilter.parse(" ").matches(INACTIVE));
+
+        assertThrows(IllegalArgumentException.class, () -> ODataFilter.parse("geo.distance(location, x) lt 5"));
+        assertThrows(IllegalArgumentException.class, () -> ODataFilter.parse("clientId eq 'unterminated"));
+        assertThrows(IllegalArgumentException.class, () -> ODataFilter.parse("clientId eq 'a' and"));
+    }
+}
@@ -1,6 +1,7 @@
 package uk.gov.moj.cp.ai.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -8,25 +9,35 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import uk.gov.moj.cp.ai.exception.ChatServiceException;
+import uk.gov.moj.cp.ai.model.ContinuationPolicy;
+import uk.gov.moj.cp.ai.model.ResponseSchema;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.azure.ai.openai.OpenAIClient;
 import com.azure.ai.openai.models.ChatChoice;
+import com.azure.ai.openai.models.ChatCompletionStreamOptions;
 import com.azure.ai.openai.models.ChatCompletions;
 import com.azure.ai.openai.models.ChatCompletionsOptions;
+import com.azure.ai.openai.models.ChatRequestAssistantMessage;
 import com.azure.ai.openai.models.ChatResponseMessage;
 import com.azure.ai.openai.models.CompletionsFinishReason;
+import com.azure.ai.openai.models.CompletionsUsage;
 import com.azure.ai.openai.models.ReasoningEffortValue;
+import com.azure.core.util.IterableStream;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
 
 class AzureChatServiceTest {
 
@@ -155,13 +166,156 @@ class AzureChatServiceTest {
         }
     }
 
+    @Test
+    @DisplayName("Streams content deltas in order, skipping the choice-less first chunk")
+    void streamsContentDeltas() throws Exception {
+        initChatServiceWithMockClient(DEPLOYMENT_NAME);
+        final ChatCompletions promptFilterChunk = mock(ChatCompletions.class);
+        when(promptFilterChunk.getChoices()).thenReturn(List.of());
+        final ChatCompletions first = mockStreamChunk("Hello", null);
+        final ChatCompletions last = mockStreamChunk(" world", CompletionsFinishReason.STOPPED);
+        when(openAIClientMock.getChatCompletionsStream(eq(DEPLOYMENT_NAME), any(ChatCompletionsOptions.class), any(ChatCompletionStreamOptions.class)))
+                .thenReturn(IterableStream.of(List.of(promptFilterChunk, first, last)));
+        final List<String> deltas = new ArrayList<>();
+
+        final String text = chatService.streamModel("systemInstruction", "userInstruction", deltas::add);
+
+        assertEquals("Hello world", text);
+        assertEquals(List.of("Hello", " world"), deltas);
+    }
+
+    @Test
+    @DisplayName("Cancels the upstream stream when the delta callback aborts the generation")
+    void cancelsStreamWhenCallbackAborts() throws Exception {
+        initChatServiceWithMockClient(DEPLOYMENT_NAME);
+        final ChatCompletions first = mockStreamChunk("Hello", null);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final Flux<ChatCompletions> neverEnding = Flux.just(first).concatWith(Flux.never())
+                .doOnCancel(() -> cancelled.set(true));
+        when(openAIClientMock.getChatCompletionsStream(eq(DEPLOYMENT_NAME), any(ChatCompletionsOptions.class), any(ChatCompletionStreamOptions.class)))
+                .thenReturn(new IterableStream<>(neverEnding));
+
+        assertThrows(IllegalStateException.class, () -> chatService.streamModel("systemInstruction", "userInstruction", delta -> {
+            throw new IllegalStateException("aborted");
+        }));
+        assertTrue(cancelled.get());
+    }
+
+    @Test
+    @DisplayName("Throws when the stream carries no content")
+    void throwsWhenStreamIsEmpty() throws Exception {
+        initChatServiceWithMockClient(DEPLOYMENT_NAME);
+        final ChatCompletions last = mockStreamChunk(null, CompletionsFinishReason.CONTENT_FILTERED);
+        when(openAIClientMock.getChatCompletionsStream(eq(DEPLOYMENT_NAME), any(ChatCompletionsOptions.class), any(ChatCompletionStreamOptions.class)))
+                .thenReturn(IterableStream.of(List.of(last)));
+
+        assertThrows(ChatServiceException.class,
+                () -> chatService.streamModel("systemInstruction", "userInstruction", delta -> { }));
+    }
+
+    @Test
+    @DisplayName("Continues a completion cut off at the token limit and joins the parts")
+    void continuesTruncatedCompletion() throws Exception {
+        initChatServiceWithMockClient(DEPLOYMENT_NAME);
+        setContinuationPolicy(new ContinuationPolicy(2, 600));
+        final ChatCompletions truncated = mockChatCompletions("He was charged [1", CompletionsFinishReason.TOKEN_LIMIT_REACHED);
+        final ChatCompletions rest = mockChatCompletions("]. <FACT_MAP_JSON>[]</FACT_MAP_JSON>", CompletionsFinishReason.STOPPED);
+        when(openAIClientMock.getChatCompletions(eq(DEPLOYMENT_NAME), any(ChatCompletionsOptions.class)))
+                .thenReturn(truncated, rest);
+
+        final var result = chatService.callModel("systemInstruction", "userInstruction", String.class);
+
+        assertEquals("He was charged [1]. <FACT_MAP_JSON>[]</FACT_MAP_JSON>", result.orElseThrow());
+        final ArgumentCaptor<ChatCompletionsOptions> captor = ArgumentCaptor.forClass(ChatCompletionsOptions.class);
+        verify(openAIClientMock, times(2)).getChatCompletions(eq(DEPLOYMENT_NAME), captor.capture());
+        final ChatCompletionsOptions continuation = captor.getAllValues().get(1);
+        assertEquals(600, continuation.getMaxCompletionTokens());
+        assertEquals(4, continuation.getMessages().size());
+        assertInstanceOf(ChatRequestAssistantMessage.class, continuation.getMessages().get(2));
+        assertEquals("He was charged [1", ((ChatRequestAssistantMessage) continuation.getMessages().get(2)).getContent().toString());
+    }
+
+    @Test
+    @DisplayName("Stops continuing at the round cap, and never continues by default or for schema calls")
+    void stopsContinuingAtTheCaps() throws Exception {
+        initChatServiceWithMockClient(DEPLOYMENT_NAME);
+        final ChatCompletions truncated = mockChatCompletions("part", CompletionsFinishReason.TOKEN_LIMIT_REACHED);
+        when(openAIClientMock.getChatCompletions(eq(DEPLOYMENT_NAME), any(ChatCompletionsOptions.class)))
+                .thenReturn(truncated);
+
+        assertEquals("part", chatService.callModel("systemInstruction", "userInstruction", String.class).orElseThrow());
+
+        setContinuationPolicy(new ContinuationPolicy(2, 10_000));
+        assertEquals("part", chatService.callModel("systemInstruction", "userInstruction", String.class,
+                new ResponseSchema("schema", Map.of("type", "object"))).orElseThrow());
+        assertEquals("partpartpart", chatService.callModel("systemInstruction", "userInstruction", String.class).orElseThrow());
+        verify(openAIClientMock, times(5)).getChatCompletions(eq(DEPLOYMENT_NAME), any(ChatCompletionsOptions.class));
+    }
+
+    @Test
+    @DisplayName("Continues a truncated stream and forwards the continuation deltas")
+    void continuesTruncatedStream() throws Exception {
+        initChatServiceWithMockClient(DEPLOYMENT_NAME);
+        setContinuationPolicy(new ContinuationPolicy(1, 600));
+        final ChatCompletions truncated = mockStreamChunk("Hello", CompletionsFinishReason.TOKEN_LIMIT_REACHED);
+        final ChatCompletions rest = mockStreamChunk(" world", CompletionsFinishReason.STOPPED);
+        when(openAIClientMock.getChatCompletionsStream(eq(DEPLOYMENT_NAME), any(ChatCompletionsOptions.class), any(ChatCompletionStreamOptions.class)))
+                .thenReturn(IterableStream.of(List.of(truncated)), IterableStream.of(List.of(rest)));
+        final List<String> deltas = new ArrayList<>();
+
+        final String text = chatService.streamModel("systemInstruction", "userInstruction", deltas::add);
+
+        assertEquals("Hello world", text);
+        assertEquals(List.of("Hello", " world"), deltas);
+    }
+
+    @Test
+    @DisplayName("Requests usage on streams and charges continuation rounds the completion tokens reported")
+    void chargesStreamedContinuationsTheReportedTokens() throws Exception {
+        initChatServiceWithMockClient(DEPLOYMENT_NAME);
+        setContinuationPolicy(new ContinuationPolicy(3, 1500));
+        final ChatCompletions usage = mock(ChatCompletions.class);
+        final CompletionsUsage completionsUsage = mock(CompletionsUsage.class);
+        when(completionsUsage.getCompletionTokens()).thenReturn(100);
+        when(usage.getChoices()).thenReturn(List.of());
+        when(usage.getUsage()).thenReturn(completionsUsage);
+        final ChatCompletions truncated = mockStreamChunk("part", CompletionsFinishReason.TOKEN_LIMIT_REACHED);
+        final ChatCompletions rest = mockStreamChunk(" end", CompletionsFinishReason.STOPPED);
+        when(openAIClientMock.getChatCompletionsStream(eq(DEPLOYMENT_NAME), any(ChatCompletionsOptions.class), any(ChatCompletionStreamOptions.class)))
+                .thenReturn(IterableStream.of(List.of(truncated, usage)), IterableStream.of(List.of(truncated, usage)),
+                        IterableStream.of(List.of(truncated, usage)), IterableStream.of(List.of(rest, usage)));
+
+        final String text = chatService.streamModel("systemInstruction", "userInstruction", delta -> { });
+
+        // charged 100 tokens a round, not the 1000-token round limit, so all three rounds fit the budget
+        assertEquals("partpartpart end", text);
+        final ArgumentCaptor<ChatCompletionStreamOptions> captor = ArgumentCaptor.forClass(ChatCompletionStreamOptions.class);
+        verify(openAIClientMock, times(4)).getChatCompletionsStream(eq(DEPLOYMENT_NAME), any(ChatCompletionsOptions.class), captor.capture());
+        assertTrue(captor.getAllValues().stream().allMatch(ChatCompletionStreamOptions::isIncludeUsage));
+    }
+
+    private ChatCompletions mockStreamChunk(final String content, final CompletionsFinishReason finishReason) {
+        final ChatResponseMessage delta = mock(ChatResponseMessage.class);
+        when(delta.getContent()).thenReturn(content);
+        final ChatChoice choice = mock(ChatChoice.class);
+        when(choice.getDelta()).thenReturn(delta);
+        when(choice.getFinishReason()).thenReturn(finishReason);
+        final ChatCompletions chunk = mock(ChatCompletions.class);
+        when(chunk.getChoices()).thenReturn(List.of(choice));
+        return chunk;
+    }
+
     private ChatCompletions mockChatCompletions(String jsonResponse) {
+        return mockChatCompletions(jsonResponse, CompletionsFinishReason.STOPPED);
+    }
+
+    private ChatCompletions mockChatCompletions(final String jsonResponse, final CompletionsFinishReason finishReason) {
         final ChatResponseMessage mockChatResponseMessage = mock(ChatResponseMessage.class);
         final ChatCompletions chatCompletions = mock(ChatCompletions.class);
         final ChatChoice mockChatChoice = mock(ChatChoice.class);
         when(chatCompletions.getChoices()).thenReturn(List.of(mockChatChoice));
         when(mockChatChoice.getMessage()).thenReturn(mockChatResponseMessage);
-        when(mockChatChoice.getFinishReason()).thenReturn(CompletionsFinishReason.STOPPED);
+        when(mockChatChoice.getFinishReason()).thenReturn(finishReason);
         when(mockChatResponseMessage.getContent()).thenReturn(jsonResponse);
         return chatCompletions;
     }
@@ -173,4 +327,10 @@ class AzureChatServiceTest {
         clientField.setAccessible(true);
         clientField.set(chatService, openAIClientMock);
     }
+
+    private void setContinuationPolicy(final ContinuationPolicy policy) throws Exception {
+        final Field f = AzureChatService.class.getDeclaredField("continuationPolicy");
+        f.setAccessible(true);
+        f.set(chatService, policy);
+    }
 }
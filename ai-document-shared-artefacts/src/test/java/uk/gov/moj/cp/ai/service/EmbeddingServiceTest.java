@@ -10,6 +10,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import uk.gov.moj.cp.ai.exception.EmbeddingServiceException;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 
 import java.io.IOException;
 import java.util.List;
@@ -50,7 +51,7 @@ class EmbeddingServiceTest {
                 .thenReturn(embeddings);
 
         EmbeddingService service = new EmbeddingService(mockClient, "deploymentName");
-        List<Float> result = service.embedData("content");
+        EmbeddingVector result = service.embedData("content");
 
         verify(mockClient).getEmbeddings(any(String.class), any(EmbeddingsOptions.class));
 
@@ -73,11 +74,11 @@ class EmbeddingServiceTest {
         JsonReader jsonReader = DefaultJsonReader.fromString(embeddingJson, new JsonOptions());
         Embeddings embeddings = Embeddings.fromJson(jsonReader);
 
-        List<Float> mockEmbedding = List.of(0.1f, 0.2f, 0.3f);
+        EmbeddingVector mockEmbedding = EmbeddingVector.of(0.1f, 0.2f, 0.3f);
         when(mockClient.getEmbeddings(any(String.class), any(EmbeddingsOptions.class))).thenReturn(embeddings);
 
         EmbeddingService service = new EmbeddingService(mockClient, "deploymentName");
-        List<Float> result = service.embedData("content");
+        EmbeddingVector result = service.embedData("content");
 
         verify(mockClient).getEmbeddings(any(String.class), any(EmbeddingsOptions.class));
 
@@ -100,11 +101,11 @@ class EmbeddingServiceTest {
         JsonReader jsonReader = DefaultJsonReader.fromString(embeddingJson, new JsonOptions());
         Embeddings embeddings = Embeddings.fromJson(jsonReader);
 
-        List<Float> mockEmbedding = List.of(0.1f, 0.2f, 0.3f);
+        EmbeddingVector mockEmbedding = EmbeddingVector.of(0.1f, 0.2f, 0.3f);
         when(mockClient.getEmbeddings(any(String.class), any(EmbeddingsOptions.class))).thenReturn(embeddings);
 
         EmbeddingService service = new EmbeddingService(mockClient, "deploymentName");
-        List<List<Float>> results = service.embedCollectionData(List.of("content"));
+        List<EmbeddingVector> results = service.embedCollectionData(List.of("content"));
 
         verify(mockClient).getEmbeddings(any(String.class), any(EmbeddingsOptions.class));
 
@@ -6,23 +6,34 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Answers.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import uk.gov.moj.cp.ai.exception.ChatServiceException;
+import uk.gov.moj.cp.ai.model.ContinuationPolicy;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import com.openai.client.OpenAIClient;
+import com.openai.core.http.StreamResponse;
 import com.openai.models.ReasoningEffort;
+import com.openai.models.responses.EasyInputMessage;
 import com.openai.models.responses.Response;
+import com.openai.models.responses.ResponseCompletedEvent;
 import com.openai.models.responses.ResponseCreateParams;
+import com.openai.models.responses.ResponseErrorEvent;
+import com.openai.models.responses.ResponseInputItem;
 import com.openai.models.responses.ResponseOutputItem;
 import com.openai.models.responses.ResponseOutputMessage;
 import com.openai.models.responses.ResponseOutputText;
+import com.openai.models.responses.ResponseStreamEvent;
+import com.openai.models.responses.ResponseTextDeltaEvent;
 import com.openai.models.responses.ResponseTextConfig;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -184,6 +195,108 @@ class OpenAiChatServiceTest {
         }
     }
 
+    @Test
+    @DisplayName("Streams output text deltas and closes the stream")
+    @SuppressWarnings("unchecked")
+    void streamsOutputTextDeltas() throws Exception {
+        initChatServiceWithMockClient(DEPLOYMENT_NAME);
+        final ResponseStreamEvent completed = mock(ResponseStreamEvent.class);
+        final ResponseCompletedEvent completedEvent = mock(ResponseCompletedEvent.class);
+        final Response response = mockResponse("Hello world");
+        when(completedEvent.response()).thenReturn(response);
+        when(completed.completed()).thenReturn(Optional.of(completedEvent));
+        final StreamResponse<ResponseStreamEvent> stream = mock(StreamResponse.class);
+        final ResponseStreamEvent hello = textDelta("Hello");
+        final ResponseStreamEvent world = textDelta(" world");
+        when(stream.stream()).thenReturn(Stream.of(hello, world, completed));
+        when(openAIClientMock.responses().createStreaming(any(ResponseCreateParams.class))).thenReturn(stream);
+        final List<String> deltas = new ArrayList<>();
+
+        final String text = chatService.streamModel("systemInstruction", "userInstruction", deltas::add);
+
+        assertEquals("Hello world", text);
+        assertEquals(List.of("Hello", " world"), deltas);
+        verify(stream).close();
+    }
+
+    @Test
+    @DisplayName("Throws when the stream reports an error event")
+    @SuppressWarnings("unchecked")
+    void throwsOnStreamErrorEvent() throws Exception {
+        initChatServiceWithMockClient(DEPLOYMENT_NAME);
+        final ResponseErrorEvent errorEvent = mock(ResponseErrorEvent.class);
+        when(errorEvent.message()).thenReturn("rate limited");
+        final ResponseStreamEvent error = mock(ResponseStreamEvent.class);
+        when(error.error()).thenReturn(Optional.of(errorEvent));
+        final StreamResponse<ResponseStreamEvent> stream = mock(StreamResponse.class);
+        when(stream.stream()).thenReturn(Stream.of(error));
+        when(openAIClientMock.responses().createStreaming(any(ResponseCreateParams.class))).thenReturn(stream);
+
+        final ChatServiceException e = assertThrows(ChatServiceException.class,
+                () -> chatService.streamModel("systemInstruction", "userInstruction", delta -> { }));
+
+        assertTrue(e.getMessage().contains("rate limited"));
+        verify(stream).close();
+    }
+
+    @Test
+    @DisplayName("Continues a response left incomplete at max_output_tokens, replaying the partial answer")
+    void continuesTruncatedResponse() throws Exception {
+        initChatServiceWithMockClient(DEPLOYMENT_NAME);
+        setContinuationPolicy(new ContinuationPolicy(2, 600));
+        final Response truncated = mockResponse("He was charged [1");
+        final Response.IncompleteDetails details = incomplete(Response.IncompleteDetails.Reason.MAX_OUTPUT_TOKENS);
+        when(truncated.incompleteDetails()).thenReturn(Optional.of(details));
+        final Response rest = mockResponse("]. Done.");
+        when(openAIClientMock.responses().create(any(ResponseCreateParams.class))).thenReturn(truncated, rest);
+
+        final var result = chatService.callModel("systemInstruction", "userInstruction", String.class);
+
+        assertEquals("He was charged [1]. Done.", result.orElseThrow());
+        final ArgumentCaptor<ResponseCreateParams> captor = ArgumentCaptor.forClass(ResponseCreateParams.class);
+        verify(openAIClientMock.responses(), times(2)).create(captor.capture());
+        final ResponseCreateParams continuation = captor.getAllValues().get(1);
+        assertEquals(600L, continuation.maxOutputTokens().orElseThrow());
+        final List<ResponseInputItem> input = continuation.input().orElseThrow().asResponse();
+        assertEquals(3, input.size());
+        assertEquals(EasyInputMessage.Role.ASSISTANT, input.get(1).asEasyInputMessage().role());
+        assertEquals("He was charged [1", input.get(1).asEasyInputMessage().content().asTextInput());
+    }
+
+    @Test
+    @DisplayName("Does not continue a response stopped by the content filter")
+    void doesNotContinueContentFilteredResponse() throws Exception {
+        initChatServiceWithMockClient(DEPLOYMENT_NAME);
+        setContinuationPolicy(new ContinuationPolicy(2, 600));
+        final Response filtered = mockResponse("partial");
+        final Response.IncompleteDetails details = incomplete(Response.IncompleteDetails.Reason.CONTENT_FILTER);
+        when(filtered.incompleteDetails()).thenReturn(Optional.of(details));
+        when(openAIClientMock.responses().create(any(ResponseCreateParams.class))).thenReturn(filtered);
+
+        assertEquals("partial", chatService.callModel("systemInstruction", "userInstruction", String.class).orElseThrow());
+        verify(openAIClientMock.responses(), times(1)).create(any(ResponseCreateParams.class));
+    }
+
+    private Response.IncompleteDetails incomplete(final Response.IncompleteDetails.Reason reason) {
+        final Response.IncompleteDetails details = mock(Response.IncompleteDetails.class);
+        when(details.reason()).thenReturn(Optional.of(reason));
+        return details;
+    }
+
+    private void setContinuationPolicy(final ContinuationPolicy policy) throws Exception {
+        final Field f = OpenAiChatService.class.getDeclaredField("continuationPolicy");
+        f.setAccessible(true);
+        f.set(chatService, policy);
+    }
+
+    private ResponseStreamEvent textDelta(final String delta) {
+        final ResponseTextDeltaEvent deltaEvent = mock(ResponseTextDeltaEvent.class);
+        when(deltaEvent.delta()).thenReturn(delta);
+        final ResponseStreamEvent event = mock(ResponseStreamEvent.class);
+        when(event.outputTextDelta()).thenReturn(Optional.of(deltaEvent));
+        return event;
+    }
+
     private Response mockResponse(String jsonResponse) {
         final ResponseOutputText mockOutputText = mock(ResponseOutputText.class);
         when(mockOutputText.text()).thenReturn(jsonResponse);
@@ -0,0 +1,66 @@
+package uk.gov.moj.cp.ai.service.table;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.moj.cp.ai.entity.StorageTableColumns.TC_EMBEDDING;
+
+import uk.gov.moj.cp.ai.exception.EntityRetrievalException;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
+
+import com.azure.data.tables.models.TableEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class EmbeddingCacheTableServiceTest {
+
+    private static final String HASH = "ab12cd";
+
+    private TableService mockTableService;
+    private EmbeddingCacheTableService service;
+
+    @BeforeEach
+    void setUp() {
+        mockTableService = mock(TableService.class);
+        service = new EmbeddingCacheTableService(mockTableService);
+    }
+
+    @Test
+    @DisplayName("Throws exception when table name is null or empty")
+    void throwsExceptionWhenTableNameIsNullOrEmpty() {
+        assertThrows(IllegalArgumentException.class, () -> new EmbeddingCacheTableService((String) null));
+        assertThrows(IllegalArgumentException.class, () -> new EmbeddingCacheTableService(""));
+    }
+
+    @Test
+    @DisplayName("Stores the embedding as bytes under the deployment and hash prefix partition")
+    void storesEmbeddingUnderHashPartition() {
+        final EmbeddingVector embedding = EmbeddingVector.of(0.25f, -1.5f);
+
+        service.put("embed-large", HASH, embedding);
+
+        final ArgumentCaptor<TableEntity> captor = ArgumentCaptor.forClass(TableEntity.class);
+        verify(mockTableService).upsertIntoTableQuietly(captor.capture());
+        assertEquals("embed-large-ab", captor.getValue().getPartitionKey());
+        assertEquals(HASH, captor.getValue().getRowKey());
+        assertArrayEquals(embedding.toBytes(), (byte[]) captor.getValue().getProperty(TC_EMBEDDING));
+    }
+
+    @Test
+    @DisplayName("Reads a stored embedding back, returning null when none is stored")
+    void readsStoredEmbedding() throws EntityRetrievalException {
+        final EmbeddingVector embedding = EmbeddingVector.of(0.25f, -1.5f);
+        final TableEntity row = new TableEntity("embed-large-ab", HASH);
+        row.addProperty(TC_EMBEDDING, embedding.toBytes());
+        when(mockTableService.getFirstDocumentMatching("embed-large-ab", HASH)).thenReturn(row);
+
+        assertEquals(embedding, service.get("embed-large", HASH));
+        assertNull(service.get("embed-small", HASH));
+    }
+}
@@ -0,0 +1,127 @@
+package uk.gov.moj.cp.ai.service.table;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.moj.cp.ai.entity.StorageTableColumns.TC_GENERATION;
+import static uk.gov.moj.cp.ai.service.table.SearchIndexGenerationTableService.GENERATION_ROW_KEY;
+import static uk.gov.moj.cp.ai.service.table.SearchIndexGenerationTableService.MAX_BUMP_ATTEMPTS;
+import static uk.gov.moj.cp.ai.service.table.SearchIndexGenerationTableService.UNSCOPED_PARTITION;
+
+import uk.gov.moj.cp.ai.exception.EntityRetrievalException;
+import uk.gov.moj.cp.ai.exception.EtagMismatchException;
+import uk.gov.moj.cp.ai.service.table.SearchIndexGenerationTableService.Generation;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+import com.azure.data.tables.models.TableEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class SearchIndexGenerationTableServiceTest {
+
+    private TableService mockTableService;
+    private SearchIndexGenerationTableService service;
+
+    @BeforeEach
+    void setUp() {
+        mockTableService = mock(TableService.class);
+        service = new SearchIndexGenerationTableService(mockTableService);
+    }
+
+    @Test
+    @DisplayName("Throws exception when table name is null or empty")
+    void throwsExceptionWhenTableNameIsNullOrEmpty() {
+        assertThrows(IllegalArgumentException.class, () -> new SearchIndexGenerationTableService((String) null));
+        assertThrows(IllegalArgumentException.class, () -> new SearchIndexGenerationTableService(""));
+    }
+
+    @Test
+    @DisplayName("Reads the client's generation and bump time, defaulting to 0 when no row exists")
+    void readsCurrentGeneration() throws EntityRetrievalException {
+        final TableEntity row = generationRow("client-a", 7L, "etag");
+        when(row.getTimestamp()).thenReturn(OffsetDateTime.parse("2025-01-01T10:00:00Z"));
+        when(mockTableService.getFirstDocumentMatching("client-a", GENERATION_ROW_KEY)).thenReturn(row);
+
+        assertEquals(new Generation(7L, Instant.parse("2025-01-01T10:00:00Z")), service.currentGeneration("client-a"));
+        assertEquals(new Generation(0L, null), service.currentGeneration("client-b"));
+        assertNull(service.currentGeneration(null).bumpedAt());
+        verify(mockTableService).getFirstDocumentMatching(UNSCOPED_PARTITION, GENERATION_ROW_KEY);
+    }
+
+    @Test
+    @DisplayName("Treats a generation as settled once the refresh delay has passed since its bump")
+    void settlesAfterRefreshDelay() {
+        final Instant bumpedAt = Instant.parse("2025-01-01T10:00:00Z");
+        final Generation generation = new Generation(3L, bumpedAt);
+
+        assertFalse(generation.isSettled(bumpedAt.plusSeconds(9), Duration.ofSeconds(10)));
+        assertTrue(generation.isSettled(bumpedAt.plusSeconds(10), Duration.ofSeconds(10)));
+        assertTrue(new Generation(0L, null).isSettled(bumpedAt, Duration.ofSeconds(10)));
+    }
+
+    @Test
+    @DisplayName("Bumps both the client's and the unscoped generation, creating rows when absent")
+    void bumpsClientAndUnscopedGeneration() throws Exception {
+        final TableEntity row = generationRow("client-a", 3L, "etag-a");
+        when(mockTableService.getFirstDocumentMatching("client-a", GENERATION_ROW_KEY)).thenReturn(row);
+
+        service.bumpGeneration("client-a");
+
+        final ArgumentCaptor<TableEntity> updated = ArgumentCaptor.forClass(TableEntity.class);
+        verify(mockTableService).updateEntityIfUnchanged(updated.capture(), eq("etag-a"));
+        assertEquals(4L, updated.getValue().getProperty(TC_GENERATION));
+
+        final ArgumentCaptor<TableEntity> inserted = ArgumentCaptor.forClass(TableEntity.class);
+        verify(mockTableService).insertReturningEtag(inserted.capture());
+        assertEquals(UNSCOPED_PARTITION, inserted.getValue().getPartitionKey());
+        assertEquals(1L, inserted.getValue().getProperty(TC_GENERATION));
+    }
+
+    @Test
+    @DisplayName("Re-reads and retries when a concurrent bump changed the row")
+    void retriesOnConcurrentBump() throws Exception {
+        final TableEntity first = generationRow(UNSCOPED_PARTITION, 1L, "etag-1");
+        final TableEntity second = generationRow(UNSCOPED_PARTITION, 2L, "etag-2");
+        when(mockTableService.getFirstDocumentMatching(UNSCOPED_PARTITION, GENERATION_ROW_KEY)).thenReturn(first, second);
+        when(mockTableService.updateEntityIfUnchanged(any(TableEntity.class), eq("etag-1"))).thenThrow(new EtagMismatchException("changed"));
+
+        service.bumpGeneration(null);
+
+        final ArgumentCaptor<TableEntity> updated = ArgumentCaptor.forClass(TableEntity.class);
+        verify(mockTableService).updateEntityIfUnchanged(updated.capture(), eq("etag-2"));
+        assertEquals(3L, updated.getValue().getProperty(TC_GENERATION));
+    }
+
+    @Test
+    @DisplayName("Gives up quietly after repeated contention so the index write is not failed")
+    void givesUpQuietlyUnderContention() throws Exception {
+        final TableEntity row = generationRow(UNSCOPED_PARTITION, 1L, "etag");
+        when(mockTableService.getFirstDocumentMatching(UNSCOPED_PARTITION, GENERATION_ROW_KEY)).thenReturn(row);
+        when(mockTableService.updateEntityIfUnchanged(any(TableEntity.class), eq("etag"))).thenThrow(new EtagMismatchException("changed"));
+
+        assertDoesNotThrow(() -> service.bumpGeneration(null));
+        verify(mockTableService, times(MAX_BUMP_ATTEMPTS)).updateEntityIfUnchanged(any(TableEntity.class), eq("etag"));
+    }
+
+    private static TableEntity generationRow(final String partition, final long generation, final String etag) {
+        final TableEntity entity = mock(TableEntity.class);
+        when(entity.getPartitionKey()).thenReturn(partition);
+        when(entity.getProperty(TC_GENERATION)).thenReturn(generation);
+        when(entity.getETag()).thenReturn(etag);
+        return entity;
+    }
+}
@@ -21,6 +21,7 @@ import uk.gov.moj.cp.ai.client.TableClientFactory;
 import uk.gov.moj.cp.ai.exception.DuplicateRecordException;
 import uk.gov.moj.cp.ai.exception.EntityRetrievalException;
 import uk.gov.moj.cp.ai.exception.EtagMismatchException;
+import uk.gov.moj.cp.ai.exception.TableOperationException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.isNull;
@@ -97,6 +98,17 @@ class TableServiceTest {
         assertThrows(RuntimeException.class, () -> tableService.upsertIntoTable(entity));
     }
 
+    @Test
+    @DisplayName("Upserts entity quietly and still throws on failure")
+    void upsertsEntityQuietly() {
+        TableEntity entity = new TableEntity("partition", "row");
+        tableService.upsertIntoTableQuietly(entity);
+        verify(tableClient).upsertEntity(entity);
+
+        doThrow(new RuntimeException("fail")).when(tableClient).upsertEntity(entity);
+        assertThrows(TableOperationException.class, () -> tableService.upsertIntoTableQuietly(entity));
+    }
+
     @Test
     @DisplayName("Returns entity when found by partition and row key")
     void returnsEntityWhenFoundByPartitionAndRowKey() throws EntityRetrievalException {
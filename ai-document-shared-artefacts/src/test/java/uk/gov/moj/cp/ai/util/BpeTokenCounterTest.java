@@ -0,0 +1,53 @@
+package uk.gov.moj.cp.ai.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class BpeTokenCounterTest {
+
+    @Test
+    @DisplayName("counts cl100k_base tokens as tiktoken does")
+    void countsCl100kTokens() {
+        final BpeTokenCounter counter = BpeTokenCounter.forEncoding("cl100k_base");
+
+        // tiktoken: [15339, 1917]
+        assertEquals(2, counter.count("hello world"));
+        // tiktoken: [9906, 11, 1917, 0]
+        assertEquals(4, counter.count("Hello, world!"));
+        // tiktoken: [83, 1609, 5963, 374, 2294, 0]
+        assertEquals(6, counter.count("tiktoken is great!"));
+    }
+
+    @Test
+    @DisplayName("counts o200k_base tokens as tiktoken does")
+    void countsO200kTokens() {
+        final BpeTokenCounter counter = BpeTokenCounter.forEncoding("o200k_base");
+
+        // tiktoken: [24912, 2375]
+        assertEquals(2, counter.count("hello world"));
+        // tiktoken: [13225, 11, 2375, 0]
+        assertEquals(4, counter.count("Hello, world!"));
+        // tiktoken: [83, 8251, 2488, 382, 2212, 0]
+        assertEquals(6, counter.count("tiktoken is great!"));
+    }
+
+    @Test
+    @DisplayName("counts nothing for empty text")
+    void countsEmptyText() {
+        final BpeTokenCounter counter = BpeTokenCounter.forEncoding("o200k_base");
+
+        assertEquals(0, counter.count(""));
+        assertEquals(0, counter.count(null));
+    }
+
+    @Test
+    @DisplayName("shares one counter per encoding and rejects unknown encodings")
+    void sharesCountersPerEncoding() {
+        assertSame(BpeTokenCounter.forEncoding("o200k_base"), BpeTokenCounter.forEncoding(" O200K_BASE "));
+        assertThrows(IllegalArgumentException.class, () -> BpeTokenCounter.forEncoding("p50k_base"));
+    }
+}
@@ -1,9 +1,12 @@
 package uk.gov.moj.cp.ai.util;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.xmlunit.assertj3.XmlAssert.assertThat;
 
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
 import uk.gov.moj.cp.ai.model.KeyValuePair;
+import uk.gov.moj.cp.ai.model.PromptLayout;
 
 import java.util.List;
 
@@ -99,5 +102,137 @@ class ChunkFormatterUtilityTest {
         String result = chunkFormatterUtility.buildChunkContext(List.of(entry));
         assertThat(result).valueByXPath("/RETRIEVED_DOCUMENTS/DOCUMENT[@DOCUMENT_ID='doc3']/DATA[1]/PAGE_NUMBER").isEmpty();
     }
-}
 
+    @Test
+    void packChunkContext_FillsTheTokenBudgetInRelevanceOrder() {
+        // One token per character keeps the arithmetic visible.
+        final ChunkFormatterUtility packing = new ChunkFormatterUtility(500, String::length);
+        final ChunkedEntry mostRelevant = entry("id1", "doc1", "a".repeat(100));
+        final ChunkedEntry tooLarge = entry("id2", "doc2", "b".repeat(300));
+        final ChunkedEntry fitsAfterSkip = entry("id3", "doc1", "c".repeat(50));
+
+        final ChunkFormatterUtility.PackedContext packed =
+                packing.packChunkContext(List.of(mostRelevant, tooLarge, fitsAfterSkip));
+
+        assertEquals(List.of(mostRelevant, fitsAfterSkip), packed.packedEntries());
+        assertEquals(packed.context().length(), packed.tokenCount());
+        assertTrue(packed.tokenCount() <= 500);
+        assertThat(packed.context()).doesNotHaveXPath("/RETRIEVED_DOCUMENTS/DOCUMENT[@DOCUMENT_ID='doc2']");
+        assertThat(packed.context()).hasXPath("/RETRIEVED_DOCUMENTS/DOCUMENT[@DOCUMENT_ID='doc1']/DATA[2]");
+    }
+
+    @Test
+    void packChunkContext_KeepsTheMostRelevantChunkOverBudget() {
+        final ChunkFormatterUtility packing = new ChunkFormatterUtility(10, String::length);
+        final ChunkedEntry mostRelevant = entry("id1", "doc1", "a".repeat(100));
+
+        final ChunkFormatterUtility.PackedContext packed =
+                packing.packChunkContext(List.of(mostRelevant, entry("id2", "doc1", "b")));
+
+        assertEquals(List.of(mostRelevant), packed.packedEntries());
+    }
+
+    @Test
+    void packChunkContext_KeepsEveryChunkWithoutABudget() {
+        final ChunkFormatterUtility unlimited = new ChunkFormatterUtility(0, String::length);
+        final List<ChunkedEntry> entries = List.of(entry("id1", "doc1", "a".repeat(5000)), entry("id2", "doc2", "b"));
+
+        final ChunkFormatterUtility.PackedContext packed = unlimited.packChunkContext(entries);
+
+        assertEquals(entries, packed.packedEntries());
+        assertEquals(packed.context(), unlimited.buildChunkContext(entries));
+    }
+
+    @Test
+    void buildChunkContext_KeepsDocumentsInRelevanceOrder() {
+        final String result = chunkFormatterUtility.buildChunkContext(List.of(
+                entry("id1", "doc9", "Most relevant"), entry("id2", "doc1", "Second"), entry("id3", "doc5", "Third")));
+
+        assertTrue(result.indexOf("doc9") < result.indexOf("doc1"));
+        assertTrue(result.indexOf("doc1") < result.indexOf("doc5"));
+    }
+
+    @Test
+    void buildChunkContext_RendersTheSameChunksIdentically_InCacheFriendlyLayout() {
+        final ChunkFormatterUtility cacheFriendly = new ChunkFormatterUtility(0, String::length, PromptLayout.CACHE_FRIENDLY);
+        final ChunkedEntry a = chunk("id1", "doc2", 3, 0, "Page three.");
+        final ChunkedEntry b = chunk("id2", "doc1", 7, 0, "Page seven.");
+        final ChunkedEntry c = chunk("id3", "doc2", 1, 0, "Page one.");
+
+        final String result = cacheFriendly.buildChunkContext(List.of(a, b, c));
+
+        assertEquals(result, cacheFriendly.buildChunkContext(List.of(c, a, b)));
+        assertThat(result).hasXPath("/RETRIEVED_DOCUMENTS/DOCUMENT[1][@DOCUMENT_ID='doc1']");
+        assertThat(result).hasXPath("/RETRIEVED_DOCUMENTS/DOCUMENT[2][@DOCUMENT_ID='doc2']/DATA[1]/DOCUMENT_CONTENT[text()='Page one.']");
+        assertThat(result).hasXPath("/RETRIEVED_DOCUMENTS/DOCUMENT[2][@DOCUMENT_ID='doc2']/DATA[2]/DOCUMENT_CONTENT[text()='Page three.']");
+    }
+
+    private static ChunkedEntry entry(final String id, final String documentId, final String chunk) {
+        return ChunkedEntry.builder()
+                .id(id)
+                .documentId(documentId)
+                .chunk(chunk)
+                .documentFileName(documentId + ".pdf")
+                .pageNumber(1)
+                .customMetadata(List.of())
+                .build();
+    }
+
+    @Test
+    void buildChunkContext_StitchesAdjacentChunksOfAPageWithoutTheOverlap() {
+        final ChunkedEntry second = chunk("id2", "doc1", 4, 1,
+                "the court granted bail on conditions. The trial was listed for March.");
+        final ChunkedEntry first = chunk("id1", "doc1", 4, 0,
+                "The defendant appeared on 3 May and the court granted bail on conditions.");
+        final ChunkedEntry otherPage = chunk("id3", "doc1", 5, 2, "A separate page.");
+
+        final String result = chunkFormatterUtility.buildChunkContext(List.of(second, otherPage, first));
+
+        assertThat(result).hasXPath("/RETRIEVED_DOCUMENTS/DOCUMENT[@DOCUMENT_ID='doc1']/DATA[1]/DOCUMENT_CONTENT[text()="
+                + "'The defendant appeared on 3 May and the court granted bail on conditions. The trial was listed for March.']");
+        assertThat(result).hasXPath("/RETRIEVED_DOCUMENTS/DOCUMENT[@DOCUMENT_ID='doc1']/DATA[1]/PAGE_NUMBER[text()='4']");
+        assertThat(result).hasXPath("/RETRIEVED_DOCUMENTS/DOCUMENT[@DOCUMENT_ID='doc1']/DATA[2]/DOCUMENT_CONTENT[text()='A separate page.']");
+        assertThat(result).doesNotHaveXPath("/RETRIEVED_DOCUMENTS/DOCUMENT[@DOCUMENT_ID='doc1']/DATA[3]");
+    }
+
+    @Test
+    void buildChunkContext_KeepsNonAdjacentChunksApart() {
+        final String result = chunkFormatterUtility.buildChunkContext(List.of(
+                chunk("id1", "doc1", 4, 0, "First chunk of the page."),
+                chunk("id2", "doc1", 4, 2, "Third chunk of the page."),
+                chunk("id3", "doc2", 4, 1, "Other document.")));
+
+        assertThat(result).hasXPath("/RETRIEVED_DOCUMENTS/DOCUMENT[@DOCUMENT_ID='doc1']/DATA[2]/DOCUMENT_CONTENT[text()='Third chunk of the page.']");
+        assertThat(result).hasXPath("/RETRIEVED_DOCUMENTS/DOCUMENT[@DOCUMENT_ID='doc2']/DATA[1]/DOCUMENT_CONTENT[text()='Other document.']");
+    }
+
+    @Test
+    void buildChunkContext_JoinsAdjacentChunksWithoutOverlapWithASpace() {
+        final String result = chunkFormatterUtility.buildChunkContext(List.of(
+                chunk("id1", "doc1", 1, 0, "The hearing was adjourned."),
+                chunk("id2", "doc1", 1, 1, "Costs were reserved.")));
+
+        assertThat(result).valueByXPath("/RETRIEVED_DOCUMENTS/DOCUMENT/DATA[1]/DOCUMENT_CONTENT")
+                .isEqualTo("The hearing was adjourned. Costs were reserved.");
+    }
+
+    @Test
+    void overlapLength_FindsTheLongestSuffixPrefixMatch() {
+        assertEquals(5, ChunkFormatterUtility.overlapLength("abcabcab", "abcabd"));
+        assertEquals(0, ChunkFormatterUtility.overlapLength("abc", "xyz"));
+        assertEquals(3, ChunkFormatterUtility.overlapLength("aaa", "aaaa"));
+    }
+
+    private static ChunkedEntry chunk(final String id, final String documentId, final int page, final int chunkIndex,
+                                      final String content) {
+        return ChunkedEntry.builder()
+                .id(id)
+                .documentId(documentId)
+                .chunk(content)
+                .documentFileName(documentId + ".pdf")
+                .pageNumber(page)
+                .chunkIndex(chunkIndex)
+                .customMetadata(List.of())
+                .build();
+    }
+}
\ No newline at end of file
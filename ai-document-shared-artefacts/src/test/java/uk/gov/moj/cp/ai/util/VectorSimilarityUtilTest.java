@@ -1,9 +1,16 @@
 package uk.gov.moj.cp.ai.util;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,15 +22,15 @@ class VectorSimilarityUtilTest {
     @Test
     @DisplayName("Returns the dot product for equal-length vectors")
     void returnsDotProductForEqualLengthVectors() {
-        final List<Float> a = Arrays.asList(1.0f, 2.0f, 3.0f);
-        final List<Float> b = Arrays.asList(4.0f, 5.0f, 6.0f);
+        final EmbeddingVector a = EmbeddingVector.of(1.0f, 2.0f, 3.0f);
+        final EmbeddingVector b = EmbeddingVector.of(4.0f, 5.0f, 6.0f);
         assertEquals(32.0, VectorSimilarityUtil.cosineSimilarity(a, b), DELTA);
     }
 
     @Test
     @DisplayName("Returns 1.0 for identical unit vectors")
     void returnsOneForIdenticalUnitVectors() {
-        final List<Float> v = Arrays.asList(1.0f, 0.0f);
+        final EmbeddingVector v = EmbeddingVector.of(1.0f, 0.0f);
         assertEquals(1.0, VectorSimilarityUtil.cosineSimilarity(v, v), DELTA);
     }
 
@@ -31,13 +38,13 @@ class VectorSimilarityUtilTest {
     @DisplayName("Returns 0.0 for orthogonal vectors")
     void returnsZeroForOrthogonalVectors() {
         assertEquals(0.0, VectorSimilarityUtil.cosineSimilarity(
-                Arrays.asList(1.0f, 0.0f), Arrays.asList(0.0f, 1.0f)), DELTA);
+                EmbeddingVector.of(1.0f, 0.0f), EmbeddingVector.of(0.0f, 1.0f)), DELTA);
     }
 
     @Test
     @DisplayName("Returns 0.0 when either vector is null")
     void returnsZeroWhenEitherVectorIsNull() {
-        final List<Float> v = Arrays.asList(1.0f, 2.0f);
+        final EmbeddingVector v = EmbeddingVector.of(1.0f, 2.0f);
         assertEquals(0.0, VectorSimilarityUtil.cosineSimilarity(null, v), DELTA);
         assertEquals(0.0, VectorSimilarityUtil.cosineSimilarity(v, null), DELTA);
         assertEquals(0.0, VectorSimilarityUtil.cosineSimilarity(null, null), DELTA);
@@ -47,6 +54,69 @@ class VectorSimilarityUtilTest {
     @DisplayName("Returns 0.0 for mismatched-length vectors")
     void returnsZeroForMismatchedLengthVectors() {
         assertEquals(0.0, VectorSimilarityUtil.cosineSimilarity(
-                Arrays.asList(1.0f, 2.0f), Arrays.asList(1.0f)), DELTA);
+                EmbeddingVector.of(1.0f, 2.0f), EmbeddingVector.of(1.0f)), DELTA);
+    }
+
+    @Test
+    @DisplayName("Batched similarities match pairwise results, scoring null and mismatched candidates 0.0")
+    void batchedSimilaritiesMatchPairwise() {
+        final EmbeddingVector query = EmbeddingVector.of(1.0f, 2.0f, 3.0f);
+        final List<EmbeddingVector> candidates = Arrays.asList(
+                EmbeddingVector.of(4.0f, 5.0f, 6.0f), null, EmbeddingVector.of(1.0f), EmbeddingVector.of(-1.0f, 0.0f, 1.0f));
+
+        assertArrayEquals(new double[]{32.0, 0.0, 0.0, 2.0},
+                VectorSimilarityUtil.cosineSimilarities(query, candidates), DELTA);
+    }
+
+    @Test
+    @DisplayName("Dot product of raw arrays uses the kernel and rejects mismatched lengths")
+    void dotProductOfArrays() {
+        assertEquals(32.0, VectorSimilarityUtil.dotProduct(new float[]{1.0f, 2.0f, 3.0f}, new float[]{4.0f, 5.0f, 6.0f}), DELTA);
+        assertThrows(IllegalArgumentException.class,
+                () -> VectorSimilarityUtil.dotProduct(new float[]{1.0f}, new float[]{1.0f, 2.0f}));
+    }
+
+    @Test
+    @DisplayName("Batched similarities are all 0.0 for a null query")
+    void batchedSimilaritiesForNullQuery() {
+        assertArrayEquals(new double[]{0.0, 0.0},
+                VectorSimilarityUtil.cosineSimilarities(null, List.of(EmbeddingVector.of(1.0f), EmbeddingVector.of(2.0f))), DELTA);
+    }
+
+    @Test
+    @DisplayName("Selects the scalar kernel when the Vector API module is not resolved")
+    void selectsScalarKernelWithoutVectorModule() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty());
+        assertInstanceOf(ScalarDotProductKernel.class, VectorSimilarityUtil.kernel());
+    }
+
+    @Test
+    @DisplayName("SIMD kernel matches the scalar kernel across full-size and tail-only lengths")
+    void simdKernelMatchesScalarKernel() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent());
+        assertInstanceOf(SimdDotProductKernel.class, VectorSimilarityUtil.kernel());
+
+        final DotProductKernel scalar = new ScalarDotProductKernel();
+        final DotProductKernel simd = new SimdDotProductKernel();
+        final Random random = new Random(42);
+        for (final int length : new int[]{0, 1, 7, 15, 17, 33, 1536, 3072, 3075}) {
+            final float[] a = unitVector(random, length);
+            final float[] b = unitVector(random, length);
+            assertEquals(scalar.dot(a, b), simd.dot(a, b), 1e-5, "length " + length);
+        }
+    }
+
+    private static float[] unitVector(final Random random, final int length) {
+        final float[] values = new float[length];
+        double norm = 0.0;
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) random.nextGaussian();
+            norm += values[i] * values[i];
+        }
+        final float scale = norm == 0.0 ? 0.0f : (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < length; i++) {
+            values[i] *= scale;
+        }
+        return values;
     }
 }
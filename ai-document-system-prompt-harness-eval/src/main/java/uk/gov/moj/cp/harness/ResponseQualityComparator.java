@@ -3,6 +3,7 @@ package uk.gov.moj.cp.harness;
 import static uk.gov.moj.cp.ai.util.VectorSimilarityUtil.cosineSimilarity;
 
 import uk.gov.moj.cp.ai.client.ChatServiceFactory;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.service.ChatService;
 import uk.gov.moj.cp.ai.service.EmbeddingService;
 
@@ -107,7 +108,7 @@ final class ResponseQualityComparator {
 
         final Map<String, TestHarness.UserQueryConfig> queryByLabel = new HashMap<>();
         queries.forEach(q -> queryByLabel.put(q.label(), q));
-        final Map<String, List<Float>> embeddingCache = new HashMap<>();
+        final Map<String, EmbeddingVector> embeddingCache = new HashMap<>();
 
         LOGGER.info("");
         LOGGER.info("======== QUALITY COMPARISON (judge: {}) ========", judgeEnabled ? judgeDeployment : "disabled");
@@ -164,7 +165,7 @@ final class ResponseQualityComparator {
     private static void comparePair(final String dimension, final String keyA, final String keyB,
                                     final Map<String, Map<String, TestHarness.RunResult>> rows,
                                     final Map<String, TestHarness.UserQueryConfig> queryByLabel,
-                                    final Map<String, List<Float>> embeddingCache,
+                                    final Map<String, EmbeddingVector> embeddingCache,
                                     final EmbeddingService embeddingService,
                                     final ChatService judge) {
         LOGGER.info("");
@@ -229,11 +230,11 @@ final class ResponseQualityComparator {
     private static Double cosineOf(final String rowKey,
                                    final String labelA, final TestHarness.RunResult a,
                                    final String labelB, final TestHarness.RunResult b,
-                                   final Map<String, List<Float>> cache,
+                                   final Map<String, EmbeddingVector> cache,
                                    final EmbeddingService embeddingService) {
         try {
-            final List<Float> va = embeddingOf(rowKey + "|" + labelA, a, cache, embeddingService);
-            final List<Float> vb = embeddingOf(rowKey + "|" + labelB, b, cache, embeddingService);
+            final EmbeddingVector va = embeddingOf(rowKey + "|" + labelA, a, cache, embeddingService);
+            final EmbeddingVector vb = embeddingOf(rowKey + "|" + labelB, b, cache, embeddingService);
             return (va == null || vb == null) ? null : cosineSimilarity(va, vb);
         } catch (final Exception e) {
             LOGGER.warn("[quality] embedding failed for {}: {}", rowKey, e.getMessage());
@@ -241,14 +242,14 @@ final class ResponseQualityComparator {
         }
     }
 
-    private static List<Float> embeddingOf(final String cacheKey, final TestHarness.RunResult r,
-                                           final Map<String, List<Float>> cache,
+    private static EmbeddingVector embeddingOf(final String cacheKey, final TestHarness.RunResult r,
+                                           final Map<String, EmbeddingVector> cache,
                                            final EmbeddingService embeddingService) throws Exception {
         if (cache.containsKey(cacheKey)) {
             return cache.get(cacheKey);
         }
         final String prose = TestHarness.proseOf(r.response().rawLlmResponse());
-        final List<Float> vector = prose.isEmpty() ? null : embeddingService.embedData(prose);
+        final EmbeddingVector vector = prose.isEmpty() ? null : embeddingService.embedData(prose);
         cache.put(cacheKey, vector);
         return vector;
     }
@@ -2,6 +2,7 @@ package uk.gov.moj.cp.harness;
 
 import uk.gov.moj.cp.ai.exception.EmbeddingServiceException;
 import uk.gov.moj.cp.ai.model.ChunkedEntry;
+import uk.gov.moj.cp.ai.model.EmbeddingVector;
 import uk.gov.moj.cp.ai.model.KeyValuePair;
 import uk.gov.moj.cp.ai.service.ChatService;
 import uk.gov.moj.cp.ai.service.EmbeddingService;
@@ -267,7 +268,7 @@ public final class TestHarness {
                                                  final AzureAISearchService searchService,
                                                  final String userQuery, final String documentId) {
         try {
-            final List<Float> vectorisedUserQuery = embeddingService.embedData(userQuery);
+            final EmbeddingVector vectorisedUserQuery = embeddingService.embedData(userQuery);
             return searchService.search(null, userQuery, vectorisedUserQuery,
                     List.of(new KeyValuePair(DOCUMENT_ID_FILTER_KEY, documentId)));
         } catch (final EmbeddingServiceException | SearchServiceException e) {